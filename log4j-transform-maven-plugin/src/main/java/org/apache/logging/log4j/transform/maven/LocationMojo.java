@@ -32,8 +32,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.transform.maven.scan.ClassFileInclusionScanner;
 import org.apache.logging.log4j.transform.maven.scan.SimpleInclusionScanner;
+import org.apache.logging.log4j.weaver.CacheGranularity;
+import org.apache.logging.log4j.weaver.Constants;
 import org.apache.logging.log4j.weaver.LocationCacheGenerator;
 import org.apache.logging.log4j.weaver.LocationClassConverter;
 import org.apache.maven.artifact.Artifact;
@@ -101,6 +104,144 @@ public class LocationMojo extends AbstractMojo {
     @Parameter(property = "lastModGranularityMs", defaultValue = "0")
     private int staleMillis;
 
+    /**
+     * Creates each location only when the corresponding logging statement is executed for the first time.
+     */
+    @Parameter(property = "lazyLocations", defaultValue = "false")
+    private boolean lazyLocations;
+
+    /**
+     * Stores the locations of logging statements in a binary resource next to each location cache and creates them
+     * only when the corresponding logging statement is executed for the first time.
+     */
+    @Parameter(property = "locationTable", defaultValue = "false")
+    private boolean locationTable;
+
+    /**
+     * Creates the message suppliers of logging statements using generated classes instead of lambdas.
+     */
+    @Parameter(property = "supplierClasses", defaultValue = "false")
+    private boolean supplierClasses;
+
+    /**
+     * Stores the string representation of each location, so that the {@code %wovenLocation} pattern converter does
+     * not format it for each log event. The woven classes require {@code log4j-weaver-runtime} at runtime.
+     */
+    @Parameter(property = "renderLocations", defaultValue = "false")
+    private boolean renderLocations;
+
+    /**
+     * Counts the executions of each logging statement and exposes the most executed statements through JMX. The
+     * woven classes require {@code log4j-weaver-runtime} at runtime.
+     */
+    @Parameter(property = "hitCounters", defaultValue = "false")
+    private boolean hitCounters;
+
+    /**
+     * Guards each logging statement with a switch, so that single logging statements can be disabled at runtime
+     * through JMX or a watched file. The woven classes require {@code log4j-weaver-runtime} at runtime.
+     */
+    @Parameter(property = "siteSwitches", defaultValue = "false")
+    private boolean siteSwitches;
+
+    /**
+     * Wraps each logging statement in an {@code isEnabled} check, so that the arguments of disabled logging statements
+     * are not evaluated.
+     */
+    @Parameter(property = "levelGuards", defaultValue = "false")
+    private boolean levelGuards;
+
+    /**
+     * Replaces string concatenations used as logging messages with parameterized messages, so that the messages of
+     * disabled logging statements are not built.
+     */
+    @Parameter(property = "deferConcatenation", defaultValue = "false")
+    private boolean deferConcatenation;
+
+    /**
+     * Also defers the {@code toString()}, {@code String.valueOf} and {@code String.format} calls in the replaced
+     * concatenations.
+     */
+    @Parameter(property = "deferStringConversion", defaultValue = "false")
+    private boolean deferStringConversion;
+
+    /**
+     * Compiles each constant message pattern into a specialized message class, which does not parse the pattern
+     * when the message is formatted.
+     */
+    @Parameter(property = "precompiledMessages", defaultValue = "false")
+    private boolean precompiledMessages;
+
+    /**
+     * Replaces the boxing of primitive parameters of logging calls with the garbage-free {@code Unbox.box} methods.
+     */
+    @Parameter(property = "garbageFreeBoxing", defaultValue = "false")
+    private boolean garbageFreeBoxing;
+
+    /**
+     * Replaces constant messages without parameters with shared message instances.
+     */
+    @Parameter(property = "constantMessages", defaultValue = "false")
+    private boolean constantMessages;
+
+    /**
+     * Converts logging calls into direct calls to {@code LocationAwareLogger.logMessage}, which do not use the
+     * thread-local {@code LogBuilder} of the logger.
+     */
+    @Parameter(property = "directLogging", defaultValue = "false")
+    private boolean directLogging;
+
+    /**
+     * Replaces level checks with {@code invokedynamic} instructions, which are linked to a constant until the
+     * configuration changes. The woven classes require {@code log4j-weaver-runtime} at runtime.
+     */
+    @Parameter(property = "invokeDynamicGuards", defaultValue = "false")
+    private boolean invokeDynamicGuards;
+
+    /**
+     * Moves the converted logging statements into synthetic helper methods, so that weaving does not push methods
+     * beyond the inlining and compilation thresholds of the JIT compiler.
+     */
+    @Parameter(property = "outlineStatements", defaultValue = "false")
+    private boolean outlineStatements;
+
+    /**
+     * Removes the logging statements with a level less specific than the given standard level, e.g. {@code INFO}
+     * removes the {@code debug} and {@code trace} statements.
+     */
+    @Parameter(property = "stripBelow")
+    private String stripBelow;
+
+    /**
+     * Caches the loggers returned by {@code LogManager.getLogger} calls with a constant argument in static fields of
+     * the location cache.
+     */
+    @Parameter(property = "cacheLoggers", defaultValue = "false")
+    private boolean cacheLoggers;
+
+    /**
+     * Caches the results of {@code MarkerManager.getMarker} and {@code Level.forName} calls with constant arguments in
+     * static fields of the location cache.
+     */
+    @Parameter(property = "cacheMarkersAndLevels", defaultValue = "false")
+    private boolean cacheMarkersAndLevels;
+
+    /**
+     * Samples the events of the selected logging statements before their message is created. Each rule has the format
+     * {@code <pattern>=<rate>}, where the pattern is a class name, optionally followed by {@code :<line>}, or a prefix
+     * of class names ending with {@code *} and the rate is either {@code 1/<n>} or {@code <k>/s}. The woven classes
+     * require {@code log4j-weaver-runtime} at runtime.
+     */
+    @Parameter
+    private List<String> samplingRules;
+
+    /**
+     * Determines which classes share a location cache class: {@code CLASS} for each top level class, {@code PACKAGE}
+     * for each package or {@code MODULE} for all the processed classes.
+     */
+    @Parameter(property = "cacheGranularity", defaultValue = "CLASS")
+    private CacheGranularity cacheGranularity = CacheGranularity.CLASS;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if ("pom".equals(project.getPackaging())) {
@@ -114,23 +255,68 @@ public class LocationMojo extends AbstractMojo {
         final Path sourceDirectory = this.sourceDirectory.toPath();
         final Path outputDirectory = this.outputDirectory.toPath();
         final LocationCacheGenerator locationCache = new LocationCacheGenerator();
-        final LocationClassConverter converter = new LocationClassConverter(getProjectDependencies());
-
-        try {
+        locationCache.setLazyLocations(lazyLocations);
+        locationCache.setLocationTable(locationTable);
+        locationCache.setSupplierClasses(supplierClasses);
+        locationCache.setRenderLocations(renderLocations);
+        locationCache.setHitCounters(hitCounters);
+        locationCache.setSiteSwitches(siteSwitches);
+        locationCache.setCacheGranularity(cacheGranularity);
+        if (cacheGranularity == CacheGranularity.MODULE) {
+            locationCache.setModulePackage(getCommonPackage(sourceDirectory));
+        }
+        // The class files of the dependencies are read through the classloader, which keeps the JAR files open
+        try (final URLClassLoader classpath = getProjectDependencies()) {
+            final LocationClassConverter converter = createConverter(classpath);
             final Set<Path> staleClassFiles =
-                    getClassFileInclusionScanner().getIncludedClassFiles(sourceDirectory, outputDirectory);
+                    getClassFileInclusionScanner(locationCache).getIncludedClassFiles(sourceDirectory, outputDirectory);
             staleClassFiles.stream()
-                    .collect(Collectors.groupingBy(LocationCacheGenerator::getCacheClassFile))
+                    .collect(Collectors.groupingBy(p -> locationCache.getCacheClassFile(sourceDirectory, p)))
                     .values()
                     .parallelStream()
                     .forEach(p -> convertClassfiles(p, converter, locationCache));
 
             locationCache.generateClasses().forEach(this::saveClassFile);
+            locationCache.generateLocationTables().forEach(this::saveResource);
+        } catch (IllegalStateException e) {
+            // Thrown by the scanner, if a location cache can not be regenerated without a clean build
+            throw new MojoFailureException(e.getMessage(), e);
         } catch (WrappedIOException e) {
             throw new MojoExecutionException("An I/O error occurred.", e.getCause());
+        } catch (IOException e) {
+            throw new MojoExecutionException("An I/O error occurred.", e);
         }
     }
 
+    private LocationClassConverter createConverter(final ClassLoader classpath) throws MojoExecutionException {
+        final LocationClassConverter converter = new LocationClassConverter(classpath);
+        converter.setLevelGuards(levelGuards);
+        converter.setDeferConcatenation(deferConcatenation);
+        converter.setDeferStringConversion(deferStringConversion);
+        converter.setPrecompiledMessages(precompiledMessages);
+        converter.setGarbageFreeBoxing(garbageFreeBoxing);
+        converter.setConstantMessages(constantMessages);
+        converter.setDirectLogging(directLogging);
+        converter.setInvokeDynamicGuards(invokeDynamicGuards);
+        converter.setOutlineStatements(outlineStatements);
+        converter.setCacheLoggers(cacheLoggers);
+        converter.setCacheMarkersAndLevels(cacheMarkersAndLevels);
+        converter.setWarningHandler(getLog()::warn);
+        try {
+            converter.setStripBelow(stripBelow);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid `stripBelow` parameter.", e);
+        }
+        if (samplingRules != null) {
+            try {
+                converter.setSamplingRules(samplingRules);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Invalid `samplingRules` parameter.", e);
+            }
+        }
+        return converter;
+    }
+
     private void convertClassfiles(
             List<Path> classFiles, LocationClassConverter converter, LocationCacheGenerator locationCache) {
         final Path sourceDirectory = this.sourceDirectory.toPath();
@@ -167,9 +353,23 @@ public class LocationMojo extends AbstractMojo {
         }
     }
 
-    protected ClassFileInclusionScanner getClassFileInclusionScanner() {
+    private void saveResource(String resourceName, byte[] data) {
+        try {
+            final Path outputDirectory = this.outputDirectory.toPath();
+            Files.write(outputDirectory.resolve(resourceName), data);
+        } catch (IOException e) {
+            throw new WrappedIOException(e);
+        }
+    }
+
+    protected ClassFileInclusionScanner getClassFileInclusionScanner(final LocationCacheGenerator locationCache) {
         if (includes.isEmpty() && excludes.isEmpty()) {
-            return new SimpleInclusionScanner(staleMillis, getLog());
+            return new SimpleInclusionScanner(
+                    staleMillis,
+                    Collections.singleton(ClassFileInclusionScanner.DEFAULT_INCLUSION_PATTERN),
+                    Collections.singleton(ClassFileInclusionScanner.DEFAULT_EXCLUSION_PATTERN),
+                    locationCache,
+                    getLog());
         }
 
         final Set<String> actualIncludes = includes.isEmpty()
@@ -180,7 +380,49 @@ public class LocationMojo extends AbstractMojo {
         final Set<String> actualExcludes = new HashSet<>(excludes);
         actualExcludes.add(ClassFileInclusionScanner.DEFAULT_EXCLUSION_PATTERN);
 
-        return new SimpleInclusionScanner(staleMillis, actualIncludes, actualExcludes, getLog());
+        return new SimpleInclusionScanner(staleMillis, actualIncludes, actualExcludes, locationCache, getLog());
+    }
+
+    /**
+     * Returns the longest package that contains all the classes in a directory.
+     */
+    private static String getCommonPackage(final Path classesDirectory) throws MojoExecutionException {
+        final List<Path> packages;
+        try (Stream<Path> paths = Files.walk(classesDirectory)) {
+            packages = paths.map(classesDirectory::relativize)
+                    .filter(LocationMojo::isConvertibleClassFile)
+                    .map(Path::getParent)
+                    .distinct()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new MojoExecutionException("An I/O error occurred.", e);
+        }
+        // A `null` package is the default package
+        Path common = packages.isEmpty() ? null : packages.get(0);
+        for (final Path packagePath : packages) {
+            common = getCommonParent(common, packagePath);
+        }
+        return common != null ? common.toString().replace(common.getFileSystem().getSeparator(), ".") : "";
+    }
+
+    private static boolean isConvertibleClassFile(final Path path) {
+        final String fileName = String.valueOf(path.getFileName());
+        return fileName.endsWith(".class")
+                && !fileName.equals("module-info.class")
+                && !fileName.contains(Constants.LOCATION_CACHE_SUFFIX)
+                && !path.startsWith("META-INF");
+    }
+
+    private static Path getCommonParent(final Path first, final Path second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        int count = 0;
+        while (count < Math.min(first.getNameCount(), second.getNameCount())
+                && first.getName(count).equals(second.getName(count))) {
+            count++;
+        }
+        return count > 0 ? first.subpath(0, count) : null;
     }
 
     private static class WrappedIOException extends RuntimeException {
@@ -220,7 +462,7 @@ public class LocationMojo extends AbstractMojo {
         return true;
     }
 
-    private ClassLoader getProjectDependencies() throws MojoExecutionException {
+    private URLClassLoader getProjectDependencies() throws MojoExecutionException {
         Set<Artifact> artifacts = project.getArtifacts();
         List<URL> urls = new ArrayList<>(artifacts.size() + 1);
         try {
@@ -23,7 +23,7 @@ import org.apache.logging.log4j.weaver.Constants;
 public interface ClassFileInclusionScanner {
 
     String DEFAULT_INCLUSION_PATTERN = "**/*.class";
-    String DEFAULT_EXCLUSION_PATTERN = "**/*" + Constants.LOCATION_CACHE_SUFFIX + ".class";
+    String DEFAULT_EXCLUSION_PATTERN = "**/*" + Constants.LOCATION_CACHE_SUFFIX + "*.class";
 
     /**
      * Finds class files matching a specific condition.
@@ -31,6 +31,7 @@ public interface ClassFileInclusionScanner {
      * @param sourceDir path to the folder where to search files
      * @param targetDir an auxiliary folder
      * @return a set of relative paths to file in {@code sourceDir}
+     * @throws IllegalStateException if some of the matching class files can not be woven without a clean build
      */
     Set<Path> getIncludedClassFiles(Path sourceDir, Path targetDir);
 }
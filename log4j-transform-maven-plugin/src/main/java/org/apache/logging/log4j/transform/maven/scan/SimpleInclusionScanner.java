@@ -16,6 +16,7 @@
  */
 package org.apache.logging.log4j.transform.maven.scan;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,6 +26,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.logging.log4j.weaver.CacheGranularity;
 import org.apache.logging.log4j.weaver.LocationCacheGenerator;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.DirectoryScanner;
@@ -36,6 +38,7 @@ public class SimpleInclusionScanner implements ClassFileInclusionScanner {
     private final long lastUpdatedWithinMsecs;
     private final Set<String> sourceIncludes;
     private final Set<String> sourceExcludes;
+    private final LocationCacheGenerator locationCache;
     private final Log log;
 
     public SimpleInclusionScanner(long lastUpdateWithinMsecs, Log log) {
@@ -48,9 +51,23 @@ public class SimpleInclusionScanner implements ClassFileInclusionScanner {
 
     public SimpleInclusionScanner(
             long lastUpdateWithinMsecs, Set<String> sourceIncludes, Set<String> sourceExcludes, Log log) {
+        this(lastUpdateWithinMsecs, sourceIncludes, sourceExcludes, new LocationCacheGenerator(), log);
+    }
+
+    /**
+     * @param locationCache determines the location cache class of each class file.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
+    public SimpleInclusionScanner(
+            long lastUpdateWithinMsecs,
+            Set<String> sourceIncludes,
+            Set<String> sourceExcludes,
+            LocationCacheGenerator locationCache,
+            Log log) {
         this.lastUpdatedWithinMsecs = lastUpdateWithinMsecs;
         this.sourceIncludes = new HashSet<>(sourceIncludes);
         this.sourceExcludes = new HashSet<>(sourceExcludes);
+        this.locationCache = locationCache;
         this.log = log;
     }
 
@@ -58,9 +75,32 @@ public class SimpleInclusionScanner implements ClassFileInclusionScanner {
     public Set<Path> getIncludedClassFiles(Path sourceDir, Path targetDir) {
         final Set<Path> potentialSources = scanForSources(sourceDir, sourceIncludes, sourceExcludes);
 
-        return potentialSources.stream()
+        final Set<Path> staleSources = potentialSources.stream()
                 .filter(source -> isLocationCacheStale(sourceDir, targetDir, source))
                 .collect(Collectors.toSet());
+        if (locationCache.getCacheGranularity() == CacheGranularity.CLASS || staleSources.isEmpty()) {
+            return staleSources;
+        }
+        // A shared location cache must be generated from all the classes that use it
+        final Set<Path> result = new HashSet<>();
+        potentialSources.stream()
+                .collect(Collectors.groupingBy(source -> locationCache.getCacheClassFile(sourceDir, source)))
+                .forEach((cacheClassFile, sources) -> {
+                    final long staleCount =
+                            sources.stream().filter(staleSources::contains).count();
+                    if (staleCount == 0) {
+                        return;
+                    }
+                    // The up-to-date classes woven in place no longer reference the Log4j API, so their
+                    // locations can not be added to a new location cache.
+                    if (staleCount < sources.size() && sourceDir.equals(targetDir)) {
+                        throw new IllegalStateException(staleCount + " class files share the location cache "
+                                + cacheClassFile + " with already woven classes. Perform a clean build to weave "
+                                + "them.");
+                    }
+                    result.addAll(sources);
+                });
+        return result;
     }
 
     /**
@@ -78,7 +118,7 @@ public class SimpleInclusionScanner implements ClassFileInclusionScanner {
 
     private boolean isLocationCacheStale(Path sourceDir, Path targetDir, Path source) {
         try {
-            final Path target = targetDir.resolve(LocationCacheGenerator.getCacheClassFile(source));
+            final Path target = targetDir.resolve(locationCache.getCacheClassFile(sourceDir, source));
             if (!Files.exists(target)) {
                 return true;
             }
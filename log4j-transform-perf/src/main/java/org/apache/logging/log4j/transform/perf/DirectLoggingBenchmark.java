@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <p>
+ * Compares the {@code LogBuilder} calls generated by log4j-weaver with the
+ * direct calls to {@code LocationAwareLogger.logMessage}.
+ * </p>
+ * <p>
+ * The {@link DirectLoggingDirect} class is postprocessed with the
+ * {@code directLogging} option, while {@link DirectLoggingCompiletime} is
+ * postprocessed with the default options. Both log to the demo appender.
+ * </p>
+ * <h2>HOW TO RUN THIS TEST</h2>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ".*DirectLoggingBenchmark.*" -t 4
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DirectLoggingBenchmark {
+
+    private static final Object P0 = "World";
+
+    private DirectLoggingCompiletime logBuilder;
+    private DirectLoggingDirect direct;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("log4j2.configurationFile", "log4j2-demo.xml");
+        final Logger logger = LogManager.getLogger(getClass());
+        final Marker marker = MarkerManager.getMarker("TestMarker");
+        logBuilder = new DirectLoggingCompiletime(logger, marker);
+        direct = new DirectLoggingDirect(logger, marker);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty("log4j2.configurationFile");
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public void logBuilderNoMarker() {
+        logBuilder.logNoMarker(P0);
+    }
+
+    @Benchmark
+    public void logBuilderMarker() {
+        logBuilder.logMarker(P0);
+    }
+
+    @Benchmark
+    public void logBuilderDisabled() {
+        logBuilder.logDisabled(P0);
+    }
+
+    @Benchmark
+    public void directNoMarker() {
+        direct.logNoMarker(P0);
+    }
+
+    @Benchmark
+    public void directMarker() {
+        direct.logMarker(P0);
+    }
+
+    @Benchmark
+    public void directDisabled() {
+        direct.logDisabled(P0);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <p>
+ * Compares the cost of disabled logging statements guarded by
+ * {@code Logger.isEnabled} calls and by {@code invokedynamic} level checks.
+ * </p>
+ * <p>
+ * The {@link DisabledLoggingGuarded} class is postprocessed with the
+ * {@code levelGuards} option, while {@link DisabledLoggingIndy} is
+ * postprocessed with both the {@code levelGuards} and
+ * {@code invokeDynamicGuards} options.
+ * </p>
+ * <h2>HOW TO RUN THIS TEST</h2>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ".*DisabledLoggingBenchmark.*"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DisabledLoggingBenchmark {
+
+    private static final Object P0 = "World";
+    private static final Object P1 = 42;
+
+    private DisabledLoggingGuarded guarded;
+    private DisabledLoggingIndy indy;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("log4j2.configurationFile", "log4j2-demo.xml");
+        final Logger logger = LogManager.getLogger(getClass());
+        final Marker marker = MarkerManager.getMarker("TestMarker");
+        guarded = new DisabledLoggingGuarded(logger, marker);
+        indy = new DisabledLoggingIndy(logger, marker);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty("log4j2.configurationFile");
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public void guardedTrace() {
+        guarded.logTrace(P0, P1);
+    }
+
+    @Benchmark
+    public void guardedTraceMarker() {
+        guarded.logTraceMarker(P0);
+    }
+
+    @Benchmark
+    public boolean guardedIsTraceEnabled() {
+        return guarded.isTraceEnabled();
+    }
+
+    @Benchmark
+    public void indyTrace() {
+        indy.logTrace(P0, P1);
+    }
+
+    @Benchmark
+    public void indyTraceMarker() {
+        indy.logTraceMarker(P0);
+    }
+
+    @Benchmark
+    public boolean indyIsTraceEnabled() {
+        return indy.isTraceEnabled();
+    }
+}
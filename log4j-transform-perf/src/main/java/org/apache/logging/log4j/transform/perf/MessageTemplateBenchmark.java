@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogBuilder;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.MessageFactory;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.ParameterizedMessageFactory;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * Compares the formatting of a {@link ParameterizedMessage} with the formatting
+ * of the precompiled messages generated by log4j-weaver.
+ * </p>
+ * <p>
+ * The {@link MessageTemplatePrecompiled} class is postprocessed with the
+ * {@code precompiledMessages} option, while {@link MessageTemplateRuntime} is
+ * left untouched. Both log to a {@link LogBuilder} that only formats the
+ * message into a reusable buffer.
+ * </p>
+ * <h2>HOW TO RUN THIS TEST</h2>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ".*MessageTemplateBenchmark.*"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MessageTemplateBenchmark {
+
+    private static final Object P0 = "Alice";
+    private static final Object P1 = "127.0.0.1";
+    private static final Object P2 = 3;
+
+    private FormattingLogBuilder logBuilder;
+    private MessageTemplateRuntime runtime;
+    private MessageTemplatePrecompiled precompiled;
+
+    @Setup
+    public void setUp() {
+        logBuilder = new FormattingLogBuilder();
+        runtime = new MessageTemplateRuntime();
+        precompiled = new MessageTemplatePrecompiled();
+    }
+
+    @Benchmark
+    public void runtimeOneParameter(final Blackhole blackhole) {
+        runtime.logOneParameter(logBuilder, P0);
+        blackhole.consume(logBuilder.buffer);
+    }
+
+    @Benchmark
+    public void runtimeThreeParameters(final Blackhole blackhole) {
+        runtime.logThreeParameters(logBuilder, P0, P1, P2);
+        blackhole.consume(logBuilder.buffer);
+    }
+
+    @Benchmark
+    public void precompiledOneParameter(final Blackhole blackhole) {
+        precompiled.logOneParameter(logBuilder, P0);
+        blackhole.consume(logBuilder.buffer);
+    }
+
+    @Benchmark
+    public void precompiledThreeParameters(final Blackhole blackhole) {
+        precompiled.logThreeParameters(logBuilder, P0, P1, P2);
+        blackhole.consume(logBuilder.buffer);
+    }
+
+    /**
+     * A {@link LogBuilder} that formats messages the same way as a layout would.
+     */
+    private static final class FormattingLogBuilder implements LogBuilder {
+
+        private static final MessageFactory MESSAGE_FACTORY = ParameterizedMessageFactory.INSTANCE;
+
+        private final StringBuilder buffer = new StringBuilder(128);
+
+        @Override
+        public void log(final Message message) {
+            buffer.setLength(0);
+            if (message instanceof StringBuilderFormattable) {
+                ((StringBuilderFormattable) message).formatTo(buffer);
+            } else {
+                buffer.append(message.getFormattedMessage());
+            }
+        }
+
+        @Override
+        public void log(final String message, final Object p0) {
+            log(MESSAGE_FACTORY.newMessage(message, p0));
+        }
+
+        @Override
+        public void log(final String message, final Object p0, final Object p1, final Object p2) {
+            log(MESSAGE_FACTORY.newMessage(message, p0, p1, p2));
+        }
+    }
+}
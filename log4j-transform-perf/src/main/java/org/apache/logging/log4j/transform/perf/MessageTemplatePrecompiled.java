@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import org.apache.logging.log4j.LogBuilder;
+
+/**
+ * Should be identical to {@link MessageTemplateRuntime}.
+ *
+ */
+public class MessageTemplatePrecompiled {
+
+    public void logOneParameter(final LogBuilder logBuilder, final Object p0) {
+        logBuilder.log("Hello {}!", p0);
+    }
+
+    public void logThreeParameters(final LogBuilder logBuilder, final Object p0, final Object p1, final Object p2) {
+        logBuilder.log("User {} logged in from {} after {} attempts.", p0, p1, p2);
+    }
+}
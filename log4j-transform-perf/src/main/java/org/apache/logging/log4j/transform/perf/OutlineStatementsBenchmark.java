@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <p>
+ * Measures the effect of the woven logging statements on the inlining of a
+ * small method with disabled logging statements.
+ * </p>
+ * <p>
+ * The {@link OutlineStatementsGuarded} class is postprocessed with the
+ * {@code levelGuards} option, which pushes its {@code compute} method
+ * beyond the {@code FreqInlineSize} limit, while
+ * {@link OutlineStatementsOutlined} is also postprocessed with the
+ * {@code outlineStatements} option.
+ * </p>
+ * <h2>HOW TO RUN THIS TEST</h2>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ".*OutlineStatementsBenchmark.*"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutlineStatementsBenchmark {
+
+    private static final int ITERATIONS = 1000;
+
+    private OutlineStatementsGuarded guarded;
+    private OutlineStatementsOutlined outlined;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("log4j2.configurationFile", "log4j2-demo.xml");
+        final Logger logger = LogManager.getLogger(getClass());
+        guarded = new OutlineStatementsGuarded(logger);
+        outlined = new OutlineStatementsOutlined(logger);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty("log4j2.configurationFile");
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public long guarded() {
+        long result = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result += guarded.compute(i, result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long outlined() {
+        long result = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result += outlined.compute(i, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Should be identical to {@link OutlineStatementsOutlined}.
+ *
+ */
+public class OutlineStatementsGuarded {
+
+    private final Logger logger;
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public OutlineStatementsGuarded(final Logger logger) {
+        this.logger = logger;
+    }
+
+    public long compute(final long x, final long y) {
+        logger.trace("Computing with {} and {}", x, y);
+        final long sum = x + y;
+        logger.trace("Sum {}", sum);
+        final long product = x * y;
+        logger.trace("Product {}", product);
+        final long difference = x - y;
+        logger.trace("Difference {}", difference);
+        final long result = sum ^ product ^ difference;
+        if (result < 0) {
+            logger.warn("Negative result {} for {} and {}", result, x, y);
+        }
+        logger.trace("Result {}", result);
+        return result;
+    }
+}
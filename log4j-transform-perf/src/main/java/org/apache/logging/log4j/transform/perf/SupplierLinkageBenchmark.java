@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Measures the latency of the first execution of logging statements that
+ * require a message supplier.
+ * </p>
+ * <p>
+ * The {@link SupplierLinkageCompiletime} class is postprocessed with the
+ * default options, so its suppliers are created by lambdas, which are linked
+ * on the first execution of each statement. The
+ * {@link SupplierLinkageSupplierClasses} class is postprocessed with the
+ * {@code supplierClasses} option. Each fork runs a single invocation in a new
+ * JVM.
+ * </p>
+ * <h2>HOW TO RUN THIS TEST</h2>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ".*SupplierLinkageBenchmark.*"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class SupplierLinkageBenchmark {
+
+    private Logger logger;
+
+    @Setup
+    public void setUp() {
+        logger = LogManager.getLogger(SupplierLinkageBenchmark.class);
+    }
+
+    @Benchmark
+    public int lambdas() {
+        return new SupplierLinkageCompiletime(logger).logSuppliers(1);
+    }
+
+    @Benchmark
+    public int supplierClasses() {
+        return new SupplierLinkageSupplierClasses(logger).logSuppliers(1);
+    }
+}
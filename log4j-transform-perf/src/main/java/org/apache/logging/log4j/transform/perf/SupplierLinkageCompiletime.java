@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.transform.perf;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.EntryMessage;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.MessageSupplier;
+
+/**
+ * Should be identical to {@link SupplierLinkageSupplierClasses}.
+ *
+ */
+public class SupplierLinkageCompiletime {
+
+    private final Logger logger;
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public SupplierLinkageCompiletime(final Logger logger) {
+        this.logger = logger;
+    }
+
+    public int logSuppliers(final int value) {
+        final EntryMessage entry = logger.traceEntry("value={}", value);
+        logger.printf(Level.INFO, "Value: %d", value);
+        logger.info((MessageSupplier) () -> new ParameterizedMessage("Value: {}", value));
+        logger.traceExit(entry);
+        return logger.traceExit("Result: {}", value + 1);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.invoke.SwitchPoint;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Provides the switch points, which are invalidated when the configuration of a logger changes.
+ * <p>
+ * Only the loggers of Log4j Core are supported: {@code log4j-core} is an optional dependency of this module.
+ * </p>
+ */
+final class ConfigurationSwitchPoints {
+
+    private static final boolean CORE_AVAILABLE = isCoreAvailable();
+
+    /**
+     * Returns a switch point, which is invalidated when the result of {@code logger.isEnabled(level, marker)} might
+     * change, or {@code null} if the changes can not be tracked.
+     */
+    static SwitchPoint getSwitchPoint(final Logger logger) {
+        return CORE_AVAILABLE ? CoreSwitchPoints.getSwitchPoint(logger) : null;
+    }
+
+    private static boolean isCoreAvailable() {
+        try {
+            Class.forName(
+                    "org.apache.logging.log4j.core.LoggerContext",
+                    false,
+                    ConfigurationSwitchPoints.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private ConfigurationSwitchPoints() {}
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.invoke.SwitchPoint;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+
+/**
+ * Tracks the configuration changes of the Log4j Core logger contexts.
+ * <p>
+ * This class is only loaded if {@code log4j-core} is available.
+ * </p>
+ */
+final class CoreSwitchPoints {
+
+    private static final Map<LoggerContext, ContextSwitchPoint> SWITCH_POINTS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    static SwitchPoint getSwitchPoint(final Logger logger) {
+        if (!(logger instanceof org.apache.logging.log4j.core.Logger)) {
+            return null;
+        }
+        final LoggerContext context = ((org.apache.logging.log4j.core.Logger) logger).getContext();
+        final ContextSwitchPoint switchPoint = SWITCH_POINTS.computeIfAbsent(context, ContextSwitchPoint::new);
+        // A context-wide filter can give a different result for each call
+        return context.getConfiguration().getFilter() == null ? switchPoint.get() : null;
+    }
+
+    private static final class ContextSwitchPoint implements PropertyChangeListener {
+
+        private volatile SwitchPoint switchPoint = new SwitchPoint();
+
+        private ContextSwitchPoint(final LoggerContext context) {
+            context.addPropertyChangeListener(this);
+        }
+
+        private SwitchPoint get() {
+            return switchPoint;
+        }
+
+        @Override
+        public void propertyChange(final PropertyChangeEvent event) {
+            // Fired by both `setConfiguration` and `updateLoggers`
+            if (LoggerContext.PROPERTY_CONFIG.equals(event.getPropertyName())) {
+                final SwitchPoint oldSwitchPoint;
+                synchronized (this) {
+                    oldSwitchPoint = switchPoint;
+                    switchPoint = new SwitchPoint();
+                }
+                SwitchPoint.invalidateAll(new SwitchPoint[] {oldSwitchPoint});
+            }
+        }
+    }
+
+    private CoreSwitchPoints() {}
+}
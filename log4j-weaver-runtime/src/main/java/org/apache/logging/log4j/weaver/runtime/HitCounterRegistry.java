@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.apache.logging.log4j.util.PropertiesUtil;
+import org.apache.logging.log4j.weaver.runtime.HitCounters.HitCount;
+
+/**
+ * Aggregates the hit counters of all the location caches.
+ * <p>
+ * The registry is exposed through JMX. If the {@value #REPORT_INTERVAL_PROPERTY} property is set to a positive
+ * number of seconds, the most executed logging statements are also logged periodically.
+ * </p>
+ */
+final class HitCounterRegistry implements HitCountersMXBean {
+
+    static final String OBJECT_NAME = "org.apache.logging.log4j.weaver:type=HitCounters";
+    static final String REPORT_INTERVAL_PROPERTY = "log4j.weaver.hitCounters.reportInterval";
+    // Number of logging statements in each periodic report
+    private static final int REPORT_SIZE = 10;
+
+    private static final HitCounterRegistry INSTANCE = create();
+
+    // The counters are owned by the location caches, which can be unloaded
+    private final Set<HitCounters> hitCounters =
+            Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
+    static HitCounterRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    void add(final HitCounters counters) {
+        hitCounters.add(counters);
+    }
+
+    /**
+     * Returns the logging statements with the highest number of executions.
+     */
+    List<HitCount> getTopSites(final int limit) {
+        final List<HitCount> hitCounts = getHitCounts();
+        hitCounts.sort(Comparator.comparingLong(HitCount::getHits).reversed());
+        return hitCounts.subList(0, Math.min(Math.max(limit, 0), hitCounts.size()));
+    }
+
+    private List<HitCount> getHitCounts() {
+        final List<HitCount> hitCounts = new ArrayList<>();
+        synchronized (hitCounters) {
+            for (final HitCounters counters : hitCounters) {
+                counters.collect(hitCounts);
+            }
+        }
+        return hitCounts;
+    }
+
+    @Override
+    public long getTotalHits() {
+        return getHitCounts().stream().mapToLong(HitCount::getHits).sum();
+    }
+
+    @Override
+    public String[] topSites(final int limit) {
+        return getTopSites(limit).stream().map(HitCount::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        synchronized (hitCounters) {
+            hitCounters.forEach(HitCounters::reset);
+        }
+    }
+
+    private void report() {
+        try {
+            final List<HitCount> topSites = getTopSites(REPORT_SIZE);
+            if (!topSites.isEmpty()) {
+                final Logger logger = LogManager.getLogger(HitCounters.class);
+                final StringBuilder message = new StringBuilder("Most executed logging statements:");
+                for (final HitCount hitCount : topSites) {
+                    message.append(System.lineSeparator()).append("  ").append(hitCount);
+                }
+                logger.info(message);
+            }
+        } catch (final RuntimeException e) {
+            // An exception would cancel the next reports
+            StatusLogger.getLogger().warn("Unable to report the hit counters of the logging statements.", e);
+        }
+    }
+
+    // The report runs until the JVM exits and logs its own errors
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private static HitCounterRegistry create() {
+        final HitCounterRegistry registry = new HitCounterRegistry();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(registry, new ObjectName(OBJECT_NAME));
+        } catch (final JMException | LinkageError | SecurityException e) {
+            StatusLogger.getLogger().warn("Unable to register the hit counters of the logging statements.", e);
+        }
+        final long interval = PropertiesUtil.getProperties().getLongProperty(REPORT_INTERVAL_PROPERTY, 0L);
+        if (interval > 0) {
+            final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "log4j-weaver-hit-counters");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(registry::report, interval, interval, TimeUnit.SECONDS);
+        }
+        return registry;
+    }
+
+    private HitCounterRegistry() {}
+}
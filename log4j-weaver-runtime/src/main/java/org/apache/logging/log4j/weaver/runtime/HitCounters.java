@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the executions of the logging statements of a location cache generated by the Log4j weaver.
+ * <p>
+ * Each counter is a {@link LongAdder}, so that logging statements executed by many threads concurrently do not
+ * contend on a single memory location. The counters of all the location caches are aggregated by a registry, which
+ * is available through JMX.
+ * </p>
+ */
+public final class HitCounters {
+
+    private final StackTraceElement[] sites;
+    private final LongAdder[] counters;
+
+    private HitCounters(final StackTraceElement[] sites) {
+        this.sites = sites.clone();
+        this.counters = new LongAdder[sites.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates the hit counters of a group of logging statements and registers them.
+     *
+     * @param sites the locations of the logging statements,
+     * @return the counters of the logging statements, in the same order as the locations.
+     */
+    public static HitCounters register(final StackTraceElement[] sites) {
+        final HitCounters hitCounters = new HitCounters(sites);
+        HitCounterRegistry.getInstance().add(hitCounters);
+        return hitCounters;
+    }
+
+    /**
+     * Increments the counter of a logging statement.
+     *
+     * @param index the index of the logging statement.
+     */
+    public void increment(final int index) {
+        counters[index].increment();
+    }
+
+    /**
+     * Adds the logging statements that have been executed at least once to a list.
+     */
+    void collect(final List<HitCount> hitCounts) {
+        for (int i = 0; i < counters.length; i++) {
+            final long hits = counters[i].sum();
+            if (hits > 0) {
+                hitCounts.add(new HitCount(sites[i], hits));
+            }
+        }
+    }
+
+    void reset() {
+        for (final LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * The number of executions of a logging statement.
+     */
+    static final class HitCount {
+
+        private final StackTraceElement site;
+        private final long hits;
+
+        HitCount(final StackTraceElement site, final long hits) {
+            this.site = site;
+            this.hits = hits;
+        }
+
+        StackTraceElement getSite() {
+            return site;
+        }
+
+        long getHits() {
+            return hits;
+        }
+
+        @Override
+        public String toString() {
+            return hits + " " + site;
+        }
+    }
+}
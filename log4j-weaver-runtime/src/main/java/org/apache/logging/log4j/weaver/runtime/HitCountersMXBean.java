@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+/**
+ * Management interface of the hit counters of the logging statements woven by the Log4j weaver.
+ * <p>
+ * The MXBean is registered as {@code org.apache.logging.log4j.weaver:type=HitCounters} when the first logging
+ * statement with a hit counter is executed.
+ * </p>
+ */
+public interface HitCountersMXBean {
+
+    /**
+     * Returns the total number of executions of the counted logging statements.
+     */
+    long getTotalHits();
+
+    /**
+     * Returns the logging statements with the highest number of executions.
+     *
+     * @param limit the maximum number of logging statements to return,
+     * @return the number of executions and the location of each logging statement, in descending order of
+     * executions.
+     */
+    String[] topSites(int limit);
+
+    /**
+     * Resets all the counters.
+     */
+    void reset();
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bootstrap methods of the {@code invokedynamic} level checks generated by the Log4j weaver.
+ * <p>
+ * A woven level check, like {@code logger.isEnabled(Level.TRACE, marker)}, is replaced with an
+ * {@code invokedynamic} instruction with the same arguments. As long as the configuration of the logger context
+ * does not change, each call site returns a constant, so that the JIT compiler can remove disabled logging
+ * statements entirely.
+ * </p>
+ */
+public final class LevelGuardBootstrap {
+
+    /**
+     * Links a level check with type {@code (Logger, Level, Marker)boolean}.
+     *
+     * @param lookup the lookup of the caller,
+     * @param name   the name of the call site,
+     * @param type   the type of the call site,
+     * @return a call site that returns the same value as {@code Logger.isEnabled(Level, Marker)}.
+     */
+    public static CallSite isEnabled(final MethodHandles.Lookup lookup, final String name, final MethodType type) {
+        if (!LevelGuardCallSite.TYPE.equals(type)) {
+            throw new IllegalArgumentException("Unsupported level check type " + type + ".");
+        }
+        return new LevelGuardCallSite();
+    }
+
+    private LevelGuardBootstrap() {}
+}
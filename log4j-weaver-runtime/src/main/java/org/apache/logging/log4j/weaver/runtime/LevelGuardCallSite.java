@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+
+/**
+ * A call site that caches the result of {@code Logger.isEnabled(Level, Marker)}.
+ * <p>
+ * The call site is bound to a constant, which is guarded by the identity of its arguments and by a
+ * {@link SwitchPoint}, which is invalidated when the configuration of the logger context changes. If the
+ * configuration changes can not be tracked or the arguments change too often, the call site falls back to
+ * {@code Logger.isEnabled(Level, Marker)}.
+ * </p>
+ */
+final class LevelGuardCallSite extends MutableCallSite {
+
+    static final MethodType TYPE = MethodType.methodType(boolean.class, Logger.class, Level.class, Marker.class);
+
+    // Number of different arguments seen, before the call site stops caching results
+    private static final int MAX_MISSES = 8;
+
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle RELINK;
+    private static final MethodHandle MISS;
+    private static final MethodHandle SAME_ARGUMENTS;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            IS_ENABLED = lookup.findVirtual(Logger.class, "isEnabled", TYPE.dropParameterTypes(0, 1));
+            RELINK = lookup.findVirtual(LevelGuardCallSite.class, "relink", TYPE);
+            MISS = lookup.findVirtual(LevelGuardCallSite.class, "miss", TYPE);
+            SAME_ARGUMENTS = lookup.findStatic(
+                    LevelGuardCallSite.class, "sameArguments", TYPE.insertParameterTypes(0, TYPE.parameterArray()));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle relink;
+    private final MethodHandle miss;
+    private final AtomicInteger misses = new AtomicInteger();
+
+    LevelGuardCallSite() {
+        super(TYPE);
+        relink = RELINK.bindTo(this);
+        miss = MISS.bindTo(this);
+        setTarget(relink);
+    }
+
+    /**
+     * Computes the level check and binds the call site to its result.
+     */
+    private boolean relink(final Logger logger, final Level level, final Marker marker) {
+        // The switch point must be retrieved before the level check
+        final SwitchPoint switchPoint = ConfigurationSwitchPoints.getSwitchPoint(logger);
+        final boolean enabled = logger.isEnabled(level, marker);
+        if (switchPoint == null) {
+            setTarget(IS_ENABLED);
+        } else {
+            final MethodHandle constant = MethodHandles.dropArguments(
+                    MethodHandles.constant(boolean.class, enabled), 0, TYPE.parameterArray());
+            final MethodHandle test = MethodHandles.insertArguments(SAME_ARGUMENTS, 0, logger, level, marker);
+            setTarget(switchPoint.guardWithTest(MethodHandles.guardWithTest(test, constant, miss), relink));
+        }
+        return enabled;
+    }
+
+    /**
+     * Called if the arguments differ from those of the cached result.
+     */
+    // Only called through the `MISS` method handle
+    @SuppressWarnings("UnusedMethod")
+    private boolean miss(final Logger logger, final Level level, final Marker marker) {
+        if (misses.incrementAndGet() > MAX_MISSES) {
+            setTarget(IS_ENABLED);
+            return logger.isEnabled(level, marker);
+        }
+        return relink(logger, level, marker);
+    }
+
+    // Only called through the `SAME_ARGUMENTS` method handle
+    @SuppressWarnings({"ReferenceEquality", "UnusedMethod"})
+    private static boolean sameArguments(
+            final Logger expectedLogger,
+            final Level expectedLevel,
+            final Marker expectedMarker,
+            final Logger logger,
+            final Level level,
+            final Marker marker) {
+        return logger == expectedLogger && level == expectedLevel && marker == expectedMarker;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Registry of the location strings rendered by the Log4j weaver at build time.
+ * <p>
+ * The location caches generated with the {@code renderLocations} option register the string representation of each
+ * of their locations, so that the {@code %wovenLocation} pattern converter can print them without formatting.
+ * </p>
+ * <p>
+ * The locations are looked up by identity in an open addressing table, which is filled in place and only replaced by
+ * a larger table when its load factor exceeds 1/2. The lookup does not lock, does not allocate and does not hash the
+ * content of the location: a lookup that runs concurrently with a registration may miss the new locations and fall
+ * back to {@link StackTraceElement#toString()}. The locations are weakly referenced, so that the location caches can
+ * be unloaded.
+ * </p>
+ */
+public final class PrerenderedLocations {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final Object LOCK = new Object();
+    private static volatile Table table = new Table(INITIAL_CAPACITY);
+
+    /**
+     * Registers the string representations of a set of locations.
+     *
+     * @param locations the locations of the logging statements,
+     * @param strings   the result of {@link StackTraceElement#toString()} for each location.
+     */
+    public static void register(final StackTraceElement[] locations, final String[] strings) {
+        if (locations.length != strings.length) {
+            throw new IllegalArgumentException("The number of locations and strings differ.");
+        }
+        synchronized (LOCK) {
+            Table current = table;
+            // Keep the load factor below 1/2
+            if (2 * (current.size() + locations.length) > current.capacity()) {
+                current = current.resize(locations.length);
+            }
+            for (int i = 0; i < locations.length; i++) {
+                if (locations[i] != null) {
+                    current.put(locations[i], strings[i]);
+                }
+            }
+            // Publishes the new entries
+            table = current;
+        }
+    }
+
+    /**
+     * Returns the string representation of a location.
+     *
+     * @param location a location,
+     * @return the string registered for the location or the result of {@link StackTraceElement#toString()}.
+     */
+    public static String getString(final StackTraceElement location) {
+        final String string = table.get(location);
+        return string != null ? string : location.toString();
+    }
+
+    private static final class Table {
+
+        private final WeakReference<StackTraceElement>[] keys;
+        private final String[] values;
+        private final int mask;
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private Table(final int capacity) {
+            keys = (WeakReference<StackTraceElement>[]) new WeakReference<?>[capacity];
+            values = new String[capacity];
+            mask = capacity - 1;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        // Locations are matched by identity
+        @SuppressWarnings("ReferenceEquality")
+        private String get(final StackTraceElement location) {
+            int index = System.identityHashCode(location) & mask;
+            WeakReference<StackTraceElement> key;
+            while ((key = keys[index]) != null) {
+                if (key.get() == location) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("ReferenceEquality")
+        private void put(final StackTraceElement location, final String string) {
+            int index = System.identityHashCode(location) & mask;
+            WeakReference<StackTraceElement> key;
+            while ((key = keys[index]) != null) {
+                if (key.get() == location) {
+                    values[index] = string;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            // Concurrent lookups stop at the first empty key, so the value is written first
+            values[index] = string;
+            keys[index] = new WeakReference<>(location);
+            size++;
+        }
+
+        /**
+         * Creates a table that contains the entries, whose location was not garbage collected, and has room for
+         * additional entries.
+         * <p>
+         *     The load factor of the new table is at most 1/4, so that it is only resized after the number of its
+         *     entries doubles.
+         * </p>
+         */
+        private Table resize(final int additionalEntries) {
+            final StackTraceElement[] locations = new StackTraceElement[keys.length];
+            int liveEntries = 0;
+            for (int i = 0; i < keys.length; i++) {
+                locations[i] = keys[i] != null ? keys[i].get() : null;
+                if (locations[i] != null) {
+                    liveEntries++;
+                }
+            }
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < 4 * (liveEntries + additionalEntries)) {
+                capacity <<= 1;
+            }
+            final Table other = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (locations[i] != null) {
+                    other.put(locations[i], values[i]);
+                }
+            }
+            return other;
+        }
+    }
+
+    private PrerenderedLocations() {}
+}
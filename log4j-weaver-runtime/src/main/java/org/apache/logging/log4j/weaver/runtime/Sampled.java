@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Samples the events of all the logging statements of a method or class woven by the Log4j weaver.
+ * <p>
+ * Each logging statement has its own {@link SiteSampler}, which is checked after the level of the statement and
+ * before its arguments are evaluated. If both elements are set, {@link #perSecond()} takes precedence. An annotation
+ * on a method takes precedence over an annotation on its class.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.METHOD, ElementType.CONSTRUCTOR, ElementType.TYPE})
+public @interface Sampled {
+
+    /**
+     * Logs the first and then one event out of the given number in each thread.
+     */
+    int oneIn() default 0;
+
+    /**
+     * Logs at most the given number of events per second.
+     */
+    int perSecond() default 0;
+}
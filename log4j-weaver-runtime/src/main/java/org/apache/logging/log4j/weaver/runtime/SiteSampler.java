@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which events of a logging statement woven by the Log4j weaver are logged.
+ * <p>
+ * Each sampled logging statement has its own sampler, which is called after the level check of the statement and
+ * before its message is created.
+ * </p>
+ */
+public abstract class SiteSampler {
+
+    SiteSampler() {}
+
+    /**
+     * Checks if the current event of the logging statement should be logged.
+     */
+    public abstract boolean sample();
+
+    /**
+     * Creates the samplers of a group of logging statements.
+     *
+     * @param rates a comma-separated list of sampling rates, either {@code 1/<n>} or {@code <k>/s},
+     * @return the samplers, in the same order as the rates.
+     */
+    public static SiteSampler[] createAll(final String rates) {
+        final String[] split = rates.split(",", -1);
+        final SiteSampler[] samplers = new SiteSampler[split.length];
+        for (int i = 0; i < split.length; i++) {
+            samplers[i] = create(split[i].trim());
+        }
+        return samplers;
+    }
+
+    /**
+     * Creates a sampler.
+     *
+     * @param rate either {@code 1/<n>} or {@code <k>/s},
+     * @throws IllegalArgumentException if the rate is not valid.
+     */
+    static SiteSampler create(final String rate) {
+        try {
+            if (rate.startsWith("1/")) {
+                return new OneIn(Integer.parseInt(rate.substring(2)));
+            }
+            if (rate.endsWith("/s")) {
+                return new PerSecond(Integer.parseInt(rate.substring(0, rate.length() - 2)));
+            }
+        } catch (final NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid sampling rate: " + rate);
+    }
+
+    /**
+     * Logs the first and then one event out of {@code n} in each thread.
+     * <p>
+     * Each thread has its own counter, so that threads do not contend on a shared memory location.
+     * </p>
+     */
+    static final class OneIn extends SiteSampler {
+
+        private final int n;
+        private final ThreadLocal<int[]> counter = ThreadLocal.withInitial(() -> new int[1]);
+
+        OneIn(final int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Invalid sampling rate: 1/" + n);
+            }
+            this.n = n;
+        }
+
+        @Override
+        public boolean sample() {
+            final int[] count = counter.get();
+            final int current = count[0];
+            count[0] = current + 1 < n ? current + 1 : 0;
+            return current == 0;
+        }
+    }
+
+    /**
+     * Logs at most {@code k} events per second.
+     * <p>
+     * The sampler is a token bucket with a capacity of {@code k} tokens, refilled at a rate of {@code k} tokens
+     * per second. It is implemented lock-free as a generic cell rate algorithm: a single {@link AtomicLong} holds the
+     * theoretical arrival time of the next event, which is advanced by {@code 1/k} seconds for each logged event.
+     * </p>
+     */
+    static final class PerSecond extends SiteSampler {
+
+        private static final long PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+        private final long interval;
+        private final AtomicLong theoreticalArrivalTime;
+
+        PerSecond(final int k) {
+            if (k <= 0) {
+                throw new IllegalArgumentException("Invalid sampling rate: " + k + "/s");
+            }
+            this.interval = PERIOD / k;
+            this.theoreticalArrivalTime = new AtomicLong(System.nanoTime() - PERIOD);
+        }
+
+        @Override
+        public boolean sample() {
+            final long now = System.nanoTime();
+            while (true) {
+                final long current = theoreticalArrivalTime.get();
+                // The bucket holds at most one period of tokens
+                final long next = Math.max(current, now - PERIOD) + interval;
+                if (next - now > 0) {
+                    return false;
+                }
+                if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
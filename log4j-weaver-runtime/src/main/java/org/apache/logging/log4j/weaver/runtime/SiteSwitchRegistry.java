@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.apache.logging.log4j.util.PropertiesUtil;
+
+/**
+ * Keeps the level overrides of the logging statements and applies them to the switches of all the location caches.
+ * <p>
+ * The registry is exposed through JMX. If the {@value #FILE_PROPERTY} property is set, the overrides are also read
+ * from a file, which contains a {@code <site>=<level>} pair on each line and is checked for changes every
+ * {@value #CHECK_INTERVAL_PROPERTY} seconds. Each change of the file replaces all the overrides.
+ * </p>
+ * <p>
+ * The overrides are independent of the configuration of the {@code LoggerContext}.
+ * </p>
+ */
+final class SiteSwitchRegistry implements SiteSwitchesMXBean {
+
+    static final String OBJECT_NAME = "org.apache.logging.log4j.weaver:type=SiteSwitches";
+    static final String FILE_PROPERTY = "log4j.weaver.siteSwitches.file";
+    static final String CHECK_INTERVAL_PROPERTY = "log4j.weaver.siteSwitches.checkInterval";
+    private static final long DEFAULT_CHECK_INTERVAL = 10L;
+
+    private static final SiteSwitchRegistry INSTANCE = create();
+
+    // The switches are owned by the location caches, which can be unloaded
+    private final Set<SiteSwitches> siteSwitches =
+            Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    // Guarded by `siteSwitches`
+    private final Map<String, Level> overrides = new HashMap<>();
+
+    static SiteSwitchRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    void add(final SiteSwitches switches) {
+        synchronized (siteSwitches) {
+            switches.apply(overrides);
+            siteSwitches.add(switches);
+        }
+    }
+
+    /**
+     * Replaces all the level overrides.
+     */
+    void setOverrides(final Map<String, Level> newOverrides) {
+        synchronized (siteSwitches) {
+            overrides.clear();
+            overrides.putAll(newOverrides);
+            applyOverrides();
+        }
+    }
+
+    private void applyOverrides() {
+        siteSwitches.forEach(switches -> switches.apply(overrides));
+    }
+
+    @Override
+    public void setLevel(final String site, final String level) {
+        final Level override = Level.toLevel(level, null);
+        if (site == null || override == null) {
+            throw new IllegalArgumentException("Invalid level override " + site + "=" + level);
+        }
+        synchronized (siteSwitches) {
+            overrides.put(site.trim(), override);
+            applyOverrides();
+        }
+    }
+
+    @Override
+    public void clearLevel(final String site) {
+        synchronized (siteSwitches) {
+            if (overrides.remove(site) != null) {
+                applyOverrides();
+            }
+        }
+    }
+
+    @Override
+    public String[] getOverrides() {
+        synchronized (siteSwitches) {
+            return overrides.entrySet().stream()
+                    .map(entry -> entry.getKey() + "=" + entry.getValue())
+                    .sorted()
+                    .toArray(String[]::new);
+        }
+    }
+
+    @Override
+    public String[] getDisabledSites() {
+        final List<String> disabledSites = new ArrayList<>();
+        synchronized (siteSwitches) {
+            for (final SiteSwitches switches : siteSwitches) {
+                switches.collectDisabled(disabledSites);
+            }
+        }
+        return disabledSites.stream().sorted().toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        setOverrides(Collections.emptyMap());
+    }
+
+    /**
+     * Parses the content of a file of level overrides.
+     * <p>
+     * Empty lines and lines starting with {@code #} are ignored. Invalid lines are reported to the status logger.
+     * </p>
+     */
+    static Map<String, Level> parseOverrides(final List<String> lines) {
+        final Map<String, Level> result = new HashMap<>();
+        for (final String line : lines) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            final int separator = trimmed.lastIndexOf('=');
+            final Level level = separator > 0
+                    ? Level.toLevel(trimmed.substring(separator + 1).trim(), null)
+                    : null;
+            if (level != null) {
+                result.put(trimmed.substring(0, separator).trim(), level);
+            } else {
+                StatusLogger.getLogger().warn("Ignoring invalid level override of a logging statement: {}", line);
+            }
+        }
+        return result;
+    }
+
+    // The watcher runs until the JVM exits and reports its own errors
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private static SiteSwitchRegistry create() {
+        final SiteSwitchRegistry registry = new SiteSwitchRegistry();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(registry, new ObjectName(OBJECT_NAME));
+        } catch (final JMException | LinkageError | SecurityException e) {
+            StatusLogger.getLogger().warn("Unable to register the switches of the logging statements.", e);
+        }
+        final PropertiesUtil properties = PropertiesUtil.getProperties();
+        final String file = properties.getStringProperty(FILE_PROPERTY);
+        if (file != null && !file.trim().isEmpty()) {
+            final FileWatcher watcher = new FileWatcher(registry, Paths.get(file.trim()));
+            // The overrides must be applied before the first switches are registered
+            watcher.run();
+            final long interval = properties.getLongProperty(CHECK_INTERVAL_PROPERTY, DEFAULT_CHECK_INTERVAL);
+            if (interval > 0) {
+                final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    final Thread thread = new Thread(r, "log4j-weaver-site-switches");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(watcher, interval, interval, TimeUnit.SECONDS);
+            }
+        }
+        return registry;
+    }
+
+    private SiteSwitchRegistry() {}
+
+    /**
+     * Reloads the level overrides, when the modification time of the file changes.
+     */
+    private static final class FileWatcher implements Runnable {
+
+        private final SiteSwitchRegistry registry;
+        private final Path file;
+        private long lastModified;
+
+        private FileWatcher(final SiteSwitchRegistry registry, final Path file) {
+            this.registry = registry;
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final long modified =
+                        Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0L;
+                if (modified != lastModified) {
+                    lastModified = modified;
+                    registry.setOverrides(
+                            modified != 0L
+                                    ? parseOverrides(Files.readAllLines(file, StandardCharsets.UTF_8))
+                                    : Collections.emptyMap());
+                }
+            } catch (final IOException | RuntimeException e) {
+                StatusLogger.getLogger().warn("Unable to read the level overrides of the logging statements.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Switches of the logging statements of a location cache generated by the Log4j weaver.
+ * <p>
+ * Each logging statement is guarded by an element of a {@code boolean[]} array, so that the guard costs a single
+ * array load and branch. The array is owned by the location cache, which also holds a reference to this object. The elements are plain array elements: a change made through the registry is not
+ * synchronized with the threads executing the logging statements, but it is visible to them in practice as soon
+ * as their code reads the array again.
+ * </p>
+ * <p>
+ * Logging statements are identified by the name of their class and their line number, e.g.
+ * {@code com.example.Foo:42}. A level override disables a logging statement if its level is less specific than the
+ * override, so that {@code OFF} disables all the statements and {@code ALL} enables them. The level of logging
+ * statements like {@code log(level, ...)} is only known at runtime, so only {@code OFF} disables them.
+ * </p>
+ */
+public final class SiteSwitches {
+
+    private final String[] sites;
+    private final Level[] levels;
+    private final boolean[] enabled;
+
+    private SiteSwitches(final boolean[] enabled, final StackTraceElement[] locations, final String levels) {
+        if (enabled.length != locations.length || levels.length() != locations.length) {
+            throw new IllegalArgumentException("The number of switches, locations and levels differ.");
+        }
+        this.sites = new String[locations.length];
+        this.levels = new Level[locations.length];
+        this.enabled = enabled;
+        for (int i = 0; i < locations.length; i++) {
+            sites[i] = getSite(locations[i]);
+            this.levels[i] = toLevel(levels.charAt(i));
+            enabled[i] = true;
+        }
+    }
+
+    /**
+     * Registers the switches of a group of logging statements.
+     * <p>
+     * The registry only keeps a weak reference to the returned object, so that the location caches can be unloaded:
+     * the caller must keep a strong reference to it as long as the switches are used.
+     * </p>
+     *
+     * @param enabled   the switches of the logging statements, in the same order as the locations, which are updated
+     *                  by the registry,
+     * @param locations the locations of the logging statements,
+     * @param levels    the first letter of the standard level of each logging statement or {@code '?'} if the level
+     *                  is only known at runtime,
+     * @return the registered switches.
+     */
+    public static SiteSwitches register(
+            final boolean[] enabled, final StackTraceElement[] locations, final String levels) {
+        final SiteSwitches siteSwitches = new SiteSwitches(enabled, locations, levels);
+        SiteSwitchRegistry.getInstance().add(siteSwitches);
+        return siteSwitches;
+    }
+
+    /**
+     * Returns the identifier of the logging statement at a location.
+     */
+    static String getSite(final StackTraceElement location) {
+        return location.getClassName() + ':' + location.getLineNumber();
+    }
+
+    /**
+     * Checks if a logging statement is enabled by a level override.
+     *
+     * @param level    the level of the logging statement or {@code null} if it is only known at runtime,
+     * @param override the level override of the logging statement or {@code null}.
+     */
+    static boolean isEnabled(final Level level, final Level override) {
+        if (override == null) {
+            return true;
+        }
+        return level != null ? level.isMoreSpecificThan(override) : !Level.OFF.equals(override);
+    }
+
+    /**
+     * Updates the switches with the current level overrides.
+     */
+    void apply(final Map<String, Level> overrides) {
+        for (int i = 0; i < enabled.length; i++) {
+            enabled[i] = isEnabled(levels[i], overrides.get(sites[i]));
+        }
+    }
+
+    /**
+     * Adds the disabled logging statements to a list.
+     */
+    void collectDisabled(final List<String> disabledSites) {
+        for (int i = 0; i < enabled.length; i++) {
+            if (!enabled[i]) {
+                disabledSites.add(sites[i]);
+            }
+        }
+    }
+
+    private static Level toLevel(final char level) {
+        switch (level) {
+            case 'T':
+                return Level.TRACE;
+            case 'D':
+                return Level.DEBUG;
+            case 'I':
+                return Level.INFO;
+            case 'W':
+                return Level.WARN;
+            case 'E':
+                return Level.ERROR;
+            case 'F':
+                return Level.FATAL;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+/**
+ * Management interface of the switches of the logging statements woven by the Log4j weaver.
+ * <p>
+ * The MXBean is registered as {@code org.apache.logging.log4j.weaver:type=SiteSwitches} when the first logging
+ * statement with a switch is executed. Logging statements are identified by the name of their class and their line
+ * number, e.g. {@code com.example.Foo:42}.
+ * </p>
+ */
+public interface SiteSwitchesMXBean {
+
+    /**
+     * Overrides the level of a logging statement.
+     *
+     * @param site  the class name and line number of the logging statement,
+     * @param level the name of a level: the logging statement is disabled if its level is less specific.
+     */
+    void setLevel(String site, String level);
+
+    /**
+     * Removes the level override of a logging statement.
+     *
+     * @param site the class name and line number of the logging statement.
+     */
+    void clearLevel(String site);
+
+    /**
+     * Returns the level overrides.
+     *
+     * @return the level overrides in the {@code <site>=<level>} format.
+     */
+    String[] getOverrides();
+
+    /**
+     * Returns the logging statements disabled by a level override.
+     */
+    String[] getDisabledSites();
+
+    /**
+     * Removes all the level overrides.
+     */
+    void reset();
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.impl.LocationAware;
+import org.apache.logging.log4j.core.pattern.ConverterKeys;
+import org.apache.logging.log4j.core.pattern.LogEventPatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternConverter;
+
+/**
+ * Prints the location of a log event using the strings rendered by the Log4j weaver at build time.
+ * <p>
+ * The output is the same as the output of the {@code %location} converter, but the location of the logging
+ * statements woven with the {@code renderLocations} option is not formatted for each log event.
+ * </p>
+ * <p>
+ * This class is only loaded if {@code log4j-core} is available.
+ * </p>
+ */
+@Plugin(name = "WovenLocationPatternConverter", category = PatternConverter.CATEGORY)
+@ConverterKeys({"wl", "wovenLocation"})
+public final class WovenLocationPatternConverter extends LogEventPatternConverter implements LocationAware {
+
+    private static final WovenLocationPatternConverter INSTANCE = new WovenLocationPatternConverter();
+
+    private WovenLocationPatternConverter() {
+        super("Woven location", "location");
+    }
+
+    /**
+     * Obtains an instance of the pattern converter.
+     *
+     * @param options the options of the converter, which are ignored.
+     * @return an instance of the pattern converter.
+     */
+    public static WovenLocationPatternConverter newInstance(final String[] options) {
+        return INSTANCE;
+    }
+
+    @Override
+    public void format(final LogEvent event, final StringBuilder toAppendTo) {
+        final StackTraceElement location = event.getSource();
+        if (location != null) {
+            toAppendTo.append(PrerenderedLocations.getString(location));
+        }
+    }
+
+    @Override
+    public boolean requiresLocation() {
+        return true;
+    }
+}
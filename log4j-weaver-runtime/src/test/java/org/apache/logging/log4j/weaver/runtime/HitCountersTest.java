@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.weaver.runtime.HitCounters.HitCount;
+import org.junit.jupiter.api.Test;
+
+class HitCountersTest {
+
+    private static StackTraceElement createSite(final String methodName, final int lineNumber) {
+        return new StackTraceElement(HitCountersTest.class.getName(), methodName, "HitCountersTest.java", lineNumber);
+    }
+
+    @Test
+    void topSitesAreSortedByHits() {
+        final StackTraceElement first = createSite("topSitesAreSortedByHits", 1);
+        final StackTraceElement second = createSite("topSitesAreSortedByHits", 2);
+        final StackTraceElement unused = createSite("topSitesAreSortedByHits", 3);
+        final HitCounters counters = HitCounters.register(new StackTraceElement[] {first, second, unused});
+        // Concurrent increments
+        IntStream.range(0, 1000).parallel().forEach(i -> counters.increment(i % 4 == 0 ? 0 : 1));
+
+        final List<HitCount> topSites = HitCounterRegistry.getInstance().getTopSites(Integer.MAX_VALUE).stream()
+                .filter(hitCount -> hitCount.getSite().getMethodName().equals("topSitesAreSortedByHits"))
+                .collect(Collectors.toList());
+        assertThat(topSites).extracting(HitCount::getSite).containsExactly(second, first);
+        assertThat(topSites).extracting(HitCount::getHits).containsExactly(750L, 250L);
+        assertThat(HitCounterRegistry.getInstance().topSites(1)).hasSize(1);
+    }
+
+    @Test
+    void countersCanBeReset() {
+        final StackTraceElement site = createSite("countersCanBeReset", 1);
+        final HitCounters counters = HitCounters.register(new StackTraceElement[] {site});
+        counters.increment(0);
+        assertThat(HitCounterRegistry.getInstance().getTopSites(Integer.MAX_VALUE))
+                .extracting(HitCount::getSite)
+                .contains(site);
+        HitCounterRegistry.getInstance().reset();
+        assertThat(HitCounterRegistry.getInstance().getTopSites(Integer.MAX_VALUE))
+                .extracting(HitCount::getSite)
+                .doesNotContain(site);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.junit.jupiter.api.Test;
+
+class LevelGuardBootstrapTest {
+
+    private static final String LOGGER_NAME = LevelGuardBootstrapTest.class.getName();
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static MethodHandle createLevelGuard() throws Throwable {
+        return LevelGuardBootstrap.isEnabled(MethodHandles.lookup(), "isEnabled", LevelGuardCallSite.TYPE)
+                .dynamicInvoker();
+    }
+
+    @Test
+    @LoggerContextSource("log4j2-test.xml")
+    void levelChangesAreTracked(final LoggerContext context) throws Throwable {
+        final Logger logger = context.getLogger(LOGGER_NAME);
+        final MethodHandle levelGuard = createLevelGuard();
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.DEBUG, (Marker) null))
+                .isFalse();
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.DEBUG, (Marker) null))
+                .isFalse();
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.INFO, MARKER)).isTrue();
+
+        Configurator.setLevel(context.getLogger(LOGGER_NAME), Level.DEBUG);
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.DEBUG, (Marker) null))
+                .isTrue();
+
+        Configurator.setLevel(context.getLogger(LOGGER_NAME), Level.WARN);
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.DEBUG, (Marker) null))
+                .isFalse();
+        assertThat((boolean) levelGuard.invokeExact(logger, Level.INFO, MARKER)).isFalse();
+    }
+
+    @Test
+    @LoggerContextSource("log4j2-test.xml")
+    void manyArgumentsAreSupported(final LoggerContext context) throws Throwable {
+        final MethodHandle levelGuard = createLevelGuard();
+        for (int i = 0; i < 20; i++) {
+            final Logger logger = context.getLogger(LOGGER_NAME + i);
+            assertThat((boolean) levelGuard.invokeExact(logger, Level.INFO, (Marker) null))
+                    .isTrue();
+            assertThat((boolean) levelGuard.invokeExact(logger, Level.DEBUG, (Marker) null))
+                    .isFalse();
+        }
+    }
+
+    @Test
+    void otherLoggersAreSupported() throws Throwable {
+        // The status logger is not a Log4j Core logger
+        final Logger logger = StatusLogger.getLogger();
+        final MethodHandle levelGuard = createLevelGuard();
+        for (final Level level : Level.values()) {
+            assertThat((boolean) levelGuard.invokeExact(logger, level, (Marker) null))
+                    .isEqualTo(logger.isEnabled(level, null));
+        }
+    }
+
+    @Test
+    void unsupportedTypesAreRejected() {
+        final MethodType type = MethodType.methodType(boolean.class, Logger.class, Level.class);
+        assertThatThrownBy(() -> LevelGuardBootstrap.isEnabled(MethodHandles.lookup(), "isEnabled", type))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SiteSamplerTest {
+
+    @Test
+    void oneInSamplesFirstEventOfEachGroup() {
+        final SiteSampler sampler = SiteSampler.create("1/3");
+        assertThat(IntStream.range(0, 7).mapToObj(i -> sampler.sample()))
+                .containsExactly(true, false, false, true, false, false, true);
+    }
+
+    @Test
+    void oneInCountsEachThreadSeparately() throws InterruptedException {
+        final SiteSampler sampler = SiteSampler.create("1/2");
+        assertThat(sampler.sample()).isTrue();
+        final boolean[] otherThread = new boolean[1];
+        final Thread thread = new Thread(() -> otherThread[0] = sampler.sample());
+        thread.start();
+        thread.join();
+        assertThat(otherThread[0]).isTrue();
+        assertThat(sampler.sample()).isFalse();
+    }
+
+    @Test
+    void perSecondLimitsBursts() {
+        final SiteSampler sampler = SiteSampler.create("5/s");
+        final AtomicInteger sampled = new AtomicInteger();
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            if (sampler.sample()) {
+                sampled.incrementAndGet();
+            }
+        });
+        // A slow run might refill a few tokens
+        assertThat(sampled.get()).isBetween(5, 10);
+    }
+
+    @Test
+    void createAll() {
+        final SiteSampler[] samplers = SiteSampler.createAll("1/10,20/s");
+        assertThat(samplers).hasSize(2);
+        assertThat(samplers[0]).isInstanceOf(SiteSampler.OneIn.class);
+        assertThat(samplers[1]).isInstanceOf(SiteSampler.PerSecond.class);
+    }
+
+    @Test
+    void invalidRates() {
+        assertThatThrownBy(() -> SiteSampler.create("2/10")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SiteSampler.create("1/0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SiteSampler.create("x/s")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
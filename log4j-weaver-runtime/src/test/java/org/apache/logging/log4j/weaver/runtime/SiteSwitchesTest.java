@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SiteSwitchesTest {
+
+    private static StackTraceElement createSite(final int lineNumber) {
+        return new StackTraceElement(SiteSwitchesTest.class.getName(), "test", "SiteSwitchesTest.java", lineNumber);
+    }
+
+    private static String getSite(final int lineNumber) {
+        return SiteSwitchesTest.class.getName() + ":" + lineNumber;
+    }
+
+    @AfterEach
+    void resetOverrides() {
+        SiteSwitchRegistry.getInstance().reset();
+    }
+
+    @Test
+    void levelOverridesDisableLessSpecificStatements() {
+        final boolean[] enabled = new boolean[3];
+        final SiteSwitches switches = SiteSwitches.register(
+                enabled, new StackTraceElement[] {createSite(1), createSite(2), createSite(3)}, "DW?");
+        assertThat(enabled).containsExactly(true, true, true);
+
+        final SiteSwitchRegistry registry = SiteSwitchRegistry.getInstance();
+        registry.setLevel(getSite(1), "INFO");
+        registry.setLevel(getSite(2), "INFO");
+        registry.setLevel(getSite(3), "INFO");
+        assertThat(enabled).containsExactly(false, true, true);
+        assertThat(registry.getDisabledSites()).contains(getSite(1)).doesNotContain(getSite(2), getSite(3));
+
+        registry.setLevel(getSite(3), "OFF");
+        assertThat(enabled).containsExactly(false, true, false);
+
+        registry.clearLevel(getSite(1));
+        registry.setLevel(getSite(3), "ALL");
+        assertThat(enabled).containsExactly(true, true, true);
+        assertThat(registry.getOverrides()).contains(getSite(2) + "=INFO", getSite(3) + "=ALL");
+        assertThat(switches).isNotNull();
+    }
+
+    @Test
+    void overridesApplyToNewSwitches() {
+        SiteSwitchRegistry.getInstance().setLevel(getSite(10), "OFF");
+        final boolean[] enabled = new boolean[2];
+        SiteSwitches.register(enabled, new StackTraceElement[] {createSite(10), createSite(11)}, "II");
+        assertThat(enabled).containsExactly(false, true);
+    }
+
+    @Test
+    void overridesApplyAfterGarbageCollection() {
+        final boolean[] enabled = new boolean[1];
+        // Held like the static field of a location cache
+        final SiteSwitches switches = SiteSwitches.register(enabled, new StackTraceElement[] {createSite(20)}, "D");
+        System.gc();
+        SiteSwitchRegistry.getInstance().setLevel(getSite(20), "INFO");
+        assertThat(enabled).containsExactly(false);
+        assertThat(SiteSwitchRegistry.getInstance().getDisabledSites()).contains(getSite(20));
+        assertThat(switches).isNotNull();
+    }
+
+    @Test
+    void mismatchedArraysAreRejected() {
+        assertThatThrownBy(() -> SiteSwitches.register(new boolean[2], new StackTraceElement[] {createSite(30)}, "D"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void parseOverrides() {
+        final Map<String, Level> overrides = SiteSwitchRegistry.parseOverrides(Arrays.asList(
+                "# Comment",
+                "",
+                "com.example.Foo:42 = warn",
+                "com.example.Bar:7=OFF",
+                "invalid",
+                "com.example.Baz:1=X"));
+        assertThat(overrides)
+                .hasSize(2)
+                .containsEntry("com.example.Foo:42", Level.WARN)
+                .containsEntry("com.example.Bar:7", Level.OFF);
+        assertThat(SiteSwitchRegistry.parseOverrides(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    void isEnabled() {
+        assertThat(SiteSwitches.isEnabled(Level.DEBUG, null)).isTrue();
+        assertThat(SiteSwitches.isEnabled(Level.DEBUG, Level.DEBUG)).isTrue();
+        assertThat(SiteSwitches.isEnabled(Level.DEBUG, Level.INFO)).isFalse();
+        assertThat(SiteSwitches.isEnabled(Level.FATAL, Level.OFF)).isFalse();
+        assertThat(SiteSwitches.isEnabled(null, Level.ERROR)).isTrue();
+        assertThat(SiteSwitches.isEnabled(null, Level.OFF)).isFalse();
+    }
+}
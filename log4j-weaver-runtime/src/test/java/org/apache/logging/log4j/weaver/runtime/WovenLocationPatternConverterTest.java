@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.pattern.PatternFormatter;
+import org.junit.jupiter.api.Test;
+
+class WovenLocationPatternConverterTest {
+
+    @Test
+    void registeredLocationsAreReused() {
+        final StackTraceElement location = new StackTraceElement("com.example.Foo", "bar", "Foo.java", 42);
+        final String rendered = "com.example.Foo.bar(Foo.java:42)";
+        PrerenderedLocations.register(new StackTraceElement[] {location}, new String[] {rendered});
+
+        final StringBuilder buffer = new StringBuilder();
+        WovenLocationPatternConverter.newInstance(null).format(createEvent(location), buffer);
+        assertThat(buffer).hasToString(rendered);
+        assertThat(PrerenderedLocations.getString(location)).isSameAs(rendered);
+    }
+
+    @Test
+    void locationsAreMatchedByIdentity() {
+        final StackTraceElement location = new StackTraceElement("com.example.Foo", "quux", "Foo.java", 13);
+        PrerenderedLocations.register(new StackTraceElement[] {location}, new String[] {"registered"});
+        final StackTraceElement equalLocation = new StackTraceElement("com.example.Foo", "quux", "Foo.java", 13);
+        assertThat(PrerenderedLocations.getString(equalLocation)).isEqualTo(equalLocation.toString());
+    }
+
+    @Test
+    void manyLocationsAreRegistered() {
+        final StackTraceElement[] locations = new StackTraceElement[1000];
+        final String[] strings = new String[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new StackTraceElement("com.example.Many", "method", "Many.java", i);
+            strings[i] = locations[i].toString();
+        }
+        PrerenderedLocations.register(locations, strings);
+        for (int i = 0; i < locations.length; i++) {
+            assertThat(PrerenderedLocations.getString(locations[i])).isSameAs(strings[i]);
+        }
+    }
+
+    @Test
+    void manyRegistrationsGrowTable() {
+        final StackTraceElement[] locations = new StackTraceElement[1000];
+        final String[] strings = new String[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new StackTraceElement("com.example.Registration", "method", "Registration.java", i);
+            strings[i] = locations[i].toString();
+            PrerenderedLocations.register(new StackTraceElement[] {locations[i]}, new String[] {strings[i]});
+        }
+        for (int i = 0; i < locations.length; i++) {
+            assertThat(PrerenderedLocations.getString(locations[i])).isSameAs(strings[i]);
+        }
+    }
+
+    @Test
+    void otherLocationsAreFormatted() {
+        final StackTraceElement location = new StackTraceElement("com.example.Foo", "baz", null, -1);
+        final StringBuilder buffer = new StringBuilder();
+        WovenLocationPatternConverter.newInstance(null).format(createEvent(location), buffer);
+        assertThat(buffer).hasToString(location.toString());
+    }
+
+    @Test
+    void patternLayoutUsesConverter() {
+        final StackTraceElement location = new StackTraceElement("com.example.Foo", "qux", "Foo.java", 7);
+        final PatternLayout layout =
+                PatternLayout.newBuilder().withPattern("%wovenLocation").build();
+        assertThat(layout.toSerializable(createEvent(location))).isEqualTo(location.toString());
+    }
+
+    @Test
+    void converterRequiresLocation() {
+        final List<PatternFormatter> formatters =
+                PatternLayout.createPatternParser(null).parse("%wovenLocation");
+        assertThat(formatters).hasSize(1);
+        assertThat(formatters.get(0).requiresLocation()).isTrue();
+    }
+
+    @Test
+    void mismatchedArraysAreRejected() {
+        assertThatThrownBy(() -> PrerenderedLocations.register(new StackTraceElement[1], new String[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static LogEvent createEvent(final StackTraceElement location) {
+        return Log4jLogEvent.newBuilder().setSource(location).build();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Finds the methods of a class, that reference the Log4j API.
+ * <p>
+ * All the conversions start from a reference to a class of the {@code org.apache.logging.log4j} package, like
+ * {@code Logger}, {@code LogBuilder}, {@code LogManager}, {@code MarkerManager} or {@code Level}, so the other methods
+ * can be copied without changes and keep their original stack map frames.
+ * </p>
+ */
+final class ApiReferences {
+
+    private static final String LOG4J_PACKAGE = "org/apache/logging/log4j/";
+
+    /**
+     * Returns the methods that reference a class of the {@code org.apache.logging.log4j} package.
+     *
+     * @param reader a class reader.
+     * @return the set of the names and descriptors of the methods that reference the Log4j API.
+     */
+    static Set<String> getReferencingMethods(final ClassReader reader) {
+        final Set<String> methods = new HashSet<>();
+        reader.accept(
+                new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        return new ReferenceMethodVisitor(methods, name + descriptor);
+                    }
+                },
+                ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return methods;
+    }
+
+    private static boolean isApiType(final String owner) {
+        // Excludes the subpackages, like Log4j Core, and the classes being converted
+        return owner.startsWith(LOG4J_PACKAGE) && owner.indexOf('/', LOG4J_PACKAGE.length()) < 0;
+    }
+
+    private static final class ReferenceMethodVisitor extends MethodVisitor {
+
+        private final Set<String> methods;
+        private final String method;
+
+        private ReferenceMethodVisitor(final Set<String> methods, final String method) {
+            super(Opcodes.ASM9);
+            this.methods = methods;
+            this.method = method;
+        }
+
+        @Override
+        public void visitFieldInsn(final int opcode, final String owner, final String name, final String descriptor) {
+            if (isApiType(owner)) {
+                methods.add(method);
+            }
+        }
+
+        @Override
+        public void visitMethodInsn(
+                final int opcode,
+                final String owner,
+                final String name,
+                final String descriptor,
+                final boolean isInterface) {
+            if (isApiType(owner)) {
+                methods.add(method);
+            }
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(
+                final String name,
+                final String descriptor,
+                final Handle bootstrapMethodHandle,
+                final Object... bootstrapMethodArguments) {
+            // Method references, like `logger::info`
+            for (final Object argument : bootstrapMethodArguments) {
+                if (argument instanceof Handle && isApiType(((Handle) argument).getOwner())) {
+                    methods.add(method);
+                }
+            }
+        }
+    }
+
+    private ApiReferences() {}
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.UNBOX_TYPE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Replaces the boxing of primitive parameters of logging calls with {@code Unbox.box}.
+ * <p>
+ *     A call like {@code logger.debug("{} of {}", count, total)} boxes its {@code int} parameters with
+ *     {@code Integer.valueOf}, which allocates a new object for most values. If the boxed value is only used as
+ *     parameter of a fixed-arity {@code Logger} or {@code LogBuilder} method, the boxing call is replaced with
+ *     {@code Unbox.box}, which formats the value into a thread-local ring buffer of {@code StringBuilder}s.
+ * </p>
+ * <p>
+ *     {@code Boolean} and {@code Byte} values are not rewritten, since their {@code valueOf} methods do not allocate.
+ * </p>
+ */
+class BoxingMethodVisitor extends MethodNode {
+
+    private static final String BOX_METHOD = "box";
+    private static final String VALUE_OF_METHOD = "valueOf";
+    private static final Type STRING_BUILDER_TYPE = Type.getType(StringBuilder.class);
+    // Wrapper classes, whose `valueOf` method allocates, and their primitive type
+    private static final Map<String, Type> BOXED_TYPES = new HashMap<>();
+
+    static {
+        BOXED_TYPES.put("java/lang/Character", Type.CHAR_TYPE);
+        BOXED_TYPES.put("java/lang/Double", Type.DOUBLE_TYPE);
+        BOXED_TYPES.put("java/lang/Float", Type.FLOAT_TYPE);
+        BOXED_TYPES.put("java/lang/Integer", Type.INT_TYPE);
+        BOXED_TYPES.put("java/lang/Long", Type.LONG_TYPE);
+        BOXED_TYPES.put("java/lang/Short", Type.SHORT_TYPE);
+    }
+
+    private final String owner;
+    private final MethodVisitor next;
+
+    BoxingMethodVisitor(
+            final String owner,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.owner = owner;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasBoxedParameters()) {
+            try {
+                rewriteBoxing(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted as is
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasBoxedParameters() {
+        boolean boxing = false;
+        for (final AbstractInsnNode insn : instructions) {
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+            if (isBoxing(insn)) {
+                boxing = true;
+            } else if (boxing && MessageTemplateMethodVisitor.getParameterCount(insn) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rewriteBoxing(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final List<MethodInsnNode> boxing = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            final int parameterCount = MessageTemplateMethodVisitor.getParameterCount(insns[i]);
+            if (parameterCount > 0 && frames[i] != null) {
+                final int stackSize = frames[i].getStackSize();
+                for (int position = stackSize - parameterCount; position < stackSize; position++) {
+                    final MethodInsnNode producer = getBoxingProducer(frames, i, position);
+                    if (producer != null) {
+                        boxing.add(producer);
+                    }
+                }
+            }
+        }
+        // Instructions are modified after the analysis, since it relies on their indexes
+        for (final MethodInsnNode insn : boxing) {
+            final Type primitiveType = BOXED_TYPES.get(insn.owner);
+            insn.owner = UNBOX_TYPE.getInternalName();
+            insn.name = BOX_METHOD;
+            insn.desc = Type.getMethodDescriptor(STRING_BUILDER_TYPE, primitiveType);
+        }
+    }
+
+    /**
+     * Returns the boxing call that produces a parameter of a logging call.
+     *
+     * @param callIndex the index of the logging call,
+     * @param position  the position of the parameter on the stack.
+     * @return a boxing call, whose result is only used by the logging call, or {@code null}.
+     */
+    private MethodInsnNode getBoxingProducer(final Frame<SourceValue>[] frames, final int callIndex, int position) {
+        Frame<SourceValue> frame = frames[callIndex];
+        while (true) {
+            final SourceValue value = frame.getStack(position);
+            if (value.insns.size() != 1) {
+                return null;
+            }
+            final AbstractInsnNode producer = value.insns.iterator().next();
+            if (producer.getOpcode() != Opcodes.SWAP) {
+                return isBoxing(producer) && !isCopied(producer) ? (MethodInsnNode) producer : null;
+            }
+            // Follow the value through the `swap` instruction
+            frame = frames[instructions.indexOf(producer)];
+            if (frame == null) {
+                return null;
+            }
+            final int stackSize = frame.getStackSize();
+            position = position == stackSize - 1 ? stackSize - 2 : stackSize - 1;
+        }
+    }
+
+    /**
+     * Checks if the value pushed by an instruction is duplicated.
+     */
+    private static boolean isCopied(final AbstractInsnNode insn) {
+        AbstractInsnNode next = insn.getNext();
+        while (next != null && next.getOpcode() < 0) {
+            next = next.getNext();
+        }
+        return next != null && next.getOpcode() >= Opcodes.DUP && next.getOpcode() <= Opcodes.DUP2_X2;
+    }
+
+    /**
+     * Checks for calls to {@code Character.valueOf(char)}, {@code Integer.valueOf(int)} and similar methods.
+     */
+    private static boolean isBoxing(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
+            return false;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        final Type primitiveType = BOXED_TYPES.get(call.owner);
+        return primitiveType != null
+                && VALUE_OF_METHOD.equals(call.name)
+                && Type.getMethodDescriptor(Type.getObjectType(call.owner), primitiveType)
+                        .equals(call.desc);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+/**
+ * Determines which converted classes share the same location cache class.
+ * <p>
+ *     Fewer location cache classes reduce the number of classes to load, but each of them has a larger static
+ *     initializer, which runs when the first logging statement of any of its classes is executed.
+ * </p>
+ */
+public enum CacheGranularity {
+    /**
+     * A location cache class for each top level class and its nested classes, e.g. {@code Foo$$Log4j2$$Cache}.
+     */
+    CLASS,
+    /**
+     * A location cache class for each package, e.g. {@code com.example.$$Log4j2$$Cache}.
+     */
+    PACKAGE,
+    /**
+     * A single public location cache class for all the converted classes, e.g. {@code com.example.$$Log4j2$$Cache}.
+     * <p>
+     *     The package of the location cache must be set with {@link LocationCacheGenerator#setModulePackage(String)}.
+     * </p>
+     */
+    MODULE
+}
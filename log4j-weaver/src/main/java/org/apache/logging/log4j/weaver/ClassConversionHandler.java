@@ -34,4 +34,15 @@ public interface ClassConversionHandler {
      * @param descriptor the descriptor of the method
      */
     void handleMethodInstruction(LocationMethodVisitor mv, String name, String descriptor);
+
+    /**
+     * Checks if the conversion of a method call can be moved into a helper method.
+     * <p>
+     * The helper method has the same arguments and return type as the method call.
+     * </p>
+     * @param name the name of the method
+     */
+    default boolean canOutline(String name) {
+        return false;
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * An index of the class hierarchy, read from the class files of a classpath.
+ * <p>
+ *     Unlike {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}, the classes are never loaded:
+ *     only the header of their class file is parsed. Therefore, computing the common super class does not run static
+ *     initializers and does not require the dependencies of the classes to be on the classpath.
+ * </p>
+ */
+final class ClassHierarchy {
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private final ClassLoader classpath;
+    private final ConcurrentMap<String, ClassInfo> classes = new ConcurrentHashMap<>();
+
+    /**
+     * @param classpath the classloader used to find the class files or {@code null} for the system classloader.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
+    ClassHierarchy(final ClassLoader classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Returns the most specific common super class of two classes, following the semantics of ASM.
+     *
+     * @param type1 the internal name of a class,
+     * @param type2 the internal name of another class.
+     * @return the internal name of the common super class, which is {@code java/lang/Object} if one of the classes
+     *         is an interface.
+     * @throws TypeNotPresentException if the class file of one of the types or its super classes can not be found.
+     */
+    String getCommonSuperClass(final String type1, final String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (getClassInfo(type1).isInterface || getClassInfo(type2).isInterface) {
+            return OBJECT;
+        }
+        String superClass = type1;
+        do {
+            superClass = getClassInfo(superClass).superName;
+        } while (superClass != null && !isAssignableFrom(superClass, type2));
+        return superClass != null ? superClass : OBJECT;
+    }
+
+    /**
+     * Checks if a class is a super class or super interface of another class.
+     *
+     * @param type     the internal name of a class,
+     * @param subType  the internal name of another class.
+     * @return {@code true} if the values of {@code subType} can be assigned to {@code type}.
+     */
+    boolean isAssignableFrom(final String type, final String subType) {
+        if (type.equals(subType) || OBJECT.equals(type)) {
+            return true;
+        }
+        // Breadth-first visit of the super classes and super interfaces
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        queue.add(subType);
+        while (!queue.isEmpty()) {
+            final ClassInfo info = getClassInfo(queue.remove());
+            if (info.superName != null) {
+                if (type.equals(info.superName)) {
+                    return true;
+                }
+                if (visited.add(info.superName)) {
+                    queue.add(info.superName);
+                }
+            }
+            for (final String superInterface : info.interfaces) {
+                if (type.equals(superInterface)) {
+                    return true;
+                }
+                if (visited.add(superInterface)) {
+                    queue.add(superInterface);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a class is final.
+     *
+     * @param type the internal name of a class.
+     * @return {@code true} if the class can not be extended.
+     * @throws TypeNotPresentException if the class file of the type can not be found.
+     */
+    boolean isFinal(final String type) {
+        return getClassInfo(type).isFinal;
+    }
+
+    private ClassInfo getClassInfo(final String type) {
+        final ClassInfo info = classes.get(type);
+        return info != null ? info : classes.computeIfAbsent(type, this::readClassInfo);
+    }
+
+    private ClassInfo readClassInfo(final String type) {
+        final String resource = type + ".class";
+        try (final InputStream classFile = classpath != null
+                ? classpath.getResourceAsStream(resource)
+                : ClassLoader.getSystemResourceAsStream(resource)) {
+            if (classFile == null) {
+                throw new TypeNotPresentException(type.replace('/', '.'), null);
+            }
+            final ClassReader reader = new ClassReader(classFile);
+            return new ClassInfo(
+                    (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0,
+                    (reader.getAccess() & Opcodes.ACC_FINAL) != 0,
+                    reader.getSuperName(),
+                    reader.getInterfaces());
+        } catch (final IOException e) {
+            throw new TypeNotPresentException(type.replace('/', '.'), e);
+        }
+    }
+
+    private static final class ClassInfo {
+        private final boolean isInterface;
+        private final boolean isFinal;
+        // `null` for `java.lang.Object`
+        private final String superName;
+        private final String[] interfaces;
+
+        private ClassInfo(
+                final boolean isInterface, final boolean isFinal, final String superName, final String[] interfaces) {
+            this.isInterface = isInterface;
+            this.isFinal = isFinal;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+}
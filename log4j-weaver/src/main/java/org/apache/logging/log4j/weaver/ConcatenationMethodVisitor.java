@@ -0,0 +1,722 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_ARRAY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Replaces string concatenations used as message of a logging method with parameterized messages.
+ * <p>
+ *     A call like {@code logger.debug("user " + id + " did " + action)} is rewritten into
+ *     {@code logger.debug("user {} did {}", id, action)}, so that disabled logging statements do not build the
+ *     message. Both the {@code StringBuilder} chains emitted by Java 8 compilers and the
+ *     {@code makeConcatWithConstants} call sites emitted by newer compilers are recognized, if they have at most
+ *     {@value #MAX_PARAMETERS} operands and their constant parts contain neither braces nor backslashes.
+ * </p>
+ * <p>
+ *     If the conversion of operands to strings is also deferred, {@code x.toString()} operands are replaced with
+ *     {@code Objects.requireNonNull(x)}, {@code String.valueOf(x)} operands with {@code x} and
+ *     {@code String.format(format, args)} operands with a message that is only formatted if the event is logged.
+ * </p>
+ * <p>
+ *     Calls to loggers that do not use parameterized messages, like those returned by
+ *     {@code LogManager.getFormatterLogger}, are left unchanged, if the creation of the logger is visible in the
+ *     class. See {@link FormatterLoggers}.
+ * </p>
+ */
+class ConcatenationMethodVisitor extends MethodNode {
+
+    private static final int MAX_PARAMETERS = 10;
+
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final String STRING_CONCAT_FACTORY = "java/lang/invoke/StringConcatFactory";
+    // Tags of the `makeConcatWithConstants` recipe
+    private static final char TAG_ARG = '\u0001';
+    private static final char TAG_CONST = '\u0002';
+    // Types of the `StringBuilder.append` arguments that can be used as parameters
+    private static final List<String> APPEND_ARGUMENTS = Arrays.asList(
+            "Z",
+            "C",
+            "I",
+            "J",
+            "F",
+            "D",
+            "Ljava/lang/CharSequence;",
+            "Ljava/lang/Object;",
+            "Ljava/lang/String;",
+            "Ljava/lang/StringBuffer;");
+    // Types formatted in the same way by `ParameterFormatter` and `String.valueOf`
+    private static final List<String> SUPPORTED_TYPES = Arrays.asList(
+            "java/lang/Boolean",
+            "java/lang/Byte",
+            "java/lang/Character",
+            "java/lang/Double",
+            "java/lang/Float",
+            "java/lang/Integer",
+            "java/lang/Long",
+            "java/lang/Short",
+            "java/lang/String");
+    // Types formatted differently by `ParameterFormatter` and `String.valueOf`
+    private static final List<String> FORMATTED_TYPES = Arrays.asList(
+            "java/lang/CharSequence",
+            "java/util/Collection",
+            "java/util/Date",
+            "java/util/Map",
+            "org/apache/logging/log4j/util/StringBuilderFormattable");
+
+    private final LocationClassVisitor classVisitor;
+    private final String owner;
+    private final boolean deferStringConversion;
+    private final MethodVisitor next;
+
+    ConcatenationMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final String owner,
+            final boolean deferStringConversion,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.owner = owner;
+        this.deferStringConversion = deferStringConversion;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasMessageCalls()) {
+            try {
+                rewriteConcatenations(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted as is
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasMessageCalls() {
+        for (final AbstractInsnNode insn : instructions) {
+            if (isMessageCall(insn)) {
+                return true;
+            }
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void rewriteConcatenations(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        final List<Concatenation> concatenations = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            if (isMessageCall(insns[i])
+                    && frames[i] != null
+                    && !classVisitor.getFormatterLoggers().hasFormatterReceiver(this, frames, i)) {
+                final Concatenation concatenation = getConcatenation(frames, insns, controlFlow, i);
+                if (concatenation != null && concatenation.getPattern() != null) {
+                    concatenations.add(concatenation);
+                }
+            }
+        }
+        // Instructions are modified after the analysis, since it relies on their indexes
+        concatenations.forEach(this::rewriteConcatenation);
+    }
+
+    private void rewriteConcatenation(final Concatenation concatenation) {
+        concatenation.removed.forEach(instructions::remove);
+        // `x.toString()` still throws if `x` is `null`
+        for (final MethodInsnNode nullCheck : concatenation.nullChecks) {
+            instructions.set(
+                    nullCheck,
+                    new MethodInsnNode(
+                            Opcodes.INVOKESTATIC,
+                            "java/util/Objects",
+                            "requireNonNull",
+                            "(Ljava/lang/Object;)Ljava/lang/Object;",
+                            false));
+        }
+        if (!concatenation.formats.isEmpty()) {
+            final Handle formattedMessage = classVisitor.createLambda(SupplierLambdaType.FORMATTED_MESSAGE);
+            for (final MethodInsnNode format : concatenation.formats) {
+                format.owner = formattedMessage.getOwner();
+                format.name = formattedMessage.getName();
+                format.desc = formattedMessage.getDesc();
+                format.itf = false;
+            }
+        }
+        final List<Type> operandTypes = concatenation.operandTypes;
+        final InsnList insns = new InsnList();
+        if (operandTypes.size() == 1) {
+            box(insns, operandTypes.get(0));
+            insns.add(new LdcInsnNode(concatenation.getPattern()));
+            insns.add(new InsnNode(Opcodes.SWAP));
+        } else {
+            // The operands are stored in new local variables to put the pattern below them
+            final int[] locals = new int[operandTypes.size()];
+            for (int i = 0; i < locals.length; i++) {
+                locals[i] = maxLocals;
+                maxLocals += operandTypes.get(i).getSize();
+            }
+            for (int i = locals.length - 1; i >= 0; i--) {
+                insns.add(new VarInsnNode(operandTypes.get(i).getOpcode(Opcodes.ISTORE), locals[i]));
+            }
+            insns.add(new LdcInsnNode(concatenation.getPattern()));
+            for (int i = 0; i < locals.length; i++) {
+                insns.add(new VarInsnNode(operandTypes.get(i).getOpcode(Opcodes.ILOAD), locals[i]));
+                box(insns, operandTypes.get(i));
+            }
+        }
+        instructions.insertBefore(concatenation.end, insns);
+        instructions.remove(concatenation.end);
+        final MethodInsnNode call = concatenation.call;
+        final Type[] args = Type.getArgumentTypes(call.desc);
+        final Type[] newArgs = Arrays.copyOf(args, args.length + operandTypes.size());
+        Arrays.fill(newArgs, args.length, newArgs.length, OBJECT_TYPE);
+        call.desc = Type.getMethodDescriptor(Type.VOID_TYPE, newArgs);
+    }
+
+    private static void box(final InsnList insns, final Type type) {
+        final String boxedType;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                boxedType = "java/lang/Boolean";
+                break;
+            case Type.BYTE:
+                boxedType = "java/lang/Byte";
+                break;
+            case Type.CHAR:
+                boxedType = "java/lang/Character";
+                break;
+            case Type.DOUBLE:
+                boxedType = "java/lang/Double";
+                break;
+            case Type.FLOAT:
+                boxedType = "java/lang/Float";
+                break;
+            case Type.INT:
+                boxedType = "java/lang/Integer";
+                break;
+            case Type.LONG:
+                boxedType = "java/lang/Long";
+                break;
+            case Type.SHORT:
+                boxedType = "java/lang/Short";
+                break;
+            default:
+                return;
+        }
+        insns.add(new MethodInsnNode(
+                Opcodes.INVOKESTATIC,
+                boxedType,
+                "valueOf",
+                Type.getMethodDescriptor(Type.getObjectType(boxedType), type),
+                false));
+    }
+
+    /**
+     * Returns the concatenation that computes the message of a logging call.
+     *
+     * @return the concatenation or {@code null} if the message is not computed by a supported concatenation.
+     */
+    private Concatenation getConcatenation(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final int callIndex) {
+        final Frame<SourceValue> callFrame = frames[callIndex];
+        final AbstractInsnNode message = getSingleProducer(callFrame.getStack(callFrame.getStackSize() - 1));
+        if (message == null) {
+            return null;
+        }
+        final int messageIndex = instructions.indexOf(message);
+        if (nextInsn(insns, messageIndex) != callIndex || frames[messageIndex] == null) {
+            return null;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insns[callIndex];
+        if (message instanceof InvokeDynamicInsnNode) {
+            return getIndyConcatenation(frames, insns, call, (InvokeDynamicInsnNode) message, messageIndex);
+        }
+        if (isMethod(message, STRING_BUILDER, "toString", "()Ljava/lang/String;")) {
+            return getStringBuilderConcatenation(frames, insns, controlFlow, call, messageIndex);
+        }
+        return null;
+    }
+
+    /**
+     * Parses a {@code makeConcatWithConstants} or {@code makeConcat} call site.
+     */
+    private Concatenation getIndyConcatenation(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final MethodInsnNode call,
+            final InvokeDynamicInsnNode indy,
+            final int indyIndex) {
+        final Type[] operandTypes = Type.getArgumentTypes(indy.desc);
+        if (!STRING_CONCAT_FACTORY.equals(indy.bsm.getOwner())
+                || operandTypes.length == 0
+                || operandTypes.length > MAX_PARAMETERS) {
+            return null;
+        }
+        final String recipe;
+        final Iterator<Object> constants;
+        if ("makeConcatWithConstants".equals(indy.bsm.getName())
+                && indy.bsmArgs.length > 0
+                && indy.bsmArgs[0] instanceof String) {
+            recipe = (String) indy.bsmArgs[0];
+            constants =
+                    Arrays.asList(indy.bsmArgs).subList(1, indy.bsmArgs.length).iterator();
+        } else if ("makeConcat".equals(indy.bsm.getName())) {
+            final char[] tags = new char[operandTypes.length];
+            Arrays.fill(tags, TAG_ARG);
+            recipe = new String(tags);
+            constants = Collections.emptyIterator();
+        } else {
+            return null;
+        }
+        final Concatenation concatenation = new Concatenation(call, indy);
+        final Frame<SourceValue> frame = frames[indyIndex];
+        final int firstOperand = frame.getStackSize() - operandTypes.length;
+        int operand = 0;
+        for (int i = 0; i < recipe.length(); i++) {
+            final char c = recipe.charAt(i);
+            if (c == TAG_ARG) {
+                if (operand >= operandTypes.length
+                        || !addOperand(
+                                concatenation,
+                                frames,
+                                insns,
+                                frame.getStack(firstOperand + operand),
+                                operandTypes[operand])) {
+                    return null;
+                }
+                operand++;
+            } else if (c == TAG_CONST) {
+                final Object constant = constants.hasNext() ? constants.next() : null;
+                if (!(constant instanceof String || constant instanceof Number)) {
+                    return null;
+                }
+                concatenation.addConstant(String.valueOf(constant));
+            } else {
+                concatenation.addConstant(String.valueOf(c));
+            }
+        }
+        return operand == operandTypes.length ? concatenation : null;
+    }
+
+    /**
+     * Parses a {@code new StringBuilder().append(...)...toString()} chain.
+     */
+    private Concatenation getStringBuilderConcatenation(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final MethodInsnNode call,
+            final int toStringIndex) {
+        final Deque<Integer> appends = new ArrayDeque<>();
+        AbstractInsnNode builder = getReceiver(frames, toStringIndex);
+        while (builder != null
+                && isMethod(builder, STRING_BUILDER, "append", null)
+                && APPEND_ARGUMENTS.contains(getAppendArgument(builder).getDescriptor())) {
+            final int appendIndex = instructions.indexOf(builder);
+            appends.addFirst(appendIndex);
+            builder = getReceiver(frames, appendIndex);
+        }
+        // The `StringBuilder` or its copy
+        while (builder != null && builder.getOpcode() == Opcodes.DUP) {
+            builder = getReceiver(frames, instructions.indexOf(builder));
+        }
+        if (builder == null
+                || builder.getOpcode() != Opcodes.NEW
+                || !STRING_BUILDER.equals(((TypeInsnNode) builder).desc)) {
+            return null;
+        }
+        final int newIndex = instructions.indexOf(builder);
+        final int dupIndex = nextInsn(insns, newIndex);
+        if (frames[newIndex] == null
+                || insns[dupIndex].getOpcode() != Opcodes.DUP
+                || controlFlow.hasJumpAcross(newIndex, toStringIndex)) {
+            return null;
+        }
+        // The `StringBuilder` must stay on the stack until `toString` is called
+        final int stackSize = frames[newIndex].getStackSize();
+        for (int i = newIndex + 1; i <= toStringIndex; i++) {
+            if (frames[i] == null || frames[i].getStackSize() <= stackSize || controlFlow.isTryCatchBoundary(i)) {
+                return null;
+            }
+        }
+        final int initIndex = getConstructor(frames, insns, dupIndex, toStringIndex, stackSize);
+        if (initIndex < 0 || (!appends.isEmpty() && appends.getFirst() < initIndex)) {
+            return null;
+        }
+        final Concatenation concatenation = new Concatenation(call, insns[toStringIndex]);
+        concatenation.removed.add(builder);
+        concatenation.removed.add(insns[dupIndex]);
+        concatenation.removed.add(insns[initIndex]);
+        final Type[] initArgs = Type.getArgumentTypes(((MethodInsnNode) insns[initIndex]).desc);
+        if (initArgs.length == 1 && !addPiece(concatenation, frames, insns, initIndex, initArgs[0])) {
+            return null;
+        }
+        for (final int appendIndex : appends) {
+            if (isDuplicated(insns, appendIndex)
+                    || !addPiece(concatenation, frames, insns, appendIndex, getAppendArgument(insns[appendIndex]))) {
+                return null;
+            }
+            concatenation.removed.add(insns[appendIndex]);
+        }
+        return concatenation.operandTypes.isEmpty() ? null : concatenation;
+    }
+
+    /**
+     * Finds the {@code StringBuilder()} or {@code StringBuilder(String)} constructor call.
+     *
+     * @return the index of the constructor call or {@code -1}.
+     */
+    private static int getConstructor(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final int dupIndex,
+            final int toStringIndex,
+            final int stackSize) {
+        for (int i = dupIndex + 1; i < toStringIndex; i++) {
+            if (isMethod(insns[i], STRING_BUILDER, "<init>", null)) {
+                final String descriptor = ((MethodInsnNode) insns[i]).desc;
+                final int argCount = Type.getArgumentTypes(descriptor).length;
+                if (frames[i].getStackSize() == stackSize + 2 + argCount) {
+                    return "()V".equals(descriptor)
+                                    || "(Ljava/lang/String;)V".equals(descriptor)
+                                    || "(Ljava/lang/CharSequence;)V".equals(descriptor)
+                            ? i
+                            : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the argument of a {@code StringBuilder} method to the concatenation.
+     */
+    private boolean addPiece(
+            final Concatenation concatenation,
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final int index,
+            final Type type) {
+        final SourceValue value = frames[index].getStack(frames[index].getStackSize() - 1);
+        final AbstractInsnNode producer = getSingleProducer(value);
+        if (producer instanceof LdcInsnNode
+                && ((LdcInsnNode) producer).cst instanceof String
+                && nextInsn(insns, instructions.indexOf(producer)) == index) {
+            concatenation.addConstant((String) ((LdcInsnNode) producer).cst);
+            concatenation.removed.add(producer);
+            return true;
+        }
+        return addOperand(concatenation, frames, insns, value, type);
+    }
+
+    /**
+     * Adds an operand to the concatenation, possibly removing its conversion to {@code String}.
+     *
+     * @return {@code false} if the operand is not supported.
+     */
+    private boolean addOperand(
+            final Concatenation concatenation,
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final SourceValue value,
+            final Type type) {
+        final AbstractInsnNode producer = getSingleProducer(value);
+        if (!isSupported(getStaticType(producer, type))) {
+            return false;
+        }
+        if (deferStringConversion
+                && producer instanceof MethodInsnNode
+                && !isDuplicated(insns, instructions.indexOf(producer))) {
+            final MethodInsnNode method = (MethodInsnNode) producer;
+            final Type[] args = Type.getArgumentTypes(method.desc);
+            if (method.getOpcode() != Opcodes.INVOKESTATIC
+                    && method.getOpcode() != Opcodes.INVOKESPECIAL
+                    && "toString".equals(method.name)
+                    && "()Ljava/lang/String;".equals(method.desc)
+                    && isSupported(Type.getObjectType(method.owner))) {
+                concatenation.nullChecks.add(method);
+                concatenation.addOperand(OBJECT_TYPE);
+                return true;
+            }
+            if (isMethod(method, STRING_TYPE.getInternalName(), "valueOf", null)
+                    && args.length == 1
+                    && isSupported(getArgumentType(frames, method, args[0]))) {
+                concatenation.removed.add(method);
+                concatenation.addOperand(args[0]);
+                return true;
+            }
+            if (isMethod(method, STRING_TYPE.getInternalName(), "format", null)
+                    && Arrays.equals(args, new Type[] {STRING_TYPE, OBJECT_ARRAY_TYPE})) {
+                concatenation.formats.add(method);
+                concatenation.addOperand(MESSAGE_TYPE);
+                return true;
+            }
+        }
+        concatenation.addOperand(type);
+        return true;
+    }
+
+    /**
+     * Checks if {@code String.valueOf} and {@code ParameterFormatter} give the same result for the values of a type.
+     * <p>
+     *     Since {@code ParameterFormatter} checks the runtime class of the parameters, only primitive types, strings,
+     *     boxed primitives and final classes, that are not dates, collections, maps, {@code CharSequence} or
+     *     {@code StringBuilderFormattable}, are supported.
+     * </p>
+     */
+    private boolean isSupported(final Type type) {
+        switch (type.getSort()) {
+            case Type.ARRAY:
+                return false;
+            case Type.OBJECT:
+                break;
+            default:
+                return true;
+        }
+        final String internalName = type.getInternalName();
+        if (SUPPORTED_TYPES.contains(internalName)) {
+            return true;
+        }
+        final ClassHierarchy classHierarchy = classVisitor.getClassHierarchy();
+        if (classHierarchy == null) {
+            return false;
+        }
+        try {
+            return classHierarchy.isFinal(internalName)
+                    && FORMATTED_TYPES.stream()
+                            .noneMatch(formattedType -> classHierarchy.isAssignableFrom(formattedType, internalName));
+        } catch (final TypeNotPresentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the static type of a value, which might be more specific than the type of the argument, that
+     * consumes it.
+     * <p>
+     *     For example, the argument of {@code StringBuilder.append(Object)} is usually a field or the result of a
+     *     method of a more specific type.
+     * </p>
+     */
+    private static Type getStaticType(final AbstractInsnNode producer, final Type argumentType) {
+        if (argumentType.getSort() != Type.OBJECT || producer == null) {
+            return argumentType;
+        }
+        switch (producer.getOpcode()) {
+            case Opcodes.GETFIELD:
+            case Opcodes.GETSTATIC:
+                return Type.getType(((FieldInsnNode) producer).desc);
+            case Opcodes.CHECKCAST:
+                return Type.getObjectType(((TypeInsnNode) producer).desc);
+            case Opcodes.INVOKEINTERFACE:
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKESTATIC:
+            case Opcodes.INVOKEVIRTUAL:
+                return Type.getReturnType(((MethodInsnNode) producer).desc);
+            default:
+                return argumentType;
+        }
+    }
+
+    /**
+     * Returns the static type of the single argument of a method call.
+     */
+    private Type getArgumentType(final Frame<SourceValue>[] frames, final MethodInsnNode method, final Type type) {
+        final Frame<SourceValue> frame = frames[instructions.indexOf(method)];
+        if (frame == null) {
+            return type;
+        }
+        return getStaticType(getSingleProducer(frame.getStack(frame.getStackSize() - 1)), type);
+    }
+
+    private static Type getAppendArgument(final AbstractInsnNode append) {
+        final Type[] args = Type.getArgumentTypes(((MethodInsnNode) append).desc);
+        return args.length == 1 ? args[0] : Type.VOID_TYPE;
+    }
+
+    /**
+     * Returns the single producer of the receiver of a method call or of the input of a {@code dup}.
+     */
+    private AbstractInsnNode getReceiver(final Frame<SourceValue>[] frames, final int index) {
+        final Frame<SourceValue> frame = frames[index];
+        if (frame == null) {
+            return null;
+        }
+        final AbstractInsnNode insn = instructions.get(index);
+        final int argCount =
+                insn instanceof MethodInsnNode ? Type.getArgumentTypes(((MethodInsnNode) insn).desc).length : 0;
+        return frame.getStackSize() > argCount
+                ? getSingleProducer(frame.getStack(frame.getStackSize() - 1 - argCount))
+                : null;
+    }
+
+    /**
+     * Checks if the value pushed by an instruction is immediately copied.
+     */
+    private static boolean isDuplicated(final AbstractInsnNode[] insns, final int index) {
+        final int next = nextInsn(insns, index);
+        if (next >= insns.length) {
+            return false;
+        }
+        final int opcode = insns[next].getOpcode();
+        return opcode >= Opcodes.DUP && opcode <= Opcodes.SWAP;
+    }
+
+    private static boolean isMethod(
+            final AbstractInsnNode insn, final String owner, final String name, final String descriptor) {
+        if (!(insn instanceof MethodInsnNode)) {
+            return false;
+        }
+        final MethodInsnNode method = (MethodInsnNode) insn;
+        return owner.equals(method.owner)
+                && name.equals(method.name)
+                && (descriptor == null || descriptor.equals(method.desc));
+    }
+
+    private static AbstractInsnNode getSingleProducer(final SourceValue value) {
+        return value.insns.size() == 1 ? value.insns.iterator().next() : null;
+    }
+
+    private static int nextInsn(final AbstractInsnNode[] insns, final int index) {
+        int next = index + 1;
+        while (next < insns.length && insns[next].getOpcode() < 0) {
+            next++;
+        }
+        return next;
+    }
+
+    /**
+     * Checks for calls to {@code Logger} methods whose last argument is a {@code String} message.
+     */
+    private static boolean isMessageCall(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKEINTERFACE) {
+            return false;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        if (!LOGGER_TYPE.getInternalName().equals(call.owner)) {
+            return false;
+        }
+        switch (call.name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "log":
+            case "trace":
+            case "warn":
+                final Type[] args = Type.getArgumentTypes(call.desc);
+                final int length = args.length;
+                final int levelCount = "log".equals(call.name) ? 1 : 0;
+                if (length == 0 || !STRING_TYPE.equals(args[length - 1]) || length > levelCount + 2) {
+                    return false;
+                }
+                return (levelCount == 0 || LEVEL_TYPE.equals(args[0]))
+                        && (length == levelCount + 1 || MARKER_TYPE.equals(args[levelCount]));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A concatenation that can be replaced by a parameterized message.
+     */
+    private static final class Concatenation {
+        private final MethodInsnNode call;
+        // The instruction that returns the concatenated string
+        private final AbstractInsnNode end;
+        private final List<AbstractInsnNode> removed = new ArrayList<>();
+        // Calls to `toString` that are replaced by a null check
+        private final List<MethodInsnNode> nullChecks = new ArrayList<>();
+        // Calls to `String.format` that are replaced by a `StringFormattedMessage`
+        private final List<MethodInsnNode> formats = new ArrayList<>();
+        private final List<Type> operandTypes = new ArrayList<>();
+        private final StringBuilder pattern = new StringBuilder();
+        private boolean valid = true;
+
+        private Concatenation(final MethodInsnNode call, final AbstractInsnNode end) {
+            this.call = call;
+            this.end = end;
+        }
+
+        private void addConstant(final String constant) {
+            // These characters have a special meaning in a parameterized message
+            if (constant.indexOf('{') >= 0 || constant.indexOf('}') >= 0 || constant.indexOf('\\') >= 0) {
+                valid = false;
+            }
+            pattern.append(constant);
+        }
+
+        private void addOperand(final Type type) {
+            pattern.append("{}");
+            operandTypes.add(type);
+            if (operandTypes.size() > MAX_PARAMETERS) {
+                valid = false;
+            }
+        }
+
+        /**
+         * Returns the pattern of the parameterized message or {@code null} if it can not be built.
+         */
+        private String getPattern() {
+            return valid ? pattern.toString() : null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_MANAGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+
+import org.apache.commons.lang3.StringUtils;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Replaces the {@code MarkerManager.getMarker} and {@code Level.forName} calls with constant arguments with shared
+ * instances.
+ * <p>
+ *     A call like {@code MarkerManager.getMarker("AUDIT")} or {@code Level.forName("NOTICE", 350)} is rewritten into
+ *     a read of a {@code static final} field generated by {@link LocationCacheGenerator}, which contains the result
+ *     of the call. Only string and integer constants that immediately precede the call are supported.
+ * </p>
+ */
+class ConstantLookupMethodVisitor extends MethodNode {
+
+    private static final Handle GET_MARKER = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            MARKER_MANAGER_TYPE.getInternalName(),
+            "getMarker",
+            Type.getMethodDescriptor(MARKER_TYPE, STRING_TYPE),
+            false);
+    private static final Handle FOR_NAME = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            LEVEL_TYPE.getInternalName(),
+            "forName",
+            Type.getMethodDescriptor(LEVEL_TYPE, STRING_TYPE, Type.INT_TYPE),
+            false);
+
+    private final LocationClassVisitor classVisitor;
+    private final MethodVisitor next;
+
+    ConstantLookupMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        for (final AbstractInsnNode insn : instructions.toArray()) {
+            if (isCall(insn, GET_MARKER)) {
+                cacheMarker((MethodInsnNode) insn);
+            } else if (isCall(insn, FOR_NAME)) {
+                cacheLevel((MethodInsnNode) insn);
+            }
+        }
+        accept(next);
+    }
+
+    private void cacheMarker(final MethodInsnNode call) {
+        final String name = getStringConstant(call.getPrevious());
+        if (name != null) {
+            instructions.remove(call.getPrevious());
+            replace(call, classVisitor.addCachedConstant(GET_MARKER, name));
+        }
+    }
+
+    private void cacheLevel(final MethodInsnNode call) {
+        final AbstractInsnNode intValueInsn = call.getPrevious();
+        final Integer intValue = getIntConstant(intValueInsn);
+        final String name = intValueInsn != null ? getStringConstant(intValueInsn.getPrevious()) : null;
+        // Invalid levels must fail at the call site, not in the initializer of the cache
+        if (intValue != null && intValue >= 0 && StringUtils.isNotBlank(name)) {
+            instructions.remove(intValueInsn.getPrevious());
+            instructions.remove(intValueInsn);
+            replace(call, classVisitor.addCachedConstant(FOR_NAME, name, intValue));
+        }
+    }
+
+    private void replace(final MethodInsnNode call, final Handle field) {
+        final String owner = field.getOwner();
+        instructions.set(call, new FieldInsnNode(Opcodes.GETSTATIC, owner, field.getName(), field.getDesc()));
+    }
+
+    private static boolean isCall(final AbstractInsnNode insn, final Handle method) {
+        if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
+            return false;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        return method.getOwner().equals(call.owner)
+                && method.getName().equals(call.name)
+                && method.getDesc().equals(call.desc);
+    }
+
+    private static String getStringConstant(final AbstractInsnNode insn) {
+        return insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof String
+                ? (String) ((LdcInsnNode) insn).cst
+                : null;
+    }
+
+    private static Integer getIntConstant(final AbstractInsnNode insn) {
+        if (insn == null) {
+            return null;
+        }
+        final int opcode = insn.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+            return opcode - Opcodes.ICONST_0;
+        }
+        if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+            return ((IntInsnNode) insn).operand;
+        }
+        return insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof Integer
+                ? (Integer) ((LdcInsnNode) insn).cst
+                : null;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.THROWABLE_TYPE;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Replaces constant messages without parameters with shared {@code Message} instances.
+ * <p>
+ *     A call like {@code logger.info("Connection pool started")} is rewritten into
+ *     {@code logger.info(ConstantMessages0.message0)}, where {@code message0} is a {@code static final} field
+ *     generated by {@link LocationCacheGenerator}, which contains a {@code SimpleMessage}. This is only done for calls
+ *     to the {@code Logger} methods with a {@code [Level,] [Marker,] String [, Throwable]} signature and to
+ *     {@code LogBuilder.log(String)}, whose message is a constant.
+ * </p>
+ */
+class ConstantMessageMethodVisitor extends MethodNode {
+
+    private final LocationClassVisitor classVisitor;
+    private final String owner;
+    private final MethodVisitor next;
+
+    ConstantMessageMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final String owner,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.owner = owner;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasConstantMessageCalls()) {
+            try {
+                rewriteConstantMessages(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted as is
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasConstantMessageCalls() {
+        boolean constant = false;
+        for (final AbstractInsnNode insn : instructions) {
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+            if (insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof String) {
+                constant = true;
+            } else if (constant && getMessagePosition(insn) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rewriteConstantMessages(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        final List<LdcInsnNode> messages = new ArrayList<>();
+        final List<MethodInsnNode> calls = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            final int position = getMessagePosition(insns[i]);
+            if (position >= 0 && frames[i] != null) {
+                final LdcInsnNode message = getConstantMessage(frames, controlFlow, i, position);
+                if (message != null) {
+                    messages.add(message);
+                    calls.add((MethodInsnNode) insns[i]);
+                }
+            }
+        }
+        // Instructions are modified after the analysis, since it relies on their indexes
+        for (int i = 0; i < calls.size(); i++) {
+            final Handle field = classVisitor.addConstantMessage((String) messages.get(i).cst);
+            instructions.set(
+                    messages.get(i),
+                    new FieldInsnNode(Opcodes.GETSTATIC, field.getOwner(), field.getName(), field.getDesc()));
+            final MethodInsnNode call = calls.get(i);
+            final Type[] args = Type.getArgumentTypes(call.desc);
+            args[args.length - 1 - getMessagePosition(call)] = MESSAGE_TYPE;
+            call.desc = Type.getMethodDescriptor(Type.VOID_TYPE, args);
+        }
+    }
+
+    /**
+     * Returns the constant message of a logging call, if it is only used by that call.
+     *
+     * @param position the number of arguments after the message.
+     * @return the instruction that loads the message or {@code null}.
+     */
+    private LdcInsnNode getConstantMessage(
+            final Frame<SourceValue>[] frames, final ControlFlow controlFlow, final int callIndex, final int position) {
+        final Frame<SourceValue> callFrame = frames[callIndex];
+        final SourceValue value = callFrame.getStack(callFrame.getStackSize() - 1 - position);
+        if (value.insns.size() != 1) {
+            return null;
+        }
+        final AbstractInsnNode producer = value.insns.iterator().next();
+        if (!(producer instanceof LdcInsnNode) || !(((LdcInsnNode) producer).cst instanceof String)) {
+            return null;
+        }
+        // The message must stay on the stack until the call
+        final int messageIndex = instructions.indexOf(producer);
+        if (frames[messageIndex] == null || controlFlow.hasJumpAcross(messageIndex, callIndex)) {
+            return null;
+        }
+        final int stackSize = frames[messageIndex].getStackSize();
+        for (int i = messageIndex + 1; i <= callIndex; i++) {
+            if (frames[i] == null || frames[i].getStackSize() <= stackSize) {
+                return null;
+            }
+        }
+        // The message must not be copied
+        AbstractInsnNode next = producer.getNext();
+        while (next.getOpcode() < 0) {
+            next = next.getNext();
+        }
+        return next.getOpcode() >= Opcodes.DUP && next.getOpcode() <= Opcodes.SWAP ? null : (LdcInsnNode) producer;
+    }
+
+    /**
+     * Checks for calls to {@code Logger} methods with a {@code [Level,] [Marker,] String [, Throwable]} signature and
+     * to {@code LogBuilder.log(String)}.
+     *
+     * @return the number of arguments after the message or {@code -1} if the instruction is not such a call.
+     */
+    private static int getMessagePosition(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKEINTERFACE) {
+            return -1;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        final Type[] args = Type.getArgumentTypes(call.desc);
+        if (Type.getReturnType(call.desc).getSort() != Type.VOID) {
+            return -1;
+        }
+        if (LOG_BUILDER_TYPE.getInternalName().equals(call.owner)) {
+            return "log".equals(call.name) && args.length == 1 && STRING_TYPE.equals(args[0]) ? 0 : -1;
+        }
+        if (!LOGGER_TYPE.getInternalName().equals(call.owner)) {
+            return -1;
+        }
+        final int prefixLength;
+        switch (call.name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "trace":
+            case "warn":
+                prefixLength = 0;
+                break;
+            case "log":
+                prefixLength = 1;
+                break;
+            default:
+                return -1;
+        }
+        final int position = args.length > 0 && THROWABLE_TYPE.equals(args[args.length - 1]) ? 1 : 0;
+        final int messageIndex = args.length - 1 - position;
+        if (messageIndex < prefixLength
+                || !STRING_TYPE.equals(args[messageIndex])
+                || (prefixLength > 0 && !LEVEL_TYPE.equals(args[0]))) {
+            return -1;
+        }
+        final boolean validPrefix = messageIndex == prefixLength
+                || (messageIndex == prefixLength + 1 && MARKER_TYPE.equals(args[prefixLength]));
+        return validPrefix ? position : -1;
+    }
+}
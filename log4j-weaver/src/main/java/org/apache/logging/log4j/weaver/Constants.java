@@ -25,6 +25,8 @@ public class Constants {
     public static final String LOCATION_CACHE_SUFFIX = "$$Log4j2$$Cache";
 
     // JDK types
+    public static final Type CHAR_SEQUENCE_TYPE = Type.getType(CharSequence.class);
+    public static final Type CLASS_TYPE = Type.getType(Class.class);
     public static final Type OBJECT_TYPE = Type.getType(Object.class);
     public static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
     public static final Type STACK_TRACE_ELEMENT_TYPE = Type.getType(StackTraceElement.class);
@@ -33,22 +35,40 @@ public class Constants {
     public static final Type THROWABLE_TYPE = Type.getType(Throwable.class);
 
     // Log4j2 types
+    public static final Type ABSTRACT_LOGGER_TYPE = Type.getObjectType("org/apache/logging/log4j/spi/AbstractLogger");
     public static final Type ENTRY_MESSAGE_TYPE = Type.getObjectType("org/apache/logging/log4j/message/EntryMessage");
     public static final Type EXIT_MESSAGE_TYPE = Type.getObjectType("org/apache/logging/log4j/message/ExitMessage");
+    public static final Type EXTENDED_LOGGER_TYPE = Type.getObjectType("org/apache/logging/log4j/spi/ExtendedLogger");
     public static final Type FLOW_MESSAGE_FACTORY_TYPE =
             Type.getObjectType("org/apache/logging/log4j/message/FlowMessageFactory");
     public static final Type LOG_BUILDER_TYPE = Type.getObjectType("org/apache/logging/log4j/LogBuilder");
     public static final Type LEVEL_TYPE = Type.getObjectType("org/apache/logging/log4j/Level");
+    public static final Type LOCATION_AWARE_LOGGER_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/spi/LocationAwareLogger");
     public static final Type LOGGER_TYPE = Type.getObjectType("org/apache/logging/log4j/Logger");
+    public static final Type LOG_MANAGER_TYPE = Type.getObjectType("org/apache/logging/log4j/LogManager");
     public static final Type LOGGING_SYSTEM_TYPE = Type.getObjectType("org/apache/logging/log4j/spi/LoggingSystem");
     public static final Type MARKER_TYPE = Type.getObjectType("org/apache/logging/log4j/Marker");
+    public static final Type MARKER_MANAGER_TYPE = Type.getObjectType("org/apache/logging/log4j/MarkerManager");
     public static final Type MESSAGE_TYPE = Type.getObjectType("org/apache/logging/log4j/message/Message");
     public static final Type MESSAGE_FACTORY_TYPE =
             Type.getObjectType("org/apache/logging/log4j/message/MessageFactory");
+    public static final Type MESSAGE_FACTORY2_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/message/MessageFactory2");
     public static final Type MESSAGE_SUPPLIER_TYPE =
             Type.getObjectType("org/apache/logging/log4j/util/MessageSupplier");
     public static final Type SUPPLIER_TYPE = Type.getObjectType("org/apache/logging/log4j/util/Supplier");
     public static final Type SUPPLIER_ARRAY_TYPE = Type.getType("[" + SUPPLIER_TYPE.getDescriptor());
+    public static final Type UNBOX_TYPE = Type.getObjectType("org/apache/logging/log4j/util/Unbox");
+
+    // Log4j weaver runtime types
+    public static final Type HIT_COUNTERS_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/weaver/runtime/HitCounters");
+    public static final Type SITE_SWITCHES_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/weaver/runtime/SiteSwitches");
+    public static final Type SITE_SAMPLER_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/weaver/runtime/SiteSampler");
+    public static final Type SAMPLED_TYPE = Type.getObjectType("org/apache/logging/log4j/weaver/runtime/Sampled");
 
     // LogBuilder methods types
     private static final String NO_ARGS_DESC = Type.getMethodDescriptor(LOG_BUILDER_TYPE);
@@ -66,6 +86,8 @@ public class Constants {
             new Method("withMarker", Type.getMethodDescriptor(LOG_BUILDER_TYPE, MARKER_TYPE));
     public static final Method WITH_THROWABLE_METHOD =
             new Method("withThrowable", Type.getMethodDescriptor(LOG_BUILDER_TYPE, THROWABLE_TYPE));
+    public static final Method IS_ENABLED_METHOD =
+            new Method("isEnabled", Type.getMethodDescriptor(Type.BOOLEAN_TYPE, LEVEL_TYPE, MARKER_TYPE));
     public static final Method LOG_AND_GET_METHOD =
             new Method("logAndGet", Type.getMethodDescriptor(MESSAGE_TYPE, SUPPLIER_TYPE));
 
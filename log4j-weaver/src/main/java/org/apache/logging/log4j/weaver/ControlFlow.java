@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Jumps and exception handler boundaries of a method.
+ */
+final class ControlFlow {
+    private final BitSet jumpTargets = new BitSet();
+    // Labels that delimit a try-catch block or its handler
+    private final BitSet tryCatchLabels = new BitSet();
+    private final List<int[]> jumps = new ArrayList<>();
+    private final InsnList instructions;
+
+    /**
+     * Indexes the jumps and try-catch blocks of a method.
+     *
+     * @param method a method,
+     * @param insns  the instructions of the method as returned by {@link InsnList#toArray()}.
+     */
+    ControlFlow(final MethodNode method, final AbstractInsnNode[] insns) {
+        this.instructions = method.instructions;
+        for (int i = 0; i < insns.length; i++) {
+            final AbstractInsnNode insn = insns[i];
+            if (insn instanceof JumpInsnNode) {
+                addJump(i, ((JumpInsnNode) insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                final TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) insn;
+                addJump(i, tableSwitch.dflt);
+                for (final LabelNode label : tableSwitch.labels) {
+                    addJump(i, label);
+                }
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                final LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) insn;
+                addJump(i, lookupSwitch.dflt);
+                for (final LabelNode label : lookupSwitch.labels) {
+                    addJump(i, label);
+                }
+            }
+        }
+        for (final TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+            tryCatchLabels.set(instructions.indexOf(tryCatchBlock.start));
+            tryCatchLabels.set(instructions.indexOf(tryCatchBlock.end));
+            tryCatchLabels.set(instructions.indexOf(tryCatchBlock.handler));
+        }
+    }
+
+    private void addJump(final int source, final LabelNode target) {
+        final int targetIndex = instructions.indexOf(target);
+        jumpTargets.set(targetIndex);
+        jumps.add(new int[] {source, targetIndex});
+    }
+
+    /**
+     * Checks if the instruction at {@code index} starts a new basic block.
+     */
+    boolean isBlockBoundary(final int index) {
+        return jumpTargets.get(index) || tryCatchLabels.get(index);
+    }
+
+    boolean isTryCatchBoundary(final int index) {
+        return tryCatchLabels.get(index);
+    }
+
+    /**
+     * Checks for jumps between the instructions in the {@code [start, end]} range and the rest of the method.
+     */
+    boolean hasJumpAcross(final int start, final int end) {
+        for (final int[] jump : jumps) {
+            final boolean sourceInside = jump[0] >= start && jump[0] <= end;
+            final boolean targetInside = jump[1] > start && jump[1] <= end;
+            if (sourceInside != targetInside) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
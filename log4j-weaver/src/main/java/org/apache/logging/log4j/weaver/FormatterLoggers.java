@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_FACTORY2_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_FACTORY_TYPE;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Finds the loggers of a class, that might not use parameterized messages.
+ * <p>
+ *     The message pattern of a logger returned by {@code LogManager.getFormatterLogger} or by a factory method with
+ *     a {@code MessageFactory} argument is not in the {@code {}} format, so the calls to these loggers can not be
+ *     rewritten into parameterized or precompiled messages. Only the loggers created in the class itself are
+ *     detected, if they are stored in a field of the class, in a local variable or used directly.
+ * </p>
+ */
+final class FormatterLoggers {
+
+    static final FormatterLoggers NONE = new FormatterLoggers(Collections.emptySet());
+
+    // The fields, in the `<owner>.<name>` format, that contain a formatter logger
+    private final Set<String> fields;
+
+    private FormatterLoggers(final Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Finds the fields of a class, that are assigned a formatter logger.
+     *
+     * @param reader a class reader.
+     */
+    static FormatterLoggers scan(final ClassReader reader) {
+        final Set<String> fields = new HashSet<>();
+        reader.accept(
+                new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        return new FieldMethodVisitor(fields);
+                    }
+                },
+                ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return fields.isEmpty() ? NONE : new FormatterLoggers(fields);
+    }
+
+    /**
+     * Checks if the receiver of a {@code Logger} or {@code LogBuilder} call might be a formatter logger.
+     *
+     * @param method    the method containing the call,
+     * @param frames    the result of a {@code SourceInterpreter} analysis of the method,
+     * @param callIndex the index of the call.
+     */
+    boolean hasFormatterReceiver(final MethodNode method, final Frame<SourceValue>[] frames, final int callIndex) {
+        final SourceValue receiver = getReceiver(method, frames, callIndex);
+        return receiver != null && isFormatterLogger(method, frames, receiver, new HashSet<>());
+    }
+
+    private boolean isFormatterLogger(
+            final MethodNode method,
+            final Frame<SourceValue>[] frames,
+            final SourceValue value,
+            final Set<AbstractInsnNode> visited) {
+        for (final AbstractInsnNode producer : value.insns) {
+            if (visited.add(producer) && isFormatterLogger(method, frames, producer, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFormatterLogger(
+            final MethodNode method,
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode producer,
+            final Set<AbstractInsnNode> visited) {
+        final int index = method.instructions.indexOf(producer);
+        final Frame<SourceValue> frame = frames[index];
+        if (frame == null) {
+            return false;
+        }
+        switch (producer.getOpcode()) {
+            case Opcodes.GETSTATIC:
+            case Opcodes.GETFIELD:
+                final FieldInsnNode field = (FieldInsnNode) producer;
+                return fields.contains(field.owner + "." + field.name);
+            case Opcodes.ALOAD:
+                // The values stored in the local variable
+                return isFormatterLogger(method, frames, frame.getLocal(((VarInsnNode) producer).var), visited);
+            case Opcodes.ASTORE:
+            case Opcodes.CHECKCAST:
+            case Opcodes.DUP:
+                return isFormatterLogger(method, frames, frame.getStack(frame.getStackSize() - 1), visited);
+            case Opcodes.INVOKEINTERFACE:
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKESTATIC:
+                final MethodInsnNode call = (MethodInsnNode) producer;
+                if (isFormatterLoggerFactory(call)) {
+                    return true;
+                }
+                // `Logger.atInfo()`, `LogBuilder.withMarker(marker)`, etc.
+                if ((LOGGER_TYPE.getInternalName().equals(call.owner)
+                                || LOG_BUILDER_TYPE.getInternalName().equals(call.owner))
+                        && LOG_BUILDER_TYPE.equals(Type.getReturnType(call.desc))) {
+                    final SourceValue receiver = getReceiver(method, frames, index);
+                    return receiver != null && isFormatterLogger(method, frames, receiver, visited);
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static SourceValue getReceiver(
+            final MethodNode method, final Frame<SourceValue>[] frames, final int callIndex) {
+        final Frame<SourceValue> frame = frames[callIndex];
+        final AbstractInsnNode insn = method.instructions.get(callIndex);
+        if (frame == null || !(insn instanceof MethodInsnNode) || insn.getOpcode() == Opcodes.INVOKESTATIC) {
+            return null;
+        }
+        final int argCount = Type.getArgumentTypes(((MethodInsnNode) insn).desc).length;
+        return frame.getStack(frame.getStackSize() - 1 - argCount);
+    }
+
+    /**
+     * Checks for calls that might return a logger that does not use parameterized messages.
+     */
+    private static boolean isFormatterLoggerFactory(final MethodInsnNode call) {
+        if (Type.getReturnType(call.desc).getSort() != Type.OBJECT) {
+            return false;
+        }
+        return "getFormatterLogger".equals(call.name)
+                || Arrays.stream(Type.getArgumentTypes(call.desc))
+                        .anyMatch(type -> MESSAGE_FACTORY_TYPE.equals(type) || MESSAGE_FACTORY2_TYPE.equals(type));
+    }
+
+    /**
+     * Collects the fields that are assigned the result of a formatter logger factory.
+     */
+    private static final class FieldMethodVisitor extends MethodVisitor {
+
+        private final Set<String> fields;
+        private boolean formatterLogger;
+
+        private FieldMethodVisitor(final Set<String> fields) {
+            super(Opcodes.ASM9);
+            this.fields = fields;
+        }
+
+        @Override
+        public void visitInsn(final int opcode) {
+            formatterLogger = false;
+        }
+
+        @Override
+        public void visitIntInsn(final int opcode, final int operand) {
+            formatterLogger = false;
+        }
+
+        @Override
+        public void visitVarInsn(final int opcode, final int varIndex) {
+            formatterLogger = false;
+        }
+
+        @Override
+        public void visitTypeInsn(final int opcode, final String type) {
+            // A `checkcast` keeps the logger on the stack
+            formatterLogger &= opcode == Opcodes.CHECKCAST;
+        }
+
+        @Override
+        public void visitFieldInsn(final int opcode, final String owner, final String name, final String descriptor) {
+            if (formatterLogger && (opcode == Opcodes.PUTSTATIC || opcode == Opcodes.PUTFIELD)) {
+                fields.add(owner + "." + name);
+            }
+            formatterLogger = false;
+        }
+
+        @Override
+        public void visitMethodInsn(
+                final int opcode,
+                final String owner,
+                final String name,
+                final String descriptor,
+                final boolean isInterface) {
+            formatterLogger =
+                    isFormatterLoggerFactory(new MethodInsnNode(opcode, owner, name, descriptor, isInterface));
+        }
+
+        @Override
+        public void visitJumpInsn(final int opcode, final Label label) {
+            formatterLogger = false;
+        }
+
+        @Override
+        public void visitLdcInsn(final Object value) {
+            formatterLogger = false;
+        }
+    }
+}
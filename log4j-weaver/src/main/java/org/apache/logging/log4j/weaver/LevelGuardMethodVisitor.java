@@ -0,0 +1,580 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.ABSTRACT_LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SAMPLED_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SITE_SAMPLER_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator.LocationCacheValue;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Wraps logging statements in an {@code isEnabled} check, so that the arguments of disabled logging statements are
+ * not evaluated.
+ * <p>
+ *     A statement is guarded only if its logger, level and marker are loaded by instructions without side effects
+ *     (a local variable, a static field or a field of a local variable), which are duplicated in the guard.
+ *     Consecutive statements in the same basic block that use the same logger, level and marker share a single
+ *     guard.
+ * </p>
+ * <p>
+ *     The converted logging statements already check {@code isEnabled(level)}, so the guard never filters out an
+ *     event that would have been logged.
+ * </p>
+ * <p>
+ *     If site switches are enabled, each statement is also guarded by its own element of the {@code boolean[]}
+ *     array of switches of the location cache, which is checked before the level.
+ * </p>
+ * <p>
+ *     The statements selected by a sampling rule or a {@code @Sampled} annotation of their method or class are
+ *     also guarded by their sampler, which is checked after the level, so that only enabled events are sampled.
+ * </p>
+ */
+class LevelGuardMethodVisitor extends MethodNode {
+
+    private static final String IS_ENABLED = "isEnabled";
+    private static final String IS_ENABLED_LEVEL_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, LEVEL_TYPE);
+    private static final String IS_ENABLED_LEVEL_MARKER_DESC =
+            Type.getMethodDescriptor(Type.BOOLEAN_TYPE, LEVEL_TYPE, MARKER_TYPE);
+    private static final String ENTRY_MARKER = "ENTRY_MARKER";
+    private static final String SAMPLE = "sample";
+    private static final String SAMPLE_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE);
+
+    private final LocationClassVisitor classVisitor;
+    private final String owner;
+    private final boolean levelGuards;
+    private final MethodVisitor next;
+
+    // Sampling rate of the `@Sampled` annotation of the method
+    private String methodSamplingRate;
+
+    LevelGuardMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final String owner,
+            final boolean levelGuards,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.owner = owner;
+        this.levelGuards = levelGuards;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        methodSamplingRate = getSamplingRate(visibleAnnotations);
+        if (methodSamplingRate == null) {
+            methodSamplingRate = getSamplingRate(invisibleAnnotations);
+        }
+        if (isGuarding() && hasLoggerCalls()) {
+            try {
+                insertGuards(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted without guards
+            }
+        }
+        accept(next);
+    }
+
+    private boolean isGuarding() {
+        return levelGuards || classVisitor.isSiteSwitches() || isSampling();
+    }
+
+    private boolean isSampling() {
+        return methodSamplingRate != null || classVisitor.isSampling();
+    }
+
+    private static String getSamplingRate(final List<AnnotationNode> annotations) {
+        if (annotations != null) {
+            for (final AnnotationNode annotation : annotations) {
+                if (SAMPLED_TYPE.getDescriptor().equals(annotation.desc)) {
+                    return SamplingRule.getAnnotationRate(annotation.values);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean hasLoggerCalls() {
+        for (final AbstractInsnNode insn : instructions) {
+            if (isLoggerCall(insn)) {
+                return true;
+            }
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void insertGuards(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        final List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            if (isLoggerCall(insns[i]) && frames[i] != null) {
+                final Statement statement = createStatement(frames, insns, controlFlow, i);
+                if (statement != null) {
+                    statements.add(statement);
+                }
+            }
+        }
+        // Group consecutive statements, unless each statement has its own switch or sampler
+        Statement first = null;
+        Statement last = null;
+        for (final Statement statement : statements) {
+            if (last != null
+                    && !classVisitor.isSiteSwitches()
+                    && !isSampling()
+                    && canShareGuard(insns, controlFlow, first, last, statement)) {
+                last = statement;
+                continue;
+            }
+            if (first != null) {
+                insertGuard(insns, first, last);
+            }
+            first = last = statement;
+        }
+        if (first != null) {
+            insertGuard(insns, first, last);
+        }
+    }
+
+    private void insertGuard(final AbstractInsnNode[] insns, final Statement first, final Statement last) {
+        final InsnList guard = new InsnList();
+        final LabelNode skip = new LabelNode();
+        final int lineNumber = getLineNumber(insns, last.end);
+        final LocationCacheValue siteSwitch = classVisitor.addSiteSwitch(lineNumber, getLevelName(first.level));
+        final String samplingRate = classVisitor.getSamplingRate(methodSamplingRate, lineNumber);
+        if (siteSwitch != null) {
+            guard.add(new FieldInsnNode(
+                    Opcodes.GETSTATIC, siteSwitch.getInternalClassName(), siteSwitch.getFieldName(), "[Z"));
+            guard.add(pushInt(siteSwitch.getIndex()));
+            guard.add(new InsnNode(Opcodes.BALOAD));
+            guard.add(new JumpInsnNode(Opcodes.IFEQ, skip));
+        }
+        // Sampled statements are always checked, so that disabled events do not consume samples
+        if (levelGuards || samplingRate != null) {
+            first.receiver.forEach(insn -> guard.add(insn.clone(Collections.emptyMap())));
+            first.level.forEach(insn -> guard.add(insn.clone(Collections.emptyMap())));
+            if (first.marker != null) {
+                first.marker.forEach(insn -> guard.add(insn.clone(Collections.emptyMap())));
+                guard.add(new MethodInsnNode(
+                        Opcodes.INVOKEINTERFACE,
+                        LOGGER_TYPE.getInternalName(),
+                        IS_ENABLED,
+                        IS_ENABLED_LEVEL_MARKER_DESC,
+                        true));
+            } else {
+                guard.add(new MethodInsnNode(
+                        Opcodes.INVOKEINTERFACE,
+                        LOGGER_TYPE.getInternalName(),
+                        IS_ENABLED,
+                        IS_ENABLED_LEVEL_DESC,
+                        true));
+            }
+            guard.add(new JumpInsnNode(Opcodes.IFEQ, skip));
+        }
+        if (samplingRate != null) {
+            final LocationCacheValue sampler = classVisitor.addSampler(lineNumber, samplingRate);
+            guard.add(new FieldInsnNode(
+                    Opcodes.GETSTATIC,
+                    sampler.getInternalClassName(),
+                    sampler.getFieldName(),
+                    "[" + SITE_SAMPLER_TYPE.getDescriptor()));
+            guard.add(pushInt(sampler.getIndex()));
+            guard.add(new InsnNode(Opcodes.AALOAD));
+            guard.add(new MethodInsnNode(
+                    Opcodes.INVOKEVIRTUAL, SITE_SAMPLER_TYPE.getInternalName(), SAMPLE, SAMPLE_DESC, false));
+            guard.add(new JumpInsnNode(Opcodes.IFEQ, skip));
+        }
+        instructions.insertBefore(insns[first.start], guard);
+
+        final InsnList after = new InsnList();
+        if (last.returnsValue) {
+            // A disabled `traceEntry` returns `null`
+            final LabelNode end = new LabelNode();
+            after.add(new JumpInsnNode(Opcodes.GOTO, end));
+            after.add(skip);
+            after.add(new InsnNode(Opcodes.ACONST_NULL));
+            after.add(end);
+        } else {
+            after.add(skip);
+        }
+        instructions.insert(insns[last.end], after);
+    }
+
+    private boolean canShareGuard(
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final Statement first,
+            final Statement previous,
+            final Statement next) {
+        if (previous.returnsValue || previous.end > next.start) {
+            return false;
+        }
+        // Only labels that are not jump targets, line numbers and frames between the statements
+        for (int i = previous.end + 1; i < next.start; i++) {
+            if (insns[i].getOpcode() >= 0 || controlFlow.isBlockBoundary(i)) {
+                return false;
+            }
+        }
+        if (!sameInstructions(first.receiver, next.receiver)
+                || !sameInstructions(first.level, next.level)
+                || (first.marker == null ? next.marker != null : !sameInstructions(first.marker, next.marker))) {
+            return false;
+        }
+        // The values loaded by the guard must not change between the statements
+        final List<AbstractInsnNode> loads = new ArrayList<>(first.receiver);
+        loads.addAll(first.level);
+        if (first.marker != null) {
+            loads.addAll(first.marker);
+        }
+        for (int i = first.start; i < next.start; i++) {
+            for (final AbstractInsnNode load : loads) {
+                if (isOverwrittenBy(load, insns[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Statement createStatement(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final int end) {
+        final MethodInsnNode call = (MethodInsnNode) insns[end];
+        final Type[] args = Type.getArgumentTypes(call.desc);
+        final Frame<SourceValue> frame = frames[end];
+        final int receiverSlot = frame.getStackSize() - args.length - 1;
+        final List<AbstractInsnNode> receiver = getSimpleProducer(frames, insns, frame, receiverSlot);
+        if (receiver == null) {
+            return null;
+        }
+        // Instructions that must immediately follow the receiver
+        final List<AbstractInsnNode> expected = new ArrayList<>(receiver);
+        final List<AbstractInsnNode> level;
+        List<AbstractInsnNode> marker = null;
+        boolean returnsValue = false;
+        switch (call.name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "trace":
+            case "warn":
+                level = Collections.singletonList(new FieldInsnNode(
+                        Opcodes.GETSTATIC,
+                        LEVEL_TYPE.getInternalName(),
+                        call.name.toUpperCase(Locale.ROOT),
+                        LEVEL_TYPE.getDescriptor()));
+                if (args.length > 0 && MARKER_TYPE.equals(args[0])) {
+                    marker = getSimpleProducer(frames, insns, frame, receiverSlot + 1);
+                    if (marker != null) {
+                        expected.addAll(marker);
+                    }
+                }
+                break;
+            case "log":
+            case "printf":
+                if (args.length == 0 || !LEVEL_TYPE.equals(args[0])) {
+                    return null;
+                }
+                level = getSimpleProducer(frames, insns, frame, receiverSlot + 1);
+                if (level == null) {
+                    return null;
+                }
+                expected.addAll(level);
+                if (args.length > 1 && MARKER_TYPE.equals(args[1])) {
+                    marker = getSimpleProducer(frames, insns, frame, receiverSlot + 2);
+                    if (marker != null) {
+                        expected.addAll(marker);
+                    }
+                }
+                break;
+            case "traceEntry":
+                level = Collections.singletonList(new FieldInsnNode(
+                        Opcodes.GETSTATIC, LEVEL_TYPE.getInternalName(), "TRACE", LEVEL_TYPE.getDescriptor()));
+                marker = Collections.singletonList(new FieldInsnNode(
+                        Opcodes.GETSTATIC,
+                        ABSTRACT_LOGGER_TYPE.getInternalName(),
+                        ENTRY_MARKER,
+                        MARKER_TYPE.getDescriptor()));
+                returnsValue = true;
+                break;
+            default:
+                return null;
+        }
+        final int start = instructions.indexOf(receiver.get(0));
+        // The duplicated loads must be the first instructions of the statement
+        int index = start;
+        for (final AbstractInsnNode insn : expected) {
+            while (index < end && insns[index].getOpcode() < 0) {
+                index++;
+            }
+            if (insns[index] != insn) {
+                return null;
+            }
+            index++;
+        }
+        if (!isSelfContained(frames, controlFlow, start, end, receiverSlot)) {
+            return null;
+        }
+        return new Statement(start, end, receiver, level, marker, returnsValue);
+    }
+
+    /**
+     * Checks if the instructions between {@code start} and {@code end} can be skipped as a whole.
+     */
+    private boolean isSelfContained(
+            final Frame<SourceValue>[] frames,
+            final ControlFlow controlFlow,
+            final int start,
+            final int end,
+            final int stackSize) {
+        if (frames[start] == null || frames[start].getStackSize() != stackSize) {
+            return false;
+        }
+        for (int i = start + 1; i <= end; i++) {
+            // The statement must not consume values pushed before it
+            if (frames[i] == null || frames[i].getStackSize() <= stackSize || controlFlow.isTryCatchBoundary(i)) {
+                return false;
+            }
+            // Local variables assigned by the statement might be read after it
+            if (isLocalVariableStore(instructions.get(i))) {
+                return false;
+            }
+        }
+        return !controlFlow.hasJumpAcross(start, end);
+    }
+
+    private static boolean isLocalVariableStore(final AbstractInsnNode insn) {
+        switch (insn.getOpcode()) {
+            case Opcodes.ISTORE:
+            case Opcodes.LSTORE:
+            case Opcodes.FSTORE:
+            case Opcodes.DSTORE:
+            case Opcodes.ASTORE:
+            case Opcodes.IINC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the instructions that push a stack value, if they have no side effects.
+     */
+    private List<AbstractInsnNode> getSimpleProducer(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final Frame<SourceValue> frame,
+            final int slot) {
+        final SourceValue value = frame.getStack(slot);
+        if (value.insns.size() != 1) {
+            return null;
+        }
+        final AbstractInsnNode producer = value.insns.iterator().next();
+        switch (producer.getOpcode()) {
+            case Opcodes.ACONST_NULL:
+            case Opcodes.ALOAD:
+            case Opcodes.GETSTATIC:
+                return Collections.singletonList(producer);
+            case Opcodes.GETFIELD:
+                final int index = instructions.indexOf(producer);
+                final Frame<SourceValue> producerFrame = frames[index];
+                if (producerFrame == null) {
+                    return null;
+                }
+                final SourceValue object = producerFrame.getStack(producerFrame.getStackSize() - 1);
+                if (object.insns.size() == 1) {
+                    final AbstractInsnNode load = object.insns.iterator().next();
+                    int previous = index - 1;
+                    while (previous >= 0 && insns[previous].getOpcode() < 0) {
+                        previous--;
+                    }
+                    if (load.getOpcode() == Opcodes.ALOAD && previous >= 0 && insns[previous] == load) {
+                        return Arrays.asList(load, producer);
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the line number of the instruction at {@code index}, which is used in its location.
+     */
+    private static int getLineNumber(final AbstractInsnNode[] insns, final int index) {
+        for (int i = index; i >= 0; i--) {
+            if (insns[i] instanceof LineNumberNode) {
+                return ((LineNumberNode) insns[i]).line;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the name of a standard level loaded by {@code level} or {@code null}.
+     */
+    private static String getLevelName(final List<AbstractInsnNode> level) {
+        if (level.size() == 1 && level.get(0).getOpcode() == Opcodes.GETSTATIC) {
+            final FieldInsnNode field = (FieldInsnNode) level.get(0);
+            if (LEVEL_TYPE.getInternalName().equals(field.owner)) {
+                switch (field.name) {
+                    case "TRACE":
+                    case "DEBUG":
+                    case "INFO":
+                    case "WARN":
+                    case "ERROR":
+                    case "FATAL":
+                        return field.name;
+                    default:
+                        return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static AbstractInsnNode pushInt(final int value) {
+        if (value <= 5) {
+            return new InsnNode(Opcodes.ICONST_0 + value);
+        }
+        if (value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.BIPUSH, value);
+        }
+        if (value <= Short.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.SIPUSH, value);
+        }
+        return new LdcInsnNode(value);
+    }
+
+    private static boolean isLoggerCall(final AbstractInsnNode insn) {
+        return insn.getOpcode() == Opcodes.INVOKEINTERFACE
+                && LOGGER_TYPE.getInternalName().equals(((MethodInsnNode) insn).owner);
+    }
+
+    private static boolean sameInstructions(final List<AbstractInsnNode> first, final List<AbstractInsnNode> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            final AbstractInsnNode left = first.get(i);
+            final AbstractInsnNode right = second.get(i);
+            if (left.getOpcode() != right.getOpcode()) {
+                return false;
+            }
+            if (left instanceof VarInsnNode && ((VarInsnNode) left).var != ((VarInsnNode) right).var) {
+                return false;
+            }
+            if (left instanceof FieldInsnNode && !sameField((FieldInsnNode) left, (FieldInsnNode) right)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameField(final FieldInsnNode left, final FieldInsnNode right) {
+        return left.owner.equals(right.owner) && left.name.equals(right.name) && left.desc.equals(right.desc);
+    }
+
+    /**
+     * Checks if {@code insn} may change the value loaded by {@code load}.
+     */
+    private static boolean isOverwrittenBy(final AbstractInsnNode load, final AbstractInsnNode insn) {
+        if (load instanceof VarInsnNode) {
+            final int var = ((VarInsnNode) load).var;
+            return (insn.getOpcode() >= Opcodes.ISTORE
+                            && insn.getOpcode() <= Opcodes.ASTORE
+                            && ((VarInsnNode) insn).var == var)
+                    || (insn instanceof IincInsnNode && ((IincInsnNode) insn).var == var);
+        }
+        if (load instanceof FieldInsnNode) {
+            return (insn.getOpcode() == Opcodes.PUTSTATIC || insn.getOpcode() == Opcodes.PUTFIELD)
+                    && sameField((FieldInsnNode) load, (FieldInsnNode) insn);
+        }
+        return false;
+    }
+
+    /**
+     * A guarded logging statement.
+     */
+    private static final class Statement {
+        // Index of the first instruction
+        private final int start;
+        // Index of the call to the logger
+        private final int end;
+        private final List<AbstractInsnNode> receiver;
+        private final List<AbstractInsnNode> level;
+        private final List<AbstractInsnNode> marker;
+        private final boolean returnsValue;
+
+        private Statement(
+                final int start,
+                final int end,
+                final List<AbstractInsnNode> receiver,
+                final List<AbstractInsnNode> level,
+                final List<AbstractInsnNode> marker,
+                final boolean returnsValue) {
+            this.start = start;
+            this.end = end;
+            this.receiver = receiver;
+            this.level = level;
+            this.marker = marker;
+            this.returnsValue = returnsValue;
+        }
+    }
+}
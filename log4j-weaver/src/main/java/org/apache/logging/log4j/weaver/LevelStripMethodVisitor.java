@@ -0,0 +1,548 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.UNBOX_TYPE;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Removes the logging statements, whose level is less specific than a threshold.
+ * <p>
+ *     A call to {@code Logger} is removed together with the instructions that compute its arguments, if these
+ *     instructions have no side effects and can be skipped as a whole. Otherwise only the call is removed and its
+ *     arguments are discarded. The level checks of a stripped level are replaced with {@code false}.
+ * </p>
+ * <p>
+ *     A {@code LogBuilder} chain, like {@code logger.atDebug().withThrowable(t).log("message")}, is only removed if
+ *     none of its instructions have side effects.
+ * </p>
+ * <p>
+ *     The level of a statement must be known at build time: either from the name of the method or from a standard
+ *     {@code Level} constant.
+ * </p>
+ */
+class LevelStripMethodVisitor extends MethodNode {
+
+    private static final Map<String, Integer> STANDARD_LEVELS;
+
+    static {
+        final Map<String, Integer> levels = new HashMap<>();
+        levels.put("OFF", 0);
+        levels.put("FATAL", 100);
+        levels.put("ERROR", 200);
+        levels.put("WARN", 300);
+        levels.put("INFO", 400);
+        levels.put("DEBUG", 500);
+        levels.put("TRACE", 600);
+        levels.put("ALL", Integer.MAX_VALUE);
+        STANDARD_LEVELS = Collections.unmodifiableMap(levels);
+    }
+
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+    private static final String STRING_CONCAT_FACTORY = "java/lang/invoke/StringConcatFactory";
+
+    private final String owner;
+    private final int threshold;
+    private final MethodVisitor next;
+
+    LevelStripMethodVisitor(
+            final String owner,
+            final String stripBelow,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.owner = owner;
+        this.threshold = getIntLevel(stripBelow);
+        this.next = next;
+    }
+
+    /**
+     * Returns the numeric value of a standard level.
+     *
+     * @param level the name of a standard level,
+     * @return the {@code intLevel} of the level or {@code -1} if the level is unknown.
+     */
+    static int getIntLevel(final String level) {
+        final Integer intLevel = level != null ? STANDARD_LEVELS.get(level.toUpperCase(Locale.ROOT)) : null;
+        return intLevel != null ? intLevel : -1;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasLoggingCalls()) {
+            try {
+                strip(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted without stripping
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasLoggingCalls() {
+        for (final AbstractInsnNode insn : instructions) {
+            if (isLoggerCall(insn) || isLogBuilderCall(insn)) {
+                return true;
+            }
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void strip(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        // The instructions are only modified after the analysis, so that their indexes do not change
+        final BitSet removed = new BitSet();
+        final Map<AbstractInsnNode, InsnList> replacements = new HashMap<>();
+        for (int i = 0; i < insns.length; i++) {
+            if (frames[i] == null || removed.get(i)) {
+                continue;
+            }
+            if (isLoggerCall(insns[i])) {
+                stripLoggerCall(frames, insns, controlFlow, removed, replacements, i);
+            } else if (isLogBuilderCall(insns[i]) && "log".equals(((MethodInsnNode) insns[i]).name)) {
+                stripLogBuilderChain(frames, insns, controlFlow, removed, i);
+            }
+        }
+        for (int i = removed.nextSetBit(0); i >= 0; i = removed.nextSetBit(i + 1)) {
+            final InsnList replacement = replacements.get(insns[i]);
+            if (replacement != null) {
+                instructions.insertBefore(insns[i], replacement);
+            }
+            // Labels, line numbers and frames are kept
+            if (insns[i].getOpcode() >= 0) {
+                instructions.remove(insns[i]);
+            }
+        }
+    }
+
+    private void stripLoggerCall(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final BitSet removed,
+            final Map<AbstractInsnNode, InsnList> replacements,
+            final int end) {
+        final MethodInsnNode call = (MethodInsnNode) insns[end];
+        final Type[] args = Type.getArgumentTypes(call.desc);
+        final Type returnType = Type.getReturnType(call.desc);
+        final Frame<SourceValue> frame = frames[end];
+        final int receiverSlot = frame.getStackSize() - args.length - 1;
+        if (!isStripped(getLevel(call, args, frame, receiverSlot))) {
+            return;
+        }
+        // The value that replaces the result of the call
+        final AbstractInsnNode result;
+        if (returnType.getSort() == Type.VOID) {
+            result = null;
+        } else if (returnType.getSort() == Type.BOOLEAN) {
+            result = new InsnNode(Opcodes.ICONST_0);
+        } else if ("traceEntry".equals(call.name)) {
+            result = new InsnNode(Opcodes.ACONST_NULL);
+        } else if ("traceExit".equals(call.name)) {
+            // Returns its last argument
+            final InsnList replacement = new InsnList();
+            if (args.length == 1) {
+                replacement.add(new InsnNode(Opcodes.SWAP));
+                replacement.add(new InsnNode(Opcodes.POP));
+            } else if (args.length == 2) {
+                replacement.add(new InsnNode(Opcodes.DUP_X2));
+                replacement.add(new InsnNode(Opcodes.POP));
+                replacement.add(new InsnNode(Opcodes.POP2));
+            } else {
+                return;
+            }
+            replacements.put(call, replacement);
+            removed.set(end);
+            return;
+        } else {
+            return;
+        }
+        final int start = getProducerIndex(frame, receiverSlot);
+        if (start >= 0
+                && isUntouched(removed, start, end)
+                && isSelfContained(frames, controlFlow, start, end, receiverSlot)
+                && isPure(frames, insns, start, end, Collections.singleton(call))) {
+            if (result != null) {
+                replacements.put(call, singleton(result));
+            }
+            removed.set(start, end + 1);
+            return;
+        }
+        // Only the call is removed, the arguments are still evaluated
+        final InsnList replacement = new InsnList();
+        for (int i = args.length - 1; i >= 0; i--) {
+            replacement.add(new InsnNode(args[i].getSize() == 2 ? Opcodes.POP2 : Opcodes.POP));
+        }
+        replacement.add(new InsnNode(Opcodes.POP));
+        if (result != null) {
+            replacement.add(result);
+        }
+        replacements.put(call, replacement);
+        removed.set(end);
+    }
+
+    private void stripLogBuilderChain(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final BitSet removed,
+            final int end) {
+        final Set<AbstractInsnNode> chain = new HashSet<>();
+        int index = end;
+        while (true) {
+            final MethodInsnNode call = (MethodInsnNode) insns[index];
+            chain.add(call);
+            final Type[] args = Type.getArgumentTypes(call.desc);
+            final int receiverSlot = frames[index].getStackSize() - args.length - 1;
+            if (isLoggerCall(call)) {
+                if (!isStripped(getLevel(call, args, frames[index], receiverSlot))) {
+                    return;
+                }
+                final int start = getProducerIndex(frames[index], receiverSlot);
+                // The chain is only removed as a whole
+                if (start >= 0
+                        && isUntouched(removed, start, end)
+                        && isSelfContained(frames, controlFlow, start, end, receiverSlot)
+                        && isPure(frames, insns, start, end, chain)) {
+                    removed.set(start, end + 1);
+                }
+                return;
+            }
+            index = getProducerIndex(frames[index], receiverSlot);
+            if (index < 0 || frames[index] == null) {
+                return;
+            }
+            final AbstractInsnNode producer = insns[index];
+            final boolean isBuilder = isLogBuilderCall(producer)
+                    && LOG_BUILDER_TYPE.equals(Type.getReturnType(((MethodInsnNode) producer).desc));
+            final boolean isLevelBuilder = isLoggerCall(producer)
+                    && ((MethodInsnNode) producer).name.startsWith("at")
+                    && LOG_BUILDER_TYPE.equals(Type.getReturnType(((MethodInsnNode) producer).desc));
+            if (!isBuilder && !isLevelBuilder) {
+                return;
+            }
+        }
+    }
+
+    private static InsnList singleton(final AbstractInsnNode insn) {
+        final InsnList list = new InsnList();
+        list.add(insn);
+        return list;
+    }
+
+    private boolean isStripped(final String level) {
+        final int intLevel = getIntLevel(level);
+        return intLevel >= 0 && intLevel > threshold;
+    }
+
+    /**
+     * Returns the name of the level of a {@code Logger} call, if known.
+     */
+    private static String getLevel(
+            final MethodInsnNode call, final Type[] args, final Frame<SourceValue> frame, final int receiverSlot) {
+        switch (call.name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "trace":
+            case "warn":
+                return call.name;
+            case "atDebug":
+            case "atError":
+            case "atFatal":
+            case "atInfo":
+            case "atTrace":
+            case "atWarn":
+                return call.name.substring(2);
+            case "isDebugEnabled":
+            case "isErrorEnabled":
+            case "isFatalEnabled":
+            case "isInfoEnabled":
+            case "isTraceEnabled":
+            case "isWarnEnabled":
+                return call.name.substring(2, call.name.length() - "Enabled".length());
+            case "traceEntry":
+            case "traceExit":
+                return "TRACE";
+            case "catching":
+                if (args.length == 1) {
+                    return "ERROR";
+                }
+                return getLevelConstant(args, frame, receiverSlot);
+            case "atLevel":
+            case "isEnabled":
+            case "log":
+            case "printf":
+                return getLevelConstant(args, frame, receiverSlot);
+            default:
+                return null;
+        }
+    }
+
+    private static String getLevelConstant(final Type[] args, final Frame<SourceValue> frame, final int receiverSlot) {
+        if (args.length == 0 || !LEVEL_TYPE.equals(args[0])) {
+            return null;
+        }
+        final SourceValue value = frame.getStack(receiverSlot + 1);
+        if (value.insns.size() == 1) {
+            final AbstractInsnNode producer = value.insns.iterator().next();
+            if (producer.getOpcode() == Opcodes.GETSTATIC) {
+                final FieldInsnNode field = (FieldInsnNode) producer;
+                if (LEVEL_TYPE.getInternalName().equals(field.owner)
+                        && LEVEL_TYPE.getDescriptor().equals(field.desc)) {
+                    return field.name;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the only instruction that pushes a stack value or {@code -1}.
+     */
+    private int getProducerIndex(final Frame<SourceValue> frame, final int slot) {
+        if (slot < 0) {
+            return -1;
+        }
+        final SourceValue value = frame.getStack(slot);
+        return value.insns.size() == 1
+                ? instructions.indexOf(value.insns.iterator().next())
+                : -1;
+    }
+
+    /**
+     * Checks that no instruction between {@code start} and {@code end} has already been replaced.
+     */
+    private static boolean isUntouched(final BitSet removed, final int start, final int end) {
+        final int next = removed.nextSetBit(start);
+        return next < 0 || next > end;
+    }
+
+    /**
+     * Checks if the instructions between {@code start} and {@code end} can be skipped as a whole.
+     */
+    private static boolean isSelfContained(
+            final Frame<SourceValue>[] frames,
+            final ControlFlow controlFlow,
+            final int start,
+            final int end,
+            final int stackSize) {
+        if (frames[start] == null || frames[start].getStackSize() != stackSize) {
+            return false;
+        }
+        for (int i = start + 1; i <= end; i++) {
+            // The statement must not consume values pushed before it
+            if (frames[i] == null || frames[i].getStackSize() <= stackSize || controlFlow.isTryCatchBoundary(i)) {
+                return false;
+            }
+        }
+        return !controlFlow.hasJumpAcross(start, end);
+    }
+
+    /**
+     * Checks if the instructions between {@code start} and {@code end} have no side effects, except for the calls in
+     * {@code calls}.
+     * <p>
+     *     Exceptions that might be thrown by these instructions, like a {@code NullPointerException}, are not
+     *     considered side effects.
+     * </p>
+     */
+    private boolean isPure(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final int start,
+            final int end,
+            final Set<AbstractInsnNode> calls) {
+        for (int i = start; i <= end; i++) {
+            final AbstractInsnNode insn = insns[i];
+            final int opcode = insn.getOpcode();
+            if (calls.contains(insn) || opcode < 0) {
+                continue;
+            }
+            if (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE) {
+                // Only arrays created by the statement can be modified
+                final Frame<SourceValue> frame = frames[i];
+                if (!isArrayCreatedAfter(frames, frame.getStack(frame.getStackSize() - 3), start)) {
+                    return false;
+                }
+                continue;
+            }
+            switch (opcode) {
+                case Opcodes.ISTORE:
+                case Opcodes.LSTORE:
+                case Opcodes.FSTORE:
+                case Opcodes.DSTORE:
+                case Opcodes.ASTORE:
+                case Opcodes.IINC:
+                case Opcodes.JSR:
+                case Opcodes.RET:
+                case Opcodes.IRETURN:
+                case Opcodes.LRETURN:
+                case Opcodes.FRETURN:
+                case Opcodes.DRETURN:
+                case Opcodes.ARETURN:
+                case Opcodes.RETURN:
+                case Opcodes.PUTSTATIC:
+                case Opcodes.PUTFIELD:
+                case Opcodes.ATHROW:
+                case Opcodes.MONITORENTER:
+                case Opcodes.MONITOREXIT:
+                    return false;
+                case Opcodes.INVOKEVIRTUAL:
+                case Opcodes.INVOKESPECIAL:
+                case Opcodes.INVOKESTATIC:
+                case Opcodes.INVOKEINTERFACE:
+                    if (!isPureMethod((MethodInsnNode) insn)) {
+                        return false;
+                    }
+                    break;
+                case Opcodes.INVOKEDYNAMIC:
+                    if (!isPureInvokeDynamic((InvokeDynamicInsnNode) insn)) {
+                        return false;
+                    }
+                    break;
+                default:
+            }
+        }
+        return true;
+    }
+
+    private boolean isArrayCreatedAfter(final Frame<SourceValue>[] frames, SourceValue array, final int start) {
+        while (array.insns.size() == 1) {
+            final AbstractInsnNode producer = array.insns.iterator().next();
+            final int index = instructions.indexOf(producer);
+            switch (producer.getOpcode()) {
+                case Opcodes.NEWARRAY:
+                case Opcodes.ANEWARRAY:
+                case Opcodes.MULTIANEWARRAY:
+                    return index >= start;
+                case Opcodes.DUP:
+                    final Frame<SourceValue> frame = frames[index];
+                    if (frame == null) {
+                        return false;
+                    }
+                    array = frame.getStack(frame.getStackSize() - 1);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks for boxing and string building methods.
+     */
+    private static boolean isPureMethod(final MethodInsnNode insn) {
+        final Type[] args = Type.getArgumentTypes(insn.desc);
+        switch (insn.owner) {
+            case "java/lang/Boolean":
+            case "java/lang/Byte":
+            case "java/lang/Character":
+            case "java/lang/Double":
+            case "java/lang/Float":
+            case "java/lang/Integer":
+            case "java/lang/Long":
+            case "java/lang/Short":
+            case "java/lang/String":
+                return "valueOf".equals(insn.name) && args.length == 1 && isPrimitive(args[0]);
+            case STRING_BUILDER:
+                switch (insn.name) {
+                    case "<init>":
+                        return args.length == 0;
+                    case "append":
+                        return args.length == 1 && (isPrimitive(args[0]) || STRING_TYPE.equals(args[0]));
+                    case "toString":
+                        return true;
+                    default:
+                        return false;
+                }
+            default:
+                return UNBOX_TYPE.getInternalName().equals(insn.owner) && "box".equals(insn.name);
+        }
+    }
+
+    /**
+     * Checks for lambdas and concatenations of strings and primitive values.
+     */
+    private static boolean isPureInvokeDynamic(final InvokeDynamicInsnNode insn) {
+        final Handle bsm = insn.bsm;
+        if (LAMBDA_METAFACTORY.equals(bsm.getOwner())) {
+            return true;
+        }
+        if (STRING_CONCAT_FACTORY.equals(bsm.getOwner())) {
+            for (final Type arg : Type.getArgumentTypes(insn.desc)) {
+                if (!isPrimitive(arg) && !STRING_TYPE.equals(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isPrimitive(final Type type) {
+        return type.getSort() < Type.ARRAY;
+    }
+
+    private static boolean isLoggerCall(final AbstractInsnNode insn) {
+        return insn.getOpcode() == Opcodes.INVOKEINTERFACE
+                && LOGGER_TYPE.getInternalName().equals(((MethodInsnNode) insn).owner);
+    }
+
+    private static boolean isLogBuilderCall(final AbstractInsnNode insn) {
+        return insn.getOpcode() == Opcodes.INVOKEINTERFACE
+                && LOG_BUILDER_TYPE.getInternalName().equals(((MethodInsnNode) insn).owner);
+    }
+}
@@ -16,36 +16,66 @@
  */
 package org.apache.logging.log4j.weaver;
 
+import static org.apache.logging.log4j.weaver.Constants.AT_LEVEL_METHOD;
+import static org.apache.logging.log4j.weaver.Constants.CHAR_SEQUENCE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.CLASS_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.ENTRY_MESSAGE_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.EXIT_MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.EXTENDED_LOGGER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.FLOW_MESSAGE_FACTORY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.HIT_COUNTERS_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOCATION_AWARE_LOGGER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_MANAGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_FACTORY2_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_FACTORY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_SUPPLIER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.OBJECT_ARRAY_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SITE_SAMPLER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SITE_SWITCHES_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.STACK_TRACE_ELEMENT_ARRAY_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.STACK_TRACE_ELEMENT_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.SUPPLIER_ARRAY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SUPPLIER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.THROWABLE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.WITH_LOCATION_METHOD;
+import static org.apache.logging.log4j.weaver.Constants.WITH_MARKER_METHOD;
+import static org.apache.logging.log4j.weaver.Constants.WITH_THROWABLE_METHOD;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.StringUtils;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
 import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.InstructionAdapter;
+import org.objectweb.asm.commons.Method;
 
 public class LocationCacheGenerator {
 
@@ -53,16 +83,370 @@ public class LocationCacheGenerator {
     private static final Type STRING_FORMATTER_MESSAGE_FACTORY_TYPE =
             Type.getObjectType("org/apache/logging/log4j/message/StringFormatterMessageFactory");
     private static final String LOCATION_FIELD = "locations";
+    // Number of locations in each holder class in lazy mode
+    private static final int HOLDER_SIZE = 64;
+    // Maximum size of the bytecode that initializes locations in a single method (the JVM limit is 64 KiB)
+    private static final int METHOD_SIZE_BUDGET = 32 * 1024;
+    private static final String LOCATION_HELPER_PREFIX = "initLocations";
+    // Location table mode
+    private static final String LOCATION_TABLE_SUFFIX = ".locations";
+    private static final String LOCATION_METHOD = "location";
+    private static final String LOCATION_METHOD_DESCRIPTOR =
+            Type.getMethodDescriptor(STACK_TRACE_ELEMENT_TYPE, Type.INT_TYPE);
+    private static final String STRINGS_FIELD = "strings";
+    private static final String ENTRIES_FIELD = "entries";
+    // Number of `int` values in the table for each location
+    private static final int ENTRY_SIZE = 4;
+    private static final String DATA_INPUT_STREAM = "java/io/DataInputStream";
+    private static final String BUFFERED_INPUT_STREAM = "java/io/BufferedInputStream";
+    private static final String INPUT_STREAM = "java/io/InputStream";
+    private static final String INPUT_STREAM_CONSTRUCTOR_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, Type.getObjectType(INPUT_STREAM));
+    private static final String FILE_NOT_FOUND_EXCEPTION = "java/io/FileNotFoundException";
+    private static final String IO_EXCEPTION = "java/io/IOException";
+    private static final String EXCEPTION = "java/lang/Exception";
+    private static final String STATUS_LOGGER = "org/apache/logging/log4j/status/StatusLogger";
+    private static final String MESSAGE_CLASS_PREFIX = "Message";
+    private static final Type SIMPLE_MESSAGE_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/message/SimpleMessage");
+    private static final String CONSTANT_MESSAGES_CLASS_PREFIX = "ConstantMessages";
+    private static final String CONSTANT_MESSAGE_FIELD_PREFIX = "message";
+    // Number of constant messages in each holder class
+    private static final int CONSTANT_MESSAGES_SIZE = 256;
+    private static final String SUPPLIER_CLASS_SUFFIX = "Supplier";
+    private static final String SUPPLIER_FACTORY_METHOD = "create";
+    private static final String LOG_METHOD = "logMessage";
+    private static final String LOGGER_FIELD_PREFIX = "logger";
+    private static final String LOGGER_METHOD_PREFIX = "getLogger";
+    private static final String CACHED_CONSTANTS_CLASS_PREFIX = "Constants";
+    private static final String CACHED_CONSTANT_FIELD_PREFIX = "constant";
+    // Number of cached constants in each holder class
+    private static final int CACHED_CONSTANTS_SIZE = 256;
+    // Arguments of the log methods that precede the message arguments
+    private static final Type[] LOG_METHOD_PREFIX = {LOGGER_TYPE, LEVEL_TYPE, MARKER_TYPE, STACK_TRACE_ELEMENT_TYPE};
+    private static final String LOCATION_AWARE_LOG_MESSAGE_DESCRIPTOR = Type.getMethodDescriptor(
+            Type.VOID_TYPE,
+            LEVEL_TYPE,
+            MARKER_TYPE,
+            STRING_TYPE,
+            STACK_TRACE_ELEMENT_TYPE,
+            MESSAGE_TYPE,
+            THROWABLE_TYPE);
+    private static final String LOCATION_HELPER_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, STACK_TRACE_ELEMENT_ARRAY_TYPE);
+    private static final String RENDERED_LOCATION_HELPER_DESCRIPTOR = Type.getMethodDescriptor(
+            Type.VOID_TYPE, STACK_TRACE_ELEMENT_ARRAY_TYPE, Type.getType("[" + STRING_TYPE.getDescriptor()));
+    // Registry of the pre-rendered locations in the `log4j-weaver-runtime` artifact
+    private static final String PRERENDERED_LOCATIONS = "org/apache/logging/log4j/weaver/runtime/PrerenderedLocations";
+    private static final String HIT_COUNTERS_CLASS_SUFFIX = "HitCounters";
+    private static final String HIT_COUNTERS_FIELD = "counters";
+    private static final String SITE_SWITCHES_CLASS_SUFFIX = "SiteSwitches";
+    private static final String SITE_SWITCHES_FIELD = "enabled";
+    // Keeps the registration of the switches alive
+    private static final String SITE_SWITCHES_OWNER_FIELD = "switches";
+    // Level of a logging statement, whose level is only known at runtime
+    private static final char DYNAMIC_LEVEL = '?';
+    private static final String SAMPLERS_CLASS_SUFFIX = "Samplers";
+    private static final String SAMPLERS_FIELD = "samplers";
+    // Bootstrap methods for constant dynamic locations
+    private static final String CONSTANT_BOOTSTRAPS = "java/lang/invoke/ConstantBootstraps";
+    private static final Handle INVOKE_HANDLE = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            CONSTANT_BOOTSTRAPS,
+            "invoke",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;"
+                    + "Ljava/lang/invoke/MethodHandle;[Ljava/lang/Object;)Ljava/lang/Object;",
+            false);
+    private static final Handle NULL_CONSTANT_HANDLE = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            CONSTANT_BOOTSTRAPS,
+            "nullConstant",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;",
+            false);
+    private static final Handle STACK_TRACE_ELEMENT_CONSTRUCTOR_HANDLE = new Handle(
+            Opcodes.H_NEWINVOKESPECIAL,
+            STACK_TRACE_ELEMENT_TYPE.getInternalName(),
+            "<init>",
+            Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE, STRING_TYPE, STRING_TYPE, Type.INT_TYPE),
+            false);
 
     private final Map<String, LocationCacheContents> locationCacheClasses = new ConcurrentHashMap<>();
 
+    private boolean lazyLocations;
+    private boolean locationTable;
+    private boolean renderLocations;
+    private boolean hitCounters;
+    private boolean siteSwitches;
+    private boolean supplierClasses;
+    private CacheGranularity granularity = CacheGranularity.CLASS;
+    private String modulePackage = "";
+
+    /**
+     * Creates each location only when the corresponding logging statement is executed for the first time.
+     * <p>
+     * Classes with a class file version 55 (Java 11) or later use a {@code CONSTANT_Dynamic} entry for each
+     * location. Older classes use holder classes that contain a small chunk of locations each.
+     * </p>
+     * @param lazyLocations if {@code true} locations are created lazily.
+     */
+    public void setLazyLocations(final boolean lazyLocations) {
+        this.lazyLocations = lazyLocations;
+    }
+
+    public boolean isLazyLocations() {
+        return lazyLocations;
+    }
+
+    /**
+     * Stores the locations of each location cache in a binary resource instead of the bytecode of the cache.
+     * <p>
+     *     Each logging statement only references its location by an {@code int} index. The location cache reads the
+     *     interned class, method and file names and the line numbers from the resource returned by
+     *     {@link #generateLocationTables()} when it is initialized and only creates the {@link StackTraceElement}
+     *     of a logging statement the first time it is executed. This option takes precedence over
+     *     {@link #setLazyLocations(boolean)}.
+     * </p>
+     * @param locationTable if {@code true} locations are stored in a separate resource.
+     */
+    public void setLocationTable(final boolean locationTable) {
+        this.locationTable = locationTable;
+    }
+
+    public boolean isLocationTable() {
+        return locationTable;
+    }
+
+    /**
+     * Stores the string representation of each location in the location cache.
+     * <p>
+     *     The static initializer of the location cache registers the result of {@link StackTraceElement#toString()}
+     *     for each location with the {@code PrerenderedLocations} class of the {@code log4j-weaver-runtime}
+     *     artifact, which must be available at runtime. The {@code %wovenLocation} pattern converter of the same
+     *     artifact appends these strings instead of formatting the location of each log event. Only the locations
+     *     stored in arrays are registered: this option has no effect on {@code CONSTANT_Dynamic} locations and
+     *     location tables.
+     * </p>
+     * @param renderLocations if {@code true} the string representations of the locations are stored.
+     */
+    public void setRenderLocations(final boolean renderLocations) {
+        this.renderLocations = renderLocations;
+    }
+
+    public boolean isRenderLocations() {
+        return renderLocations;
+    }
+
+    /**
+     * Counts the executions of each logging statement.
+     * <p>
+     *     Each location cache with counted logging statements has a nested {@code HitCounters} class, which
+     *     registers the counters of its logging statements with the {@code HitCounters} class of the
+     *     {@code log4j-weaver-runtime} artifact, which must be available at runtime. The counters can be inspected
+     *     through JMX.
+     * </p>
+     * @param hitCounters if {@code true} the executions of the logging statements are counted.
+     */
+    public void setHitCounters(final boolean hitCounters) {
+        this.hitCounters = hitCounters;
+    }
+
+    public boolean isHitCounters() {
+        return hitCounters;
+    }
+
+    /**
+     * Guards each logging statement with a switch, that can be turned off at runtime.
+     * <p>
+     *     Each location cache with guarded logging statements has a nested {@code SiteSwitches} class, whose
+     *     {@code boolean[]} field contains a flag for each logging statement. The array is registered with the
+     *     {@code SiteSwitches} class of the {@code log4j-weaver-runtime} artifact, which must be available at
+     *     runtime and allows to disable single logging statements, identified by their class name and line number,
+     *     through JMX or a watched file. A disabled logging statement does not evaluate its arguments.
+     * </p>
+     * <p>
+     *     Only the logging statements, that can be wrapped in a level guard, are guarded by a switch.
+     * </p>
+     * @param siteSwitches if {@code true} logging statements can be disabled individually.
+     */
+    public void setSiteSwitches(final boolean siteSwitches) {
+        this.siteSwitches = siteSwitches;
+    }
+
+    public boolean isSiteSwitches() {
+        return siteSwitches;
+    }
+
+    /**
+     * Creates the {@code Supplier<Message>} instances of logging statements using generated classes.
+     * <p>
+     * By default each logging statement that needs a message supplier, like {@code printf}, {@code traceEntry} or
+     * {@code traceExit}, creates it with an {@code invokedynamic} instruction, which links a new lambda class the
+     * first time the statement is executed. If this option is enabled, a single {@code Supplier} class is generated
+     * for each type of supplier used by the classes that share a location cache.
+     * </p>
+     * @param supplierClasses if {@code true} message suppliers are created using generated classes.
+     */
+    public void setSupplierClasses(final boolean supplierClasses) {
+        this.supplierClasses = supplierClasses;
+    }
+
+    public boolean isSupplierClasses() {
+        return supplierClasses;
+    }
+
+    /**
+     * Sets which converted classes share the same location cache class.
+     * <p>
+     * Indexes of locations and other cached values are assigned in registration order within each location cache, so
+     * all the classes that share a location cache must be converted together by the same generator.
+     * </p>
+     * @param granularity the granularity of the location cache classes.
+     */
+    public void setCacheGranularity(final CacheGranularity granularity) {
+        this.granularity = Objects.requireNonNull(granularity);
+    }
+
+    public CacheGranularity getCacheGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Sets the package of the location cache class, if the granularity is {@link CacheGranularity#MODULE}.
+     *
+     * @param modulePackage the binary name of a package, e.g. {@code com.example}, or an empty string.
+     */
+    public void setModulePackage(final String modulePackage) {
+        this.modulePackage = Objects.requireNonNull(modulePackage);
+    }
+
+    public String getModulePackage() {
+        return modulePackage;
+    }
+
     public LocationCacheValue addLocation(
             final String internalClassName, final String methodName, final String fileName, final int lineNumber) {
+        return addLocation(internalClassName, methodName, fileName, lineNumber, Opcodes.V1_8);
+    }
+
+    /**
+     * Registers the location of a logging statement.
+     *
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param methodName        the name of the method containing the logging statement,
+     * @param fileName          the source file name or {@code null},
+     * @param lineNumber        the line number of the logging statement,
+     * @param classFileVersion  the class file version of the class containing the logging statement.
+     */
+    public LocationCacheValue addLocation(
+            final String internalClassName,
+            final String methodName,
+            final String fileName,
+            final int lineNumber,
+            final int classFileVersion) {
         final String cacheClassName = getCacheClassName(internalClassName);
         final LocationCacheContents contents =
                 locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        if (locationTable) {
+            final int index = contents.addLocation(internalClassName, methodName, fileName, lineNumber);
+            return new LocationCacheValue(
+                    new Handle(
+                            Opcodes.H_INVOKESTATIC, cacheClassName, LOCATION_METHOD, LOCATION_METHOD_DESCRIPTOR, false),
+                    index);
+        }
+        if (lazyLocations && (classFileVersion & 0xFFFF) >= Opcodes.V11) {
+            return new LocationCacheValue(createLocationConstant(internalClassName, methodName, fileName, lineNumber));
+        }
         final int index = contents.addLocation(internalClassName, methodName, fileName, lineNumber);
-        return new LocationCacheValue(cacheClassName, LOCATION_FIELD, index);
+        return lazyLocations
+                ? new LocationCacheValue(
+                        getHolderClassName(cacheClassName, index / HOLDER_SIZE), LOCATION_FIELD, index % HOLDER_SIZE)
+                : new LocationCacheValue(cacheClassName, LOCATION_FIELD, index);
+    }
+
+    /**
+     * Registers the hit counter of a logging statement.
+     *
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param methodName        the name of the method containing the logging statement,
+     * @param fileName          the source file name or {@code null},
+     * @param lineNumber        the line number of the logging statement,
+     * @return the static field that contains the {@code HitCounters} instance and the index of the counter.
+     */
+    public LocationCacheValue addHitCounter(
+            final String internalClassName, final String methodName, final String fileName, final int lineNumber) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addHitCounter(internalClassName, methodName, fileName, lineNumber);
+        return new LocationCacheValue(getHitCountersClassName(cacheClassName), HIT_COUNTERS_FIELD, index);
+    }
+
+    /**
+     * Registers the switch of a logging statement.
+     *
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param methodName        the name of the method containing the logging statement,
+     * @param fileName          the source file name or {@code null},
+     * @param lineNumber        the line number of the logging statement,
+     * @param level             the name of the standard level of the logging statement or {@code null} if the
+     *                          level is only known at runtime,
+     * @return the static field that contains the {@code boolean[]} array of switches and the index of the switch.
+     */
+    public LocationCacheValue addSiteSwitch(
+            final String internalClassName,
+            final String methodName,
+            final String fileName,
+            final int lineNumber,
+            final String level) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addSiteSwitch(
+                internalClassName, methodName, fileName, lineNumber, level != null ? level.charAt(0) : DYNAMIC_LEVEL);
+        return new LocationCacheValue(getSiteSwitchesClassName(cacheClassName), SITE_SWITCHES_FIELD, index);
+    }
+
+    /**
+     * Registers the sampler of a logging statement.
+     * <p>
+     *     The samplers are instances of the {@code SiteSampler} class of the {@code log4j-weaver-runtime} artifact,
+     *     which must be available at runtime.
+     * </p>
+     *
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param methodName        the name of the method containing the logging statement,
+     * @param fileName          the source file name or {@code null},
+     * @param lineNumber        the line number of the logging statement,
+     * @param rate              the sampling rate: either {@code 1/<n>} or {@code <k>/s},
+     * @return the static field that contains the array of samplers and the index of the sampler.
+     */
+    public LocationCacheValue addSampler(
+            final String internalClassName,
+            final String methodName,
+            final String fileName,
+            final int lineNumber,
+            final String rate) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addSampler(internalClassName, methodName, fileName, lineNumber, rate);
+        return new LocationCacheValue(getSamplersClassName(cacheClassName), SAMPLERS_FIELD, index);
+    }
+
+    private static ConstantDynamic createLocationConstant(
+            final String internalClassName, final String methodName, final String fileName, final int lineNumber) {
+        final Object fileNameConstant = fileName != null
+                ? fileName
+                : new ConstantDynamic("fileName", STRING_TYPE.getDescriptor(), NULL_CONSTANT_HANDLE);
+        return new ConstantDynamic(
+                "location",
+                STACK_TRACE_ELEMENT_TYPE.getDescriptor(),
+                INVOKE_HANDLE,
+                STACK_TRACE_ELEMENT_CONSTRUCTOR_HANDLE,
+                internalClassName.replace('/', '.'),
+                methodName,
+                fileNameConstant,
+                lineNumber);
     }
 
     public Handle createLambda(String internalClassName, SupplierLambdaType type) {
@@ -88,22 +472,575 @@ public class LocationCacheGenerator {
         }
     }
 
+    /**
+     * Registers a {@code Supplier<Message>} class for the given type of supplier.
+     *
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param type              the type of supplier,
+     * @return a handle to a static method, which creates the supplier from its captured arguments.
+     */
+    Handle createSupplier(final String internalClassName, final SupplierLambdaType type) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        if (type != SupplierLambdaType.MESSAGE_SUPPLIER) {
+            // The supplier delegates to the implementation method in the cache class
+            contents.addLambda(type);
+        }
+        contents.addSupplier(type);
+        return new Handle(
+                Opcodes.H_INVOKESTATIC,
+                getSupplierClassName(cacheClassName, type),
+                SUPPLIER_FACTORY_METHOD,
+                type.getInvokedMethodDescriptor(),
+                false);
+    }
+
+    /**
+     * Registers a static method, which logs a message with a precomputed location.
+     * <p>
+     *     The method has the arguments {@code (Logger, Level, Marker, StackTraceElement, <message arguments>,
+     *     Throwable)}. If the logger is a {@code LocationAwareLogger} and an {@code ExtendedLogger}, it calls the
+     *     {@code isEnabled} method with the message arguments, which applies the filters of the configuration, creates
+     *     the message using the message factory of the logger and calls {@code LocationAwareLogger.logMessage}.
+     *     Otherwise it falls back to a {@code LogBuilder}, which does not check the marker: the caller must check
+     *     {@code isEnabled(level, marker)} first.
+     * </p>
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param messageTypes      the types of the message arguments, as in the {@code LogBuilder.log} methods,
+     * @return a handle to the static method.
+     */
+    Handle addLogMethod(final String internalClassName, final Type[] messageTypes) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final String descriptor = getLogMethodDescriptor(messageTypes);
+        contents.addLogMethod(descriptor);
+        return new Handle(Opcodes.H_INVOKESTATIC, cacheClassName, LOG_METHOD, descriptor, false);
+    }
+
+    /**
+     * Registers a constant message pattern, which is compiled into a specialized {@code Message} class.
+     * <p>
+     *     Identical patterns used by classes that share a location cache share the same message class.
+     * </p>
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param template          the message template,
+     * @return a handle to a static method, which creates the message from its parameters.
+     */
+    Handle addMessageTemplate(final String internalClassName, final MessageTemplate template) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addTemplate(template.getPattern());
+        return new Handle(
+                Opcodes.H_INVOKESTATIC,
+                getMessageClassName(cacheClassName, index),
+                MessageTemplate.FACTORY_METHOD,
+                template.getFactoryDescriptor(),
+                false);
+    }
+
+    /**
+     * Registers a constant message without parameters, which is stored in a {@code static final} field.
+     * <p>
+     *     Identical messages used by classes that share a location cache share the same field.
+     * </p>
+     * @param internalClassName the internal name of the class containing the logging statement,
+     * @param message           the constant message,
+     * @return a handle to a static field, which contains a {@code SimpleMessage} for the message.
+     */
+    Handle addConstantMessage(final String internalClassName, final String message) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addConstantMessage(message);
+        return new Handle(
+                Opcodes.H_GETSTATIC,
+                getConstantMessagesClassName(cacheClassName, index / CONSTANT_MESSAGES_SIZE),
+                CONSTANT_MESSAGE_FIELD_PREFIX + index % CONSTANT_MESSAGES_SIZE,
+                MESSAGE_TYPE.getDescriptor(),
+                false);
+    }
+
+    /**
+     * Registers a call to a {@code LogManager} factory method with a constant argument, whose result is cached in a
+     * static field.
+     * <p>
+     *     Identical calls made by classes that share a location cache share the same field.
+     * </p>
+     * @param internalClassName the internal name of the class containing the call,
+     * @param factoryMethod     the name of the {@code LogManager} method, e.g. {@code getLogger},
+     * @param descriptor        the descriptor of the {@code LogManager} method, with a single argument,
+     * @param argument          the constant argument: a {@link Type} for classes or a {@link String},
+     * @return a handle to a static method, which returns the cached logger.
+     */
+    Handle addCachedLogger(
+            final String internalClassName,
+            final String factoryMethod,
+            final String descriptor,
+            final Object argument) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final int index = contents.addCachedLogger(Arrays.asList(factoryMethod, descriptor, argument));
+        return new Handle(
+                Opcodes.H_INVOKESTATIC,
+                cacheClassName,
+                LOGGER_METHOD_PREFIX + index,
+                Type.getMethodDescriptor(LOGGER_TYPE),
+                false);
+    }
+
+    /**
+     * Registers a call to a static factory method with constant arguments, like {@code MarkerManager.getMarker}, whose
+     * result is stored in a {@code static final} field.
+     * <p>
+     *     Identical calls made by classes that share a location cache share the same field.
+     * </p>
+     * @param internalClassName the internal name of the class containing the call,
+     * @param method            a handle to the static factory method,
+     * @param arguments         the constant arguments of the call: {@link String}s or {@link Integer}s,
+     * @return a handle to a static field, which contains the result of the call.
+     */
+    Handle addCachedConstant(final String internalClassName, final Handle method, final Object... arguments) {
+        final String cacheClassName = getCacheClassName(internalClassName);
+        final LocationCacheContents contents =
+                locationCacheClasses.computeIfAbsent(cacheClassName, k -> new LocationCacheContents());
+        final List<Object> call = new ArrayList<>(arguments.length + 1);
+        call.add(method);
+        call.addAll(Arrays.asList(arguments));
+        final int index = contents.addCachedConstant(call);
+        return new Handle(
+                Opcodes.H_GETSTATIC,
+                getCachedConstantsClassName(cacheClassName, index / CACHED_CONSTANTS_SIZE),
+                CACHED_CONSTANT_FIELD_PREFIX + index % CACHED_CONSTANTS_SIZE,
+                Type.getReturnType(method.getDesc()).getDescriptor(),
+                false);
+    }
+
     public Map<String, byte[]> generateClasses() {
-        return locationCacheClasses.entrySet().parallelStream()
-                .collect(Collectors.toMap(Entry::getKey, e -> generateCacheClass(e.getKey(), e.getValue())));
+        final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+        // A location cache shared by multiple packages must be public
+        final int visibility = granularity == CacheGranularity.MODULE ? Opcodes.ACC_PUBLIC : 0;
+        locationCacheClasses.entrySet().parallelStream().forEach(e -> {
+            final String cacheClassName = e.getKey();
+            final LocationCacheContents contents = e.getValue();
+            classes.put(
+                    cacheClassName,
+                    generateCacheClass(
+                            cacheClassName, contents, !lazyLocations, locationTable, renderLocations, visibility));
+            if (lazyLocations && !locationTable) {
+                final List<StackTraceElement> locations = contents.getLocations();
+                for (int i = 0; i * HOLDER_SIZE < locations.size(); i++) {
+                    final String holderClassName = getHolderClassName(cacheClassName, i);
+                    final List<StackTraceElement> chunk =
+                            locations.subList(i * HOLDER_SIZE, Math.min(locations.size(), (i + 1) * HOLDER_SIZE));
+                    classes.put(
+                            holderClassName, generateHolderClass(holderClassName, chunk, renderLocations, visibility));
+                }
+            }
+            final List<String> templates = contents.getTemplates();
+            for (int i = 0; i < templates.size(); i++) {
+                final String messageClassName = getMessageClassName(cacheClassName, i);
+                classes.put(
+                        messageClassName,
+                        MessageTemplate.parse(templates.get(i)).generateClass(messageClassName, visibility));
+            }
+            for (final SupplierLambdaType type : contents.getSuppliers()) {
+                final String supplierClassName = getSupplierClassName(cacheClassName, type);
+                classes.put(
+                        supplierClassName, generateSupplierClass(cacheClassName, supplierClassName, type, visibility));
+            }
+            final List<String> constantMessages = contents.getConstantMessages();
+            for (int i = 0; i * CONSTANT_MESSAGES_SIZE < constantMessages.size(); i++) {
+                final String holderClassName = getConstantMessagesClassName(cacheClassName, i);
+                final List<String> chunk = constantMessages.subList(
+                        i * CONSTANT_MESSAGES_SIZE,
+                        Math.min(constantMessages.size(), (i + 1) * CONSTANT_MESSAGES_SIZE));
+                classes.put(holderClassName, generateConstantMessagesClass(holderClassName, chunk, visibility));
+            }
+            final List<StackTraceElement> hitCounterSites = contents.getHitCounterSites();
+            if (!hitCounterSites.isEmpty()) {
+                final String holderClassName = getHitCountersClassName(cacheClassName);
+                classes.put(holderClassName, generateHitCountersClass(holderClassName, hitCounterSites, visibility));
+            }
+            final List<StackTraceElement> switchedSites = contents.getSwitchedSites();
+            if (!switchedSites.isEmpty()) {
+                final String holderClassName = getSiteSwitchesClassName(cacheClassName);
+                classes.put(
+                        holderClassName,
+                        generateSiteSwitchesClass(
+                                holderClassName, switchedSites, contents.getSiteLevels(), visibility));
+            }
+            final String samplingRates = contents.getSamplingRates();
+            if (!samplingRates.isEmpty()) {
+                final String holderClassName = getSamplersClassName(cacheClassName);
+                classes.put(holderClassName, generateSamplersClass(holderClassName, samplingRates, visibility));
+            }
+            final List<List<Object>> cachedConstants = contents.getCachedConstants();
+            for (int i = 0; i * CACHED_CONSTANTS_SIZE < cachedConstants.size(); i++) {
+                final String holderClassName = getCachedConstantsClassName(cacheClassName, i);
+                final List<List<Object>> chunk = cachedConstants.subList(
+                        i * CACHED_CONSTANTS_SIZE, Math.min(cachedConstants.size(), (i + 1) * CACHED_CONSTANTS_SIZE));
+                classes.put(holderClassName, generateCachedConstantsClass(holderClassName, chunk, visibility));
+            }
+        });
+        return classes;
     }
 
-    private static byte[] generateCacheClass(final String innerClassName, final LocationCacheContents contents) {
+    /**
+     * Generates the location tables read by the location caches, if {@link #isLocationTable()} is {@code true}.
+     *
+     * @return a map between the names of the resources and their content.
+     */
+    public Map<String, byte[]> generateLocationTables() {
+        final Map<String, byte[]> tables = new ConcurrentHashMap<>();
+        if (locationTable) {
+            locationCacheClasses.forEach((cacheClassName, contents) -> {
+                final List<StackTraceElement> locations = contents.getLocations();
+                if (!locations.isEmpty()) {
+                    tables.put(cacheClassName + LOCATION_TABLE_SUFFIX, writeLocationTable(locations));
+                }
+            });
+        }
+        return tables;
+    }
+
+    /**
+     * Serializes a location table.
+     * <p>
+     *     The table contains the number of strings, the strings in modified UTF-8 encoding, the number of
+     *     {@code int} values and for each location the indexes of its class name, method name and file name in the
+     *     string table, followed by its line number. The strings are numbered from 1, so that 0 represents a
+     *     missing file name.
+     * </p>
+     */
+    private static byte[] writeLocationTable(final List<StackTraceElement> locations) {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final int[] entries = new int[ENTRY_SIZE * locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            final StackTraceElement location = locations.get(i);
+            entries[ENTRY_SIZE * i] = strings.computeIfAbsent(location.getClassName(), k -> strings.size() + 1);
+            entries[ENTRY_SIZE * i + 1] = strings.computeIfAbsent(location.getMethodName(), k -> strings.size() + 1);
+            entries[ENTRY_SIZE * i + 2] = location.getFileName() != null
+                    ? strings.computeIfAbsent(location.getFileName(), k -> strings.size() + 1)
+                    : 0;
+            entries[ENTRY_SIZE * i + 3] = location.getLineNumber();
+        }
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeInt(strings.size());
+            for (final String string : strings.keySet()) {
+                out.writeUTF(string);
+            }
+            out.writeInt(entries.length);
+            for (final int entry : entries) {
+                out.writeInt(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] generateHolderClass(
+            final String holderClassName,
+            final List<StackTraceElement> locations,
+            final boolean renderLocations,
+            final int visibility) {
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        writeLocations(holderClassName, cv, locations, renderLocations, visibility);
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Generates a class, which registers the hit counters of a group of logging statements.
+     */
+    private static byte[] generateHitCountersClass(
+            final String holderClassName, final List<StackTraceElement> sites, final int visibility) {
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        cv.visitField(
+                        visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                        HIT_COUNTERS_FIELD,
+                        HIT_COUNTERS_TYPE.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        mv.visitMaxs(9, 0);
+        writeLocationArray(holderClassName, cv, mv, sites, false);
+        mv.invokestatic(
+                HIT_COUNTERS_TYPE.getInternalName(),
+                "register",
+                Type.getMethodDescriptor(HIT_COUNTERS_TYPE, STACK_TRACE_ELEMENT_ARRAY_TYPE),
+                false);
+        mv.putstatic(holderClassName, HIT_COUNTERS_FIELD, HIT_COUNTERS_TYPE.getDescriptor());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Generates a class, which registers the switches of a group of logging statements.
+     * <p>
+     *     The levels of the logging statements are encoded as a string with the first letter of each level, so
+     *     that the size of the static initializer does not depend on the number of statements.
+     * </p>
+     */
+    private static byte[] generateSiteSwitchesClass(
+            final String holderClassName,
+            final List<StackTraceElement> sites,
+            final String levels,
+            final int visibility) {
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        cv.visitField(visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, SITE_SWITCHES_FIELD, "[Z", null, null)
+                .visitEnd();
+        // The registry only holds a weak reference to the switches
+        cv.visitField(
+                        Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                        SITE_SWITCHES_OWNER_FIELD,
+                        SITE_SWITCHES_TYPE.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        mv.visitMaxs(10, 0);
+        mv.iconst(sites.size());
+        mv.newarray(Type.BOOLEAN_TYPE);
+        mv.dup();
+        mv.putstatic(holderClassName, SITE_SWITCHES_FIELD, "[Z");
+        writeLocationArray(holderClassName, cv, mv, sites, false);
+        mv.aconst(levels);
+        mv.invokestatic(
+                SITE_SWITCHES_TYPE.getInternalName(),
+                "register",
+                Type.getMethodDescriptor(
+                        SITE_SWITCHES_TYPE, Type.getType("[Z"), STACK_TRACE_ELEMENT_ARRAY_TYPE, STRING_TYPE),
+                false);
+        mv.putstatic(holderClassName, SITE_SWITCHES_OWNER_FIELD, SITE_SWITCHES_TYPE.getDescriptor());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Generates a class, which creates the samplers of a group of logging statements.
+     * <p>
+     *     The sampling rates are passed as a single comma-separated string, parsed by {@code SiteSampler}.
+     * </p>
+     */
+    private static byte[] generateSamplersClass(
+            final String holderClassName, final String samplingRates, final int visibility) {
+        final Type samplerArrayType = Type.getType("[" + SITE_SAMPLER_TYPE.getDescriptor());
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        cv.visitField(
+                        visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                        SAMPLERS_FIELD,
+                        samplerArrayType.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        mv.visitMaxs(1, 0);
+        mv.aconst(samplingRates);
+        mv.invokestatic(
+                SITE_SAMPLER_TYPE.getInternalName(),
+                "createAll",
+                Type.getMethodDescriptor(samplerArrayType, STRING_TYPE),
+                false);
+        mv.putstatic(holderClassName, SAMPLERS_FIELD, samplerArrayType.getDescriptor());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    private static byte[] generateConstantMessagesClass(
+            final String holderClassName, final List<String> constantMessages, final int visibility) {
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        mv.visitMaxs(3, 0);
+        for (int i = 0; i < constantMessages.size(); i++) {
+            final String fieldName = CONSTANT_MESSAGE_FIELD_PREFIX + i;
+            cv.visitField(
+                            visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                            fieldName,
+                            MESSAGE_TYPE.getDescriptor(),
+                            null,
+                            null)
+                    .visitEnd();
+            mv.anew(SIMPLE_MESSAGE_TYPE);
+            mv.dup();
+            mv.aconst(constantMessages.get(i));
+            mv.invokespecial(
+                    SIMPLE_MESSAGE_TYPE.getInternalName(),
+                    "<init>",
+                    Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE),
+                    false);
+            mv.putstatic(holderClassName, fieldName, MESSAGE_TYPE.getDescriptor());
+        }
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Generates a class, whose {@code static final} fields contain the results of factory method calls.
+     * <p>
+     *     All the fields are initialized when the first one is accessed.
+     * </p>
+     */
+    private static byte[] generateCachedConstantsClass(
+            final String holderClassName, final List<List<Object>> cachedConstants, final int visibility) {
         final ClassWriter cv = new ClassWriter(0);
-        cv.visit(Opcodes.V1_8, 0, innerClassName, null, OBJECT_TYPE.getInternalName(), null);
+        cv.visit(Opcodes.V1_8, visibility, holderClassName, null, OBJECT_TYPE.getInternalName(), null);
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        int maxStack = 1;
+        for (int i = 0; i < cachedConstants.size(); i++) {
+            final List<Object> call = cachedConstants.get(i);
+            final Handle method = (Handle) call.get(0);
+            final String fieldName = CACHED_CONSTANT_FIELD_PREFIX + i;
+            final String fieldDescriptor = Type.getReturnType(method.getDesc()).getDescriptor();
+            cv.visitField(visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, fieldName, fieldDescriptor, null, null)
+                    .visitEnd();
+            for (final Object argument : call.subList(1, call.size())) {
+                if (argument instanceof Integer) {
+                    mv.iconst((Integer) argument);
+                } else {
+                    mv.aconst(argument);
+                }
+            }
+            maxStack = Math.max(maxStack, call.size() - 1);
+            mv.invokestatic(method.getOwner(), method.getName(), method.getDesc(), method.isInterface());
+            mv.putstatic(holderClassName, fieldName, fieldDescriptor);
+        }
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(maxStack, 0);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Generates a {@code Supplier<Message>} class, which stores the captured arguments in its fields.
+     */
+    private static byte[] generateSupplierClass(
+            final String cacheClassName,
+            final String supplierClassName,
+            final SupplierLambdaType type,
+            final int visibility) {
+        final Type[] args = type.getArgumentTypes();
+        final String constructorDescriptor = Type.getMethodDescriptor(Type.VOID_TYPE, args);
+        final ClassWriter cv = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cv.visit(
+                Opcodes.V1_8,
+                visibility | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                supplierClassName,
+                null,
+                OBJECT_TYPE.getInternalName(),
+                new String[] {SUPPLIER_TYPE.getInternalName()});
+        for (int i = 0; i < args.length; i++) {
+            cv.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "arg" + i, args[i].getDescriptor(), null, null)
+                    .visitEnd();
+        }
+        // Constructor
+        InstructionAdapter mv = new InstructionAdapter(
+                cv.visitMethod(Opcodes.ACC_PRIVATE, "<init>", constructorDescriptor, null, null));
+        mv.visitCode();
+        mv.load(0, OBJECT_TYPE);
+        mv.invokespecial(OBJECT_TYPE.getInternalName(), "<init>", "()V", false);
+        for (int i = 0, var = 1; i < args.length; var += args[i].getSize(), i++) {
+            mv.load(0, OBJECT_TYPE);
+            mv.load(var, args[i]);
+            mv.putfield(supplierClassName, "arg" + i, args[i].getDescriptor());
+        }
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        // Factory method
+        mv = new InstructionAdapter(cv.visitMethod(
+                visibility | Opcodes.ACC_STATIC,
+                SUPPLIER_FACTORY_METHOD,
+                type.getInvokedMethodDescriptor(),
+                null,
+                null));
+        mv.visitCode();
+        mv.anew(Type.getObjectType(supplierClassName));
+        mv.dup();
+        for (int i = 0, var = 0; i < args.length; var += args[i].getSize(), i++) {
+            mv.load(var, args[i]);
+        }
+        mv.invokespecial(supplierClassName, "<init>", constructorDescriptor, false);
+        mv.areturn(SUPPLIER_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        // Supplier#get
+        mv = new InstructionAdapter(
+                cv.visitMethod(Opcodes.ACC_PUBLIC, "get", Type.getMethodDescriptor(OBJECT_TYPE), null, null));
+        mv.visitCode();
+        for (int i = 0; i < args.length; i++) {
+            mv.load(0, OBJECT_TYPE);
+            mv.getfield(supplierClassName, "arg" + i, args[i].getDescriptor());
+        }
+        if (type == SupplierLambdaType.MESSAGE_SUPPLIER) {
+            mv.invokeinterface(MESSAGE_SUPPLIER_TYPE.getInternalName(), "get", Type.getMethodDescriptor(MESSAGE_TYPE));
+        } else {
+            mv.invokestatic(
+                    cacheClassName,
+                    type.name().toLowerCase(Locale.US),
+                    type.getImplementationMethodDescriptor(),
+                    false);
+        }
+        mv.areturn(OBJECT_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    private static byte[] generateCacheClass(
+            final String innerClassName,
+            final LocationCacheContents contents,
+            final boolean includeLocations,
+            final boolean locationTable,
+            final boolean renderLocations,
+            final int visibility) {
+        final ClassWriter cv = new ClassWriter(0);
+        cv.visit(Opcodes.V1_8, visibility, innerClassName, null, OBJECT_TYPE.getInternalName(), null);
         // Write locations field
-        final List<StackTraceElement> locations = contents.getLocations();
-        writeLocations(innerClassName, cv, locations);
+        if (locationTable) {
+            if (!contents.getLocations().isEmpty()) {
+                writeLocationTableReader(
+                        innerClassName, cv, visibility, contents.getLocations().size());
+            }
+        } else if (includeLocations) {
+            writeLocations(innerClassName, cv, contents.getLocations(), renderLocations, visibility);
+        }
         // We add lambdas to this class
         final Set<SupplierLambdaType> lambdas = contents.getLambdas();
         for (final SupplierLambdaType type : lambdas) {
             final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
-                    Opcodes.ACC_STATIC,
+                    visibility | Opcodes.ACC_STATIC,
                     type.name().toLowerCase(Locale.US),
                     type.getImplementationMethodDescriptor(),
                     null,
@@ -128,22 +1065,379 @@ public class LocationCacheGenerator {
                     throw new IllegalArgumentException();
             }
         }
+        for (final String descriptor : contents.getLogMethods()) {
+            writeLogMethod(
+                    innerClassName,
+                    new InstructionAdapter(
+                            cv.visitMethod(visibility | Opcodes.ACC_STATIC, LOG_METHOD, descriptor, null, null)),
+                    descriptor);
+        }
+        final List<List<Object>> cachedLoggers = contents.getCachedLoggers();
+        for (int i = 0; i < cachedLoggers.size(); i++) {
+            writeCachedLogger(innerClassName, cv, i, cachedLoggers.get(i), visibility);
+        }
         cv.visitEnd();
         return cv.toByteArray();
     }
 
+    /**
+     * Writes the locations field and the static initializer that fills it.
+     * <p>
+     *     If {@code renderLocations} is {@code true}, the string representations of the locations are collected in
+     *     a parallel array stored in local variable 0 and registered with {@code PrerenderedLocations}.
+     * </p>
+     */
     private static void writeLocations(
-            final String innerClassName, final ClassVisitor cv, final List<StackTraceElement> locations) {
-        cv.visitField(Opcodes.ACC_STATIC, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getInternalName(), null, null)
+            final String innerClassName,
+            final ClassVisitor cv,
+            final List<StackTraceElement> locations,
+            final boolean renderLocations,
+            final int visibility) {
+        cv.visitField(
+                        visibility | Opcodes.ACC_STATIC,
+                        LOCATION_FIELD,
+                        STACK_TRACE_ELEMENT_ARRAY_TYPE.getInternalName(),
+                        null,
+                        null)
                 .visitEnd();
         final InstructionAdapter mv =
                 new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
         mv.visitCode();
-        mv.visitMaxs(9, 0);
+        mv.visitMaxs(9, renderLocations ? 1 : 0);
+        writeLocationArray(innerClassName, cv, mv, locations, renderLocations);
+        mv.putstatic(innerClassName, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getInternalName());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+    }
+
+    /**
+     * Pushes an array with the given locations on the stack of a static initializer.
+     * <p>
+     *     The initialization is split across helper methods if necessary. If {@code renderLocations} is
+     *     {@code true}, local variable 0 is used.
+     * </p>
+     */
+    private static void writeLocationArray(
+            final String innerClassName,
+            final ClassVisitor cv,
+            final InstructionAdapter mv,
+            final List<StackTraceElement> locations,
+            final boolean renderLocations) {
+        if (renderLocations) {
+            mv.iconst(locations.size());
+            mv.newarray(STRING_TYPE);
+            mv.store(0, OBJECT_TYPE);
+        }
         mv.iconst(locations.size());
         mv.newarray(STACK_TRACE_ELEMENT_TYPE);
-        for (int i = 0; i < locations.size(); i++) {
+        if (estimateLocationsSize(locations, 0, locations.size(), renderLocations) <= METHOD_SIZE_BUDGET) {
+            writeLocationElements(mv, locations, 0, locations.size(), renderLocations ? 0 : -1);
+        } else {
+            // Split the initialization across helper methods to stay below the 64 KiB method size limit
+            final String helperDescriptor =
+                    renderLocations ? RENDERED_LOCATION_HELPER_DESCRIPTOR : LOCATION_HELPER_DESCRIPTOR;
+            int helperIndex = 0;
+            int start = 0;
+            while (start < locations.size()) {
+                int end = start;
+                int size = 0;
+                do {
+                    size += estimateLocationSize(locations.get(end), end, renderLocations);
+                    end++;
+                } while (end < locations.size()
+                        && size + estimateLocationSize(locations.get(end), end, renderLocations) <= METHOD_SIZE_BUDGET);
+                final String helperName = LOCATION_HELPER_PREFIX + helperIndex++;
+                mv.dup();
+                if (renderLocations) {
+                    mv.load(0, OBJECT_TYPE);
+                }
+                mv.invokestatic(innerClassName, helperName, helperDescriptor, false);
+                final InstructionAdapter helper = new InstructionAdapter(cv.visitMethod(
+                        Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, helperName, helperDescriptor, null, null));
+                helper.visitCode();
+                helper.visitMaxs(9, renderLocations ? 2 : 1);
+                helper.load(0, STACK_TRACE_ELEMENT_ARRAY_TYPE);
+                writeLocationElements(helper, locations, start, end, renderLocations ? 1 : -1);
+                helper.pop();
+                helper.areturn(Type.VOID_TYPE);
+                helper.visitEnd();
+                start = end;
+            }
+        }
+        if (renderLocations) {
+            mv.dup();
+            mv.load(0, OBJECT_TYPE);
+            mv.invokestatic(PRERENDERED_LOCATIONS, "register", RENDERED_LOCATION_HELPER_DESCRIPTOR, false);
+        }
+    }
+
+    /**
+     * Writes the fields and methods that read the location table of a location cache.
+     * <p>
+     *     The static initializer loads the string table and the {@code int} values of the locations. The
+     *     {@code location(int)} method creates each {@link StackTraceElement} on first use. Since
+     *     {@code StackTraceElement} is immutable, concurrent initializations are harmless.
+     * </p>
+     * <p>
+     *     If the location table can not be read, the failure is reported to the status logger and
+     *     {@code location(int)} returns {@code null}, so that the logging statements still work.
+     * </p>
+     */
+    private static void writeLocationTableReader(
+            final String innerClassName, final ClassVisitor cv, final int visibility, final int locationCount) {
+        final int fieldAccess = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC;
+        cv.visitField(fieldAccess | Opcodes.ACC_FINAL, STRINGS_FIELD, "[" + STRING_TYPE.getDescriptor(), null, null)
+                .visitEnd();
+        cv.visitField(fieldAccess | Opcodes.ACC_FINAL, ENTRIES_FIELD, "[I", null, null)
+                .visitEnd();
+        cv.visitField(
+                        fieldAccess | Opcodes.ACC_FINAL,
+                        LOCATION_FIELD,
+                        STACK_TRACE_ELEMENT_ARRAY_TYPE.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        final String resourceName = StringUtils.substringAfterLast("/" + innerClassName, '/') + LOCATION_TABLE_SUFFIX;
+        // Static initializer
+        InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        final Label tryStart = new Label();
+        final Label tryEnd = new Label();
+        final Label failure = new Label();
+        final Label closeStart = new Label();
+        final Label closeEnd = new Label();
+        final Label closeFailure = new Label();
+        final Label report = new Label();
+        final Label initialized = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, failure, EXCEPTION);
+        mv.visitTryCatchBlock(closeStart, closeEnd, closeFailure, IO_EXCEPTION);
+        mv.visitCode();
+        mv.visitMaxs(6, 5);
+        // local 0: the input stream, 1: the string table, 2: the loop counter, 3: the entries, 4: the failure
+        final Object[] locals = {INPUT_STREAM, "[" + STRING_TYPE.getDescriptor(), Opcodes.TOP, "[I"};
+        mv.aconst(null);
+        mv.store(0, OBJECT_TYPE);
+        mv.aconst(null);
+        mv.store(1, OBJECT_TYPE);
+        mv.aconst(null);
+        mv.store(3, OBJECT_TYPE);
+        mv.mark(tryStart);
+        mv.aconst(Type.getObjectType(innerClassName));
+        mv.aconst(resourceName);
+        mv.invokevirtual(
+                CLASS_TYPE.getInternalName(),
+                "getResourceAsStream",
+                Type.getMethodDescriptor(Type.getObjectType(INPUT_STREAM), STRING_TYPE),
+                false);
+        mv.store(0, OBJECT_TYPE);
+        final Label found = new Label();
+        mv.load(0, OBJECT_TYPE);
+        mv.ifnonnull(found);
+        mv.anew(Type.getObjectType(FILE_NOT_FOUND_EXCEPTION));
+        mv.dup();
+        mv.aconst(resourceName);
+        mv.invokespecial(
+                FILE_NOT_FOUND_EXCEPTION, "<init>", Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE), false);
+        mv.athrow();
+        mv.mark(found);
+        mv.visitFrame(Opcodes.F_FULL, locals.length, locals, 0, null);
+        mv.anew(Type.getObjectType(DATA_INPUT_STREAM));
+        mv.dup();
+        mv.anew(Type.getObjectType(BUFFERED_INPUT_STREAM));
+        mv.dup();
+        mv.load(0, OBJECT_TYPE);
+        mv.invokespecial(BUFFERED_INPUT_STREAM, "<init>", INPUT_STREAM_CONSTRUCTOR_DESCRIPTOR, false);
+        mv.invokespecial(DATA_INPUT_STREAM, "<init>", INPUT_STREAM_CONSTRUCTOR_DESCRIPTOR, false);
+        mv.store(0, OBJECT_TYPE);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(DATA_INPUT_STREAM, "readInt", "()I", false);
+        mv.iconst(1);
+        mv.add(Type.INT_TYPE);
+        mv.newarray(STRING_TYPE);
+        mv.store(1, OBJECT_TYPE);
+        mv.iconst(1);
+        mv.store(2, Type.INT_TYPE);
+        final Label readStrings = new Label();
+        final Label stringsRead = new Label();
+        mv.mark(readStrings);
+        mv.visitFrame(
+                Opcodes.F_FULL,
+                4,
+                new Object[] {DATA_INPUT_STREAM, "[" + STRING_TYPE.getDescriptor(), Opcodes.INTEGER, "[I"},
+                0,
+                null);
+        mv.load(2, Type.INT_TYPE);
+        mv.load(1, OBJECT_TYPE);
+        mv.arraylength();
+        mv.ificmpge(stringsRead);
+        mv.load(1, OBJECT_TYPE);
+        mv.load(2, Type.INT_TYPE);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(DATA_INPUT_STREAM, "readUTF", Type.getMethodDescriptor(STRING_TYPE), false);
+        mv.astore(STRING_TYPE);
+        mv.iinc(2, 1);
+        mv.goTo(readStrings);
+        mv.mark(stringsRead);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(DATA_INPUT_STREAM, "readInt", "()I", false);
+        mv.newarray(Type.INT_TYPE);
+        mv.store(3, OBJECT_TYPE);
+        mv.iconst(0);
+        mv.store(2, Type.INT_TYPE);
+        final Label readEntries = new Label();
+        final Label entriesRead = new Label();
+        mv.mark(readEntries);
+        mv.visitFrame(
+                Opcodes.F_FULL,
+                4,
+                new Object[] {DATA_INPUT_STREAM, "[" + STRING_TYPE.getDescriptor(), Opcodes.INTEGER, "[I"},
+                0,
+                null);
+        mv.load(2, Type.INT_TYPE);
+        mv.load(3, OBJECT_TYPE);
+        mv.arraylength();
+        mv.ificmpge(entriesRead);
+        mv.load(3, OBJECT_TYPE);
+        mv.load(2, Type.INT_TYPE);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(DATA_INPUT_STREAM, "readInt", "()I", false);
+        mv.astore(Type.INT_TYPE);
+        mv.iinc(2, 1);
+        mv.goTo(readEntries);
+        mv.mark(entriesRead);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(DATA_INPUT_STREAM, "close", "()V", false);
+        mv.mark(tryEnd);
+        mv.goTo(initialized);
+        // Failure: close the stream, report the error and fall back to `null` locations
+        mv.mark(failure);
+        mv.visitFrame(Opcodes.F_FULL, locals.length, locals, 1, new Object[] {EXCEPTION});
+        mv.store(4, OBJECT_TYPE);
+        final Object[] failureLocals = Arrays.copyOf(locals, locals.length + 1);
+        failureLocals[locals.length] = EXCEPTION;
+        mv.load(0, OBJECT_TYPE);
+        mv.ifnull(report);
+        mv.mark(closeStart);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(INPUT_STREAM, "close", "()V", false);
+        mv.mark(closeEnd);
+        mv.goTo(report);
+        mv.mark(closeFailure);
+        mv.visitFrame(Opcodes.F_FULL, failureLocals.length, failureLocals, 1, new Object[] {IO_EXCEPTION});
+        mv.load(4, OBJECT_TYPE);
+        mv.swap();
+        mv.invokevirtual(
+                THROWABLE_TYPE.getInternalName(),
+                "addSuppressed",
+                Type.getMethodDescriptor(Type.VOID_TYPE, THROWABLE_TYPE),
+                false);
+        mv.mark(report);
+        mv.visitFrame(Opcodes.F_FULL, failureLocals.length, failureLocals, 0, null);
+        mv.invokestatic(STATUS_LOGGER, "getLogger", "()L" + STATUS_LOGGER + ";", false);
+        mv.aconst("Unable to read location table {}, the locations of the logging statements will be missing.");
+        mv.aconst(resourceName);
+        mv.load(4, OBJECT_TYPE);
+        mv.invokevirtual(
+                STATUS_LOGGER,
+                "error",
+                Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE, OBJECT_TYPE, OBJECT_TYPE),
+                false);
+        mv.aconst(null);
+        mv.store(1, OBJECT_TYPE);
+        mv.aconst(null);
+        mv.store(3, OBJECT_TYPE);
+        mv.mark(initialized);
+        mv.visitFrame(Opcodes.F_FULL, locals.length, locals, 0, null);
+        mv.load(1, OBJECT_TYPE);
+        mv.putstatic(innerClassName, STRINGS_FIELD, "[" + STRING_TYPE.getDescriptor());
+        mv.load(3, OBJECT_TYPE);
+        mv.putstatic(innerClassName, ENTRIES_FIELD, "[I");
+        mv.iconst(locationCount);
+        mv.newarray(STACK_TRACE_ELEMENT_TYPE);
+        mv.putstatic(innerClassName, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getDescriptor());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+        // Location accessor
+        mv = new InstructionAdapter(cv.visitMethod(
+                visibility | Opcodes.ACC_STATIC, LOCATION_METHOD, LOCATION_METHOD_DESCRIPTOR, null, null));
+        final Label end = new Label();
+        mv.visitCode();
+        mv.visitMaxs(8, 3);
+        // local 0: the index, 1: the location, 2: the offset of the location in the entries
+        mv.getstatic(innerClassName, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getDescriptor());
+        mv.load(0, Type.INT_TYPE);
+        mv.aload(STACK_TRACE_ELEMENT_TYPE);
+        mv.store(1, STACK_TRACE_ELEMENT_TYPE);
+        mv.load(1, STACK_TRACE_ELEMENT_TYPE);
+        mv.ifnonnull(end);
+        // The location table could not be read
+        mv.getstatic(innerClassName, STRINGS_FIELD, "[" + STRING_TYPE.getDescriptor());
+        mv.ifnull(end);
+        mv.load(0, Type.INT_TYPE);
+        mv.iconst(ENTRY_SIZE);
+        mv.mul(Type.INT_TYPE);
+        mv.store(2, Type.INT_TYPE);
+        mv.anew(STACK_TRACE_ELEMENT_TYPE);
+        mv.dup();
+        for (int i = 0; i < 3; i++) {
+            mv.getstatic(innerClassName, STRINGS_FIELD, "[" + STRING_TYPE.getDescriptor());
+            loadEntry(mv, innerClassName, i);
+            mv.aload(STRING_TYPE);
+        }
+        loadEntry(mv, innerClassName, 3);
+        mv.invokespecial(
+                STACK_TRACE_ELEMENT_TYPE.getInternalName(),
+                "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE, STRING_TYPE, STRING_TYPE, Type.INT_TYPE),
+                false);
+        mv.store(1, STACK_TRACE_ELEMENT_TYPE);
+        mv.getstatic(innerClassName, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getDescriptor());
+        mv.load(0, Type.INT_TYPE);
+        mv.load(1, STACK_TRACE_ELEMENT_TYPE);
+        mv.astore(STACK_TRACE_ELEMENT_TYPE);
+        mv.mark(end);
+        mv.visitFrame(
+                Opcodes.F_FULL, 2, new Object[] {Opcodes.INTEGER, STACK_TRACE_ELEMENT_TYPE.getInternalName()}, 0, null);
+        mv.load(1, STACK_TRACE_ELEMENT_TYPE);
+        mv.areturn(STACK_TRACE_ELEMENT_TYPE);
+        mv.visitEnd();
+    }
+
+    /**
+     * Pushes the value at position {@code offset + delta} of the entries of the location table.
+     */
+    private static void loadEntry(final InstructionAdapter mv, final String innerClassName, final int delta) {
+        mv.getstatic(innerClassName, ENTRIES_FIELD, "[I");
+        mv.load(2, Type.INT_TYPE);
+        if (delta > 0) {
+            mv.iconst(delta);
+            mv.add(Type.INT_TYPE);
+        }
+        mv.aload(Type.INT_TYPE);
+    }
+
+    /**
+     * Stores the locations with indexes between {@code start} (inclusive) and {@code end} (exclusive) into the
+     * array on top of the stack.
+     *
+     * @param renderedVar the local variable that contains the array of string representations or {@code -1}.
+     */
+    private static void writeLocationElements(
+            final InstructionAdapter mv,
+            final List<StackTraceElement> locations,
+            final int start,
+            final int end,
+            final int renderedVar) {
+        for (int i = start; i < end; i++) {
             final StackTraceElement location = locations.get(i);
+            if (renderedVar >= 0) {
+                mv.load(renderedVar, OBJECT_TYPE);
+                mv.iconst(i);
+                mv.aconst(location.toString());
+                mv.astore(STRING_TYPE);
+            }
             mv.dup();
             mv.iconst(i);
             mv.anew(STACK_TRACE_ELEMENT_TYPE);
@@ -159,9 +1453,41 @@ public class LocationCacheGenerator {
                     false);
             mv.visitInsn(Opcodes.AASTORE);
         }
-        mv.putstatic(innerClassName, LOCATION_FIELD, STACK_TRACE_ELEMENT_ARRAY_TYPE.getInternalName());
-        mv.areturn(Type.VOID_TYPE);
-        mv.visitEnd();
+    }
+
+    private static int estimateLocationsSize(
+            final List<StackTraceElement> locations, final int start, final int end, final boolean renderLocations) {
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            size += estimateLocationSize(locations.get(i), i, renderLocations);
+        }
+        return size;
+    }
+
+    /**
+     * Computes an upper bound of the bytecode size needed to store a location in the array.
+     */
+    private static int estimateLocationSize(
+            final StackTraceElement location, final int index, final boolean renderLocations) {
+        // dup, new, dup, 3 x (ldc_w or aconst_null), invokespecial, aastore
+        int size = 1 + 3 + 1 + 3 * 3 + 3 + 1;
+        size += estimateIntConstantSize(index);
+        if (renderLocations) {
+            // aload_<n>, ldc_w, aastore
+            size += 1 + 3 + 1 + estimateIntConstantSize(index);
+        }
+        size += estimateIntConstantSize(location.getLineNumber());
+        return size;
+    }
+
+    private static int estimateIntConstantSize(final int value) {
+        if (value >= -1 && value <= 5) {
+            return 1; // iconst_<n>
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return 2; // bipush
+        }
+        return 3; // sipush or ldc_w
     }
 
     private static void writeFormattedMessage(final InstructionAdapter mv) {
@@ -228,31 +1554,287 @@ public class LocationCacheGenerator {
         mv.visitEnd();
     }
 
-    private static String getCacheClassName(final String internalClassName) {
+    private static void writeLogMethod(
+            final String cacheClassName, final InstructionAdapter mv, final String descriptor) {
+        final Type[] args = Type.getArgumentTypes(descriptor);
+        final Type[] messageTypes = Arrays.copyOfRange(args, LOG_METHOD_PREFIX.length, args.length - 1);
+        final int throwableIndex = args.length - 1;
+        final Label fallback = new Label();
+        final Label disabled = new Label();
+        mv.visitCode();
+        mv.visitMaxs(LOG_METHOD_PREFIX.length + 2 + messageTypes.length, args.length);
+        // Direct call to `LocationAwareLogger.logMessage`
+        mv.load(0, LOGGER_TYPE);
+        mv.instanceOf(LOCATION_AWARE_LOGGER_TYPE);
+        mv.ifeq(fallback);
+        mv.load(0, LOGGER_TYPE);
+        mv.instanceOf(EXTENDED_LOGGER_TYPE);
+        mv.ifeq(fallback);
+        // `logMessage` does not apply the filters of the configuration, which only `isEnabled` does
+        mv.load(0, LOGGER_TYPE);
+        mv.checkcast(EXTENDED_LOGGER_TYPE);
+        mv.load(1, LEVEL_TYPE);
+        mv.load(2, MARKER_TYPE);
+        for (int i = 0; i < messageTypes.length; i++) {
+            mv.load(LOG_METHOD_PREFIX.length + i, messageTypes[i]);
+        }
+        final String isEnabledDescriptor;
+        if (messageTypes.length == 1) {
+            // `isEnabled(Level, Marker, <Message|CharSequence|Object|String>, Throwable)`
+            mv.load(throwableIndex, THROWABLE_TYPE);
+            isEnabledDescriptor = Type.getMethodDescriptor(
+                    Type.BOOLEAN_TYPE, LEVEL_TYPE, MARKER_TYPE, messageTypes[0], THROWABLE_TYPE);
+        } else {
+            // `isEnabled(Level, Marker, String, Object...)` and its fixed-arity versions
+            final Type[] isEnabledArgs = new Type[messageTypes.length + 2];
+            isEnabledArgs[0] = LEVEL_TYPE;
+            isEnabledArgs[1] = MARKER_TYPE;
+            System.arraycopy(messageTypes, 0, isEnabledArgs, 2, messageTypes.length);
+            isEnabledDescriptor = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, isEnabledArgs);
+        }
+        mv.invokeinterface(EXTENDED_LOGGER_TYPE.getInternalName(), "isEnabled", isEnabledDescriptor);
+        mv.ifeq(disabled);
+        mv.load(0, LOGGER_TYPE);
+        mv.checkcast(LOCATION_AWARE_LOGGER_TYPE);
+        mv.load(1, LEVEL_TYPE);
+        mv.load(2, MARKER_TYPE);
+        // The location is provided, so the FQCN is not used to compute it. If a logger does, the frame that
+        // follows the cache class is the logging statement.
+        mv.aconst(cacheClassName.replace('/', '.'));
+        mv.load(3, STACK_TRACE_ELEMENT_TYPE);
+        writeNewMessage(mv, messageTypes);
+        mv.load(throwableIndex, THROWABLE_TYPE);
+        mv.invokeinterface(
+                LOCATION_AWARE_LOGGER_TYPE.getInternalName(), "logMessage", LOCATION_AWARE_LOG_MESSAGE_DESCRIPTOR);
+        mv.mark(disabled);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.areturn(Type.VOID_TYPE);
+        // Fallback to `LogBuilder`
+        mv.mark(fallback);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.load(0, LOGGER_TYPE);
+        mv.load(1, LEVEL_TYPE);
+        invokeInterface(mv, LOGGER_TYPE, AT_LEVEL_METHOD);
+        mv.load(3, STACK_TRACE_ELEMENT_TYPE);
+        invokeInterface(mv, LOG_BUILDER_TYPE, WITH_LOCATION_METHOD);
+        mv.load(2, MARKER_TYPE);
+        invokeInterface(mv, LOG_BUILDER_TYPE, WITH_MARKER_METHOD);
+        mv.load(throwableIndex, THROWABLE_TYPE);
+        invokeInterface(mv, LOG_BUILDER_TYPE, WITH_THROWABLE_METHOD);
+        for (int i = 0; i < messageTypes.length; i++) {
+            mv.load(LOG_METHOD_PREFIX.length + i, messageTypes[i]);
+        }
+        mv.invokeinterface(
+                LOG_BUILDER_TYPE.getInternalName(), "log", Type.getMethodDescriptor(Type.VOID_TYPE, messageTypes));
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitEnd();
+    }
+
+    /**
+     * Writes a static field and a method, that lazily initializes it with the result of a {@code LogManager} call.
+     * <p>
+     *     Since the logger registry of Log4j returns the same instance for the same arguments, concurrent
+     *     initializations are harmless.
+     * </p>
+     */
+    private static void writeCachedLogger(
+            final String cacheClassName,
+            final ClassVisitor cv,
+            final int index,
+            final List<Object> call,
+            final int visibility) {
+        final String fieldName = LOGGER_FIELD_PREFIX + index;
+        cv.visitField(
+                        Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_VOLATILE,
+                        fieldName,
+                        LOGGER_TYPE.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                visibility | Opcodes.ACC_STATIC,
+                LOGGER_METHOD_PREFIX + index,
+                Type.getMethodDescriptor(LOGGER_TYPE),
+                null,
+                null));
+        final Label end = new Label();
+        mv.visitCode();
+        mv.visitMaxs(2, 0);
+        mv.getstatic(cacheClassName, fieldName, LOGGER_TYPE.getDescriptor());
+        mv.dup();
+        mv.ifnonnull(end);
+        mv.pop();
+        mv.visitLdcInsn(call.get(2));
+        mv.invokestatic(LOG_MANAGER_TYPE.getInternalName(), (String) call.get(0), (String) call.get(1), false);
+        mv.dup();
+        mv.putstatic(cacheClassName, fieldName, LOGGER_TYPE.getDescriptor());
+        mv.mark(end);
+        mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] {LOGGER_TYPE.getInternalName()});
+        mv.areturn(LOGGER_TYPE);
+        mv.visitEnd();
+    }
+
+    /**
+     * Creates the message in the same way as {@code DefaultLogBuilder} does.
+     */
+    private static void writeNewMessage(final InstructionAdapter mv, final Type[] messageTypes) {
+        if (messageTypes.length == 1 && MESSAGE_TYPE.equals(messageTypes[0])) {
+            mv.load(LOG_METHOD_PREFIX.length, MESSAGE_TYPE);
+            return;
+        }
+        mv.load(0, LOGGER_TYPE);
+        mv.invokeinterface(
+                LOGGER_TYPE.getInternalName(), "getMessageFactory", Type.getMethodDescriptor(MESSAGE_FACTORY_TYPE));
+        // Only `newMessage(Object)`, `newMessage(String)` and `newMessage(String, Object...)` belong to
+        // `MessageFactory`
+        final boolean isMessageFactory2 = CHAR_SEQUENCE_TYPE.equals(messageTypes[0])
+                || (messageTypes.length > 1 && !OBJECT_ARRAY_TYPE.equals(messageTypes[1]));
+        final Type factoryType = isMessageFactory2 ? MESSAGE_FACTORY2_TYPE : MESSAGE_FACTORY_TYPE;
+        if (isMessageFactory2) {
+            mv.checkcast(MESSAGE_FACTORY2_TYPE);
+        }
+        for (int i = 0; i < messageTypes.length; i++) {
+            mv.load(LOG_METHOD_PREFIX.length + i, messageTypes[i]);
+        }
+        mv.invokeinterface(
+                factoryType.getInternalName(), "newMessage", Type.getMethodDescriptor(MESSAGE_TYPE, messageTypes));
+    }
+
+    private static void invokeInterface(final InstructionAdapter mv, final Type owner, final Method method) {
+        mv.invokeinterface(owner.getInternalName(), method.getName(), method.getDescriptor());
+    }
+
+    private static String getLogMethodDescriptor(final Type[] messageTypes) {
+        final Type[] args = Arrays.copyOf(LOG_METHOD_PREFIX, LOG_METHOD_PREFIX.length + messageTypes.length + 1);
+        System.arraycopy(messageTypes, 0, args, LOG_METHOD_PREFIX.length, messageTypes.length);
+        args[args.length - 1] = THROWABLE_TYPE;
+        return Type.getMethodDescriptor(Type.VOID_TYPE, args);
+    }
+
+    /**
+     * Returns the internal name of the location cache class used by a converted class.
+     *
+     * @param internalClassName the internal name of the converted class.
+     */
+    public String getCacheClassName(final String internalClassName) {
+        switch (granularity) {
+            case PACKAGE:
+                return internalClassName.substring(0, internalClassName.lastIndexOf('/') + 1)
+                        + Constants.LOCATION_CACHE_SUFFIX;
+            case MODULE:
+                return (modulePackage.isEmpty() ? "" : modulePackage.replace('.', '/') + '/')
+                        + Constants.LOCATION_CACHE_SUFFIX;
+            default:
+                return getClassCacheClassName(internalClassName);
+        }
+    }
+
+    private static String getClassCacheClassName(final String internalClassName) {
         return StringUtils.substringBefore(internalClassName, '$') + Constants.LOCATION_CACHE_SUFFIX;
     }
 
+    private static String getHolderClassName(final String cacheClassName, final int holderIndex) {
+        return cacheClassName + "$" + holderIndex;
+    }
+
+    private static String getMessageClassName(final String cacheClassName, final int templateIndex) {
+        return cacheClassName + "$" + MESSAGE_CLASS_PREFIX + templateIndex;
+    }
+
+    /**
+     * Returns the name of the supplier class for a type of supplier, e.g. {@code FormattedMessageSupplier}.
+     */
+    private static String getSupplierClassName(final String cacheClassName, final SupplierLambdaType type) {
+        final StringBuilder name = new StringBuilder(cacheClassName).append('$');
+        for (final String word : StringUtils.split(type.name(), '_')) {
+            name.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.US));
+        }
+        return name.append(SUPPLIER_CLASS_SUFFIX).toString();
+    }
+
+    private static String getConstantMessagesClassName(final String cacheClassName, final int holderIndex) {
+        return cacheClassName + "$" + CONSTANT_MESSAGES_CLASS_PREFIX + holderIndex;
+    }
+
+    private static String getHitCountersClassName(final String cacheClassName) {
+        return cacheClassName + "$" + HIT_COUNTERS_CLASS_SUFFIX;
+    }
+
+    private static String getSiteSwitchesClassName(final String cacheClassName) {
+        return cacheClassName + "$" + SITE_SWITCHES_CLASS_SUFFIX;
+    }
+
+    private static String getSamplersClassName(final String cacheClassName) {
+        return cacheClassName + "$" + SAMPLERS_CLASS_SUFFIX;
+    }
+
+    private static String getCachedConstantsClassName(final String cacheClassName, final int holderIndex) {
+        return cacheClassName + "$" + CACHED_CONSTANTS_CLASS_PREFIX + holderIndex;
+    }
+
+    /**
+     * Returns the class file of the location cache used by a class file, if the granularity is
+     * {@link CacheGranularity#CLASS}.
+     *
+     * @param classFile the path to a class file.
+     * @see #getCacheClassFile(Path, Path)
+     */
     public static Path getCacheClassFile(final Path classFile) {
         final Path fileName = classFile.getFileName();
         if (fileName == null) {
             throw new IllegalArgumentException("The 'classFile' parameter is an empty path.");
         }
         final String cacheFileName =
-                LocationCacheGenerator.getCacheClassName(StringUtils.removeEnd(fileName.toString(), ".class"))
-                        + ".class";
+                getClassCacheClassName(StringUtils.removeEnd(fileName.toString(), ".class")) + ".class";
         return classFile.resolveSibling(cacheFileName);
     }
 
+    /**
+     * Returns the class file of the location cache used by a class file.
+     *
+     * @param classesDirectory the root directory of the class files,
+     * @param classFile        the path to a class file in {@code classesDirectory}.
+     * @return the path to the location cache class file in {@code classesDirectory}.
+     */
+    public Path getCacheClassFile(final Path classesDirectory, final Path classFile) {
+        final Path relativePath = classesDirectory.relativize(classesDirectory.resolve(classFile));
+        final String internalClassName = StringUtils.removeEnd(
+                relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/"), ".class");
+        return classesDirectory.resolve(getCacheClassName(internalClassName) + ".class");
+    }
+
     public static class LocationCacheValue {
         private final String internalClassName;
         private final String fieldName;
         private final int index;
+        private final ConstantDynamic constant;
+        private final Handle method;
 
         private LocationCacheValue(String internalClassName, String fieldName, int index) {
             super();
             this.internalClassName = internalClassName;
             this.fieldName = fieldName;
             this.index = index;
+            this.constant = null;
+            this.method = null;
+        }
+
+        private LocationCacheValue(ConstantDynamic constant) {
+            super();
+            this.internalClassName = null;
+            this.fieldName = null;
+            this.index = -1;
+            this.constant = constant;
+            this.method = null;
+        }
+
+        private LocationCacheValue(Handle method, int index) {
+            super();
+            this.internalClassName = method.getOwner();
+            this.fieldName = null;
+            this.index = index;
+            this.constant = null;
+            this.method = method;
         }
 
         public String getInternalClassName() {
@@ -270,26 +1852,144 @@ public class LocationCacheGenerator {
         public int getIndex() {
             return index;
         }
+
+        /**
+         * Returns the {@code CONSTANT_Dynamic} that resolves to the location or {@code null} if the location is
+         * stored in an array field.
+         */
+        public ConstantDynamic getConstant() {
+            return constant;
+        }
+
+        /**
+         * Returns the static method that returns the location for the {@code int} index or {@code null} if the
+         * location is not stored in a location table.
+         */
+        public Handle getMethod() {
+            return method;
+        }
     }
 
     /**
-     * Describes the methods and fields of a specific location cache class.
-     *
+     * Contents of a single location cache class.
+     * <p>
+     *     Identical locations share the same index. Indexes are assigned in registration order, so the generated
+     *     class is reproducible as long as the classes that share a cache are converted sequentially.
+     * </p>
      */
     private static class LocationCacheContents {
-        private final List<StackTraceElement> locations = new CopyOnWriteArrayList<>();
-        private Set<SupplierLambdaType> lambdas = EnumSet.noneOf(SupplierLambdaType.class);
+        private final Map<StackTraceElement, Integer> locations = new ConcurrentHashMap<>();
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final Set<SupplierLambdaType> lambdas = ConcurrentHashMap.newKeySet();
+        private final Set<SupplierLambdaType> suppliers = ConcurrentHashMap.newKeySet();
+        private final Map<String, Integer> templates = new ConcurrentHashMap<>();
+        private final AtomicInteger nextTemplateIndex = new AtomicInteger();
+        private final Map<String, Integer> constantMessages = new ConcurrentHashMap<>();
+        private final AtomicInteger nextConstantMessageIndex = new AtomicInteger();
+        private final Set<String> logMethods = ConcurrentHashMap.newKeySet();
+        private final Map<List<Object>, Integer> cachedLoggers = new ConcurrentHashMap<>();
+        private final AtomicInteger nextCachedLoggerIndex = new AtomicInteger();
+        private final Map<List<Object>, Integer> cachedConstants = new ConcurrentHashMap<>();
+        private final AtomicInteger nextCachedConstantIndex = new AtomicInteger();
+        private final Map<StackTraceElement, Integer> hitCounterSites = new ConcurrentHashMap<>();
+        private final AtomicInteger nextHitCounterIndex = new AtomicInteger();
+        private final Map<StackTraceElement, Integer> switchedSites = new ConcurrentHashMap<>();
+        private final Map<Integer, Character> siteLevels = new ConcurrentHashMap<>();
+        private final AtomicInteger nextSiteSwitchIndex = new AtomicInteger();
+        private final Map<StackTraceElement, Integer> sampledSites = new ConcurrentHashMap<>();
+        private final Map<Integer, String> samplingRates = new ConcurrentHashMap<>();
+        private final AtomicInteger nextSamplerIndex = new AtomicInteger();
 
         public int addLocation(
                 final String internalClassName, final String methodName, final String fileName, final int lineNumber) {
             final StackTraceElement location =
-                    new StackTraceElement(internalClassName.replaceAll("/", "."), methodName, fileName, lineNumber);
-            locations.add(location);
-            return locations.indexOf(location);
+                    new StackTraceElement(internalClassName.replace('/', '.'), methodName, fileName, lineNumber);
+            return locations.computeIfAbsent(location, k -> nextIndex.getAndIncrement());
         }
 
         public List<StackTraceElement> getLocations() {
-            return locations;
+            final StackTraceElement[] result = new StackTraceElement[locations.size()];
+            locations.forEach((location, index) -> result[index] = location);
+            return Arrays.asList(result);
+        }
+
+        public int addHitCounter(
+                final String internalClassName, final String methodName, final String fileName, final int lineNumber) {
+            final StackTraceElement location =
+                    new StackTraceElement(internalClassName.replace('/', '.'), methodName, fileName, lineNumber);
+            return hitCounterSites.computeIfAbsent(location, k -> nextHitCounterIndex.getAndIncrement());
+        }
+
+        public List<StackTraceElement> getHitCounterSites() {
+            final StackTraceElement[] result = new StackTraceElement[hitCounterSites.size()];
+            hitCounterSites.forEach((location, index) -> result[index] = location);
+            return Arrays.asList(result);
+        }
+
+        public int addSiteSwitch(
+                final String internalClassName,
+                final String methodName,
+                final String fileName,
+                final int lineNumber,
+                final char level) {
+            final StackTraceElement location =
+                    new StackTraceElement(internalClassName.replace('/', '.'), methodName, fileName, lineNumber);
+            final int index = switchedSites.computeIfAbsent(location, k -> nextSiteSwitchIndex.getAndIncrement());
+            // Statements on the same line share a switch, with the level of the first one
+            siteLevels.putIfAbsent(index, level);
+            return index;
+        }
+
+        public List<StackTraceElement> getSwitchedSites() {
+            final StackTraceElement[] result = new StackTraceElement[switchedSites.size()];
+            switchedSites.forEach((location, index) -> result[index] = location);
+            return Arrays.asList(result);
+        }
+
+        public String getSiteLevels() {
+            final char[] result = new char[switchedSites.size()];
+            siteLevels.forEach((index, level) -> result[index] = level);
+            return new String(result);
+        }
+
+        public int addSampler(
+                final String internalClassName,
+                final String methodName,
+                final String fileName,
+                final int lineNumber,
+                final String rate) {
+            final StackTraceElement location =
+                    new StackTraceElement(internalClassName.replace('/', '.'), methodName, fileName, lineNumber);
+            final int index = sampledSites.computeIfAbsent(location, k -> nextSamplerIndex.getAndIncrement());
+            // Statements on the same line share a sampler
+            samplingRates.putIfAbsent(index, rate);
+            return index;
+        }
+
+        public String getSamplingRates() {
+            final String[] result = new String[sampledSites.size()];
+            samplingRates.forEach((index, rate) -> result[index] = rate);
+            return String.join(",", result);
+        }
+
+        public int addTemplate(final String pattern) {
+            return templates.computeIfAbsent(pattern, k -> nextTemplateIndex.getAndIncrement());
+        }
+
+        public List<String> getTemplates() {
+            final String[] result = new String[templates.size()];
+            templates.forEach((pattern, index) -> result[index] = pattern);
+            return Arrays.asList(result);
+        }
+
+        public int addConstantMessage(final String message) {
+            return constantMessages.computeIfAbsent(message, k -> nextConstantMessageIndex.getAndIncrement());
+        }
+
+        public List<String> getConstantMessages() {
+            final String[] result = new String[constantMessages.size()];
+            constantMessages.forEach((message, index) -> result[index] = message);
+            return Arrays.asList(result);
         }
 
         public boolean addLambda(SupplierLambdaType type) {
@@ -297,7 +1997,43 @@ public class LocationCacheGenerator {
         }
 
         public Set<SupplierLambdaType> getLambdas() {
-            return lambdas;
+            return lambdas.isEmpty() ? EnumSet.noneOf(SupplierLambdaType.class) : EnumSet.copyOf(lambdas);
+        }
+
+        public void addSupplier(final SupplierLambdaType type) {
+            suppliers.add(type);
+        }
+
+        public Set<SupplierLambdaType> getSuppliers() {
+            return suppliers.isEmpty() ? EnumSet.noneOf(SupplierLambdaType.class) : EnumSet.copyOf(suppliers);
+        }
+
+        public void addLogMethod(final String descriptor) {
+            logMethods.add(descriptor);
+        }
+
+        public Set<String> getLogMethods() {
+            return new TreeSet<>(logMethods);
+        }
+
+        public int addCachedLogger(final List<Object> call) {
+            return cachedLoggers.computeIfAbsent(call, k -> nextCachedLoggerIndex.getAndIncrement());
+        }
+
+        public List<List<Object>> getCachedLoggers() {
+            final List<List<Object>> result = new ArrayList<>(Collections.nCopies(cachedLoggers.size(), null));
+            cachedLoggers.forEach((call, index) -> result.set(index, call));
+            return result;
+        }
+
+        public int addCachedConstant(final List<Object> call) {
+            return cachedConstants.computeIfAbsent(call, k -> nextCachedConstantIndex.getAndIncrement());
+        }
+
+        public List<List<Object>> getCachedConstants() {
+            final List<List<Object>> result = new ArrayList<>(Collections.nCopies(cachedConstants.size(), null));
+            cachedConstants.forEach((call, index) -> result.set(index, call));
+            return result;
         }
     }
 }
@@ -20,7 +20,15 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.weaver.log4j2.DirectLoggerConversionHandler;
 import org.apache.logging.log4j.weaver.log4j2.LogBuilderConversionHandler;
+import org.apache.logging.log4j.weaver.log4j2.LogManagerConversionHandler;
 import org.apache.logging.log4j.weaver.log4j2.LoggerConversionHandler;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -28,13 +36,303 @@ import org.objectweb.asm.ClassWriter;
 public class LocationClassConverter {
 
     /**
-     * Classloader to resolve a class hierarchy.
+     * Class hierarchy of the classpath, shared by all the conversions.
      */
-    private final ClassLoader classpath;
+    private final ClassHierarchy classHierarchy;
 
-    @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
+    private boolean levelGuards;
+    private boolean deferConcatenation;
+    private boolean deferStringConversion;
+    private boolean precompiledMessages;
+    private boolean garbageFreeBoxing;
+    private boolean constantMessages;
+    private boolean directLogging;
+    private boolean invokeDynamicGuards;
+    private boolean outlineStatements;
+    private String stripBelow;
+    private boolean cacheLoggers;
+    private boolean cacheMarkersAndLevels;
+    private List<String> samplingRules = Collections.emptyList();
+    private Consumer<String> warningHandler = message -> {};
+
+    /**
+     * @param classpath the classloader used to find the class files of the super classes of the converted classes.
+     *                  The classes are never loaded: only their class files are read.
+     */
     public LocationClassConverter(ClassLoader classpath) {
-        this.classpath = classpath;
+        this.classHierarchy = new ClassHierarchy(classpath);
+    }
+
+    /**
+     * Wraps each logging statement in an {@code isEnabled} check, so that the arguments of disabled logging
+     * statements are not evaluated.
+     * <p>
+     * Consecutive logging statements with the same logger, level and marker share a single check.
+     * </p>
+     * @param levelGuards if {@code true} level guards are inserted.
+     */
+    public void setLevelGuards(final boolean levelGuards) {
+        this.levelGuards = levelGuards;
+    }
+
+    public boolean isLevelGuards() {
+        return levelGuards;
+    }
+
+    /**
+     * Replaces string concatenations used as logging messages with parameterized messages.
+     * <p>
+     * For example {@code logger.debug("user " + id)} is converted into {@code logger.debug("user {}", id)}, so that
+     * the message is only built if the level is enabled. The operands are formatted by the message factory of the
+     * logger: this option should only be used with loggers that create parameterized messages.
+     * Arrays, collections, maps and dates are formatted by Log4j instead of their {@code toString()} method.
+     * </p>
+     * @param deferConcatenation if {@code true} string concatenations are replaced.
+     */
+    public void setDeferConcatenation(final boolean deferConcatenation) {
+        this.deferConcatenation = deferConcatenation;
+    }
+
+    public boolean isDeferConcatenation() {
+        return deferConcatenation;
+    }
+
+    /**
+     * Also defers the conversion to strings of the operands of the replaced concatenations.
+     * <p>
+     * The {@code x.toString()} and {@code String.valueOf(x)} operands are replaced with {@code x}, while
+     * {@code String.format(format, args)} operands are replaced with a message that is formatted when the event
+     * is logged. Exceptions thrown by these conversions are no longer thrown by the logging statement.
+     * </p>
+     * @param deferStringConversion if {@code true} the conversion of operands to strings is deferred.
+     */
+    public void setDeferStringConversion(final boolean deferStringConversion) {
+        this.deferStringConversion = deferStringConversion;
+    }
+
+    public boolean isDeferStringConversion() {
+        return deferStringConversion;
+    }
+
+    /**
+     * Replaces the constant patterns of parameterized messages with precompiled {@code Message} classes.
+     * <p>
+     * For each distinct pattern a class is generated, that formats the message without parsing the pattern and
+     * appends it directly to the layout buffer. The messages are created without using the message factory of the
+     * logger: this option should only be used with loggers that create parameterized messages.
+     * </p>
+     * @param precompiledMessages if {@code true} message patterns are precompiled.
+     */
+    public void setPrecompiledMessages(final boolean precompiledMessages) {
+        this.precompiledMessages = precompiledMessages;
+    }
+
+    public boolean isPrecompiledMessages() {
+        return precompiledMessages;
+    }
+
+    /**
+     * Replaces the boxing of primitive parameters of logging calls with {@code Unbox.box}.
+     * <p>
+     * Calls like {@code Integer.valueOf(int)}, whose result is only used as parameter of a logging call, are replaced
+     * with the garbage-free {@code Unbox.box} methods. Since the value is formatted into a thread-local
+     * {@code StringBuilder} even if the logger is disabled, this option works best together with
+     * {@link #setLevelGuards(boolean)}.
+     * </p>
+     * @param garbageFreeBoxing if {@code true} primitive parameters are boxed without allocations.
+     */
+    public void setGarbageFreeBoxing(final boolean garbageFreeBoxing) {
+        this.garbageFreeBoxing = garbageFreeBoxing;
+    }
+
+    public boolean isGarbageFreeBoxing() {
+        return garbageFreeBoxing;
+    }
+
+    /**
+     * Replaces constant messages without parameters with shared {@code Message} instances.
+     * <p>
+     * Each distinct constant message, like in {@code logger.info("Connection pool started")}, is stored as
+     * {@code SimpleMessage} in a {@code static final} field of the location cache, so that logging it does not
+     * create a new message. The messages are created without using the message factory of the logger: this option
+     * should only be used with loggers that create a {@code SimpleMessage} for a {@code String}, like all the
+     * message factories of the Log4j API.
+     * </p>
+     * @param constantMessages if {@code true} constant messages are stored in {@code static final} fields.
+     */
+    public void setConstantMessages(final boolean constantMessages) {
+        this.constantMessages = constantMessages;
+    }
+
+    public boolean isConstantMessages() {
+        return constantMessages;
+    }
+
+    /**
+     * Converts logging calls into direct calls to {@code LocationAwareLogger.logMessage}.
+     * <p>
+     * Instead of a chain of {@code LogBuilder} calls, each call to a {@code log} method of {@code Logger} or one of
+     * its level specializations is converted into an {@code isEnabled} check, followed by a call to a static method
+     * of the location cache. The method creates the message using the message factory of the logger and calls
+     * {@code LocationAwareLogger.logMessage}, or falls back to a {@code LogBuilder} if the logger is not
+     * location-aware. Calls with {@code Supplier} or {@code MessageSupplier} arguments still use a
+     * {@code LogBuilder}.
+     * </p>
+     * @param directLogging if {@code true} logging calls bypass the {@code LogBuilder}.
+     */
+    public void setDirectLogging(final boolean directLogging) {
+        this.directLogging = directLogging;
+    }
+
+    public boolean isDirectLogging() {
+        return directLogging;
+    }
+
+    /**
+     * Replaces the level checks of logging statements with {@code invokedynamic} instructions.
+     * <p>
+     * The level checks inserted by {@link #setLevelGuards(boolean)} and {@link #setDirectLogging(boolean)}, as well
+     * as the explicit {@code isEnabled} calls, are linked at runtime to a constant, which is invalidated when the
+     * configuration of the logger context changes. The JIT compiler can therefore remove disabled logging statements
+     * entirely. The woven classes require the {@code log4j-weaver-runtime} artifact at runtime. Class files older than
+     * Java 7 are not modified.
+     * </p>
+     * @param invokeDynamicGuards if {@code true} level checks are linked at runtime.
+     */
+    public void setInvokeDynamicGuards(final boolean invokeDynamicGuards) {
+        this.invokeDynamicGuards = invokeDynamicGuards;
+    }
+
+    public boolean isInvokeDynamicGuards() {
+        return invokeDynamicGuards;
+    }
+
+    /**
+     * Moves the converted logging statements into {@code private static} synthetic helper methods.
+     * <p>
+     * Each call to a logging method of {@code Logger} is replaced with a single call to a helper method of the same
+     * class, which contains the converted statement. This prevents the weaving from increasing the size of the
+     * methods beyond the inlining and compilation thresholds of the JIT compiler. Level guards inserted by
+     * {@link #setLevelGuards(boolean)} stay in the original method. Interfaces are not modified.
+     * </p>
+     * @param outlineStatements if {@code true} logging statements are outlined.
+     */
+    public void setOutlineStatements(final boolean outlineStatements) {
+        this.outlineStatements = outlineStatements;
+    }
+
+    public boolean isOutlineStatements() {
+        return outlineStatements;
+    }
+
+    /**
+     * Removes the logging statements, whose level is less specific than the given level.
+     * <p>
+     * For example, if {@code stripBelow} is {@code INFO}, the {@code debug} and {@code trace} statements are removed,
+     * together with the computation of their arguments if it has no side effects. Otherwise the arguments are still
+     * evaluated, but the logging method is not called. {@code LogBuilder} chains, like {@code logger.atDebug()},
+     * are only removed if their arguments have no side effects and the level checks of the removed levels, like
+     * {@code isDebugEnabled()}, are replaced with {@code false}. Only statements, whose level is known at build time,
+     * are removed: the configuration of Log4j can no longer enable them.
+     * </p>
+     * @param stripBelow the name of a standard level or {@code null} to keep all statements.
+     * @throws IllegalArgumentException if the level is not a standard level.
+     */
+    public void setStripBelow(final String stripBelow) {
+        if (stripBelow != null && LevelStripMethodVisitor.getIntLevel(stripBelow) < 0) {
+            throw new IllegalArgumentException("Unknown standard level: " + stripBelow);
+        }
+        this.stripBelow = stripBelow;
+    }
+
+    public String getStripBelow() {
+        return stripBelow;
+    }
+
+    /**
+     * Caches the loggers returned by {@code LogManager.getLogger} calls with a constant argument.
+     * <p>
+     * Calls like {@code LogManager.getLogger(Foo.class)}, {@code LogManager.getLogger("name")} or
+     * {@code LogManager.getLogger()} outside of static initializers are replaced with a static method of the location
+     * cache, which stores the logger in a static field the first time it is called. This removes the lookup in the
+     * logger registry from methods that retrieve a logger each time they are called. A cached logger is not replaced
+     * if the logger context is later replaced with a new one, e.g. after {@code LogManager.shutdown()}.
+     * </p>
+     * <p>
+     * Regardless of this option, {@code LogManager.getLogger()} and {@code LogManager.getFormatterLogger()} calls
+     * without a class argument are converted to pass the converted class, which removes the lookup of the caller class
+     * at runtime.
+     * </p>
+     * @param cacheLoggers if {@code true} loggers are cached in static fields.
+     */
+    public void setCacheLoggers(final boolean cacheLoggers) {
+        this.cacheLoggers = cacheLoggers;
+    }
+
+    public boolean isCacheLoggers() {
+        return cacheLoggers;
+    }
+
+    /**
+     * Caches the results of {@code MarkerManager.getMarker} and {@code Level.forName} calls with constant arguments.
+     * <p>
+     * Calls like {@code MarkerManager.getMarker("AUDIT")} or {@code Level.forName("NOTICE", 350)} outside of static
+     * initializers are replaced with {@code static final} fields of the location cache, which removes the lookup in
+     * the marker or level registry from each execution of the call. All the fields of a location cache are initialized
+     * the first time one of them is used.
+     * </p>
+     * @param cacheMarkersAndLevels if {@code true} markers and levels are cached in static fields.
+     */
+    public void setCacheMarkersAndLevels(final boolean cacheMarkersAndLevels) {
+        this.cacheMarkersAndLevels = cacheMarkersAndLevels;
+    }
+
+    public boolean isCacheMarkersAndLevels() {
+        return cacheMarkersAndLevels;
+    }
+
+    /**
+     * Samples the events of selected logging statements before their message is created.
+     * <p>
+     * Each rule has the format {@code <pattern>=<rate>}. The pattern is either a fully qualified class name,
+     * optionally followed by {@code :<line>} to select a single logging statement, or a prefix of class names ending
+     * with {@code *}. The rate is either {@code 1/<n>}, to log the first and then one event out of {@code n} in each
+     * thread, or {@code <k>/s}, to log at most {@code k} events per second. The first matching rule applies.
+     * Independently of the rules, a {@code @Sampled} annotation of {@code log4j-weaver-runtime} on a method or class
+     * samples all its logging statements.
+     * </p>
+     * <p>
+     * Each sampled statement is wrapped in an {@code isEnabled} check followed by a call to its sampler, which is
+     * stored in the location cache. Unlike a {@code BurstFilter}, the sampler of each statement is independent and
+     * discards events before their message and {@code LogEvent} are created. The woven classes require
+     * {@code log4j-weaver-runtime} at runtime. Only the logging statements, that can be wrapped in a level guard, are
+     * sampled.
+     * </p>
+     * @param samplingRules a collection of sampling rules.
+     * @throws IllegalArgumentException if a rule is not valid.
+     */
+    public void setSamplingRules(final Collection<String> samplingRules) {
+        samplingRules.forEach(SamplingRule::parse);
+        this.samplingRules = Collections.unmodifiableList(new ArrayList<>(samplingRules));
+    }
+
+    // The list is unmodifiable
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP")
+    public List<String> getSamplingRules() {
+        return samplingRules;
+    }
+
+    /**
+     * Sets the handler of the warnings issued during the conversion.
+     * <p>
+     * A warning is issued for each method, whose size crosses the inlining or compilation threshold of the JIT
+     * compiler because of the conversion.
+     * </p>
+     * @param warningHandler a consumer of warning messages.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2")
+    public void setWarningHandler(final Consumer<String> warningHandler) {
+        this.warningHandler = warningHandler;
     }
 
     /**
@@ -45,28 +343,76 @@ public class LocationClassConverter {
      * @param locationCache a container for location data
      */
     public void convert(InputStream src, OutputStream dest, LocationCacheGenerator locationCache) throws IOException {
-        final ClassWriter writer = new PrivateClassWriter(ClassWriter.COMPUTE_FRAMES, classpath);
+        final ClassReader reader = new ClassReader(src);
+        // The methods, that are not converted, are copied with their original frames
+        final ClassWriter writer = new PrivateClassWriter(reader, ClassWriter.COMPUTE_FRAMES, classHierarchy);
 
         final LocationClassVisitor converter = new LocationClassVisitor(writer, locationCache);
-        converter.addClassConversionHandler(new LoggerConversionHandler());
+        converter.setLevelGuards(levelGuards);
+        converter.setDeferConcatenation(deferConcatenation);
+        converter.setDeferStringConversion(deferStringConversion);
+        converter.setPrecompiledMessages(precompiledMessages);
+        converter.setGarbageFreeBoxing(garbageFreeBoxing);
+        converter.setConstantMessages(constantMessages);
+        converter.setInvokeDynamicGuards(invokeDynamicGuards);
+        converter.setOutlineStatements(outlineStatements);
+        converter.setStripBelow(stripBelow);
+        converter.setCacheLoggers(cacheLoggers);
+        converter.setCacheMarkersAndLevels(cacheMarkersAndLevels);
+        converter.setSamplingRules(samplingRules);
+        converter.setConvertedMethods(ApiReferences.getReferencingMethods(reader));
+        converter.setFormatterLoggers(FormatterLoggers.scan(reader));
+        converter.setClassHierarchy(classHierarchy);
+        converter.addClassConversionHandler(
+                directLogging ? new DirectLoggerConversionHandler() : new LoggerConversionHandler());
         converter.addClassConversionHandler(new LogBuilderConversionHandler());
-        new ClassReader(src).accept(converter, ClassReader.EXPAND_FRAMES);
+        converter.addClassConversionHandler(new LogManagerConversionHandler());
+        reader.accept(converter, ClassReader.EXPAND_FRAMES);
+
+        final byte[] result = writer.toByteArray();
+        checkMethodSizes(reader, new ClassReader(result));
+        dest.write(result);
+    }
+
+    private void checkMethodSizes(final ClassReader original, final ClassReader converted) {
+        final Map<String, Integer> originalSizes = MethodSizes.getCodeLengths(original);
+        MethodSizes.getCodeLengths(converted).forEach((method, size) -> {
+            final Integer originalSize = originalSizes.get(method);
+            if (originalSize == null) {
+                return;
+            }
+            if (originalSize <= MethodSizes.HUGE_METHOD_LIMIT && size > MethodSizes.HUGE_METHOD_LIMIT) {
+                warnMethodSize(original, method, originalSize, size, "compilation", MethodSizes.HUGE_METHOD_LIMIT);
+            } else if (originalSize <= MethodSizes.FREQ_INLINE_SIZE && size > MethodSizes.FREQ_INLINE_SIZE) {
+                warnMethodSize(original, method, originalSize, size, "inlining", MethodSizes.FREQ_INLINE_SIZE);
+            }
+        });
+    }
 
-        dest.write(writer.toByteArray());
+    private void warnMethodSize(
+            final ClassReader original,
+            final String method,
+            final int originalSize,
+            final int size,
+            final String limit,
+            final int threshold) {
+        warningHandler.accept("Method " + original.getClassName().replace('/', '.') + "." + method + " grew from "
+                + originalSize + " to " + size + " bytes, beyond the JIT " + limit + " limit of " + threshold
+                + " bytes." + (outlineStatements ? "" : " Consider enabling the `outlineStatements` option."));
     }
 
     private static class PrivateClassWriter extends ClassWriter {
 
-        private final ClassLoader classpath;
+        private final ClassHierarchy classHierarchy;
 
-        public PrivateClassWriter(int flags, ClassLoader classpath) {
-            super(flags);
-            this.classpath = classpath;
+        public PrivateClassWriter(ClassReader reader, int flags, ClassHierarchy classHierarchy) {
+            super(reader, flags);
+            this.classHierarchy = classHierarchy;
         }
 
         @Override
-        protected ClassLoader getClassLoader() {
-            return classpath;
+        protected String getCommonSuperClass(String type1, String type2) {
+            return classHierarchy.getCommonSuperClass(type1, type2);
         }
     }
 }
@@ -18,22 +18,59 @@ package org.apache.logging.log4j.weaver;
 
 import static org.apache.logging.log4j.weaver.Constants.MESSAGE_SUPPLIER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SAMPLED_TYPE;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.logging.log4j.weaver.LocationCacheGenerator.LocationCacheValue;
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 public class LocationClassVisitor extends ClassVisitor {
 
+    // Each helper method requires several constant pool entries
+    private static final int MAX_OUTLINED_STATEMENTS = 4096;
+
     private final LocationCacheGenerator locationCache;
     private final Map<String, ClassConversionHandler> conversionHandlers;
 
+    private boolean levelGuards;
+    private boolean deferConcatenation;
+    private boolean deferStringConversion;
+    private boolean precompiledMessages;
+    private boolean garbageFreeBoxing;
+    private boolean constantMessages;
+    private boolean invokeDynamicGuards;
+    private boolean outlineStatements;
+    private String stripBelow;
+    private boolean cacheLoggers;
+    private boolean cacheMarkersAndLevels;
+    private List<SamplingRule> samplingRules = Collections.emptyList();
+    // Sampling rate of the `@Sampled` annotation of the class
+    private String classSamplingRate;
+
+    // Methods that need a conversion, `null` if all of them do
+    private Set<String> convertedMethods;
+    private FormatterLoggers formatterLoggers = FormatterLoggers.NONE;
+    // `null` if the classes referenced by the converted class can not be read
+    private ClassHierarchy classHierarchy;
+
+    // Helper methods containing the outlined logging statements
+    private final Map<String, OutlinedStatement> outlinedStatements = new LinkedHashMap<>();
+    private boolean generatingHelpers;
+
+    private int classFileVersion;
+    private boolean isInterface;
     private String fileName;
     private String declaringClass;
     private String methodName;
@@ -46,10 +83,35 @@ public class LocationClassVisitor extends ClassVisitor {
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.classFileVersion = version;
+        this.isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
         this.declaringClass = name;
         super.visit(version, access, name, signature, superName, interfaces);
     }
 
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+        final AnnotationVisitor av = super.visitAnnotation(descriptor, visible);
+        if (!SAMPLED_TYPE.getDescriptor().equals(descriptor)) {
+            return av;
+        }
+        final List<Object> values = new ArrayList<>();
+        return new AnnotationVisitor(Opcodes.ASM9, av) {
+            @Override
+            public void visit(final String name, final Object value) {
+                values.add(name);
+                values.add(value);
+                super.visit(name, value);
+            }
+
+            @Override
+            public void visitEnd() {
+                classSamplingRate = SamplingRule.getAnnotationRate(values);
+                super.visitEnd();
+            }
+        };
+    }
+
     @Override
     public void visitSource(String source, String debug) {
         this.fileName = source;
@@ -61,10 +123,277 @@ public class LocationClassVisitor extends ClassVisitor {
             int access, String name, String descriptor, String signature, String[] exceptions) {
         this.methodName = name;
         final MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
-        return mv != null
-                ? new LocationMethodVisitor(
-                        this, Collections.unmodifiableMap(conversionHandlers), mv, access, name, descriptor)
-                : null;
+        // The other methods are copied as is by the class writer
+        if (mv == null || (convertedMethods != null && !convertedMethods.contains(name + descriptor))) {
+            return mv;
+        }
+        final MethodVisitor locationMv = new LocationMethodVisitor(
+                this, Collections.unmodifiableMap(conversionHandlers), mv, access, name, descriptor);
+        // Static initializers are executed only once
+        final MethodVisitor lookupMv = cacheMarkersAndLevels && !"<clinit>".equals(name)
+                ? new ConstantLookupMethodVisitor(this, access, name, descriptor, signature, exceptions, locationMv)
+                : locationMv;
+        final MethodVisitor loggerMv = cacheLoggers && !"<clinit>".equals(name)
+                ? new LoggerCacheMethodVisitor(this, access, name, descriptor, signature, exceptions, lookupMv)
+                : lookupMv;
+        // Precompiled messages are chosen inside the level guard
+        final MethodVisitor templateMv = precompiledMessages
+                ? new MessageTemplateMethodVisitor(
+                        this, declaringClass, access, name, descriptor, signature, exceptions, loggerMv)
+                : loggerMv;
+        // The `@Sampled` annotation of a method is only known at the end of the method
+        final MethodVisitor guardMv = new LevelGuardMethodVisitor(
+                this, declaringClass, levelGuards, access, name, descriptor, signature, exceptions, templateMv);
+        final MethodVisitor boxingMv = garbageFreeBoxing
+                ? new BoxingMethodVisitor(declaringClass, access, name, descriptor, signature, exceptions, guardMv)
+                : guardMv;
+        final MethodVisitor constantMv = constantMessages
+                ? new ConstantMessageMethodVisitor(
+                        this, declaringClass, access, name, descriptor, signature, exceptions, boxingMv)
+                : boxingMv;
+        final MethodVisitor stripMv = stripBelow != null
+                ? new LevelStripMethodVisitor(
+                        declaringClass, stripBelow, access, name, descriptor, signature, exceptions, constantMv)
+                : constantMv;
+        final MethodVisitor varargsMv =
+                new VarargsMethodVisitor(declaringClass, access, name, descriptor, signature, exceptions, stripMv);
+        // Concatenations and varargs calls are rewritten before any other transformation
+        return deferConcatenation
+                ? new ConcatenationMethodVisitor(
+                        this,
+                        declaringClass,
+                        deferStringConversion,
+                        access,
+                        name,
+                        descriptor,
+                        signature,
+                        exceptions,
+                        varargsMv)
+                : varargsMv;
+    }
+
+    @Override
+    public void visitEnd() {
+        generatingHelpers = true;
+        for (final OutlinedStatement statement : outlinedStatements.values()) {
+            writeHelper(statement);
+        }
+        super.visitEnd();
+    }
+
+    private void writeHelper(final OutlinedStatement statement) {
+        this.methodName = statement.methodName;
+        final int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC;
+        final MethodVisitor mv =
+                super.visitMethod(access, statement.helperName, statement.helperDescriptor, null, null);
+        final LocationMethodVisitor helperMv = new LocationMethodVisitor(
+                this,
+                Collections.unmodifiableMap(conversionHandlers),
+                mv,
+                access,
+                statement.helperName,
+                statement.helperDescriptor);
+        helperMv.visitCode();
+        final Label start = new Label();
+        helperMv.visitLabel(start);
+        if (statement.lineNumber > 0) {
+            helperMv.visitLineNumber(statement.lineNumber, start);
+        }
+        helperMv.loadArgs();
+        helperMv.visitMethodInsn(Opcodes.INVOKEINTERFACE, statement.owner, statement.name, statement.descriptor, true);
+        helperMv.returnValue();
+        helperMv.visitLabel(new Label());
+        helperMv.visitMaxs(0, 0);
+        helperMv.visitEnd();
+    }
+
+    /**
+     * Wraps logging statements in a level check, so that their arguments are only evaluated if the level is enabled.
+     *
+     * @param levelGuards if {@code true} level guards are inserted.
+     */
+    public void setLevelGuards(final boolean levelGuards) {
+        this.levelGuards = levelGuards;
+    }
+
+    /**
+     * Replaces string concatenations used as logging messages with parameterized messages.
+     *
+     * @param deferConcatenation if {@code true} string concatenations are replaced.
+     */
+    public void setDeferConcatenation(final boolean deferConcatenation) {
+        this.deferConcatenation = deferConcatenation;
+    }
+
+    /**
+     * Removes {@code toString()}, {@code String.valueOf} and {@code String.format} calls from the operands of the
+     * replaced string concatenations.
+     *
+     * @param deferStringConversion if {@code true} the conversion of operands to strings is deferred.
+     */
+    public void setDeferStringConversion(final boolean deferStringConversion) {
+        this.deferStringConversion = deferStringConversion;
+    }
+
+    /**
+     * Replaces constant message patterns with precompiled {@code Message} classes.
+     *
+     * @param precompiledMessages if {@code true} message patterns are precompiled.
+     */
+    public void setPrecompiledMessages(final boolean precompiledMessages) {
+        this.precompiledMessages = precompiledMessages;
+    }
+
+    /**
+     * Replaces the boxing of primitive parameters of logging calls with {@code Unbox.box}.
+     *
+     * @param garbageFreeBoxing if {@code true} primitive parameters are boxed without allocations.
+     */
+    public void setGarbageFreeBoxing(final boolean garbageFreeBoxing) {
+        this.garbageFreeBoxing = garbageFreeBoxing;
+    }
+
+    /**
+     * Replaces constant messages without parameters with shared {@code Message} instances.
+     *
+     * @param constantMessages if {@code true} constant messages are stored in {@code static final} fields.
+     */
+    public void setConstantMessages(final boolean constantMessages) {
+        this.constantMessages = constantMessages;
+    }
+
+    /**
+     * Replaces the level checks of logging statements with {@code invokedynamic} instructions.
+     *
+     * @param invokeDynamicGuards if {@code true} level checks are linked at runtime.
+     */
+    public void setInvokeDynamicGuards(final boolean invokeDynamicGuards) {
+        this.invokeDynamicGuards = invokeDynamicGuards;
+    }
+
+    /**
+     * Moves the converted logging statements into {@code private static} helper methods.
+     *
+     * @param outlineStatements if {@code true} logging statements are outlined.
+     */
+    public void setOutlineStatements(final boolean outlineStatements) {
+        this.outlineStatements = outlineStatements;
+    }
+
+    /**
+     * Removes the logging statements, whose level is less specific than {@code stripBelow}.
+     *
+     * @param stripBelow the name of a standard level or {@code null} to keep all statements.
+     */
+    public void setStripBelow(final String stripBelow) {
+        this.stripBelow = stripBelow;
+    }
+
+    /**
+     * Replaces the {@code LogManager.getLogger} calls with a constant argument with cached loggers.
+     *
+     * @param cacheLoggers if {@code true} loggers are cached in the location cache.
+     */
+    public void setCacheLoggers(final boolean cacheLoggers) {
+        this.cacheLoggers = cacheLoggers;
+    }
+
+    /**
+     * Replaces the {@code MarkerManager.getMarker} and {@code Level.forName} calls with constant arguments with
+     * cached instances.
+     *
+     * @param cacheMarkersAndLevels if {@code true} markers and levels are stored in {@code static final} fields.
+     */
+    public void setCacheMarkersAndLevels(final boolean cacheMarkersAndLevels) {
+        this.cacheMarkersAndLevels = cacheMarkersAndLevels;
+    }
+
+    /**
+     * Restricts the conversion to the given methods.
+     *
+     * @param convertedMethods a set of method names followed by their descriptor.
+     */
+    void setConvertedMethods(final Set<String> convertedMethods) {
+        this.convertedMethods = convertedMethods;
+    }
+
+    /**
+     * Sets the loggers of the class, whose calls can not be rewritten into parameterized messages.
+     */
+    void setFormatterLoggers(final FormatterLoggers formatterLoggers) {
+        this.formatterLoggers = formatterLoggers;
+    }
+
+    FormatterLoggers getFormatterLoggers() {
+        return formatterLoggers;
+    }
+
+    void setClassHierarchy(final ClassHierarchy classHierarchy) {
+        this.classHierarchy = classHierarchy;
+    }
+
+    ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+
+    /**
+     * Samples the events of the logging statements selected by the given rules before their message is created.
+     *
+     * @param samplingRules a list of rules in the {@code <pattern>=<rate>} format.
+     * @throws IllegalArgumentException if a rule is not valid.
+     */
+    public void setSamplingRules(final List<String> samplingRules) {
+        final List<SamplingRule> rules = new ArrayList<>(samplingRules.size());
+        for (final String rule : samplingRules) {
+            rules.add(SamplingRule.parse(rule));
+        }
+        this.samplingRules = rules;
+    }
+
+    boolean isOutlineStatements() {
+        // Interfaces only support private methods since Java 9
+        return outlineStatements
+                && !generatingHelpers
+                && !isInterface
+                && outlinedStatements.size() < MAX_OUTLINED_STATEMENTS;
+    }
+
+    /**
+     * Registers a helper method, that contains the conversion of a logging call.
+     *
+     * @param owner      the internal name of the logger class,
+     * @param name       the name of the logging method,
+     * @param descriptor the descriptor of the logging method,
+     * @param lineNumber the line number of the logging statement.
+     * @return a handle to the helper method.
+     */
+    Handle addOutlinedStatement(final String owner, final String name, final String descriptor, final int lineNumber) {
+        final String key = methodName + ':' + lineNumber + ':' + owner + '.' + name + descriptor;
+        final OutlinedStatement statement = outlinedStatements.computeIfAbsent(
+                key,
+                k -> new OutlinedStatement(
+                        owner,
+                        name,
+                        descriptor,
+                        methodName,
+                        lineNumber,
+                        "log4j2$$" + name + '$' + outlinedStatements.size()));
+        return new Handle(
+                Opcodes.H_INVOKESTATIC, declaringClass, statement.helperName, statement.helperDescriptor, false);
+    }
+
+    boolean isInvokeDynamicGuards() {
+        // `invokedynamic` requires Java 7 class files
+        return invokeDynamicGuards && (classFileVersion & 0xFFFF) >= Opcodes.V1_7;
+    }
+
+    boolean isClassConstantSupported() {
+        // Class literals in `ldc` instructions require Java 5 class files
+        return (classFileVersion & 0xFFFF) >= Opcodes.V1_5;
+    }
+
+    Type getDeclaringClassType() {
+        return Type.getObjectType(declaringClass);
     }
 
     public void addClassConversionHandler(final ClassConversionHandler handler) {
@@ -72,7 +401,98 @@ public class LocationClassVisitor extends ClassVisitor {
     }
 
     public LocationCacheValue addStackTraceElement(final int lineNumber) {
-        return locationCache.addLocation(declaringClass, methodName, fileName, lineNumber);
+        return locationCache.addLocation(declaringClass, methodName, fileName, lineNumber, classFileVersion);
+    }
+
+    /**
+     * Registers the hit counter of the logging statement at the given line.
+     *
+     * @return the location of the counter or {@code null} if hit counters are disabled.
+     */
+    LocationCacheValue addHitCounter(final int lineNumber) {
+        return locationCache.isHitCounters()
+                ? locationCache.addHitCounter(declaringClass, methodName, fileName, lineNumber)
+                : null;
+    }
+
+    /**
+     * Checks if some logging statements of the class might be sampled.
+     */
+    boolean isSampling() {
+        return classSamplingRate != null || !samplingRules.isEmpty();
+    }
+
+    /**
+     * Returns the sampling rate of the logging statement at the given line.
+     *
+     * @param methodSamplingRate the sampling rate of the {@code @Sampled} annotation of the method or {@code null},
+     * @return the sampling rate or {@code null} if the statement is not sampled.
+     */
+    String getSamplingRate(final String methodSamplingRate, final int lineNumber) {
+        if (methodSamplingRate != null) {
+            return methodSamplingRate;
+        }
+        if (classSamplingRate != null) {
+            return classSamplingRate;
+        }
+        final String className = declaringClass.replace('/', '.');
+        for (final SamplingRule rule : samplingRules) {
+            if (rule.matches(className, lineNumber)) {
+                return rule.getRate();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers the sampler of the logging statement at the given line.
+     */
+    LocationCacheValue addSampler(final int lineNumber, final String rate) {
+        return locationCache.addSampler(declaringClass, methodName, fileName, lineNumber, rate);
+    }
+
+    boolean isSiteSwitches() {
+        return locationCache.isSiteSwitches();
+    }
+
+    /**
+     * Registers the switch of the logging statement at the given line.
+     *
+     * @param level the name of the standard level of the logging statement or {@code null}.
+     * @return the location of the switch or {@code null} if site switches are disabled.
+     */
+    LocationCacheValue addSiteSwitch(final int lineNumber, final String level) {
+        return locationCache.isSiteSwitches()
+                ? locationCache.addSiteSwitch(declaringClass, methodName, fileName, lineNumber, level)
+                : null;
+    }
+
+    Handle addMessageTemplate(final MessageTemplate template) {
+        return locationCache.addMessageTemplate(declaringClass, template);
+    }
+
+    Handle addConstantMessage(final String message) {
+        return locationCache.addConstantMessage(declaringClass, message);
+    }
+
+    Handle addCachedLogger(final String factoryMethod, final String descriptor, final Object argument) {
+        return locationCache.addCachedLogger(declaringClass, factoryMethod, descriptor, argument);
+    }
+
+    Handle addCachedConstant(final Handle method, final Object... arguments) {
+        return locationCache.addCachedConstant(declaringClass, method, arguments);
+    }
+
+    Handle addLogMethod(final Type[] messageTypes) {
+        return locationCache.addLogMethod(declaringClass, messageTypes);
+    }
+
+    boolean isSupplierClasses() {
+        return locationCache.isSupplierClasses();
+    }
+
+    Handle createSupplier(final SupplierLambdaType type) {
+        return locationCache.createSupplier(declaringClass, type);
     }
 
     public Handle createLambda(SupplierLambdaType type) {
@@ -88,4 +508,36 @@ public class LocationClassVisitor extends ClassVisitor {
                 return locationCache.createLambda(declaringClass, type);
         }
     }
+
+    private static final class OutlinedStatement {
+
+        private final String owner;
+        private final String name;
+        private final String descriptor;
+        private final String methodName;
+        private final int lineNumber;
+        private final String helperName;
+        private final String helperDescriptor;
+
+        private OutlinedStatement(
+                final String owner,
+                final String name,
+                final String descriptor,
+                final String methodName,
+                final int lineNumber,
+                final String helperName) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.methodName = methodName;
+            this.lineNumber = lineNumber;
+            this.helperName = helperName;
+            // The receiver becomes the first argument
+            final Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+            final Type[] helperArgumentTypes = new Type[argumentTypes.length + 1];
+            helperArgumentTypes[0] = Type.getObjectType(owner);
+            System.arraycopy(argumentTypes, 0, helperArgumentTypes, 1, argumentTypes.length);
+            this.helperDescriptor = Type.getMethodDescriptor(Type.getReturnType(descriptor), helperArgumentTypes);
+        }
+    }
 }
@@ -16,7 +16,12 @@
  */
 package org.apache.logging.log4j.weaver;
 
+import static org.apache.logging.log4j.weaver.Constants.HIT_COUNTERS_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.IS_ENABLED_METHOD;
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.STACK_TRACE_ELEMENT_ARRAY_TYPE;
@@ -38,6 +43,7 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
 
 public class LocationMethodVisitor extends GeneratorAdapter {
 
@@ -61,13 +67,29 @@ public class LocationMethodVisitor extends GeneratorAdapter {
             "metafactory",
             LAMBDA_METAFACTORY_DESC,
             false);
+    // Increments the hit counter of a logging statement
+    private static final Method INCREMENT_METHOD =
+            new Method("increment", Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE));
+    // No-op builder returned by `Logger.atLevel` and similar methods if the level is disabled
+    private static final String NOOP_FIELD = "NOOP";
+    // Bootstrap method of the level checks in the `log4j-weaver-runtime` artifact
+    private static final Handle LEVEL_GUARD_BOOTSTRAP_HANDLE = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "org/apache/logging/log4j/weaver/runtime/LevelGuardBootstrap",
+            "isEnabled",
+            Type.getMethodDescriptor(
+                    Type.getType(CallSite.class),
+                    Type.getType(MethodHandles.Lookup.class),
+                    STRING_TYPE,
+                    METHOD_TYPE_TYPE),
+            false);
 
     private final LocationClassVisitor locationClassVisitor;
     private final Map<String, ClassConversionHandler> handlers;
 
     // A pool of local variables
-    private final Integer[] localVariables = new Integer[12];
-    private final Label[] startLabels = new Label[12];
+    private final Integer[] localVariables = new Integer[16];
+    private final Label[] startLabels = new Label[16];
     // Next available variable index
     private int nextVariable = 0;
 
@@ -96,7 +118,11 @@ public class LocationMethodVisitor extends GeneratorAdapter {
     public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
         resetLocals();
         final ClassConversionHandler handler = handlers.get(owner);
-        if (handler != null) {
+        if (handler != null && locationClassVisitor.isOutlineStatements() && handler.canOutline(name)) {
+            // Replace the statement with a call to a helper method
+            final Handle helper = locationClassVisitor.addOutlinedStatement(owner, name, descriptor, lineNumber);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, helper.getOwner(), helper.getName(), helper.getDesc(), false);
+        } else if (handler != null) {
             handler.handleMethodInstruction(this, name, descriptor);
         } else {
             super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
@@ -106,15 +132,111 @@ public class LocationMethodVisitor extends GeneratorAdapter {
     /**
      * Assuming the top of the stack holds a {@code LogBuilder}, add location
      * information to it.
+     * <p>
+     *     If hit counters are enabled, the counter of the logging statement is incremented unless the builder is
+     *     {@code LogBuilder.NOOP}, which is returned by the logger if the level is disabled.
+     * </p>
      */
     public void storeLocation() {
-        final LocationCacheValue location = locationClassVisitor.addStackTraceElement(lineNumber);
-        getStatic(location.getType(), location.getFieldName(), STACK_TRACE_ELEMENT_ARRAY_TYPE);
-        push(location.getIndex());
-        arrayLoad(STACK_TRACE_ELEMENT_TYPE);
+        final LocationCacheValue hitCounter = locationClassVisitor.addHitCounter(lineNumber);
+        if (hitCounter != null) {
+            final Label disabled = newLabel();
+            dup();
+            getStatic(LOG_BUILDER_TYPE, NOOP_FIELD, LOG_BUILDER_TYPE);
+            ifCmp(LOG_BUILDER_TYPE, EQ, disabled);
+            incrementHitCounter(hitCounter);
+            mark(disabled);
+        }
+        pushLocation();
         invokeInterface(LOG_BUILDER_TYPE, WITH_LOCATION_METHOD);
     }
 
+    /**
+     * Pushes the {@link StackTraceElement} of the current logging statement on the stack.
+     * <p>
+     *     If hit counters are enabled, the counter of the logging statement is also incremented, so this method must
+     *     only be called once the logging statement is known to be enabled.
+     * </p>
+     */
+    public void loadLocation() {
+        final LocationCacheValue hitCounter = locationClassVisitor.addHitCounter(lineNumber);
+        if (hitCounter != null) {
+            incrementHitCounter(hitCounter);
+        }
+        pushLocation();
+    }
+
+    private void incrementHitCounter(final LocationCacheValue hitCounter) {
+        getStatic(hitCounter.getType(), hitCounter.getFieldName(), HIT_COUNTERS_TYPE);
+        push(hitCounter.getIndex());
+        invokeVirtual(HIT_COUNTERS_TYPE, INCREMENT_METHOD);
+    }
+
+    private void pushLocation() {
+        final LocationCacheValue location = locationClassVisitor.addStackTraceElement(lineNumber);
+        if (location.getConstant() != null) {
+            visitLdcInsn(location.getConstant());
+        } else if (location.getMethod() != null) {
+            final Handle method = location.getMethod();
+            push(location.getIndex());
+            invokeStatic(Type.getObjectType(method.getOwner()), new Method(method.getName(), method.getDesc()));
+        } else {
+            getStatic(location.getType(), location.getFieldName(), STACK_TRACE_ELEMENT_ARRAY_TYPE);
+            push(location.getIndex());
+            arrayLoad(STACK_TRACE_ELEMENT_TYPE);
+        }
+    }
+
+    /**
+     * Calls a static method of the location cache, which logs a message with the given location.
+     * <p>
+     * The stack must contain the logger, level, marker, location, message arguments and throwable.
+     * </p>
+     * @param messageTypes the types of the message arguments.
+     */
+    public void invokeLogMethod(final Type[] messageTypes) {
+        final Handle logMethod = locationClassVisitor.addLogMethod(messageTypes);
+        invokeStatic(Type.getObjectType(logMethod.getOwner()), new Method(logMethod.getName(), logMethod.getDesc()));
+    }
+
+    /**
+     * Returns {@code true} if the class literal of the converted class can be loaded by {@link #loadDeclaringClass()}.
+     */
+    public boolean canLoadDeclaringClass() {
+        return locationClassVisitor.isClassConstantSupported();
+    }
+
+    /**
+     * Pushes the class literal of the converted class on the stack.
+     */
+    public void loadDeclaringClass() {
+        push(locationClassVisitor.getDeclaringClassType());
+    }
+
+    /**
+     * Returns {@code true} if level checks are replaced with {@code invokedynamic} instructions.
+     */
+    public boolean isInvokeDynamicGuards() {
+        return locationClassVisitor.isInvokeDynamicGuards();
+    }
+
+    /**
+     * Checks if a logging statement is enabled.
+     * <p>
+     * The stack must contain the logger, level and marker.
+     * </p>
+     */
+    public void invokeIsEnabled() {
+        if (isInvokeDynamicGuards()) {
+            invokeDynamic(
+                    IS_ENABLED_METHOD.getName(),
+                    Type.getMethodDescriptor(Type.BOOLEAN_TYPE, LOGGER_TYPE, LEVEL_TYPE, MARKER_TYPE),
+                    LEVEL_GUARD_BOOTSTRAP_HANDLE);
+        } else {
+            invokeInterface(LOGGER_TYPE, IS_ENABLED_METHOD);
+        }
+    }
+
     @Override
     @SuppressFBWarnings(value = {"EI_EXPOSE_REP2"})
     public void visitLabel(Label label) {
@@ -153,6 +275,11 @@ public class LocationMethodVisitor extends GeneratorAdapter {
     }
 
     public void invokeSupplierLambda(SupplierLambdaType type) {
+        if (locationClassVisitor.isSupplierClasses()) {
+            final Handle factory = locationClassVisitor.createSupplier(type);
+            invokeStatic(Type.getObjectType(factory.getOwner()), new Method(factory.getName(), factory.getDesc()));
+            return;
+        }
         invokeDynamic(
                 "get",
                 type.getInvokedMethodDescriptor(),
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.CLASS_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_MANAGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Replaces the {@code LogManager.getLogger} and {@code LogManager.getFormatterLogger} calls with a constant argument
+ * with loggers cached in the location cache.
+ * <p>
+ *     A call like {@code LogManager.getLogger(Foo.class)} or {@code LogManager.getLogger()} in class {@code Foo} is
+ *     rewritten into {@code Foo$$Log4j2$$Cache.getLogger0()}, which looks up the logger only the first time it is
+ *     called. Only class literals and string constants that immediately precede the call are supported.
+ * </p>
+ */
+class LoggerCacheMethodVisitor extends MethodNode {
+
+    private static final String GET_LOGGER = "getLogger";
+    private static final String GET_FORMATTER_LOGGER = "getFormatterLogger";
+    private static final String NO_ARGS_DESC = Type.getMethodDescriptor(LOGGER_TYPE);
+    private static final String CLASS_DESC = Type.getMethodDescriptor(LOGGER_TYPE, CLASS_TYPE);
+    private static final String STRING_DESC = Type.getMethodDescriptor(LOGGER_TYPE, STRING_TYPE);
+
+    private final LocationClassVisitor classVisitor;
+    private final MethodVisitor next;
+
+    LoggerCacheMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        for (final AbstractInsnNode insn : instructions.toArray()) {
+            if (isLoggerFactoryCall(insn)) {
+                cacheLogger((MethodInsnNode) insn);
+            }
+        }
+        accept(next);
+    }
+
+    private void cacheLogger(final MethodInsnNode call) {
+        final Object argument;
+        if (NO_ARGS_DESC.equals(call.desc)) {
+            // The caller class is the converted class
+            argument = classVisitor.getDeclaringClassType();
+        } else if (call.getPrevious() instanceof LdcInsnNode) {
+            final LdcInsnNode constant = (LdcInsnNode) call.getPrevious();
+            final boolean isClass = constant.cst instanceof Type && ((Type) constant.cst).getSort() == Type.OBJECT;
+            if (CLASS_DESC.equals(call.desc) ? !isClass : !(constant.cst instanceof String)) {
+                return;
+            }
+            argument = constant.cst;
+            instructions.remove(constant);
+        } else {
+            return;
+        }
+        final String descriptor = argument instanceof String ? STRING_DESC : CLASS_DESC;
+        final Handle logger = classVisitor.addCachedLogger(call.name, descriptor, argument);
+        instructions.set(
+                call,
+                new MethodInsnNode(Opcodes.INVOKESTATIC, logger.getOwner(), logger.getName(), logger.getDesc(), false));
+    }
+
+    private static boolean isLoggerFactoryCall(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
+            return false;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        return LOG_MANAGER_TYPE.getInternalName().equals(call.owner)
+                && (GET_LOGGER.equals(call.name) || GET_FORMATTER_LOGGER.equals(call.name))
+                && (NO_ARGS_DESC.equals(call.desc) || CLASS_DESC.equals(call.desc) || STRING_DESC.equals(call.desc));
+    }
+}
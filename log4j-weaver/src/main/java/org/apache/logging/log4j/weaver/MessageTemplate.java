@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_ARRAY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.THROWABLE_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.InstructionAdapter;
+
+/**
+ * A constant message pattern with {@code {}} placeholders, split into its literal segments.
+ * <p>
+ *     Each template is compiled into a {@code Message} implementation, whose {@code formatTo} method appends the
+ *     literal segments and the parameters directly, without parsing the pattern. The parameters are appended with
+ *     {@code StringBuilders.appendSpecificTypes}, which does not allocate for strings, boxed primitives and
+ *     {@code StringBuilderFormattable} objects, and {@code ParameterizedMessage.deepToString} otherwise, so the
+ *     result is the same as for a {@code ParameterizedMessage}.
+ * </p>
+ * <p>
+ *     If thread locals are enabled, Log4j reuses its parameterized messages, so the message class is only used if
+ *     its {@value #PRECOMPILED_FIELD} flag is {@code true}.
+ * </p>
+ */
+final class MessageTemplate {
+
+    /**
+     * Name of the static method that creates a message from its parameters.
+     */
+    static final String FACTORY_METHOD = "create";
+
+    /**
+     * Name of the {@code static final boolean} field, which is {@code true} if the message class should be used.
+     */
+    static final String PRECOMPILED_FIELD = "PRECOMPILED";
+
+    private static final String APPEND_PARAMETER_METHOD = "appendParameter";
+
+    private static final Type PARAMETERIZED_MESSAGE_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/message/ParameterizedMessage");
+    private static final Type STRING_BUILDER_TYPE = Type.getType(StringBuilder.class);
+    private static final Type STRING_BUILDERS_TYPE = Type.getObjectType("org/apache/logging/log4j/util/StringBuilders");
+    private static final Type LOG4J_CONSTANTS_TYPE = Type.getObjectType("org/apache/logging/log4j/util/Constants");
+    private static final Type STRING_BUILDER_FORMATTABLE_TYPE =
+            Type.getObjectType("org/apache/logging/log4j/util/StringBuilderFormattable");
+    // Expected length of a formatted parameter
+    private static final int PARAMETER_LENGTH = 16;
+
+    private final String pattern;
+    private final List<String> segments;
+
+    private MessageTemplate(final String pattern, final List<String> segments) {
+        this.pattern = pattern;
+        this.segments = segments;
+    }
+
+    /**
+     * Splits a message pattern at its placeholders.
+     *
+     * @param pattern a message pattern,
+     * @return the template or {@code null} if the pattern contains escape characters.
+     */
+    static MessageTemplate parse(final String pattern) {
+        if (pattern.indexOf('\\') >= 0) {
+            return null;
+        }
+        final List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < pattern.length() - 1; i++) {
+            if (pattern.charAt(i) == '{' && pattern.charAt(i + 1) == '}') {
+                segments.add(pattern.substring(start, i));
+                start = i + 2;
+                i++;
+            }
+        }
+        segments.add(pattern.substring(start));
+        return new MessageTemplate(pattern, Collections.unmodifiableList(segments));
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    int getParameterCount() {
+        return segments.size() - 1;
+    }
+
+    /**
+     * Returns the descriptor of the static factory method of the message class.
+     */
+    String getFactoryDescriptor() {
+        final Type[] parameters = new Type[getParameterCount()];
+        Arrays.fill(parameters, OBJECT_TYPE);
+        return Type.getMethodDescriptor(MESSAGE_TYPE, parameters);
+    }
+
+    /**
+     * Generates the message class of the template.
+     *
+     * @param internalName the internal name of the generated class,
+     * @param visibility   {@link Opcodes#ACC_PUBLIC} if the class and its factory method must be public or {@code 0}.
+     */
+    byte[] generateClass(final String internalName, final int visibility) {
+        final ClassWriter cv = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cv.visit(
+                Opcodes.V1_8,
+                visibility | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                internalName,
+                null,
+                OBJECT_TYPE.getInternalName(),
+                new String[] {MESSAGE_TYPE.getInternalName(), STRING_BUILDER_FORMATTABLE_TYPE.getInternalName()});
+        final int parameterCount = getParameterCount();
+        for (int i = 0; i < parameterCount; i++) {
+            cv.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "p" + i, OBJECT_TYPE.getDescriptor(), null, null)
+                    .visitEnd();
+        }
+        cv.visitField(
+                        visibility | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                        PRECOMPILED_FIELD,
+                        Type.BOOLEAN_TYPE.getDescriptor(),
+                        null,
+                        null)
+                .visitEnd();
+        writeStaticInitializer(cv, internalName);
+        writeConstructor(cv, internalName);
+        writeFactoryMethod(cv, internalName, visibility);
+        writeAppendParameter(cv);
+        writeFormatTo(cv, internalName);
+        writeGetFormattedMessage(cv, internalName);
+        writeGetFormat(cv);
+        writeGetParameters(cv, internalName);
+        writeGetThrowable(cv);
+        writeWriteReplace(cv, internalName);
+        cv.visitEnd();
+        return cv.toByteArray();
+    }
+
+    /**
+     * Initializes the {@value #PRECOMPILED_FIELD} flag to {@code !Constants.ENABLE_THREADLOCALS}.
+     */
+    private static void writeStaticInitializer(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv =
+                new InstructionAdapter(cv.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null));
+        mv.visitCode();
+        mv.getstatic(LOG4J_CONSTANTS_TYPE.getInternalName(), "ENABLE_THREADLOCALS", Type.BOOLEAN_TYPE.getDescriptor());
+        mv.iconst(1);
+        mv.xor(Type.BOOLEAN_TYPE);
+        mv.putstatic(internalName, PRECOMPILED_FIELD, Type.BOOLEAN_TYPE.getDescriptor());
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private String getConstructorDescriptor() {
+        final Type[] parameters = new Type[getParameterCount()];
+        Arrays.fill(parameters, OBJECT_TYPE);
+        return Type.getMethodDescriptor(Type.VOID_TYPE, parameters);
+    }
+
+    private void writeConstructor(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv = new InstructionAdapter(
+                cv.visitMethod(Opcodes.ACC_PRIVATE, "<init>", getConstructorDescriptor(), null, null));
+        mv.visitCode();
+        mv.load(0, OBJECT_TYPE);
+        mv.invokespecial(OBJECT_TYPE.getInternalName(), "<init>", "()V", false);
+        for (int i = 0; i < getParameterCount(); i++) {
+            mv.load(0, OBJECT_TYPE);
+            mv.load(i + 1, OBJECT_TYPE);
+            mv.putfield(internalName, "p" + i, OBJECT_TYPE.getDescriptor());
+        }
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeFactoryMethod(final ClassWriter cv, final String internalName, final int visibility) {
+        final InstructionAdapter mv = new InstructionAdapter(
+                cv.visitMethod(visibility | Opcodes.ACC_STATIC, FACTORY_METHOD, getFactoryDescriptor(), null, null));
+        mv.visitCode();
+        mv.anew(Type.getObjectType(internalName));
+        mv.dup();
+        for (int i = 0; i < getParameterCount(); i++) {
+            mv.load(i, OBJECT_TYPE);
+        }
+        mv.invokespecial(internalName, "<init>", getConstructorDescriptor(), false);
+        mv.areturn(MESSAGE_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Appends a parameter without allocations, unless it requires {@code ParameterizedMessage.deepToString}.
+     */
+    private static void writeAppendParameter(final ClassWriter cv) {
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+                APPEND_PARAMETER_METHOD,
+                Type.getMethodDescriptor(Type.VOID_TYPE, STRING_BUILDER_TYPE, OBJECT_TYPE),
+                null,
+                null));
+        final Label end = new Label();
+        mv.visitCode();
+        mv.load(0, STRING_BUILDER_TYPE);
+        mv.load(1, OBJECT_TYPE);
+        mv.invokestatic(
+                STRING_BUILDERS_TYPE.getInternalName(),
+                "appendSpecificTypes",
+                Type.getMethodDescriptor(Type.BOOLEAN_TYPE, STRING_BUILDER_TYPE, OBJECT_TYPE),
+                false);
+        mv.ifne(end);
+        mv.load(0, STRING_BUILDER_TYPE);
+        mv.load(1, OBJECT_TYPE);
+        mv.invokestatic(
+                PARAMETERIZED_MESSAGE_TYPE.getInternalName(),
+                "deepToString",
+                Type.getMethodDescriptor(STRING_TYPE, OBJECT_TYPE),
+                false);
+        mv.invokevirtual(
+                STRING_BUILDER_TYPE.getInternalName(),
+                "append",
+                Type.getMethodDescriptor(STRING_BUILDER_TYPE, STRING_TYPE),
+                false);
+        mv.pop();
+        mv.visitLabel(end);
+        // The class writer does not compute frames
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeFormatTo(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                Opcodes.ACC_PUBLIC,
+                "formatTo",
+                Type.getMethodDescriptor(Type.VOID_TYPE, STRING_BUILDER_TYPE),
+                null,
+                null));
+        final String appendDescriptor = Type.getMethodDescriptor(STRING_BUILDER_TYPE, STRING_TYPE);
+        mv.visitCode();
+        mv.load(1, STRING_BUILDER_TYPE);
+        for (int i = 0; i < segments.size(); i++) {
+            if (i > 0) {
+                mv.dup();
+                mv.load(0, OBJECT_TYPE);
+                mv.getfield(internalName, "p" + (i - 1), OBJECT_TYPE.getDescriptor());
+                mv.invokestatic(
+                        internalName,
+                        APPEND_PARAMETER_METHOD,
+                        Type.getMethodDescriptor(Type.VOID_TYPE, STRING_BUILDER_TYPE, OBJECT_TYPE),
+                        false);
+            }
+            final String segment = segments.get(i);
+            if (!segment.isEmpty()) {
+                mv.aconst(segment);
+                mv.invokevirtual(STRING_BUILDER_TYPE.getInternalName(), "append", appendDescriptor, false);
+            }
+        }
+        mv.pop();
+        mv.areturn(Type.VOID_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeGetFormattedMessage(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                Opcodes.ACC_PUBLIC, "getFormattedMessage", Type.getMethodDescriptor(STRING_TYPE), null, null));
+        mv.visitCode();
+        mv.anew(STRING_BUILDER_TYPE);
+        mv.dup();
+        mv.iconst(pattern.length() + getParameterCount() * PARAMETER_LENGTH);
+        mv.invokespecial(
+                STRING_BUILDER_TYPE.getInternalName(),
+                "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE),
+                false);
+        mv.store(1, STRING_BUILDER_TYPE);
+        mv.load(0, OBJECT_TYPE);
+        mv.load(1, STRING_BUILDER_TYPE);
+        mv.invokevirtual(
+                internalName, "formatTo", Type.getMethodDescriptor(Type.VOID_TYPE, STRING_BUILDER_TYPE), false);
+        mv.load(1, STRING_BUILDER_TYPE);
+        mv.invokevirtual(
+                STRING_BUILDER_TYPE.getInternalName(), "toString", Type.getMethodDescriptor(STRING_TYPE), false);
+        mv.areturn(STRING_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeGetFormat(final ClassWriter cv) {
+        final InstructionAdapter mv = new InstructionAdapter(
+                cv.visitMethod(Opcodes.ACC_PUBLIC, "getFormat", Type.getMethodDescriptor(STRING_TYPE), null, null));
+        mv.visitCode();
+        mv.aconst(pattern);
+        mv.areturn(STRING_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeGetParameters(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                Opcodes.ACC_PUBLIC, "getParameters", Type.getMethodDescriptor(OBJECT_ARRAY_TYPE), null, null));
+        mv.visitCode();
+        mv.iconst(getParameterCount());
+        mv.newarray(OBJECT_TYPE);
+        for (int i = 0; i < getParameterCount(); i++) {
+            mv.dup();
+            mv.iconst(i);
+            mv.load(0, OBJECT_TYPE);
+            mv.getfield(internalName, "p" + i, OBJECT_TYPE.getDescriptor());
+            mv.astore(OBJECT_TYPE);
+        }
+        mv.areturn(OBJECT_ARRAY_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeGetThrowable(final ClassWriter cv) {
+        final InstructionAdapter mv = new InstructionAdapter(cv.visitMethod(
+                Opcodes.ACC_PUBLIC, "getThrowable", Type.getMethodDescriptor(THROWABLE_TYPE), null, null));
+        mv.visitCode();
+        mv.aconst(null);
+        mv.areturn(THROWABLE_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Serializes the message as a {@code ParameterizedMessage}, which handles non-serializable parameters.
+     */
+    private static void writeWriteReplace(final ClassWriter cv, final String internalName) {
+        final InstructionAdapter mv = new InstructionAdapter(
+                cv.visitMethod(Opcodes.ACC_PRIVATE, "writeReplace", Type.getMethodDescriptor(OBJECT_TYPE), null, null));
+        mv.visitCode();
+        mv.anew(PARAMETERIZED_MESSAGE_TYPE);
+        mv.dup();
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(internalName, "getFormat", Type.getMethodDescriptor(STRING_TYPE), false);
+        mv.load(0, OBJECT_TYPE);
+        mv.invokevirtual(internalName, "getParameters", Type.getMethodDescriptor(OBJECT_ARRAY_TYPE), false);
+        mv.invokespecial(
+                PARAMETERIZED_MESSAGE_TYPE.getInternalName(),
+                "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE, OBJECT_ARRAY_TYPE),
+                false);
+        mv.areturn(OBJECT_TYPE);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Replaces constant message patterns with precompiled messages.
+ * <p>
+ *     A call like {@code logger.info("Hello {}!", name)} is rewritten into {@code logger.info(Message0.create(name))},
+ *     where {@code Message0} is a {@code Message} class generated by {@link LocationCacheGenerator} for the
+ *     {@code "Hello {}!"} pattern. This is only done for calls to the fixed-arity {@code Logger} and
+ *     {@code LogBuilder} methods, whose pattern is a constant with exactly one placeholder per parameter, unless
+ *     the logger might be a formatter logger.
+ * </p>
+ * <p>
+ *     If thread locals are enabled, the reusable messages of Log4j do not allocate, so the original call is kept
+ *     and the precompiled message is only used if the {@code static final} flag of its class is set:
+ * </p>
+ * <pre>
+ * if (Message0.PRECOMPILED) {
+ *     logger.info(Message0.create(name));
+ * } else {
+ *     logger.info("Hello {}!", name);
+ * }
+ * </pre>
+ * <p>
+ *     The calls are rewritten after the level guards are inserted, so that the branch is inside the guard.
+ * </p>
+ */
+class MessageTemplateMethodVisitor extends MethodNode {
+
+    private static final int MAX_PARAMETERS = 10;
+
+    private final LocationClassVisitor classVisitor;
+    private final String owner;
+    private final MethodVisitor next;
+
+    MessageTemplateMethodVisitor(
+            final LocationClassVisitor classVisitor,
+            final String owner,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classVisitor = classVisitor;
+        this.owner = owner;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasTemplateCalls()) {
+            try {
+                rewriteTemplateCalls(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted as is
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasTemplateCalls() {
+        for (final AbstractInsnNode insn : instructions) {
+            if (getParameterCount(insn) > 0) {
+                return true;
+            }
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void rewriteTemplateCalls(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        final FormatterLoggers formatterLoggers = classVisitor.getFormatterLoggers();
+        final List<LdcInsnNode> patterns = new ArrayList<>();
+        final List<MethodInsnNode> calls = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            final int parameterCount = getParameterCount(insns[i]);
+            if (parameterCount > 0 && frames[i] != null && !formatterLoggers.hasFormatterReceiver(this, frames, i)) {
+                final LdcInsnNode pattern = getConstantPattern(frames, insns, controlFlow, i, parameterCount);
+                if (pattern != null) {
+                    patterns.add(pattern);
+                    calls.add((MethodInsnNode) insns[i]);
+                }
+            }
+        }
+        // Instructions are modified after the analysis, since it relies on their indexes
+        for (int i = 0; i < calls.size(); i++) {
+            final MethodInsnNode call = calls.get(i);
+            final MessageTemplate template = MessageTemplate.parse((String) patterns.get(i).cst);
+            final Handle factory = classVisitor.addMessageTemplate(template);
+            final Type[] args = Type.getArgumentTypes(call.desc);
+            final Type[] newArgs = Arrays.copyOf(args, args.length - template.getParameterCount());
+            newArgs[newArgs.length - 1] = MESSAGE_TYPE;
+            final MethodInsnNode precompiledCall = (MethodInsnNode) call.clone(Collections.emptyMap());
+            precompiledCall.desc = Type.getMethodDescriptor(Type.VOID_TYPE, newArgs);
+
+            final LabelNode original = new LabelNode();
+            final LabelNode end = new LabelNode();
+            final InsnList branch = new InsnList();
+            branch.add(new FieldInsnNode(
+                    Opcodes.GETSTATIC,
+                    factory.getOwner(),
+                    MessageTemplate.PRECOMPILED_FIELD,
+                    Type.BOOLEAN_TYPE.getDescriptor()));
+            branch.add(new JumpInsnNode(Opcodes.IFEQ, original));
+            branch.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC, factory.getOwner(), factory.getName(), factory.getDesc(), false));
+            // Drops the pattern below the message
+            branch.add(new InsnNode(Opcodes.SWAP));
+            branch.add(new InsnNode(Opcodes.POP));
+            branch.add(precompiledCall);
+            branch.add(new JumpInsnNode(Opcodes.GOTO, end));
+            branch.add(original);
+            instructions.insertBefore(call, branch);
+            instructions.insert(call, end);
+        }
+    }
+
+    /**
+     * Returns the constant pattern of a logging call, if it can be precompiled.
+     *
+     * @return the instruction that loads the pattern or {@code null}.
+     */
+    private LdcInsnNode getConstantPattern(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final int callIndex,
+            final int parameterCount) {
+        final Frame<SourceValue> callFrame = frames[callIndex];
+        final SourceValue value = callFrame.getStack(callFrame.getStackSize() - 1 - parameterCount);
+        if (value.insns.size() != 1) {
+            return null;
+        }
+        final AbstractInsnNode producer = value.insns.iterator().next();
+        if (!(producer instanceof LdcInsnNode) || !(((LdcInsnNode) producer).cst instanceof String)) {
+            return null;
+        }
+        final MessageTemplate template = MessageTemplate.parse((String) ((LdcInsnNode) producer).cst);
+        if (template == null || template.getParameterCount() != parameterCount) {
+            return null;
+        }
+        // The pattern must stay on the stack until the call
+        final int patternIndex = instructions.indexOf(producer);
+        if (frames[patternIndex] == null || controlFlow.hasJumpAcross(patternIndex, callIndex)) {
+            return null;
+        }
+        final int stackSize = frames[patternIndex].getStackSize();
+        for (int i = patternIndex + 1; i <= callIndex; i++) {
+            if (frames[i] == null || frames[i].getStackSize() <= stackSize || controlFlow.isTryCatchBoundary(i)) {
+                return null;
+            }
+        }
+        // The pattern must not be copied
+        int next = patternIndex + 1;
+        while (insns[next].getOpcode() < 0) {
+            next++;
+        }
+        final int opcode = insns[next].getOpcode();
+        return opcode >= Opcodes.DUP && opcode <= Opcodes.SWAP ? null : (LdcInsnNode) producer;
+    }
+
+    /**
+     * Checks for calls to the {@code Logger} and {@code LogBuilder} methods with a {@code String, Object, ...}
+     * signature.
+     *
+     * @return the number of {@code Object} parameters or {@code 0} if the instruction is not such a call.
+     */
+    static int getParameterCount(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKEINTERFACE) {
+            return 0;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        final int prefixLength;
+        if (LOGGER_TYPE.getInternalName().equals(call.owner)) {
+            switch (call.name) {
+                case "debug":
+                case "error":
+                case "fatal":
+                case "info":
+                case "log":
+                case "trace":
+                case "warn":
+                    prefixLength = "log".equals(call.name) ? 1 : 0;
+                    break;
+                default:
+                    return 0;
+            }
+        } else if (LOG_BUILDER_TYPE.getInternalName().equals(call.owner) && "log".equals(call.name)) {
+            prefixLength = -1;
+        } else {
+            return 0;
+        }
+        final Type[] args = Type.getArgumentTypes(call.desc);
+        int patternIndex = args.length - 1;
+        while (patternIndex >= 0 && OBJECT_TYPE.equals(args[patternIndex])) {
+            patternIndex--;
+        }
+        final int parameterCount = args.length - 1 - patternIndex;
+        if (patternIndex < 0
+                || !STRING_TYPE.equals(args[patternIndex])
+                || parameterCount > MAX_PARAMETERS
+                || Type.getReturnType(call.desc).getSort() != Type.VOID) {
+            return 0;
+        }
+        if (prefixLength < 0) {
+            // `LogBuilder.log(String, Object...)`
+            return patternIndex == 0 ? parameterCount : 0;
+        }
+        // `Logger.<level>([Level,] [Marker,] String, Object...)`
+        final boolean validPrefix = (prefixLength == 0 || LEVEL_TYPE.equals(args[0]))
+                && (patternIndex == prefixLength
+                        || (patternIndex == prefixLength + 1 && MARKER_TYPE.equals(args[prefixLength])));
+        return validPrefix ? parameterCount : 0;
+    }
+}
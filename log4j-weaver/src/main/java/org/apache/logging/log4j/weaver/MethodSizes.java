@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Reads the bytecode size of the methods of a class.
+ * <p>
+ * The size is compared to the thresholds used by the HotSpot JIT compiler.
+ * </p>
+ */
+final class MethodSizes {
+
+    /**
+     * Maximum size of a hot method that can be inlined: the default value of {@code -XX:FreqInlineSize}.
+     */
+    static final int FREQ_INLINE_SIZE = 325;
+
+    /**
+     * Maximum size of a method that is JIT compiled: the default value of {@code -XX:HugeMethodLimit}.
+     */
+    static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final String CODE_ATTRIBUTE = "Code";
+
+    /**
+     * Returns the length of the {@code Code} attribute of each method.
+     *
+     * @param reader a class reader.
+     * @return a map between the name and descriptor of each concrete method and its bytecode size.
+     */
+    static Map<String, Integer> getCodeLengths(final ClassReader reader) {
+        final Map<String, Integer> codeLengths = new HashMap<>();
+        final char[] buffer = new char[reader.getMaxStringLength()];
+        // Skip access flags, this class, super class and interfaces
+        int offset = reader.header + 6;
+        offset += 2 + 2 * reader.readUnsignedShort(offset);
+        // Skip fields
+        int count = reader.readUnsignedShort(offset);
+        offset += 2;
+        while (count-- > 0) {
+            offset = skipAttributes(reader, offset + 6);
+        }
+        // Methods
+        count = reader.readUnsignedShort(offset);
+        offset += 2;
+        while (count-- > 0) {
+            final String name = reader.readUTF8(offset + 2, buffer);
+            final String descriptor = reader.readUTF8(offset + 4, buffer);
+            int attributeCount = reader.readUnsignedShort(offset + 6);
+            offset += 8;
+            while (attributeCount-- > 0) {
+                if (CODE_ATTRIBUTE.equals(reader.readUTF8(offset, buffer))) {
+                    // Skip max stack and max locals
+                    codeLengths.put(name + descriptor, reader.readInt(offset + 10));
+                }
+                offset += 6 + reader.readInt(offset + 2);
+            }
+        }
+        return codeLengths;
+    }
+
+    private static int skipAttributes(final ClassReader reader, final int offset) {
+        int count = reader.readUnsignedShort(offset);
+        int current = offset + 2;
+        while (count-- > 0) {
+            current += 6 + reader.readInt(current + 2);
+        }
+        return current;
+    }
+
+    private MethodSizes() {}
+}
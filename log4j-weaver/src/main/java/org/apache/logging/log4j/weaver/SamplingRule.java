@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Selects the logging statements, whose events are sampled before their message is created.
+ * <p>
+ *     A rule has the format {@code <pattern>=<rate>}. The pattern is either a fully qualified class name, optionally
+ *     followed by {@code :<line>} to select a single logging statement, or a prefix of class names ending with
+ *     {@code *}. The rate is either {@code 1/<n>}, to log one event out of {@code n} in each thread, or
+ *     {@code <k>/s}, to log at most {@code k} events per second.
+ * </p>
+ */
+final class SamplingRule {
+
+    private static final Pattern ONE_IN = Pattern.compile("1/(\\d+)");
+    private static final Pattern PER_SECOND = Pattern.compile("(\\d+)/s");
+    private static final String ONE_IN_ELEMENT = "oneIn";
+    private static final String PER_SECOND_ELEMENT = "perSecond";
+
+    private final String classPattern;
+    private final boolean prefix;
+    private final int lineNumber;
+    private final String rate;
+
+    private SamplingRule(final String classPattern, final boolean prefix, final int lineNumber, final String rate) {
+        this.classPattern = classPattern;
+        this.prefix = prefix;
+        this.lineNumber = lineNumber;
+        this.rate = rate;
+    }
+
+    /**
+     * Parses a sampling rule.
+     *
+     * @throws IllegalArgumentException if the rule is not valid.
+     */
+    static SamplingRule parse(final String rule) {
+        final String pattern = StringUtils.substringBeforeLast(rule, "=").trim();
+        final String rate = parseRate(StringUtils.substringAfterLast(rule, "=").trim());
+        if (pattern.isEmpty() || rate == null) {
+            throw new IllegalArgumentException("Invalid sampling rule: " + rule);
+        }
+        if (pattern.endsWith("*")) {
+            return new SamplingRule(pattern.substring(0, pattern.length() - 1), true, -1, rate);
+        }
+        final String lineNumber = StringUtils.substringAfter(pattern, ":");
+        if (lineNumber.isEmpty()) {
+            return new SamplingRule(pattern, false, -1, rate);
+        }
+        if (!StringUtils.isNumeric(lineNumber)) {
+            throw new IllegalArgumentException("Invalid sampling rule: " + rule);
+        }
+        return new SamplingRule(StringUtils.substringBefore(pattern, ":"), false, Integer.parseInt(lineNumber), rate);
+    }
+
+    /**
+     * Validates a sampling rate.
+     *
+     * @return the rate or {@code null} if it is not valid.
+     */
+    static String parseRate(final String rate) {
+        final Matcher oneIn = ONE_IN.matcher(rate);
+        if (oneIn.matches()) {
+            return isPositive(oneIn.group(1)) ? rate : null;
+        }
+        final Matcher perSecond = PER_SECOND.matcher(rate);
+        return perSecond.matches() && isPositive(perSecond.group(1)) ? rate : null;
+    }
+
+    /**
+     * Returns the sampling rate of a {@code @Sampled} annotation.
+     *
+     * @param values the names and values of the elements of the annotation, as in {@code AnnotationNode.values}.
+     * @return the rate or {@code null} if the annotation does not set a positive rate.
+     */
+    static String getAnnotationRate(final List<Object> values) {
+        int oneIn = 0;
+        int perSecond = 0;
+        if (values != null) {
+            for (int i = 0; i + 1 < values.size(); i += 2) {
+                if (ONE_IN_ELEMENT.equals(values.get(i))) {
+                    oneIn = (Integer) values.get(i + 1);
+                } else if (PER_SECOND_ELEMENT.equals(values.get(i))) {
+                    perSecond = (Integer) values.get(i + 1);
+                }
+            }
+        }
+        return toRate(oneIn, perSecond);
+    }
+
+    /**
+     * Converts the elements of a {@code @Sampled} annotation into a rate: {@code perSecond} takes precedence.
+     */
+    private static String toRate(final int oneIn, final int perSecond) {
+        if (perSecond > 0) {
+            return perSecond + "/s";
+        }
+        return oneIn > 0 ? "1/" + oneIn : null;
+    }
+
+    private static boolean isPositive(final String number) {
+        try {
+            return Integer.parseInt(number) > 0;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the rule selects a logging statement.
+     *
+     * @param className  the fully qualified name of the class,
+     * @param lineNumber the line number of the logging statement.
+     */
+    boolean matches(final String className, final int lineNumber) {
+        if (prefix) {
+            return className.startsWith(classPattern);
+        }
+        return className.equals(classPattern) && (this.lineNumber < 0 || this.lineNumber == lineNumber);
+    }
+
+    String getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_BUILDER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_ARRAY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.OBJECT_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.STRING_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Replaces calls to the varargs logging methods with calls to their fixed-arity overloads.
+ * <p>
+ *     If the {@code Object[]} argument of a logging method is created in place, i.e. the instructions that create it
+ *     are {@code anewarray} followed by a {@code dup}/index/value/{@code aastore} sequence for each element, the array
+ *     creation is removed and the elements are passed as separate arguments. This is only done for arrays with up to
+ *     {@value #MAX_PARAMETERS} elements, which is the maximum arity of the {@code Logger} and {@code LogBuilder}
+ *     methods.
+ * </p>
+ */
+class VarargsMethodVisitor extends MethodNode {
+
+    private static final int MAX_PARAMETERS = 10;
+    private static final String LOG_BUILDER_VARARGS_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE, OBJECT_ARRAY_TYPE);
+
+    private final String owner;
+    private final MethodVisitor next;
+
+    VarargsMethodVisitor(
+            final String owner,
+            final int access,
+            final String name,
+            final String descriptor,
+            final String signature,
+            final String[] exceptions,
+            final MethodVisitor next) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.owner = owner;
+        this.next = next;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (hasVarargsCalls()) {
+            try {
+                rewriteVarargsCalls(new Analyzer<>(new SourceInterpreter()).analyze(owner, this));
+            } catch (final AnalyzerException e) {
+                // The method is converted as is
+            }
+        }
+        accept(next);
+    }
+
+    private boolean hasVarargsCalls() {
+        for (final AbstractInsnNode insn : instructions) {
+            if (isVarargsCall(insn)) {
+                return true;
+            }
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void rewriteVarargsCalls(final Frame<SourceValue>[] frames) {
+        final AbstractInsnNode[] insns = instructions.toArray();
+        final ControlFlow controlFlow = new ControlFlow(this, insns);
+        final List<AbstractInsnNode> removed = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            if (isVarargsCall(insns[i]) && frames[i] != null) {
+                final List<AbstractInsnNode> arrayInsns = getArrayCreation(frames, insns, controlFlow, i);
+                if (arrayInsns != null) {
+                    final MethodInsnNode call = (MethodInsnNode) insns[i];
+                    // Every element is a dup/index/aastore triple
+                    final int parameterCount = (arrayInsns.size() - 2) / 3;
+                    call.desc = getFixedArityDescriptor(call.desc, parameterCount);
+                    removed.addAll(arrayInsns);
+                }
+            }
+        }
+        removed.forEach(instructions::remove);
+    }
+
+    /**
+     * Returns the instructions that create the varargs array, except those that compute the value of the elements.
+     *
+     * @return the instructions to remove or {@code null} if the array is not created in place.
+     */
+    private List<AbstractInsnNode> getArrayCreation(
+            final Frame<SourceValue>[] frames,
+            final AbstractInsnNode[] insns,
+            final ControlFlow controlFlow,
+            final int callIndex) {
+        final Frame<SourceValue> callFrame = frames[callIndex];
+        // The array or one of its copies
+        AbstractInsnNode newArray = getSingleProducer(callFrame.getStack(callFrame.getStackSize() - 1));
+        while (newArray != null && newArray.getOpcode() == Opcodes.DUP) {
+            final Frame<SourceValue> dupFrame = frames[instructions.indexOf(newArray)];
+            newArray = getSingleProducer(dupFrame.getStack(dupFrame.getStackSize() - 1));
+        }
+        if (newArray == null
+                || newArray.getOpcode() != Opcodes.ANEWARRAY
+                || !OBJECT_TYPE.getInternalName().equals(((TypeInsnNode) newArray).desc)) {
+            return null;
+        }
+        final int newArrayIndex = instructions.indexOf(newArray);
+        final int countIndex = previousInsn(insns, newArrayIndex);
+        final Frame<SourceValue> newArrayFrame = frames[newArrayIndex];
+        if (countIndex < 0
+                || newArrayFrame == null
+                || getSingleProducer(newArrayFrame.getStack(newArrayFrame.getStackSize() - 1)) != insns[countIndex]) {
+            return null;
+        }
+        final int count = getIntConstant(insns[countIndex]);
+        if (count < 1 || count > MAX_PARAMETERS) {
+            return null;
+        }
+        // The array must be created by the instructions just before the call
+        final int stackSize = frames[countIndex] != null ? frames[countIndex].getStackSize() : -1;
+        if (stackSize != callFrame.getStackSize() - 1
+                || controlFlow.hasJumpAcross(countIndex, callIndex)
+                || hasTryCatchBoundary(controlFlow, countIndex, callIndex)) {
+            return null;
+        }
+        final List<AbstractInsnNode> result = new ArrayList<>(Arrays.asList(insns[countIndex], newArray));
+        // Instructions that push the array or a copy of it
+        final Set<AbstractInsnNode> arrayProducers = new HashSet<>(result.subList(1, 2));
+        int index = nextInsn(insns, newArrayIndex);
+        for (int element = 0; element < count; element++) {
+            final AbstractInsnNode dup = insns[index];
+            final int elementIndex = nextInsn(insns, index);
+            if (dup.getOpcode() != Opcodes.DUP
+                    || frames[index] == null
+                    || !arrayProducers.contains(
+                            getSingleProducer(frames[index].getStack(frames[index].getStackSize() - 1)))
+                    || getIntConstant(insns[elementIndex]) != element
+                    || frames[elementIndex] == null) {
+                return null;
+            }
+            arrayProducers.add(dup);
+            // Find the `aastore` that consumes the array, index and value
+            final int elementStackSize = frames[elementIndex].getStackSize() + 1;
+            int store = nextInsn(insns, elementIndex);
+            while (true) {
+                if (store >= callIndex || frames[store] == null || frames[store].getStackSize() < elementStackSize) {
+                    return null;
+                }
+                if (insns[store].getOpcode() == Opcodes.AASTORE
+                        && frames[store].getStackSize() == elementStackSize + 1
+                        && arrayProducers.contains(getSingleProducer(frames[store].getStack(elementStackSize - 2)))) {
+                    break;
+                }
+                store++;
+            }
+            result.add(dup);
+            result.add(insns[elementIndex]);
+            result.add(insns[store]);
+            index = nextInsn(insns, store);
+        }
+        return index == callIndex
+                        && arrayProducers.contains(getSingleProducer(callFrame.getStack(callFrame.getStackSize() - 1)))
+                ? result
+                : null;
+    }
+
+    private static boolean hasTryCatchBoundary(final ControlFlow controlFlow, final int start, final int end) {
+        for (int i = start; i <= end; i++) {
+            if (controlFlow.isTryCatchBoundary(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AbstractInsnNode getSingleProducer(final SourceValue value) {
+        return value.insns.size() == 1 ? value.insns.iterator().next() : null;
+    }
+
+    private static int nextInsn(final AbstractInsnNode[] insns, final int index) {
+        int next = index + 1;
+        while (next < insns.length && insns[next].getOpcode() < 0) {
+            next++;
+        }
+        return next;
+    }
+
+    private static int previousInsn(final AbstractInsnNode[] insns, final int index) {
+        int previous = index - 1;
+        while (previous >= 0 && insns[previous].getOpcode() < 0) {
+            previous--;
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the value of an integer constant instruction or {@code -1}.
+     */
+    private static int getIntConstant(final AbstractInsnNode insn) {
+        final int opcode = insn.getOpcode();
+        if (opcode >= Opcodes.ICONST_0 && opcode <= Opcodes.ICONST_5) {
+            return opcode - Opcodes.ICONST_0;
+        }
+        if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+            return ((IntInsnNode) insn).operand;
+        }
+        return -1;
+    }
+
+    private static String getFixedArityDescriptor(final String descriptor, final int parameterCount) {
+        final Type[] args = Type.getArgumentTypes(descriptor);
+        final Type[] newArgs = Arrays.copyOf(args, args.length - 1 + parameterCount);
+        Arrays.fill(newArgs, args.length - 1, newArgs.length, OBJECT_TYPE);
+        return Type.getMethodDescriptor(Type.VOID_TYPE, newArgs);
+    }
+
+    /**
+     * Checks for calls to {@code Logger} and {@code LogBuilder} methods with a {@code String, Object...} signature.
+     */
+    private static boolean isVarargsCall(final AbstractInsnNode insn) {
+        if (insn.getOpcode() != Opcodes.INVOKEINTERFACE) {
+            return false;
+        }
+        final MethodInsnNode call = (MethodInsnNode) insn;
+        if (LOG_BUILDER_TYPE.getInternalName().equals(call.owner)) {
+            return "log".equals(call.name) && LOG_BUILDER_VARARGS_DESCRIPTOR.equals(call.desc);
+        }
+        if (!LOGGER_TYPE.getInternalName().equals(call.owner)) {
+            return false;
+        }
+        switch (call.name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "log":
+            case "trace":
+            case "warn":
+                final Type[] args = Type.getArgumentTypes(call.desc);
+                final int length = args.length;
+                return length >= 2
+                        && OBJECT_ARRAY_TYPE.equals(args[length - 1])
+                        && STRING_TYPE.equals(args[length - 2])
+                        && ("log".equals(call.name) == LEVEL_TYPE.equals(args[0]));
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Java agent that adds location information to classes at load time.
+ * <p>
+ * The agent accepts a comma-separated list of {@code key=value} options:
+ * </p>
+ * <dl>
+ *     <dt>{@code cacheDirectory}</dt>
+ *     <dd>a directory, where woven classes are stored between JVM runs,</dd>
+ *     <dt>{@code includes}</dt>
+ *     <dd>a semicolon-separated list of package or class name prefixes to weave; all classes by default,</dd>
+ *     <dt>{@code excludes}</dt>
+ *     <dd>a semicolon-separated list of package or class name prefixes to skip; by default the JDK, ASM and Log4j
+ *     classes are skipped,</dd>
+ *     <dt>{@code lazyLocations}</dt>
+ *     <dd>if {@code true}, each location is created the first time its logging statement is executed,</dd>
+ *     <dt>{@code supplierClasses}</dt>
+ *     <dd>if {@code true}, message suppliers are created using generated classes instead of lambdas,</dd>
+ *     <dt>{@code renderLocations}</dt>
+ *     <dd>if {@code true}, the string representations of the locations are registered for the
+ *     {@code %wovenLocation} pattern converter of {@code log4j-weaver-runtime},</dd>
+ *     <dt>{@code hitCounters}</dt>
+ *     <dd>if {@code true}, the executions of each logging statement are counted and exposed through JMX by
+ *     {@code log4j-weaver-runtime},</dd>
+ *     <dt>{@code siteSwitches}</dt>
+ *     <dd>if {@code true}, each logging statement can be disabled at runtime through JMX or a watched file by
+ *     {@code log4j-weaver-runtime},</dd>
+ *     <dt>{@code levelGuards}</dt>
+ *     <dd>if {@code true}, the arguments of disabled logging statements are not evaluated,</dd>
+ *     <dt>{@code deferConcatenation}</dt>
+ *     <dd>if {@code true}, string concatenations used as messages are replaced with parameterized messages,</dd>
+ *     <dt>{@code deferStringConversion}</dt>
+ *     <dd>if {@code true}, the {@code toString()}, {@code String.valueOf} and {@code String.format} calls in the
+ *     replaced concatenations are deferred,</dd>
+ *     <dt>{@code precompiledMessages}</dt>
+ *     <dd>if {@code true}, constant message patterns are compiled into specialized message classes,</dd>
+ *     <dt>{@code garbageFreeBoxing}</dt>
+ *     <dd>if {@code true}, primitive parameters of logging calls are boxed with {@code Unbox.box},</dd>
+ *     <dt>{@code constantMessages}</dt>
+ *     <dd>if {@code true}, constant messages without parameters are replaced with shared message instances,</dd>
+ *     <dt>{@code directLogging}</dt>
+ *     <dd>if {@code true}, logging calls are converted into direct calls to
+ *     {@code LocationAwareLogger.logMessage},</dd>
+ *     <dt>{@code invokeDynamicGuards}</dt>
+ *     <dd>if {@code true}, level checks are replaced with {@code invokedynamic} instructions, which require
+ *     {@code log4j-weaver-runtime} on the classpath of the application,</dd>
+ *     <dt>{@code outlineStatements}</dt>
+ *     <dd>if {@code true}, the converted logging statements are moved into synthetic helper methods,</dd>
+ *     <dt>{@code stripBelow}</dt>
+ *     <dd>the name of a standard level: logging statements with a less specific level are removed,</dd>
+ *     <dt>{@code cacheLoggers}</dt>
+ *     <dd>if {@code true}, the loggers returned by {@code LogManager.getLogger} calls with a constant argument are
+ *     cached in static fields,</dd>
+ *     <dt>{@code cacheMarkersAndLevels}</dt>
+ *     <dd>if {@code true}, the markers and levels returned by {@code MarkerManager.getMarker} and
+ *     {@code Level.forName} calls with constant arguments are cached in static fields,</dd>
+ *     <dt>{@code samplingRules}</dt>
+ *     <dd>a semicolon-separated list of {@code <pattern>=<rate>} rules: the selected logging statements only log
+ *     one event out of {@code n} ({@code 1/<n>}) or at most {@code k} events per second ({@code <k>/s}).</dd>
+ * </dl>
+ * <p>
+ *     For example: {@code -javaagent:log4j-weaver.jar=cacheDirectory=/var/cache/log4j-weaver,includes=com.example}.
+ * </p>
+ */
+public final class LocationAgent {
+
+    private static final String CACHE_DIRECTORY = "cacheDirectory";
+    private static final String INCLUDES = "includes";
+    private static final String EXCLUDES = "excludes";
+    private static final String LAZY_LOCATIONS = "lazyLocations";
+    private static final String SUPPLIER_CLASSES = "supplierClasses";
+    private static final String RENDER_LOCATIONS = "renderLocations";
+    private static final String HIT_COUNTERS = "hitCounters";
+    private static final String SITE_SWITCHES = "siteSwitches";
+    private static final String LEVEL_GUARDS = "levelGuards";
+    private static final String DEFER_CONCATENATION = "deferConcatenation";
+    private static final String DEFER_STRING_CONVERSION = "deferStringConversion";
+    private static final String PRECOMPILED_MESSAGES = "precompiledMessages";
+    private static final String GARBAGE_FREE_BOXING = "garbageFreeBoxing";
+    private static final String CONSTANT_MESSAGES = "constantMessages";
+    private static final String DIRECT_LOGGING = "directLogging";
+    private static final String INVOKE_DYNAMIC_GUARDS = "invokeDynamicGuards";
+    private static final String OUTLINE_STATEMENTS = "outlineStatements";
+    private static final String STRIP_BELOW = "stripBelow";
+    private static final String CACHE_LOGGERS = "cacheLoggers";
+    private static final String CACHE_MARKERS_AND_LEVELS = "cacheMarkersAndLevels";
+    private static final String SAMPLING_RULES = "samplingRules";
+    private static final List<String> DEFAULT_EXCLUDES = Collections.unmodifiableList(Arrays.asList(
+            "com/sun/", "java/", "javax/", "jdk/", "sun/", "org/apache/logging/log4j/", "org/objectweb/asm/"));
+
+    public static void premain(final String agentArgs, final Instrumentation instrumentation) {
+        agentmain(agentArgs, instrumentation);
+    }
+
+    public static void agentmain(final String agentArgs, final Instrumentation instrumentation) {
+        openJavaLang(instrumentation);
+        instrumentation.addTransformer(createTransformer(agentArgs));
+    }
+
+    static LocationClassFileTransformer createTransformer(final String agentArgs) {
+        Path cacheDirectory = null;
+        List<String> includes = Collections.emptyList();
+        List<String> excludes = DEFAULT_EXCLUDES;
+        boolean lazyLocations = false;
+        boolean supplierClasses = false;
+        boolean renderLocations = false;
+        boolean hitCounters = false;
+        boolean siteSwitches = false;
+        boolean levelGuards = false;
+        boolean deferConcatenation = false;
+        boolean deferStringConversion = false;
+        boolean precompiledMessages = false;
+        boolean garbageFreeBoxing = false;
+        boolean constantMessages = false;
+        boolean directLogging = false;
+        boolean invokeDynamicGuards = false;
+        boolean outlineStatements = false;
+        String stripBelow = null;
+        boolean cacheLoggers = false;
+        boolean cacheMarkersAndLevels = false;
+        List<String> samplingRules = Collections.emptyList();
+        for (final String option : StringUtils.split(StringUtils.defaultString(agentArgs), ',')) {
+            final String key = StringUtils.substringBefore(option, '=').trim();
+            final String value = StringUtils.substringAfter(option, '=').trim();
+            switch (key) {
+                case CACHE_DIRECTORY:
+                    cacheDirectory = Paths.get(value);
+                    break;
+                case INCLUDES:
+                    includes = parsePrefixes(value);
+                    break;
+                case EXCLUDES:
+                    excludes = parsePrefixes(value);
+                    break;
+                case LAZY_LOCATIONS:
+                    lazyLocations = Boolean.parseBoolean(value);
+                    break;
+                case SUPPLIER_CLASSES:
+                    supplierClasses = Boolean.parseBoolean(value);
+                    break;
+                case RENDER_LOCATIONS:
+                    renderLocations = Boolean.parseBoolean(value);
+                    break;
+                case HIT_COUNTERS:
+                    hitCounters = Boolean.parseBoolean(value);
+                    break;
+                case SITE_SWITCHES:
+                    siteSwitches = Boolean.parseBoolean(value);
+                    break;
+                case LEVEL_GUARDS:
+                    levelGuards = Boolean.parseBoolean(value);
+                    break;
+                case DEFER_CONCATENATION:
+                    deferConcatenation = Boolean.parseBoolean(value);
+                    break;
+                case DEFER_STRING_CONVERSION:
+                    deferStringConversion = Boolean.parseBoolean(value);
+                    break;
+                case PRECOMPILED_MESSAGES:
+                    precompiledMessages = Boolean.parseBoolean(value);
+                    break;
+                case GARBAGE_FREE_BOXING:
+                    garbageFreeBoxing = Boolean.parseBoolean(value);
+                    break;
+                case CONSTANT_MESSAGES:
+                    constantMessages = Boolean.parseBoolean(value);
+                    break;
+                case DIRECT_LOGGING:
+                    directLogging = Boolean.parseBoolean(value);
+                    break;
+                case INVOKE_DYNAMIC_GUARDS:
+                    invokeDynamicGuards = Boolean.parseBoolean(value);
+                    break;
+                case OUTLINE_STATEMENTS:
+                    outlineStatements = Boolean.parseBoolean(value);
+                    break;
+                case STRIP_BELOW:
+                    stripBelow = StringUtils.defaultIfEmpty(value, null);
+                    break;
+                case CACHE_LOGGERS:
+                    cacheLoggers = Boolean.parseBoolean(value);
+                    break;
+                case CACHE_MARKERS_AND_LEVELS:
+                    cacheMarkersAndLevels = Boolean.parseBoolean(value);
+                    break;
+                case SAMPLING_RULES:
+                    samplingRules = parseRules(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown Log4j weaver agent option '" + key + "'.");
+            }
+        }
+        final LocationClassFileTransformer transformer =
+                new LocationClassFileTransformer(cacheDirectory, includes, excludes);
+        transformer.setLazyLocations(lazyLocations);
+        transformer.setSupplierClasses(supplierClasses);
+        transformer.setRenderLocations(renderLocations);
+        transformer.setHitCounters(hitCounters);
+        transformer.setSiteSwitches(siteSwitches);
+        transformer.setLevelGuards(levelGuards);
+        transformer.setDeferConcatenation(deferConcatenation);
+        transformer.setDeferStringConversion(deferStringConversion);
+        transformer.setPrecompiledMessages(precompiledMessages);
+        transformer.setGarbageFreeBoxing(garbageFreeBoxing);
+        transformer.setConstantMessages(constantMessages);
+        transformer.setDirectLogging(directLogging);
+        transformer.setInvokeDynamicGuards(invokeDynamicGuards);
+        transformer.setOutlineStatements(outlineStatements);
+        transformer.setStripBelow(stripBelow);
+        transformer.setCacheLoggers(cacheLoggers);
+        transformer.setCacheMarkersAndLevels(cacheMarkersAndLevels);
+        transformer.setSamplingRules(samplingRules);
+        return transformer;
+    }
+
+    private static List<String> parsePrefixes(final String value) {
+        final List<String> prefixes = new ArrayList<>();
+        for (final String prefix : StringUtils.split(value, ';')) {
+            prefixes.add(prefix.trim().replace('.', '/'));
+        }
+        return prefixes;
+    }
+
+    private static List<String> parseRules(final String value) {
+        final List<String> rules = new ArrayList<>();
+        for (final String rule : StringUtils.split(value, ';')) {
+            rules.add(rule.trim());
+        }
+        return rules;
+    }
+
+    /**
+     * Opens the {@code java.lang} package to the agent on Java 9+, so it can define classes.
+     */
+    private static void openJavaLang(final Instrumentation instrumentation) {
+        try {
+            final Class<?> moduleClass = Class.forName("java.lang.Module");
+            final Method getModule = Class.class.getMethod("getModule");
+            final Object javaBase = getModule.invoke(ClassLoader.class);
+            final Object agentModule = getModule.invoke(LocationAgent.class);
+            final Method redefineModule = Instrumentation.class.getMethod(
+                    "redefineModule", moduleClass, Set.class, Map.class, Map.class, Set.class, Map.class);
+            redefineModule.invoke(
+                    instrumentation,
+                    javaBase,
+                    Collections.emptySet(),
+                    Collections.emptyMap(),
+                    Collections.singletonMap("java.lang", Collections.singleton(agentModule)),
+                    Collections.emptySet(),
+                    Collections.emptyMap());
+        } catch (ClassNotFoundException e) {
+            // Java 8: nothing to do
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to open package `java.lang` to the Log4j weaver agent.", e);
+        }
+    }
+
+    private LocationAgent() {}
+}
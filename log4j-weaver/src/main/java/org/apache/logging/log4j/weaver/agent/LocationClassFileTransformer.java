@@ -0,0 +1,650 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.ProtectionDomain;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Weaves classes at load time.
+ * <p>
+ * All the classes that share the same location cache class (i.e. a top level class and its nested classes) are
+ * woven together, when the first of them is loaded. The location cache class is defined immediately, while the
+ * woven bytecode of the remaining classes is kept until they are loaded.
+ * </p>
+ */
+public class LocationClassFileTransformer implements ClassFileTransformer {
+
+    private static final byte[][] LOG4J_API_REFERENCES = {
+        Constants.LOGGER_TYPE.getInternalName().getBytes(StandardCharsets.UTF_8),
+        Constants.LOG_BUILDER_TYPE.getInternalName().getBytes(StandardCharsets.UTF_8)
+    };
+
+    // Marks the classes of a group that does not need to be woven
+    private static final byte[] UNCHANGED = new byte[0];
+
+    private final WovenClassCache cache;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final Map<ClassLoader, ConcurrentMap<String, WovenGroup>> wovenGroups =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private boolean lazyLocations;
+    private boolean supplierClasses;
+    private boolean renderLocations;
+    private boolean hitCounters;
+    private boolean siteSwitches;
+    private boolean levelGuards;
+    private boolean deferConcatenation;
+    private boolean deferStringConversion;
+    private boolean precompiledMessages;
+    private boolean garbageFreeBoxing;
+    private boolean constantMessages;
+    private boolean directLogging;
+    private boolean invokeDynamicGuards;
+    private boolean outlineStatements;
+    private String stripBelow;
+    private boolean cacheLoggers;
+    private boolean cacheMarkersAndLevels;
+    private List<String> samplingRules = Collections.emptyList();
+
+    /**
+     * @param cacheDirectory the directory of the persistent cache of woven classes or {@code null},
+     * @param includes       the prefixes of the internal names of the classes to weave; if empty all classes are
+     *                       woven,
+     * @param excludes       the prefixes of the internal names of the classes to skip.
+     */
+    public LocationClassFileTransformer(
+            final Path cacheDirectory, final Collection<String> includes, final Collection<String> excludes) {
+        this.cache = cacheDirectory != null ? new WovenClassCache(cacheDirectory) : null;
+        this.includes = new ArrayList<>(includes);
+        this.excludes = new ArrayList<>(excludes);
+    }
+
+    /**
+     * Creates each location only when the corresponding logging statement is executed for the first time.
+     *
+     * @see LocationCacheGenerator#setLazyLocations(boolean)
+     */
+    public void setLazyLocations(final boolean lazyLocations) {
+        this.lazyLocations = lazyLocations;
+    }
+
+    /**
+     * Creates message suppliers using generated classes instead of lambdas.
+     *
+     * @see LocationCacheGenerator#setSupplierClasses(boolean)
+     */
+    public void setSupplierClasses(final boolean supplierClasses) {
+        this.supplierClasses = supplierClasses;
+    }
+
+    /**
+     * Stores the string representation of each location, which requires {@code log4j-weaver-runtime} at runtime.
+     *
+     * @see LocationCacheGenerator#setRenderLocations(boolean)
+     */
+    public void setRenderLocations(final boolean renderLocations) {
+        this.renderLocations = renderLocations;
+    }
+
+    /**
+     * Counts the executions of each logging statement, which requires {@code log4j-weaver-runtime} at runtime.
+     *
+     * @see LocationCacheGenerator#setHitCounters(boolean)
+     */
+    public void setHitCounters(final boolean hitCounters) {
+        this.hitCounters = hitCounters;
+    }
+
+    /**
+     * Guards each logging statement with a switch, which requires {@code log4j-weaver-runtime} at runtime.
+     *
+     * @see LocationCacheGenerator#setSiteSwitches(boolean)
+     */
+    public void setSiteSwitches(final boolean siteSwitches) {
+        this.siteSwitches = siteSwitches;
+    }
+
+    /**
+     * Wraps each logging statement in an {@code isEnabled} check.
+     *
+     * @see LocationClassConverter#setLevelGuards(boolean)
+     */
+    public void setLevelGuards(final boolean levelGuards) {
+        this.levelGuards = levelGuards;
+    }
+
+    /**
+     * Replaces string concatenations used as logging messages with parameterized messages.
+     *
+     * @see LocationClassConverter#setDeferConcatenation(boolean)
+     */
+    public void setDeferConcatenation(final boolean deferConcatenation) {
+        this.deferConcatenation = deferConcatenation;
+    }
+
+    /**
+     * Defers the conversion to strings of the operands of the replaced concatenations.
+     *
+     * @see LocationClassConverter#setDeferStringConversion(boolean)
+     */
+    public void setDeferStringConversion(final boolean deferStringConversion) {
+        this.deferStringConversion = deferStringConversion;
+    }
+
+    /**
+     * Replaces constant message patterns with precompiled message classes.
+     *
+     * @see LocationClassConverter#setPrecompiledMessages(boolean)
+     */
+    public void setPrecompiledMessages(final boolean precompiledMessages) {
+        this.precompiledMessages = precompiledMessages;
+    }
+
+    /**
+     * Replaces the boxing of primitive parameters of logging calls with {@code Unbox.box}.
+     *
+     * @see LocationClassConverter#setGarbageFreeBoxing(boolean)
+     */
+    public void setGarbageFreeBoxing(final boolean garbageFreeBoxing) {
+        this.garbageFreeBoxing = garbageFreeBoxing;
+    }
+
+    /**
+     * Replaces constant messages without parameters with shared message instances.
+     *
+     * @see LocationClassConverter#setConstantMessages(boolean)
+     */
+    public void setConstantMessages(final boolean constantMessages) {
+        this.constantMessages = constantMessages;
+    }
+
+    /**
+     * Converts logging calls into direct calls to {@code LocationAwareLogger.logMessage}.
+     *
+     * @see LocationClassConverter#setDirectLogging(boolean)
+     */
+    public void setDirectLogging(final boolean directLogging) {
+        this.directLogging = directLogging;
+    }
+
+    /**
+     * Replaces level checks with {@code invokedynamic} instructions.
+     *
+     * @see LocationClassConverter#setInvokeDynamicGuards(boolean)
+     */
+    public void setInvokeDynamicGuards(final boolean invokeDynamicGuards) {
+        this.invokeDynamicGuards = invokeDynamicGuards;
+    }
+
+    /**
+     * Moves the converted logging statements into synthetic helper methods.
+     *
+     * @see LocationClassConverter#setOutlineStatements(boolean)
+     */
+    public void setOutlineStatements(final boolean outlineStatements) {
+        this.outlineStatements = outlineStatements;
+    }
+
+    /**
+     * Removes the logging statements with a level less specific than the given standard level.
+     *
+     * @see LocationClassConverter#setStripBelow(String)
+     */
+    public void setStripBelow(final String stripBelow) {
+        this.stripBelow = stripBelow;
+    }
+
+    /**
+     * Caches the loggers returned by {@code LogManager.getLogger} calls with a constant argument.
+     *
+     * @see LocationClassConverter#setCacheLoggers(boolean)
+     */
+    public void setCacheLoggers(final boolean cacheLoggers) {
+        this.cacheLoggers = cacheLoggers;
+    }
+
+    /**
+     * Samples the events of the logging statements selected by the given rules, which requires
+     * {@code log4j-weaver-runtime} at runtime.
+     *
+     * @see LocationClassConverter#setSamplingRules(Collection)
+     */
+    public void setSamplingRules(final Collection<String> samplingRules) {
+        this.samplingRules = new ArrayList<>(samplingRules);
+    }
+
+    /**
+     * Caches the markers and levels returned by factory method calls with constant arguments.
+     *
+     * @see LocationClassConverter#setCacheMarkersAndLevels(boolean)
+     */
+    public void setCacheMarkersAndLevels(final boolean cacheMarkersAndLevels) {
+        this.cacheMarkersAndLevels = cacheMarkersAndLevels;
+    }
+
+    @Override
+    public byte[] transform(
+            final ClassLoader loader,
+            final String className,
+            final Class<?> classBeingRedefined,
+            final ProtectionDomain protectionDomain,
+            final byte[] classfileBuffer) {
+        // We can not define the location cache in the bootstrap classloader
+        if (loader == null
+                || className == null
+                || classBeingRedefined != null
+                || className.contains(Constants.LOCATION_CACHE_SUFFIX)
+                || !isIncluded(className)) {
+            return null;
+        }
+        final String outerClassName = StringUtils.substringBefore(className, '$');
+        final ConcurrentMap<String, WovenGroup> groups;
+        synchronized (wovenGroups) {
+            groups = wovenGroups.computeIfAbsent(loader, k -> new ConcurrentHashMap<>());
+        }
+        final WovenGroup newGroup = new WovenGroup();
+        final WovenGroup group = groups.putIfAbsent(outerClassName, newGroup);
+        if (group != null) {
+            // If the group is being woven by another thread, we wait for it to finish. If it is being woven by this
+            // thread, the class is needed by the weaving process itself and is left untouched.
+            return removeClass(groups, outerClassName, group, group.await(className));
+        }
+        try {
+            final Map<String, byte[]> wovenClasses =
+                    weaveGroup(loader, outerClassName, className, classfileBuffer, protectionDomain);
+            newGroup.complete(wovenClasses);
+        } catch (Exception | LinkageError e) {
+            newGroup.complete(Collections.emptyMap());
+            logWarning("Unable to weave class " + className, e);
+        }
+        return removeClass(groups, outerClassName, newGroup, newGroup.remove(className));
+    }
+
+    /**
+     * Returns the number of groups of a class loader, whose classes have not all been loaded.
+     */
+    int getPendingGroups(final ClassLoader loader) {
+        final Map<String, WovenGroup> groups = wovenGroups.get(loader);
+        return groups != null ? groups.size() : 0;
+    }
+
+    /**
+     * Removes a group, once all its classes have been loaded.
+     *
+     * @param classFile the bytecode removed from the group,
+     * @return the woven bytecode of the class or {@code null} if it is unchanged.
+     */
+    // The unchanged classes are marked by identity
+    @SuppressWarnings("ReferenceEquality")
+    private static byte[] removeClass(
+            final ConcurrentMap<String, WovenGroup> groups,
+            final String outerClassName,
+            final WovenGroup group,
+            final byte[] classFile) {
+        if (group.isConsumed()) {
+            groups.remove(outerClassName, group);
+        }
+        return classFile != UNCHANGED ? classFile : null;
+    }
+
+    private Map<String, byte[]> weaveGroup(
+            final ClassLoader loader,
+            final String outerClassName,
+            final String className,
+            final byte[] classfileBuffer,
+            final ProtectionDomain protectionDomain)
+            throws IOException {
+        final SortedMap<String, byte[]> classFiles = readGroup(loader, outerClassName, className, classfileBuffer);
+        if (!referencesLog4jApi(classFiles.values())) {
+            // Remember the other classes of the group, so that they are not read again
+            final Map<String, byte[]> unchanged = new TreeMap<>();
+            for (final String internalName : classFiles.keySet()) {
+                unchanged.put(internalName, UNCHANGED);
+            }
+            return unchanged;
+        }
+        final String key = cache != null ? cache.computeKey(getCacheSalt(), classFiles) : null;
+        SortedMap<String, byte[]> wovenClasses = null;
+        if (cache != null) {
+            try {
+                wovenClasses = cache.get(key);
+            } catch (IOException e) {
+                logWarning("Unable to read cache entry for class " + outerClassName, e);
+            }
+        }
+        if (wovenClasses == null) {
+            wovenClasses = weaveClasses(loader, classFiles);
+            if (cache != null) {
+                try {
+                    cache.put(key, wovenClasses);
+                } catch (IOException e) {
+                    logWarning("Unable to write cache entry for class " + outerClassName, e);
+                }
+            }
+        }
+        // The location cache classes must be available, before any woven class is initialized
+        final Map<String, byte[]> result = new TreeMap<>(wovenClasses);
+        for (final String internalName : wovenClasses.keySet()) {
+            if (internalName.contains(Constants.LOCATION_CACHE_SUFFIX)) {
+                defineClass(loader, internalName.replace('/', '.'), result.remove(internalName), protectionDomain);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Weaves a group of classes that share the same location cache.
+     * <p>
+     *     Not called if the woven classes are found in the persistent cache.
+     * </p>
+     *
+     * @param loader     the classloader of the classes,
+     * @param classFiles a map between the internal names of the classes and their class files.
+     * @return a map between the internal names of the woven and generated classes and their class files.
+     */
+    SortedMap<String, byte[]> weaveClasses(final ClassLoader loader, final SortedMap<String, byte[]> classFiles)
+            throws IOException {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setLazyLocations(lazyLocations);
+        locationCache.setSupplierClasses(supplierClasses);
+        locationCache.setRenderLocations(renderLocations);
+        locationCache.setHitCounters(hitCounters);
+        locationCache.setSiteSwitches(siteSwitches);
+        final LocationClassConverter converter = new LocationClassConverter(loader);
+        converter.setLevelGuards(levelGuards);
+        converter.setDeferConcatenation(deferConcatenation);
+        converter.setDeferStringConversion(deferStringConversion);
+        converter.setPrecompiledMessages(precompiledMessages);
+        converter.setGarbageFreeBoxing(garbageFreeBoxing);
+        converter.setConstantMessages(constantMessages);
+        converter.setDirectLogging(directLogging);
+        converter.setInvokeDynamicGuards(invokeDynamicGuards);
+        converter.setOutlineStatements(outlineStatements);
+        converter.setStripBelow(stripBelow);
+        converter.setCacheLoggers(cacheLoggers);
+        converter.setCacheMarkersAndLevels(cacheMarkersAndLevels);
+        converter.setSamplingRules(samplingRules);
+        converter.setWarningHandler(LocationClassFileTransformer::logWarning);
+        final SortedMap<String, byte[]> wovenClasses = new TreeMap<>();
+        final ByteArrayOutputStream dest = new ByteArrayOutputStream();
+        for (final Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+            dest.reset();
+            try (final InputStream src = new ByteArrayInputStream(entry.getValue())) {
+                converter.convert(src, dest, locationCache);
+            }
+            wovenClasses.put(entry.getKey(), dest.toByteArray());
+        }
+        wovenClasses.putAll(locationCache.generateClasses());
+        return wovenClasses;
+    }
+
+    /**
+     * Retrieves the class files of a top level class and all its nested classes.
+     */
+    private static SortedMap<String, byte[]> readGroup(
+            final ClassLoader loader, final String outerClassName, final String className, final byte[] classfileBuffer)
+            throws IOException {
+        final SortedMap<String, byte[]> classFiles = new TreeMap<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        queue.add(outerClassName);
+        queue.add(className);
+        while (!queue.isEmpty()) {
+            final String internalName = queue.remove();
+            if (classFiles.containsKey(internalName)) {
+                continue;
+            }
+            final byte[] classFile =
+                    internalName.equals(className) ? classfileBuffer : readClassFile(loader, internalName);
+            if (classFile != null) {
+                classFiles.put(internalName, classFile);
+                new ClassReader(classFile).accept(new NestedClassCollector(outerClassName, queue), 0);
+            }
+        }
+        return classFiles;
+    }
+
+    private static byte[] readClassFile(final ClassLoader loader, final String internalName) throws IOException {
+        try (final InputStream is = loader.getResourceAsStream(internalName + ".class")) {
+            if (is == null) {
+                return null;
+            }
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        }
+    }
+
+    private static boolean referencesLog4jApi(final Collection<byte[]> classFiles) {
+        for (final byte[] classFile : classFiles) {
+            for (final byte[] reference : LOG4J_API_REFERENCES) {
+                if (indexOf(classFile, reference) >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(final byte[] array, final byte[] target) {
+        outer:
+        for (int i = 0; i <= array.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private boolean isIncluded(final String className) {
+        if (!includes.isEmpty() && includes.stream().noneMatch(className::startsWith)) {
+            return false;
+        }
+        return excludes.stream().noneMatch(className::startsWith);
+    }
+
+    /**
+     * Defines a location cache class in the given classloader.
+     *
+     * @param loader           the classloader of the woven classes,
+     * @param binaryName       the binary name of the class,
+     * @param classFile        the bytecode of the class,
+     * @param protectionDomain the protection domain of the woven classes.
+     */
+    protected void defineClass(
+            final ClassLoader loader,
+            final String binaryName,
+            final byte[] classFile,
+            final ProtectionDomain protectionDomain) {
+        try {
+            ClassDefiner.DEFINE_CLASS.invoke(loader, binaryName, classFile, 0, classFile.length, protectionDomain);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to define class " + binaryName, e);
+        }
+    }
+
+    /**
+     * Identifies the weaver version and the options that influence the woven bytecode.
+     */
+    private String getCacheSalt() {
+        final String version = LocationClassConverter.class.getPackage().getImplementationVersion();
+        return (version != null ? version : "unknown") + ";lazyLocations=" + lazyLocations + ";levelGuards="
+                + levelGuards + ";deferConcatenation=" + deferConcatenation + ";deferStringConversion="
+                + deferStringConversion + ";precompiledMessages=" + precompiledMessages
+                + ";garbageFreeBoxing=" + garbageFreeBoxing
+                + ";constantMessages=" + constantMessages
+                + ";supplierClasses=" + supplierClasses
+                + ";renderLocations=" + renderLocations
+                + ";hitCounters=" + hitCounters
+                + ";siteSwitches=" + siteSwitches
+                + ";directLogging=" + directLogging
+                + ";invokeDynamicGuards=" + invokeDynamicGuards
+                + ";outlineStatements=" + outlineStatements
+                + ";stripBelow=" + stripBelow
+                + ";cacheLoggers=" + cacheLoggers
+                + ";cacheMarkersAndLevels=" + cacheMarkersAndLevels
+                + ";samplingRules=" + samplingRules;
+    }
+
+    @SuppressWarnings("SystemOut")
+    private static void logWarning(final String message, final Throwable t) {
+        System.err.println("[log4j-weaver] WARN " + message + ": " + t);
+    }
+
+    @SuppressWarnings("SystemOut")
+    private static void logWarning(final String message) {
+        System.err.println("[log4j-weaver] WARN " + message);
+    }
+
+    /**
+     * Woven bytecode of a group of classes sharing the same location cache class.
+     * <p>
+     *     Since the groups are stored in a map keyed by class loader, the group does not reference the weaving thread
+     *     after it is woven and releases its bytecode as soon as all the classes have been loaded.
+     * </p>
+     */
+    private static class WovenGroup {
+
+        private volatile Thread owner = Thread.currentThread();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Map<String, byte[]> wovenClasses;
+
+        private void complete(final Map<String, byte[]> wovenClasses) {
+            this.wovenClasses = wovenClasses.isEmpty() ? null : new ConcurrentHashMap<>(wovenClasses);
+            owner = null;
+            completed.countDown();
+        }
+
+        private byte[] remove(final String className) {
+            final Map<String, byte[]> wovenClasses = this.wovenClasses;
+            if (wovenClasses == null) {
+                return null;
+            }
+            final byte[] classFile = wovenClasses.remove(className);
+            if (wovenClasses.isEmpty()) {
+                this.wovenClasses = null;
+            }
+            return classFile;
+        }
+
+        /**
+         * Returns {@code true} if the group has been woven and all its classes have been removed.
+         */
+        private boolean isConsumed() {
+            return completed.getCount() == 0 && wovenClasses == null;
+        }
+
+        /**
+         * Removes the woven bytecode of a class, after the group has been woven by another thread.
+         */
+        private byte[] await(final String className) {
+            if (owner != Thread.currentThread()) {
+                try {
+                    completed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logWarning("Interrupted while weaving class " + className, e);
+                }
+            }
+            return remove(className);
+        }
+    }
+
+    /**
+     * Collects the names of the nested classes of a top level class.
+     */
+    private static class NestedClassCollector extends ClassVisitor {
+
+        private final String prefix;
+        private final Collection<String> nestedClasses;
+
+        private NestedClassCollector(final String outerClassName, final Collection<String> nestedClasses) {
+            super(Opcodes.ASM9);
+            this.prefix = outerClassName + "$";
+            this.nestedClasses = nestedClasses;
+        }
+
+        @Override
+        public void visitInnerClass(
+                final String name, final String outerName, final String innerName, final int access) {
+            if (name.startsWith(prefix)) {
+                nestedClasses.add(name);
+            }
+        }
+
+        @Override
+        public void visitNestMember(final String nestMember) {
+            if (nestMember.startsWith(prefix)) {
+                nestedClasses.add(nestMember);
+            }
+        }
+    }
+
+    /**
+     * Lazily resolves {@link ClassLoader#defineClass(String, byte[], int, int, ProtectionDomain)}.
+     */
+    private static class ClassDefiner {
+
+        private static final Method DEFINE_CLASS;
+
+        static {
+            try {
+                DEFINE_CLASS = ClassLoader.class.getDeclaredMethod(
+                        "defineClass", String.class, byte[].class, int.class, int.class, ProtectionDomain.class);
+                DEFINE_CLASS.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
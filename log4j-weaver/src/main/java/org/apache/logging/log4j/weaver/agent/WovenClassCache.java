@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.agent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Persistent cache of woven classes.
+ * <p>
+ * Each entry contains all the classes produced by weaving a single group of classes that share the same location
+ * cache class. The entry is keyed by a hash of the original class files, so a modified class file results in a
+ * cache miss.
+ * </p>
+ */
+class WovenClassCache {
+
+    private static final int MAGIC = 0x4C34_4A57;
+    private static final String SUFFIX = ".woven";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory containing the cache entries.
+     */
+    WovenClassCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the cache key of a group of class files.
+     *
+     * @param salt       a string that identifies the weaver version and configuration,
+     * @param classFiles a map from internal class names to the original class files.
+     */
+    String computeKey(final String salt, final SortedMap<String, byte[]> classFiles) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt.getBytes(StandardCharsets.UTF_8));
+            for (final Entry<String, byte[]> entry : classFiles.entrySet()) {
+                digest.update((byte) 0);
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(entry.getValue());
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Retrieves a cache entry.
+     *
+     * @param key the cache key.
+     * @return a map from internal class names to woven class files or {@code null} if the entry is missing.
+     */
+    SortedMap<String, byte[]> get(final String key) throws IOException {
+        try (final InputStream is = Files.newInputStream(directory.resolve(key + SUFFIX));
+                final DataInputStream input = new DataInputStream(is)) {
+            if (input.readInt() != MAGIC) {
+                return null;
+            }
+            final int count = input.readInt();
+            final SortedMap<String, byte[]> classFiles = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                final String internalName = input.readUTF();
+                final byte[] classFile = new byte[input.readInt()];
+                input.readFully(classFile);
+                classFiles.put(internalName, classFile);
+            }
+            return classFiles;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a cache entry.
+     * <p>
+     * The entry is written to a temporary file first and atomically moved to its final location, so concurrent
+     * JVMs sharing the same cache never observe a partial entry.
+     * </p>
+     * @param key the cache key,
+     * @param classFiles a map from internal class names to woven class files.
+     */
+    void put(final String key, final Map<String, byte[]> classFiles) throws IOException {
+        Files.createDirectories(directory);
+        final Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (final OutputStream os = Files.newOutputStream(temp);
+                    final DataOutputStream output = new DataOutputStream(os)) {
+                output.writeInt(MAGIC);
+                output.writeInt(classFiles.size());
+                for (final Entry<String, byte[]> entry : classFiles.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(entry.getValue().length);
+                    output.write(entry.getValue());
+                }
+            }
+            final Path target = directory.resolve(key + SUFFIX);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
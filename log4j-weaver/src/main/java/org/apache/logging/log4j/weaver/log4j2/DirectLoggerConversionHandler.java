@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.apache.logging.log4j.weaver.Constants.LEVEL_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MARKER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_SUPPLIER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SUPPLIER_ARRAY_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.SUPPLIER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.THROWABLE_TYPE;
+
+import java.util.Arrays;
+import java.util.Locale;
+import org.apache.logging.log4j.weaver.LocationMethodVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Converts the {@code log} methods of {@code Logger} and their level specializations into a direct call to
+ * {@code LocationAwareLogger.logMessage}.
+ * <p>
+ * A call like {@code logger.info(marker, "Hello {}!", name)} is converted into:
+ * </p>
+ * <pre>
+ * if (logger.isEnabled(Level.INFO, marker)) {
+ *     Cache.logMessage(logger, Level.INFO, marker, location, "Hello {}!", name, null);
+ * }
+ * </pre>
+ * <p>
+ * where {@code Cache.logMessage} is a method of the location cache, that calls {@code LocationAwareLogger.logMessage}
+ * if possible and falls back to a {@code LogBuilder} otherwise. Contrary to {@link LoggerConversionHandler}, the
+ * thread-local {@code LogBuilder} of the logger is never used by location-aware loggers.
+ * </p>
+ * <p>
+ * Since {@code logMessage} does not apply the filters of the configuration, {@code Cache.logMessage} calls the
+ * {@code isEnabled} method with the message arguments, like {@code logger.info("Hello {}!", name)} does, so that
+ * filters like {@code RegexFilter} receive the message.
+ * </p>
+ * <p>
+ * Methods with a {@code Supplier} or {@code MessageSupplier} argument and all the other methods are converted by
+ * {@link LoggerConversionHandler}.
+ * </p>
+ */
+public class DirectLoggerConversionHandler extends LoggerConversionHandler {
+
+    @Override
+    public void handleMethodInstruction(LocationMethodVisitor mv, String name, String descriptor) {
+        switch (name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "log":
+            case "trace":
+            case "warn":
+                if (handleDirectLogMethods(mv, name, descriptor)) {
+                    return;
+                }
+                break;
+            default:
+        }
+        super.handleMethodInstruction(mv, name, descriptor);
+    }
+
+    private static boolean handleDirectLogMethods(LocationMethodVisitor mv, String name, String descriptor) {
+        final Type[] types = Type.getArgumentTypes(descriptor);
+        final boolean hasLevel = types.length > 0 && types[0].equals(LEVEL_TYPE);
+        int from = hasLevel ? 1 : 0;
+        int to = types.length;
+        final boolean hasMarker = from < to && types[from].equals(MARKER_TYPE);
+        if (hasMarker) {
+            from++;
+        }
+        final boolean hasThrowable = from < to && types[to - 1].equals(THROWABLE_TYPE);
+        if (hasThrowable) {
+            to--;
+        }
+        // Suppliers are only supported by `LogBuilder`
+        if (from == to
+                || SUPPLIER_TYPE.equals(types[from])
+                || MESSAGE_SUPPLIER_TYPE.equals(types[from])
+                || SUPPLIER_ARRAY_TYPE.equals(types[to - 1])) {
+            return false;
+        }
+        // Store arguments and logger to local variables
+        final int[] varIndexes = new int[types.length];
+        for (int i = types.length - 1; i >= 0; i--) {
+            varIndexes[i] = mv.nextLocal();
+            mv.storeLocal(varIndexes[i], types[i]);
+        }
+        final int loggerIndex = mv.nextLocal();
+        mv.storeLocal(loggerIndex, LOGGER_TYPE);
+        // Level check
+        final Label end = mv.newLabel();
+        mv.loadLocal(loggerIndex, LOGGER_TYPE);
+        loadLevelAndMarker(mv, name, hasLevel, hasMarker, varIndexes);
+        mv.invokeIsEnabled();
+        mv.ifZCmp(GeneratorAdapter.EQ, end);
+        // Call to the log method of the location cache
+        mv.loadLocal(loggerIndex, LOGGER_TYPE);
+        loadLevelAndMarker(mv, name, hasLevel, hasMarker, varIndexes);
+        mv.loadLocation();
+        for (int i = from; i < to; i++) {
+            mv.loadLocal(varIndexes[i], types[i]);
+        }
+        if (hasThrowable) {
+            mv.loadLocal(varIndexes[to], THROWABLE_TYPE);
+        } else {
+            mv.push((String) null);
+        }
+        mv.invokeLogMethod(Arrays.copyOfRange(types, from, to));
+        mv.mark(end);
+        return true;
+    }
+
+    private static void loadLevelAndMarker(
+            LocationMethodVisitor mv, String name, boolean hasLevel, boolean hasMarker, int[] varIndexes) {
+        if (hasLevel) {
+            mv.loadLocal(varIndexes[0], LEVEL_TYPE);
+        } else {
+            mv.getStatic(LEVEL_TYPE, name.toUpperCase(Locale.US), LEVEL_TYPE);
+        }
+        if (hasMarker) {
+            mv.loadLocal(varIndexes[hasLevel ? 1 : 0], MARKER_TYPE);
+        } else {
+            mv.push((String) null);
+        }
+    }
+}
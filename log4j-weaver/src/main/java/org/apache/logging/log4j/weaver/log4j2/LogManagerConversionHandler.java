@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.apache.logging.log4j.weaver.Constants.CLASS_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOGGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.LOG_MANAGER_TYPE;
+import static org.apache.logging.log4j.weaver.Constants.MESSAGE_FACTORY_TYPE;
+
+import org.apache.logging.log4j.weaver.ClassConversionHandler;
+import org.apache.logging.log4j.weaver.LocationMethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Resolves the caller of the {@code LogManager} methods at build time.
+ * <p>
+ * The {@code getLogger()}, {@code getLogger(MessageFactory)} and {@code getFormatterLogger()} methods look up the
+ * class of their caller at runtime. Since the caller is the converted class, these calls are replaced with the
+ * equivalent methods that take a {@code Class} argument, e.g. {@code LogManager.getLogger(Foo.class)}.
+ * </p>
+ */
+public class LogManagerConversionHandler implements ClassConversionHandler {
+
+    private static final String NO_ARGS_DESC = Type.getMethodDescriptor(LOGGER_TYPE);
+    private static final String MESSAGE_FACTORY_DESC = Type.getMethodDescriptor(LOGGER_TYPE, MESSAGE_FACTORY_TYPE);
+
+    @Override
+    public String getOwner() {
+        return LOG_MANAGER_TYPE.getInternalName();
+    }
+
+    @Override
+    public void handleMethodInstruction(LocationMethodVisitor mv, String name, String descriptor) {
+        if (("getLogger".equals(name) || "getFormatterLogger".equals(name)) && mv.canLoadDeclaringClass()) {
+            if (NO_ARGS_DESC.equals(descriptor)) {
+                mv.loadDeclaringClass();
+                mv.invokeStatic(LOG_MANAGER_TYPE, new Method(name, LOGGER_TYPE, new Type[] {CLASS_TYPE}));
+                return;
+            }
+            if ("getLogger".equals(name) && MESSAGE_FACTORY_DESC.equals(descriptor)) {
+                mv.loadDeclaringClass();
+                mv.swap();
+                mv.invokeStatic(
+                        LOG_MANAGER_TYPE, new Method(name, LOGGER_TYPE, new Type[] {CLASS_TYPE, MESSAGE_FACTORY_TYPE}));
+                return;
+            }
+        }
+        mv.invokeStatic(LOG_MANAGER_TYPE, new Method(name, descriptor));
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.logging.log4j.weaver.log4j2;
 
+import static org.apache.logging.log4j.weaver.Constants.ABSTRACT_LOGGER_TYPE;
 import static org.apache.logging.log4j.weaver.Constants.AT_DEBUG_METHOD;
 import static org.apache.logging.log4j.weaver.Constants.AT_ERROR_METHOD;
 import static org.apache.logging.log4j.weaver.Constants.AT_FATAL_METHOD;
@@ -40,6 +41,7 @@ import static org.apache.logging.log4j.weaver.Constants.WITH_MARKER_METHOD;
 import static org.apache.logging.log4j.weaver.Constants.WITH_THROWABLE_METHOD;
 
 import java.util.Arrays;
+import java.util.Locale;
 import org.apache.logging.log4j.weaver.ClassConversionHandler;
 import org.apache.logging.log4j.weaver.Constants;
 import org.apache.logging.log4j.weaver.ConversionException;
@@ -64,7 +66,6 @@ public class LoggerConversionHandler implements ClassConversionHandler {
             new Method("log", Type.getMethodDescriptor(Type.VOID_TYPE, LOG_BUILDER_LOG_SUPPLIER_MESSAGE));
     private static final Method LOG_BUILDER_LOG_STRING_METHOD =
             new Method("log", Type.getMethodDescriptor(Type.VOID_TYPE, STRING_TYPE));
-    private static final Type ABSTRACT_LOGGER_TYPE = Type.getObjectType("org/apache/logging/log4j/spi/AbstractLogger");
     private static final Type[] MESSAGE_OBJECT_ARRAY = {MESSAGE_TYPE, OBJECT_TYPE};
 
     @Override
@@ -139,6 +140,8 @@ public class LoggerConversionHandler implements ClassConversionHandler {
             case "isInfoEnabled":
             case "isTraceEnabled":
             case "isWarnEnabled":
+                handleIsEnabled(mv, name, descriptor);
+                break;
             case "logMessage":
                 // These are NOPs
                 mv.invokeInterface(LOGGER_TYPE, new Method(name, descriptor));
@@ -154,16 +157,63 @@ public class LoggerConversionHandler implements ClassConversionHandler {
         }
     }
 
+    @Override
+    public boolean canOutline(String name) {
+        switch (name) {
+            case "debug":
+            case "error":
+            case "fatal":
+            case "info":
+            case "log":
+            case "trace":
+            case "warn":
+            case "printf":
+            case "catching":
+            case "throwing":
+            case "traceEntry":
+            case "traceExit":
+                return true;
+            default:
+                // Level checks and `LogBuilder` factories are already short
+                return false;
+        }
+    }
+
+    /**
+     * Replaces level checks with {@code invokedynamic} instructions, if enabled.
+     */
+    private void handleIsEnabled(LocationMethodVisitor mv, String name, String descriptor) {
+        if (!mv.isInvokeDynamicGuards()) {
+            mv.invokeInterface(LOGGER_TYPE, new Method(name, descriptor));
+            return;
+        }
+        // Normalize the stack to (Logger, Level, Marker)
+        final Type[] types = Type.getArgumentTypes(descriptor);
+        if (!"isEnabled".equals(name)) {
+            final String level = name.substring(2, name.length() - "Enabled".length());
+            mv.getStatic(LEVEL_TYPE, level.toUpperCase(Locale.ROOT), LEVEL_TYPE);
+            if (types.length > 0) {
+                mv.swap();
+            }
+        }
+        if (types.length == 0 || types[types.length - 1].equals(LEVEL_TYPE)) {
+            mv.push((String) null);
+        }
+        mv.invokeIsEnabled();
+    }
+
     /**
      * Rewrites the most common methods: {@code log} and its level specializations.
      */
     private void handleLogMethods(LocationMethodVisitor mv, String name, String descriptor) {
         final Type[] types = Type.getArgumentTypes(descriptor);
+        if (handleLogMethodsOnStack(mv, name, types)) {
+            return;
+        }
         final int[] varIndexes = new int[types.length];
         int from = types.length > 0 && types[0].equals(LEVEL_TYPE) ? 1 : 0;
         int to = types.length;
         // Store arguments to local variables
-        // TODO: most of the time there is a more efficient way
         for (int i = to - 1; i >= from; i--) {
             varIndexes[i] = mv.nextLocal();
             mv.storeLocal(varIndexes[i], types[i]);
@@ -210,6 +260,66 @@ public class LoggerConversionHandler implements ClassConversionHandler {
         mv.invokeInterface(LOG_BUILDER_TYPE, logMethod);
     }
 
+    /**
+     * Rewrites the calls with one or two arguments after the level, by reordering the operand stack.
+     * <p>
+     * All the arguments of the logging methods are references, so they can be moved with the {@code dup_x} and
+     * {@code dup2_x} instructions.
+     * </p>
+     * @return {@code false} if the arguments must be stored in local variables.
+     */
+    private boolean handleLogMethodsOnStack(LocationMethodVisitor mv, String name, Type[] types) {
+        final int from = types.length > 0 && types[0].equals(LEVEL_TYPE) ? 1 : 0;
+        final int count = types.length - from;
+        final boolean hasMarker = count == 2 && types[from].equals(MARKER_TYPE);
+        final boolean hasThrowable = count == 2 && types[from + 1].equals(THROWABLE_TYPE);
+        final int message = hasMarker ? from + 1 : from;
+        // Suppliers need to be converted
+        if (count < 1
+                || count > 2
+                || SUPPLIER_TYPE.equals(types[message])
+                || MESSAGE_SUPPLIER_TYPE.equals(types[message])) {
+            return false;
+        }
+        if (hasMarker) {
+            // The marker is consumed first, so it must be above the message
+            mv.swap();
+        }
+        // Move the arguments above the logger and level
+        if (count == 1) {
+            if (from == 0) {
+                mv.swap();
+            } else {
+                mv.dupX2();
+                mv.pop();
+            }
+        } else if (from == 0) {
+            mv.dup2X1();
+            mv.pop2();
+        } else {
+            mv.dup2X2();
+            mv.pop2();
+        }
+        createLogBuilder(mv, name);
+        mv.storeLocation();
+        // Move the `LogBuilder` below the arguments
+        if (hasMarker || hasThrowable) {
+            // message, marker or throwable, builder -> message, builder, marker or throwable
+            mv.swap();
+            mv.invokeInterface(LOG_BUILDER_TYPE, hasMarker ? WITH_MARKER_METHOD : WITH_THROWABLE_METHOD);
+            mv.swap();
+        } else if (count == 2) {
+            mv.dupX2();
+            mv.pop();
+        } else {
+            mv.swap();
+        }
+        final Type[] arguments =
+                hasMarker || hasThrowable ? new Type[] {types[message]} : Arrays.copyOfRange(types, from, types.length);
+        mv.invokeInterface(LOG_BUILDER_TYPE, new Method("log", Type.VOID_TYPE, arguments));
+        return true;
+    }
+
     private void handlePrintfMethods(LocationMethodVisitor mv, String descriptor) {
         final Type[] types = Type.getArgumentTypes(descriptor);
         // Transform the last two arguments into a supplier
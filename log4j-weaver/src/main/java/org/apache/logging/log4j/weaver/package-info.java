@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 @Export
-@Version("0.1.0")
+@Version("0.2.0")
 package org.apache.logging.log4j.weaver;
 
 import org.osgi.annotation.bundle.Export;
@@ -18,10 +18,14 @@ package org.apache.logging.log4j.weaver;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,22 +33,67 @@ public class AbstractConversionHandlerTest {
 
     protected static Class<?> convertedClass;
     protected static Object testObject;
+    protected static Map<String, byte[]> generatedClasses;
+    protected static Map<String, byte[]> convertedClasses;
+    protected static Map<String, byte[]> generatedResources;
 
     protected static void transformClass(String internalName) throws Exception {
+        transformClass(internalName, new LocationCacheGenerator(), 0);
+    }
+
+    /**
+     * Transforms a class and its nested classes and loads the result.
+     *
+     * @param internalName     the internal name of the class to transform,
+     * @param locationCache    the location cache generator to use,
+     * @param classFileVersion if positive, overrides the class file version of the class before transformation.
+     */
+    protected static void transformClass(
+            String internalName, LocationCacheGenerator locationCache, int classFileVersion) throws Exception {
+        transformClass(
+                internalName,
+                new LocationClassConverter(AbstractConversionHandlerTest.class.getClassLoader()),
+                locationCache,
+                classFileVersion);
+    }
+
+    /**
+     * Transforms a class and its nested classes with a custom converter and loads the result.
+     *
+     * @param internalName     the internal name of the class to transform,
+     * @param converter        the converter to use,
+     * @param locationCache    the location cache generator to use,
+     * @param classFileVersion if positive, overrides the class file version of the class before transformation.
+     */
+    protected static void transformClass(
+            String internalName,
+            LocationClassConverter converter,
+            LocationCacheGenerator locationCache,
+            int classFileVersion)
+            throws Exception {
         final TestClassLoader testCl = new TestClassLoader();
 
         final ByteArrayOutputStream dest = new ByteArrayOutputStream();
-        final LocationClassConverter converter =
-                new LocationClassConverter(AbstractConversionHandlerTest.class.getClassLoader());
-        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        convertedClasses = new HashMap<>();
 
         getNestedClasses(internalName)
                 .forEach(classFile -> assertDoesNotThrow(() -> {
                     dest.reset();
-                    converter.convert(Files.newInputStream(classFile), dest, locationCache);
-                    testCl.defineClass(dest.toByteArray());
+                    final byte[] original = Files.readAllBytes(classFile);
+                    if (classFileVersion > 0) {
+                        // The major version is stored at offset 6 in big-endian order
+                        original[6] = (byte) (classFileVersion >> 8);
+                        original[7] = (byte) classFileVersion;
+                    }
+                    converter.convert(new ByteArrayInputStream(original), dest, locationCache);
+                    final Class<?> clazz = testCl.defineClass(dest.toByteArray());
+                    convertedClasses.put(clazz.getName().replace('.', '/'), dest.toByteArray());
                 }));
-        locationCache.generateClasses().values().forEach(testCl::defineClass);
+        generatedClasses = locationCache.generateClasses();
+        generatedClasses.values().forEach(testCl::defineClass);
+        // Changes to the resources are visible to the location caches, until they are initialized
+        generatedResources = testCl.resources;
+        generatedResources.putAll(locationCache.generateLocationTables());
         convertedClass = testCl.loadClass(internalName.replaceAll("/", "."));
         testObject = assertDoesNotThrow(() -> convertedClass.getConstructor().newInstance());
     }
@@ -70,6 +119,8 @@ public class AbstractConversionHandlerTest {
 
     private static class TestClassLoader extends ClassLoader {
 
+        private final Map<String, byte[]> resources = new HashMap<>();
+
         public TestClassLoader() {
             super(AbstractConversionHandlerTest.class.getClassLoader());
         }
@@ -77,5 +128,11 @@ public class AbstractConversionHandlerTest {
         public Class<?> defineClass(byte[] bytes) {
             return defineClass(null, bytes, 0, bytes.length);
         }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            final byte[] resource = resources.get(name);
+            return resource != null ? new ByteArrayInputStream(resource) : super.getResourceAsStream(name);
+        }
     }
 }
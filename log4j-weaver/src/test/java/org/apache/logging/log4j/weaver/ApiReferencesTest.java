@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+
+public class ApiReferencesTest {
+
+    @Test
+    public void testNoLogging() throws Exception {
+        assertThat(getReferencingMethods("org/apache/logging/log4j/weaver/NoLoggingExample"))
+                .isEmpty();
+    }
+
+    @Test
+    public void testLogging() throws Exception {
+        assertThat(getReferencingMethods("org/apache/logging/log4j/weaver/log4j2/LevelGuardExample"))
+                .contains(
+                        "<clinit>()V", "testEnabledLevel(Lorg/apache/logging/log4j/core/test/appender/ListAppender;)V")
+                // References to Log4j Core and to the converted class itself are ignored
+                .doesNotContain(
+                        "<init>()V",
+                        "next()Ljava/lang/String;",
+                        "reset(Lorg/apache/logging/log4j/core/test/appender/ListAppender;)V");
+    }
+
+    private static Set<String> getReferencingMethods(final String internalName) throws Exception {
+        try (final InputStream classFile =
+                ApiReferencesTest.class.getClassLoader().getResourceAsStream(internalName + ".class")) {
+            return ApiReferences.getReferencingMethods(new ClassReader(classFile));
+        }
+    }
+}
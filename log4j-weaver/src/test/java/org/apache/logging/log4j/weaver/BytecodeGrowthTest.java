@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Reports the growth of each method caused by the conversion of a single logging statement.
+ */
+@LoggerContextSource("log4j2-test.xml")
+public class BytecodeGrowthTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/BytecodeGrowthExample";
+    private static final String DESCRIPTOR = "()V";
+
+    private static Map<String, Integer> originalSizes;
+    private static Map<String, Integer> originalMaxLocals;
+
+    private ListAppender appender;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final byte[] original = Files.readAllBytes(Paths.get(BytecodeGrowthTest.class
+                .getClassLoader()
+                .getResource(INTERNAL_NAME + ".class")
+                .toURI()));
+        originalSizes = MethodSizes.getCodeLengths(new ClassReader(original));
+        originalMaxLocals = getMaxLocals(original);
+        transformClass(INTERNAL_NAME);
+    }
+
+    @BeforeEach
+    public void setupAppender(final @Named("List") ListAppender appender) {
+        this.appender = appender;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "logMessage, 0",
+        "logParameter, 0",
+        "logMarker, 0",
+        "logThrowable, 0",
+        "logLevel, 0",
+        "logLevelParameter, 0",
+        "logLevelMarker, 0",
+        // More than two arguments are stored in local variables
+        "logMarkerParameter, 3",
+        // Suppliers are stored in local variables
+        "logSupplier, 1"
+    })
+    public void testBytecodeGrowth(final String methodName, final int expectedLocalsGrowth, final TestReporter reporter)
+            throws Exception {
+        final byte[] converted = convertedClasses.get(INTERNAL_NAME);
+        final int originalSize = originalSizes.get(methodName + DESCRIPTOR);
+        final int size = MethodSizes.getCodeLengths(new ClassReader(converted)).get(methodName + DESCRIPTOR);
+        final int maxLocals = getMaxLocals(converted).get(methodName);
+        reporter.publishEntry(
+                methodName,
+                "code length " + originalSize + " -> " + size + " bytes, max locals "
+                        + originalMaxLocals.get(methodName) + " -> " + maxLocals);
+        assertThat(maxLocals - originalMaxLocals.get(methodName)).isEqualTo(expectedLocalsGrowth);
+
+        appender.clear();
+        convertedClass.getMethod(methodName).invoke(testObject);
+        final List<LogEvent> events = appender.getEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getSource().getMethodName()).isEqualTo(methodName);
+    }
+
+    private static Map<String, Integer> getMaxLocals(final byte[] classFile) {
+        final Map<String, Integer> maxLocals = new HashMap<>();
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMaxs(int maxStack, int maxLocalsValue) {
+                                        maxLocals.put(name, maxLocalsValue);
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return maxLocals;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class ClassHierarchyTest {
+
+    private final ClassHierarchy classHierarchy = new ClassHierarchy(ClassHierarchyTest.class.getClassLoader());
+
+    @ParameterizedTest
+    @CsvSource({
+        "java/util/ArrayList, java/util/LinkedList, java/util/AbstractList",
+        "java/lang/Integer, java/lang/Long, java/lang/Number",
+        "java/util/List, java/util/ArrayList, java/util/List",
+        "java/util/ArrayList, java/util/List, java/util/List",
+        "java/lang/Runnable, java/lang/String, java/lang/Object",
+        "java/lang/IllegalStateException, java/io/IOException, java/lang/Exception",
+        "java/lang/Object, java/lang/String, java/lang/Object"
+    })
+    public void testCommonSuperClass(final String type1, final String type2, final String expected) {
+        assertThat(classHierarchy.getCommonSuperClass(type1, type2)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testMissingClass() {
+        assertThatThrownBy(() -> classHierarchy.getCommonSuperClass("com/example/Missing", "java/lang/String"))
+                .isInstanceOf(TypeNotPresentException.class);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Weaves a synthetic class with so many logging statements that its location cache does not fit in a single method.
+ */
+@LoggerContextSource("log4j2-test.xml")
+public class LargeLocationCacheTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/LargeExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String FILE_NAME = "LargeExample.java";
+    private static final int METHOD_COUNT = 500;
+    private static final int CALLS_PER_METHOD = 100;
+    private static final String MESSAGE = "Hello Log4j2!";
+
+    @Test
+    public void testEagerLocations(final LoggerContext context, final @Named("List") ListAppender appender)
+            throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        final Class<?> clazz = weaveAndLoad(locationCache);
+        final List<String> cacheMethods =
+                getMethodNames(locationCache.generateClasses().get(CACHE_CLASS_NAME));
+        assertThat(cacheMethods).contains("<clinit>", "initLocations0", "initLocations1");
+        assertLocations(clazz, context.getLogger(LargeLocationCacheTest.class), appender);
+    }
+
+    @Test
+    public void testLazyLocations(final LoggerContext context, final @Named("List") ListAppender appender)
+            throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setLazyLocations(true);
+        final Class<?> clazz = weaveAndLoad(locationCache);
+        assertLocations(clazz, context.getLogger(LargeLocationCacheTest.class), appender);
+    }
+
+    private static void assertLocations(final Class<?> clazz, final Logger logger, final ListAppender appender)
+            throws Exception {
+        for (final int methodIndex : new int[] {0, METHOD_COUNT / 2, METHOD_COUNT - 1}) {
+            final String methodName = "method" + methodIndex;
+            final Method method = clazz.getMethod(methodName, Logger.class);
+            method.invoke(null, logger);
+            final List<LogEvent> events = appender.getEvents();
+            assertThat(events).hasSize(CALLS_PER_METHOD);
+            for (int i = 0; i < CALLS_PER_METHOD; i++) {
+                final StackTraceElement location = events.get(i).getSource();
+                assertThat(location).isNotNull();
+                assertThat(location.getClassName()).isEqualTo(INTERNAL_NAME.replace('/', '.'));
+                assertThat(location.getMethodName()).isEqualTo(methodName);
+                assertThat(location.getFileName()).isEqualTo(FILE_NAME);
+                assertThat(location.getLineNumber()).isEqualTo(getLineNumber(methodIndex, i));
+            }
+            appender.clear();
+        }
+    }
+
+    private static Class<?> weaveAndLoad(final LocationCacheGenerator locationCache) throws Exception {
+        final ByteArrayOutputStream dest = new ByteArrayOutputStream();
+        new LocationClassConverter(LargeLocationCacheTest.class.getClassLoader())
+                .convert(new ByteArrayInputStream(generateExample()), dest, locationCache);
+        final TestClassLoader loader = new TestClassLoader();
+        loader.defineClass(dest.toByteArray());
+        final Map<String, byte[]> generatedClasses = locationCache.generateClasses();
+        generatedClasses.values().forEach(loader::defineClass);
+        return loader.loadClass(INTERNAL_NAME.replace('/', '.'));
+    }
+
+    private static int getLineNumber(final int methodIndex, final int callIndex) {
+        return methodIndex * CALLS_PER_METHOD + callIndex + 1;
+    }
+
+    /**
+     * Generates a class with {@value #METHOD_COUNT} methods, each one containing {@value #CALLS_PER_METHOD} calls to
+     * {@link Logger#info(String)} on distinct lines.
+     */
+    private static byte[] generateExample() {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(
+                Opcodes.V1_8,
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+                INTERNAL_NAME,
+                null,
+                Type.getInternalName(Object.class),
+                null);
+        cw.visitSource(FILE_NAME, null);
+        final String loggerType = Type.getInternalName(Logger.class);
+        for (int methodIndex = 0; methodIndex < METHOD_COUNT; methodIndex++) {
+            final MethodVisitor mv = cw.visitMethod(
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                    "method" + methodIndex,
+                    Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Logger.class)),
+                    null,
+                    null);
+            mv.visitCode();
+            for (int i = 0; i < CALLS_PER_METHOD; i++) {
+                final Label label = new Label();
+                mv.visitLabel(label);
+                mv.visitLineNumber(getLineNumber(methodIndex, i), label);
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitLdcInsn(MESSAGE);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, loggerType, "info", "(Ljava/lang/String;)V", true);
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static List<String> getMethodNames(final byte[] classFile) {
+        final List<String> methodNames = new ArrayList<>();
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                methodNames.add(name);
+                                return null;
+                            }
+                        },
+                        0);
+        return methodNames;
+    }
+
+    private static class TestClassLoader extends ClassLoader {
+
+        public TestClassLoader() {
+            super(LargeLocationCacheTest.class.getClassLoader());
+        }
+
+        public Class<?> defineClass(final byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+}
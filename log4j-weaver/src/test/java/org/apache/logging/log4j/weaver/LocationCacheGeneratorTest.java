@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator.LocationCacheValue;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Handle;
+
+public class LocationCacheGeneratorTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/Example";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String FILE_NAME = "Example.java";
+
+    @Test
+    public void testDuplicateLocations() {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        final LocationCacheValue first = locationCache.addLocation(INTERNAL_NAME, "method", FILE_NAME, 42);
+        final LocationCacheValue second = locationCache.addLocation(INTERNAL_NAME, "method", FILE_NAME, 43);
+        final LocationCacheValue duplicate = locationCache.addLocation(INTERNAL_NAME, "method", FILE_NAME, 42);
+        final LocationCacheValue nested = locationCache.addLocation(INTERNAL_NAME + "$Nested", "method", null, 42);
+        assertThat(first.getInternalClassName()).isEqualTo(CACHE_CLASS_NAME);
+        assertThat(first.getIndex()).isEqualTo(0);
+        assertThat(second.getIndex()).isEqualTo(1);
+        assertThat(duplicate.getIndex()).isEqualTo(0);
+        assertThat(nested.getInternalClassName()).isEqualTo(CACHE_CLASS_NAME);
+        assertThat(nested.getIndex()).isEqualTo(2);
+    }
+
+    @Test
+    public void testConcurrentRegistration() {
+        final int count = 10_000;
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        final Set<Integer> indexes = ConcurrentHashMap.newKeySet();
+        // Every location is registered twice
+        IntStream.range(0, 2 * count).parallel().forEach(i -> {
+            final LocationCacheValue value = locationCache.addLocation(INTERNAL_NAME, "method", FILE_NAME, i % count);
+            indexes.add(value.getIndex());
+            locationCache.createLambda(
+                    INTERNAL_NAME,
+                    i % 2 == 0 ? SupplierLambdaType.FORMATTED_MESSAGE : SupplierLambdaType.ENTRY_MESSAGE_MESSAGE);
+        });
+        assertThat(indexes).hasSize(count).allMatch(index -> index >= 0 && index < count);
+        assertThat(locationCache.generateClasses()).containsOnlyKeys(CACHE_CLASS_NAME);
+    }
+
+    @Test
+    public void testConstantMessages() {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        final Handle first = locationCache.addConstantMessage(INTERNAL_NAME, "message0");
+        final Handle duplicate = locationCache.addConstantMessage(INTERNAL_NAME + "$Nested", "message0");
+        assertThat(duplicate).isEqualTo(first);
+        // The messages are split among holder classes
+        Handle last = first;
+        for (int i = 1; i < 300; i++) {
+            last = locationCache.addConstantMessage(INTERNAL_NAME, "message" + i);
+        }
+        assertThat(first.getOwner()).isEqualTo(CACHE_CLASS_NAME + "$ConstantMessages0");
+        assertThat(last.getOwner()).isEqualTo(CACHE_CLASS_NAME + "$ConstantMessages1");
+        assertThat(locationCache.generateClasses())
+                .containsOnlyKeys(
+                        CACHE_CLASS_NAME,
+                        CACHE_CLASS_NAME + "$ConstantMessages0",
+                        CACHE_CLASS_NAME + "$ConstantMessages1");
+    }
+
+    @Test
+    public void testCacheGranularity() {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        assertThat(locationCache.getCacheClassName(INTERNAL_NAME + "$Nested")).isEqualTo(CACHE_CLASS_NAME);
+        locationCache.setCacheGranularity(CacheGranularity.PACKAGE);
+        assertThat(locationCache.getCacheClassName(INTERNAL_NAME + "$Nested"))
+                .isEqualTo("org/apache/logging/log4j/weaver/" + Constants.LOCATION_CACHE_SUFFIX);
+        assertThat(locationCache.getCacheClassName("Example")).isEqualTo(Constants.LOCATION_CACHE_SUFFIX);
+        locationCache.setCacheGranularity(CacheGranularity.MODULE);
+        locationCache.setModulePackage("org.apache.logging");
+        assertThat(locationCache.getCacheClassName(INTERNAL_NAME))
+                .isEqualTo("org/apache/logging/" + Constants.LOCATION_CACHE_SUFFIX);
+        assertThat(locationCache.getCacheClassName("Example"))
+                .isEqualTo("org/apache/logging/" + Constants.LOCATION_CACHE_SUFFIX);
+    }
+}
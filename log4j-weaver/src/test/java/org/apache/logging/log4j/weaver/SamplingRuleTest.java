@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class SamplingRuleTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "com.example.Foo=1/10, com.example.Foo, 42, true",
+        "com.example.Foo=1/10, com.example.Foo$Bar, 42, false",
+        "com.example.Foo:42=5/s, com.example.Foo, 42, true",
+        "com.example.Foo:42=5/s, com.example.Foo, 43, false",
+        "com.example.*=5/s, com.example.Foo$Bar, 1, true",
+        "com.example.*=5/s, org.example.Foo, 1, false"
+    })
+    public void testMatches(final String rule, final String className, final int lineNumber, final boolean matches) {
+        assertThat(SamplingRule.parse(rule).matches(className, lineNumber)).isEqualTo(matches);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"com.example.Foo", "=1/10", "com.example.Foo=2/10", "com.example.Foo=0/s", "Foo:x=1/2"})
+    public void testInvalidRules(final String rule) {
+        assertThatThrownBy(() -> SamplingRule.parse(rule)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"10, 0, 1/10", "0, 3, 3/s", "10, 3, 3/s"})
+    public void testAnnotationRate(final int oneIn, final int perSecond, final String rate) {
+        assertThat(SamplingRule.getAnnotationRate(Arrays.asList("oneIn", oneIn, "perSecond", perSecond)))
+                .isEqualTo(rate);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.agent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.log4j2.ConcatenationExample;
+import org.apache.logging.log4j.weaver.log4j2.LoggerConversionHandlerExample;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@LoggerContextSource("log4j2-test.xml")
+public class LocationClassFileTransformerTest {
+
+    private static final String EXAMPLE_CLASS_NAME = LoggerConversionHandlerExample.class.getName();
+
+    @TempDir
+    private Path cacheDirectory;
+
+    @Test
+    public void testWeaving(final @Named("List") ListAppender appender) throws Exception {
+        final Class<?> clazz =
+                new TransformingClassLoader(createTransformer(null, new AtomicInteger())).loadClass(EXAMPLE_CLASS_NAME);
+        assertThat(clazz.getClassLoader()).isInstanceOf(TransformingClassLoader.class);
+        invokeTestMethods(clazz, appender);
+    }
+
+    @Test
+    public void testPersistentCache(final @Named("List") ListAppender appender) throws Exception {
+        final AtomicInteger weavings = new AtomicInteger();
+        final TransformingClassLoader first = new TransformingClassLoader(createTransformer(cacheDirectory, weavings));
+        invokeTestMethods(first.loadClass(EXAMPLE_CLASS_NAME), appender);
+        assertThat(weavings).hasValue(1);
+        try (final Stream<Path> entries = Files.list(cacheDirectory)) {
+            assertThat(entries).hasSize(1);
+        }
+        // A new JVM run uses the cached bytecode
+        final TransformingClassLoader second = new TransformingClassLoader(createTransformer(cacheDirectory, weavings));
+        invokeTestMethods(second.loadClass(EXAMPLE_CLASS_NAME), appender);
+        assertThat(weavings).hasValue(1);
+        assertThat(second.getLastTransformed()).isEqualTo(first.getLastTransformed());
+        try (final Stream<Path> entries = Files.list(cacheDirectory)) {
+            assertThat(entries).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testConcurrentWeaving() throws Exception {
+        final String className = ConcatenationExample.class.getName().replace('.', '/');
+        final String nestedClassName = className + "$1";
+        final ClassLoader loader = getClass().getClassLoader();
+        final AtomicReference<byte[]> nestedClass = new AtomicReference<>();
+        final Thread[] concurrentLoad = new Thread[1];
+        final LocationClassFileTransformer transformer =
+                new LocationClassFileTransformer(null, Collections.singleton(className), Collections.emptySet()) {
+                    @Override
+                    protected void defineClass(
+                            final ClassLoader loader,
+                            final String binaryName,
+                            final byte[] classFile,
+                            final ProtectionDomain protectionDomain) {}
+
+                    @Override
+                    SortedMap<String, byte[]> weaveClasses(
+                            final ClassLoader loader, final SortedMap<String, byte[]> classFiles) throws IOException {
+                        // Another thread loads a nested class, while the group is being woven
+                        final byte[] classFile = classFiles.get(nestedClassName);
+                        concurrentLoad[0] = new Thread(
+                                () -> nestedClass.set(transform(loader, nestedClassName, null, null, classFile)));
+                        concurrentLoad[0].start();
+                        while (concurrentLoad[0].isAlive() && concurrentLoad[0].getState() != Thread.State.WAITING) {
+                            LockSupport.parkNanos(1_000_000L);
+                        }
+                        return super.weaveClasses(loader, classFiles);
+                    }
+                };
+        final byte[] classFile;
+        try (final InputStream is = loader.getResourceAsStream(className + ".class")) {
+            classFile = TransformingClassLoader.readAllBytes(is);
+        }
+        assertThat(transformer.transform(loader, className, null, null, classFile))
+                .isNotNull();
+        concurrentLoad[0].join();
+        // The nested class waited for the woven bytecode
+        assertThat(nestedClass.get()).isNotNull();
+    }
+
+    @Test
+    public void testGroupsAreReleased() throws Exception {
+        final String wovenClassName = ConcatenationExample.class.getName().replace('.', '/');
+        final String unchangedClassName =
+                AbstractConversionHandlerTest.class.getName().replace('.', '/');
+        final ClassLoader loader = getClass().getClassLoader();
+        final LocationClassFileTransformer transformer =
+                new LocationClassFileTransformer(
+                        null, Arrays.asList(wovenClassName, unchangedClassName), Collections.emptySet()) {
+                    @Override
+                    protected void defineClass(
+                            final ClassLoader loader,
+                            final String binaryName,
+                            final byte[] classFile,
+                            final ProtectionDomain protectionDomain) {}
+                };
+        for (final String className : new String[] {wovenClassName, wovenClassName + "$1"}) {
+            assertThat(transformer.transform(loader, className, null, null, readClassFile(loader, className)))
+                    .isNotNull();
+            assertThat(transformer.getPendingGroups(loader)).isOne();
+        }
+        assertThat(transformer.transform(
+                        loader,
+                        wovenClassName + "$Counted",
+                        null,
+                        null,
+                        readClassFile(loader, wovenClassName + "$Counted")))
+                .isNotNull();
+        assertThat(transformer.getPendingGroups(loader)).isZero();
+        // Classes without logging statements are not woven
+        assertThat(transformer.transform(
+                        loader, unchangedClassName, null, null, readClassFile(loader, unchangedClassName)))
+                .isNull();
+        assertThat(transformer.getPendingGroups(loader)).isOne();
+        final String nestedClassName = unchangedClassName + "$TestClassLoader";
+        assertThat(transformer.transform(loader, nestedClassName, null, null, readClassFile(loader, nestedClassName)))
+                .isNull();
+        assertThat(transformer.getPendingGroups(loader)).isZero();
+    }
+
+    @Test
+    public void testAgentOptions() {
+        final LocationClassFileTransformer transformer =
+                LocationAgent.createTransformer("includes=com.example;org.example , cacheDirectory=" + cacheDirectory);
+        assertThat(transformer.transform(getClass().getClassLoader(), "org/apache/Foo", null, null, new byte[0]))
+                .isNull();
+    }
+
+    private static byte[] readClassFile(final ClassLoader loader, final String internalName) throws IOException {
+        try (final InputStream is = loader.getResourceAsStream(internalName + ".class")) {
+            return TransformingClassLoader.readAllBytes(is);
+        }
+    }
+
+    private static void invokeTestMethods(final Class<?> clazz, final ListAppender appender) throws Exception {
+        final Object testObject = clazz.getConstructor().newInstance();
+        for (final String methodName : new String[] {"testFatal", "testLog", "testPrintf", "testTraceEntry"}) {
+            clazz.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+        }
+    }
+
+    private static LocationClassFileTransformer createTransformer(
+            final Path cacheDirectory, final AtomicInteger weavings) {
+        return new LocationClassFileTransformer(
+                cacheDirectory, Collections.singleton(EXAMPLE_CLASS_NAME.replace('.', '/')), Collections.emptySet()) {
+            @Override
+            SortedMap<String, byte[]> weaveClasses(final ClassLoader loader, final SortedMap<String, byte[]> classFiles)
+                    throws IOException {
+                weavings.incrementAndGet();
+                return super.weaveClasses(loader, classFiles);
+            }
+
+            @Override
+            protected void defineClass(
+                    final ClassLoader loader,
+                    final String binaryName,
+                    final byte[] classFile,
+                    final ProtectionDomain protectionDomain) {
+                ((TransformingClassLoader) loader).defineClass(binaryName, classFile);
+            }
+        };
+    }
+
+    /**
+     * Simulates the effect of a Java agent on a classloader.
+     */
+    private static class TransformingClassLoader extends ClassLoader {
+
+        private final LocationClassFileTransformer transformer;
+        private byte[] lastTransformed;
+
+        private TransformingClassLoader(final LocationClassFileTransformer transformer) {
+            super(LocationClassFileTransformerTest.class.getClassLoader());
+            this.transformer = transformer;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = name.startsWith(EXAMPLE_CLASS_NAME) && !name.contains(Constants.LOCATION_CACHE_SUFFIX)
+                            ? transformAndDefine(name)
+                            : super.loadClass(name, false);
+                }
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+                return clazz;
+            }
+        }
+
+        private Class<?> transformAndDefine(final String name) throws ClassNotFoundException {
+            final String internalName = name.replace('.', '/');
+            try (final InputStream is = getResourceAsStream(internalName + ".class")) {
+                if (is == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                final byte[] classFile = readAllBytes(is);
+                final byte[] transformed = transformer.transform(this, internalName, null, null, classFile);
+                assertThat(transformed).isNotNull();
+                lastTransformed = transformed;
+                return defineClass(name, transformed);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+        private Class<?> defineClass(final String name, final byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+        private byte[] getLastTransformed() {
+            return lastTransformed;
+        }
+
+        private static byte[] readAllBytes(final InputStream is) throws IOException {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+public class BoxingExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private int intValue = 1_000;
+    private long longValue = 1_000_000_000_000L;
+    private float floatValue = 0.5f;
+    private double doubleValue = Math.PI;
+    private short shortValue = 1_000;
+    private char charValue = 'x';
+    private boolean booleanValue = true;
+    private byte byteValue = 42;
+
+    public void testBoxing(final ListAppender app) {
+        app.clear();
+        logger.info("{} {} {} {} {} {}", intValue, longValue, floatValue, doubleValue, shortValue, charValue);
+        logger.log(Level.WARN, MARKER, "Value: {}", intValue);
+        logger.atInfo().log("{} of {}", intValue - 1, intValue);
+        logger.info("Values: {}", new Object[] {intValue});
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).getMessage().getFormattedMessage())
+                .isEqualTo("1000 1000000000000 0.5 3.141592653589793 1000 x");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Value: 1000");
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("999 of 1000");
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("Values: 1000");
+    }
+
+    public void testRingBuffer(final ListAppender app) {
+        app.clear();
+        // Exceeds the size of the ring buffer used by `Unbox`
+        for (int i = 0; i < 100; i++) {
+            logger.info("{} {}", i, -i);
+        }
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(events.get(i).getMessage().getFormattedMessage()).isEqualTo(i + " " + -i);
+        }
+    }
+
+    public void testConcatenation(final ListAppender app) {
+        app.clear();
+        logger.info("Int: " + intValue);
+        logger.info("Long: " + longValue + ", double: " + doubleValue);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Int: 1000");
+        assertThat(events.get(1).getMessage().getFormattedMessage())
+                .isEqualTo("Long: 1000000000000, double: 3.141592653589793");
+    }
+
+    public void testUnchangedBoxing(final ListAppender app) {
+        app.clear();
+        logger.info("{} {}", booleanValue, byteValue);
+        final Integer boxed = intValue;
+        logger.info("{}", boxed);
+        logger.info("{} {} {} {} {} {} {} {} {} {} {}", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, intValue);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("true 42");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("1000");
+        assertThat(events.get(1).getMessage().getParameters()).containsExactly(boxed);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("1 2 3 4 5 6 7 8 9 10 1000");
+    }
+}
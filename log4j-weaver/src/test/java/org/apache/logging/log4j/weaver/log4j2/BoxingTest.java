@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class BoxingTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/BoxingExample";
+    private static final String UNBOX = "org/apache/logging/log4j/util/Unbox";
+
+    private ListAppender appender;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter = new LocationClassConverter(BoxingTest.class.getClassLoader());
+        converter.setGarbageFreeBoxing(true);
+        converter.setDeferConcatenation(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @BeforeEach
+    public void setupAppender(final @Named("List") ListAppender appender) {
+        this.appender = appender;
+    }
+
+    @ParameterizedTest
+    @CsvSource({"testBoxing, 10", "testRingBuffer, 2", "testConcatenation, 3", "testUnchangedBoxing, 0"})
+    public void testBoxing(final String methodName, final int expectedUnboxCalls) throws Exception {
+        assertThat(countUnboxCalls(methodName)).isEqualTo(expectedUnboxCalls);
+        convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+    }
+
+    /**
+     * Counts the calls to {@code Unbox.box} in a method of the converted class.
+     */
+    private static int countUnboxCalls(final String methodName) {
+        final int[] count = new int[1];
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (!name.equals(methodName)) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (UNBOX.equals(owner)) {
+                                            count[0]++;
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return count[0];
+    }
+}
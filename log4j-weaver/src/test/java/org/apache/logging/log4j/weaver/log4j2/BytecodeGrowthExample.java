@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+/**
+ * Each method contains a logging statement with a different shape of arguments.
+ */
+public class BytecodeGrowthExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    @SuppressWarnings("StaticAssignmentOfThrowable")
+    private static final Throwable THROWABLE = new RuntimeException();
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void logMessage() {
+        logger.info("Message");
+    }
+
+    public void logParameter() {
+        logger.info("Hello {}!", "Alice");
+    }
+
+    public void logMarker() {
+        logger.info(MARKER, "Message");
+    }
+
+    public void logThrowable() {
+        logger.error("Failure", THROWABLE);
+    }
+
+    public void logLevel() {
+        logger.log(Level.WARN, "Message");
+    }
+
+    public void logLevelParameter() {
+        logger.log(Level.WARN, "Hello {}!", "Alice");
+    }
+
+    public void logLevelMarker() {
+        logger.log(Level.WARN, MARKER, "Message");
+    }
+
+    public void logMarkerParameter() {
+        logger.info(MARKER, "Hello {}!", "Alice");
+    }
+
+    public void logSupplier() {
+        logger.info(() -> "Message");
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.CacheGranularity;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class CacheGranularityTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String[] TEST_METHODS = {
+        "testFatal",
+        "testLog",
+        "testFrames",
+        "testPrintf",
+        "testLogBuilder",
+        "testCatchingThrowing",
+        "testTraceEntry",
+        "testTraceExit"
+    };
+
+    @Test
+    public void testPackageCache(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setCacheGranularity(CacheGranularity.PACKAGE);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        final String cacheClassName = "org/apache/logging/log4j/weaver/log4j2/" + Constants.LOCATION_CACHE_SUFFIX;
+        assertThat(generatedClasses).containsOnlyKeys(cacheClassName);
+        assertThat(isPublic(generatedClasses.get(cacheClassName))).isFalse();
+        invokeTestMethods(appender);
+    }
+
+    @Test
+    public void testModuleCache(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setCacheGranularity(CacheGranularity.MODULE);
+        locationCache.setModulePackage("org.apache.logging.log4j.weaver");
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        final String cacheClassName = "org/apache/logging/log4j/weaver/" + Constants.LOCATION_CACHE_SUFFIX;
+        assertThat(generatedClasses).containsOnlyKeys(cacheClassName);
+        // The cache is accessed from other packages
+        assertThat(isPublic(generatedClasses.get(cacheClassName))).isTrue();
+        invokeTestMethods(appender);
+    }
+
+    private static void invokeTestMethods(final ListAppender appender) throws Exception {
+        for (final String methodName : TEST_METHODS) {
+            convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+        }
+    }
+
+    private static boolean isPublic(final byte[] classFile) {
+        return (new ClassReader(classFile).getAccess() & Opcodes.ACC_PUBLIC) != 0;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+/**
+ * Logging statements with a concatenated message, executed with a logger that has level {@code INFO}.
+ */
+public class ConcatenationExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final Logger formatterLogger = LogManager.getFormatterLogger();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private String user = "alice";
+    private int id = 42;
+    private long size = 1L << 40;
+    private double ratio = 0.5;
+    private char grade = 'A';
+    private boolean flag = true;
+    private Integer value = null;
+
+    private final Counted counted = new Counted();
+
+    /**
+     * An object that counts the calls to {@link #toString()}.
+     * <p>
+     *     The class is final, so that it is formatted by {@code toString()} by both {@code String.valueOf} and
+     *     Log4j.
+     * </p>
+     */
+    private final class Counted {
+        @Override
+        public String toString() {
+            return "counted" + counter.incrementAndGet();
+        }
+    }
+
+    private void reset(final ListAppender app) {
+        app.clear();
+        counter.set(0);
+    }
+
+    public void testConcatenation(final ListAppender app) {
+        reset(app);
+        logger.info("User " + user + " has id " + id);
+        logger.warn(MARKER, "Size: " + size + ", ratio: " + ratio + ", grade: " + grade + ", flag: " + flag);
+        logger.log(Level.ERROR, id + " " + value);
+        logger.log(Level.INFO, MARKER, "" + counted);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("User alice has id 42");
+        assertThat(events.get(1).getMessage().getFormattedMessage())
+                .isEqualTo("Size: 1099511627776, ratio: 0.5, grade: A, flag: true");
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("42 null");
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("counted1");
+        assertThat(events.get(3).getMarker()).isEqualTo(MARKER);
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testConcatenation");
+        }
+    }
+
+    public void testDisabledLevel(final ListAppender app) {
+        reset(app);
+        logger.debug("Debug " + counted);
+        logger.trace(MARKER, "Trace " + counted + " " + id);
+        logger.log(Level.DEBUG, "Debug " + counted.toString());
+        logger.debug("Debug " + String.valueOf(counted));
+        logger.debug("Debug " + String.format("%s", counted));
+        assertThat(counter).hasValue(0);
+        assertThat(app.getEvents()).isEmpty();
+    }
+
+    public void testStringConversion(final ListAppender app) {
+        reset(app);
+        logger.info("Info " + counted.toString() + " " + String.valueOf(id));
+        logger.info("Info " + String.format("%s %.2f", counted, ratio));
+        // Not deferred, since `ParameterFormatter` formats arrays differently
+        logger.info("Info " + String.valueOf(new char[] {'a', 'b'}));
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Info counted1 42");
+        assertThat(events.get(1).getMessage().getFormattedMessage())
+                .isEqualTo("Info " + String.format("%s %.2f", "counted2", ratio));
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("Info ab");
+    }
+
+    public void testNullConversion(final ListAppender app) {
+        reset(app);
+        boolean thrown = false;
+        try {
+            logger.debug("Debug " + value.toString());
+        } catch (final NullPointerException e) {
+            thrown = true;
+        }
+        assertThat(thrown).isTrue();
+        assertThat(app.getEvents()).isEmpty();
+    }
+
+    public void testFormatterLogger(final ListAppender app) {
+        reset(app);
+        formatterLogger.info("User {" + user + "} has id " + id);
+        formatterLogger.info("User " + user);
+        final Logger localLogger = LogManager.getFormatterLogger(ConcatenationExample.class);
+        localLogger.info("User " + user);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("User {alice} has id 42");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("User alice");
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("User alice");
+    }
+
+    public void testUnsupportedOperands(final ListAppender app) {
+        reset(app);
+        // Log4j formats arrays, dates, collections and maps, but checks the runtime class of the parameters
+        final Object array = new int[] {1, 2};
+        final Timestamp timestamp = new Timestamp(0L);
+        logger.info("Array " + array);
+        logger.info("Timestamp " + timestamp);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Array " + array.toString());
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Timestamp " + timestamp.toString());
+    }
+
+    public void testUnchangedConcatenation(final ListAppender app) {
+        reset(app);
+        logger.info("Braces {" + user + "}");
+        logger.info("Backslash \\" + user);
+        logger.info(user + id + user + id + user + id + user + id + user + id + user);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Braces {alice}");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Backslash \\alice");
+        assertThat(events.get(2).getMessage().getFormattedMessage())
+                .isEqualTo("alice42alice42alice42alice42alice42alice");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+@LoggerContextSource("log4j2-test.xml")
+public class ConcatenationTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/ConcatenationExample";
+    private static final String INDY_INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/IndyConcatenationExample";
+
+    private ListAppender appender;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        transformClass(INTERNAL_NAME, createConverter(), new LocationCacheGenerator(), 0);
+    }
+
+    @BeforeEach
+    public void setupAppender(final @Named("List") ListAppender appender) {
+        this.appender = appender;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "testConcatenation, 4",
+        "testDisabledLevel, 5",
+        "testStringConversion, 3",
+        "testNullConversion, 1",
+        "testFormatterLogger, 0",
+        "testUnsupportedOperands, 0",
+        "testUnchangedConcatenation, 0"
+    })
+    public void testConcatenation(final String methodName, final int expectedParameterized) throws Exception {
+        final ClassReader reader = new ClassReader(convertedClasses.get(INTERNAL_NAME));
+        assertThat(countParameterizedCalls(reader, methodName)).isEqualTo(expectedParameterized);
+        convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testIndyConcatenation(final LoggerContext context) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        final ByteArrayOutputStream dest = new ByteArrayOutputStream();
+        createConverter().convert(new ByteArrayInputStream(generateIndyExample()), dest, locationCache);
+        assertThat(countParameterizedCalls(new ClassReader(dest.toByteArray()), "log"))
+                .isEqualTo(1);
+
+        appender.clear();
+        final TestClassLoader loader = new TestClassLoader();
+        loader.defineClass(dest.toByteArray());
+        final Map<String, byte[]> generatedClasses = locationCache.generateClasses();
+        generatedClasses.values().forEach(loader::defineClass);
+        loader.loadClass(INDY_INTERNAL_NAME.replace('/', '.'))
+                .getMethod("log", Logger.class, int.class, String.class)
+                .invoke(null, context.getLogger(ConcatenationTest.class), 42, "logged in");
+        final List<LogEvent> events = appender.getEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("User 42 logged in!");
+        assertThat(events.get(0).getMessage().getParameters()).containsExactly(42, "logged in");
+    }
+
+    private static LocationClassConverter createConverter() {
+        final LocationClassConverter converter = new LocationClassConverter(ConcatenationTest.class.getClassLoader());
+        converter.setDeferConcatenation(true);
+        converter.setDeferStringConversion(true);
+        return converter;
+    }
+
+    /**
+     * Generates a class with a {@code log(Logger, int, String)} method that calls {@link Logger#info(String)} with
+     * a {@code makeConcatWithConstants} concatenation, as Java 9+ compilers do.
+     */
+    private static byte[] generateIndyExample() {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(
+                Opcodes.V11,
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+                INDY_INTERNAL_NAME,
+                null,
+                Type.getInternalName(Object.class),
+                null);
+        cw.visitSource("IndyConcatenationExample.java", null);
+        final MethodVisitor mv = cw.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                "log",
+                Type.getMethodDescriptor(
+                        Type.VOID_TYPE, Type.getType(Logger.class), Type.INT_TYPE, Type.getType(String.class)),
+                null,
+                null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        final Handle bootstrapMethod = new Handle(
+                Opcodes.H_INVOKESTATIC,
+                "java/lang/invoke/StringConcatFactory",
+                "makeConcatWithConstants",
+                MethodType.methodType(
+                                CallSite.class,
+                                MethodHandles.Lookup.class,
+                                String.class,
+                                MethodType.class,
+                                String.class,
+                                Object[].class)
+                        .toMethodDescriptorString(),
+                false);
+        mv.visitInvokeDynamicInsn(
+                "makeConcatWithConstants",
+                "(ILjava/lang/String;)Ljava/lang/String;",
+                bootstrapMethod,
+                "User \u0001 \u0001\u0002",
+                "!");
+        mv.visitMethodInsn(
+                Opcodes.INVOKEINTERFACE, Type.getInternalName(Logger.class), "info", "(Ljava/lang/String;)V", true);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Counts the calls to {@code LogBuilder.log} with a parameterized message in a method.
+     */
+    private static int countParameterizedCalls(final ClassReader reader, final String methodName) {
+        final int[] count = new int[1];
+        reader.accept(
+                new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            int access, String name, String descriptor, String signature, String[] exceptions) {
+                        if (!name.equals(methodName)) {
+                            return null;
+                        }
+                        return new MethodVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visitMethodInsn(
+                                    int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                                if ("org/apache/logging/log4j/LogBuilder".equals(owner)
+                                        && "log".equals(name)
+                                        && Type.getArgumentTypes(descriptor).length > 1) {
+                                    count[0]++;
+                                }
+                            }
+                        };
+                    }
+                },
+                0);
+        return count[0];
+    }
+
+    private static class TestClassLoader extends ClassLoader {
+
+        public TestClassLoader() {
+            super(ConcatenationTest.class.getClassLoader());
+        }
+
+        public Class<?> defineClass(final byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+public class ConstantLookupExample {
+
+    private static final Marker AUDIT = MarkerManager.getMarker("AUDIT");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testConstantLookups(final ListAppender app) {
+        app.clear();
+        logger.info(MarkerManager.getMarker("AUDIT"), "Audit message");
+        logger.warn(MarkerManager.getMarker("AUDIT"), "Audit message");
+        logger.log(Level.forName("NOTICE", 350), "Notice message");
+        logger.log(Level.forName("INFO", 400), MarkerManager.getMarker("SECURITY"), "Security message");
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).getMarker()).isSameAs(AUDIT);
+        assertThat(events.get(1).getMarker()).isSameAs(AUDIT);
+        assertThat(events.get(2).getLevel()).isSameAs(Level.getLevel("NOTICE"));
+        assertThat(events.get(2).getLevel().intLevel()).isEqualTo(350);
+        assertThat(events.get(3).getLevel()).isSameAs(Level.INFO);
+        assertThat(events.get(3).getMarker().getName()).isEqualTo("SECURITY");
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testConstantLookups");
+        }
+    }
+
+    public void testUnchangedLookups(final ListAppender app) {
+        app.clear();
+        logger.info(MarkerManager.getMarker(getName()), "Audit message");
+        logger.log(Level.forName("NOTICE", getIntLevel()), "Notice message");
+        // Invalid levels fail where they are created
+        assertThatThrownBy(() -> Level.forName("", 350)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Level.forName("INVALID", -1)).isInstanceOf(IllegalArgumentException.class);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMarker()).isSameAs(AUDIT);
+        assertThat(events.get(1).getLevel().name()).isEqualTo("NOTICE");
+    }
+
+    private static String getName() {
+        return "AUDIT";
+    }
+
+    private static int getIntLevel() {
+        return 350;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.message.SimpleMessage;
+
+public class ConstantMessageExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+    private static final String MESSAGE = "Connection pool started";
+
+    @SuppressWarnings("StaticAssignmentOfThrowable")
+    private static final Throwable THROWABLE = new RuntimeException();
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testConstantMessages(final ListAppender app) {
+        app.clear();
+        for (int i = 0; i < 2; i++) {
+            logger.info(MESSAGE);
+        }
+        logger.warn(MARKER, "Braces {} are not placeholders");
+        logger.log(Level.ERROR, "Failure", THROWABLE);
+        logger.log(Level.ERROR, MARKER, "Failure", THROWABLE);
+        logger.atInfo().log(MESSAGE);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(6);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo(MESSAGE);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("Braces {} are not placeholders");
+        assertThat(events.get(2).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("Failure");
+        assertThat(events.get(3).getThrown()).isSameAs(THROWABLE);
+        assertThat(events.get(4).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(4).getThrown()).isSameAs(THROWABLE);
+        for (final LogEvent event : events) {
+            assertThat(event.getMessage()).isInstanceOf(SimpleMessage.class);
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testConstantMessages");
+        }
+        // Identical messages share the same instance
+        assertThat(events.get(1).getMessage()).isSameAs(events.get(0).getMessage());
+        assertThat(events.get(5).getMessage()).isSameAs(events.get(0).getMessage());
+        assertThat(events.get(4).getMessage()).isSameAs(events.get(3).getMessage());
+    }
+
+    public void testUnchangedMessages(final ListAppender app) {
+        app.clear();
+        logger.info(getMessage());
+        logger.info("Hello {}!", MESSAGE);
+        logger.info((Object) MESSAGE);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo(MESSAGE);
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Hello Connection pool started!");
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo(MESSAGE);
+    }
+
+    private static String getMessage() {
+        return MESSAGE;
+    }
+}
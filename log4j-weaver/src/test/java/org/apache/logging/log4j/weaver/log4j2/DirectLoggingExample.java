@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
+
+public class DirectLoggingExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    @SuppressWarnings("StaticAssignmentOfThrowable")
+    private static final Throwable THROWABLE = new RuntimeException();
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testDirect(final ListAppender app) {
+        app.clear();
+        logger.info("Hello {}!", "Alice");
+        logger.warn(MARKER, "Hello {} and {}!", "Alice", "Bob");
+        logger.log(Level.ERROR, MARKER, "Failure", THROWABLE);
+        logger.error((Message) new SimpleMessage("Message"));
+        logger.info((CharSequence) "CharSequence");
+        logger.info("Hello {}, {} and {}!", new Object[] {"Alice", "Bob", "Carol"});
+        logger.debug("Disabled {}", "level");
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(6);
+        assertThat(events.get(0).getLevel()).isEqualTo(Level.INFO);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Hello Alice!");
+        assertThat(events.get(1).getLevel()).isEqualTo(Level.WARN);
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Hello Alice and Bob!");
+        assertThat(events.get(2).getLevel()).isEqualTo(Level.ERROR);
+        assertThat(events.get(2).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(2).getThrown()).isSameAs(THROWABLE);
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("Message");
+        assertThat(events.get(4).getMessage().getFormattedMessage()).isEqualTo("CharSequence");
+        assertThat(events.get(5).getMessage().getFormattedMessage()).isEqualTo("Hello Alice, Bob and Carol!");
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testDirect");
+        }
+    }
+
+    public void testFilter(final ListAppender app) {
+        app.clear();
+        logger.info("Hello {}!", "(filtered)");
+        logger.info("Hello {} and {}!", "Alice", "(filtered)");
+        logger.error("(filtered)", THROWABLE);
+        logger.error((Message) new SimpleMessage("(filtered)"));
+        logger.info("Hello {}!", "Alice");
+        // The context-wide filter receives the formatted message
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Hello Alice!");
+    }
+
+    public void testSupplier(final ListAppender app) {
+        app.clear();
+        logger.info(() -> "Supplier");
+        logger.info("Hello {}!", () -> "Alice");
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Supplier");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Hello Alice!");
+        for (final LogEvent event : events) {
+            assertThat(event.getSource().getMethodName()).isEqualTo("testSupplier");
+        }
+    }
+
+    public void testFallback(final Logger logger) {
+        logger.info("Hello {}!", "Alice");
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that direct logging applies the filters of the configuration, which only {@code isEnabled} calls.
+ */
+@LoggerContextSource("log4j2-filter-test.xml")
+public class DirectLoggingFilterTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/DirectLoggingExample";
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter =
+                new LocationClassConverter(DirectLoggingFilterTest.class.getClassLoader());
+        converter.setDirectLogging(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @Test
+    public void testContextWideFilter(final @Named("List") ListAppender appender) throws Exception {
+        convertedClass.getMethod("testFilter", ListAppender.class).invoke(testObject, appender);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class DirectLoggingTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/DirectLoggingExample";
+
+    private ListAppender appender;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter = new LocationClassConverter(DirectLoggingTest.class.getClassLoader());
+        converter.setDirectLogging(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @BeforeEach
+    public void setupAppender(final @Named("List") ListAppender appender) {
+        this.appender = appender;
+    }
+
+    @ParameterizedTest
+    @CsvSource({"testDirect, 7, 0", "testSupplier, 0, 2"})
+    public void testDirectLogging(final String methodName, final int expectedDirect, final int expectedBuilders)
+            throws Exception {
+        final int[] counts = countCalls(methodName);
+        assertThat(counts[0]).isEqualTo(expectedDirect);
+        assertThat(counts[1]).isEqualTo(expectedBuilders);
+        convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        final AtomicReference<StackTraceElement> location = new AtomicReference<>();
+        final AtomicBoolean called = new AtomicBoolean();
+        // A logger that does not implement `LocationAwareLogger`
+        final Logger logger = (Logger) Proxy.newProxyInstance(
+                Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isEnabled":
+                            return true;
+                        case "atLevel":
+                            return new LogBuilderMock(location, called);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        convertedClass.getMethod("testFallback", Logger.class).invoke(testObject, logger);
+        assertThat(called.get()).isFalse();
+        assertThat(location.get()).isNotNull();
+        assertThat(location.get().getMethodName()).isEqualTo("testFallback");
+    }
+
+    /**
+     * Counts the calls to the log methods of the location cache and the calls that create a {@code LogBuilder}.
+     */
+    private static int[] countCalls(final String methodName) {
+        final int[] counts = new int[2];
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (!name.equals(methodName)) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (owner.endsWith("$$Log4j2$$Cache") && "logMessage".equals(name)) {
+                                            counts[0]++;
+                                        } else if (owner.equals("org/apache/logging/log4j/Logger")
+                                                && name.startsWith("at")) {
+                                            counts[1]++;
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return counts;
+    }
+}
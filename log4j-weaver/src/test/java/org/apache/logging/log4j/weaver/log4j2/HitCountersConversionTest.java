@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@LoggerContextSource("log4j2-test.xml")
+public class HitCountersConversionTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String EXAMPLE_INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/HitCountersExample";
+    private static final String OBJECT_NAME = "org.apache.logging.log4j.weaver:type=HitCounters";
+
+    @Test
+    public void testHitCounters(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setHitCounters(true);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        assertThat(generatedClasses).containsKey(CACHE_CLASS_NAME + "$HitCounters");
+
+        for (int i = 0; i < 3; i++) {
+            convertedClass.getMethod("testFatal", ListAppender.class).invoke(testObject, appender);
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final String[] topSites = (String[]) server.invoke(
+                new ObjectName(OBJECT_NAME), "topSites", new Object[] {100}, new String[] {int.class.getName()});
+        assertThat(topSites)
+                .isNotEmpty()
+                .anyMatch(site -> site.startsWith("3 ") && site.contains(".testFatal(LoggerConversionHandlerExample"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testDisabledLevelsAreNotCounted(final boolean directLogging, final @Named("List") ListAppender appender)
+            throws Exception {
+        final LocationClassConverter converter =
+                new LocationClassConverter(HitCountersConversionTest.class.getClassLoader());
+        converter.setDirectLogging(directLogging);
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setHitCounters(true);
+        transformClass(EXAMPLE_INTERNAL_NAME, converter, locationCache, 0);
+        // Registers the MXBean
+        convertedClass.getMethod("testEnabledLevel", ListAppender.class).invoke(testObject, appender);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(OBJECT_NAME);
+        server.invoke(objectName, "reset", new Object[0], new String[0]);
+        convertedClass.getMethod("testDisabledLevel", ListAppender.class).invoke(testObject, appender);
+        assertThat(server.getAttribute(objectName, "TotalHits")).isEqualTo(0L);
+        convertedClass.getMethod("testEnabledLevel", ListAppender.class).invoke(testObject, appender);
+        assertThat(server.getAttribute(objectName, "TotalHits")).isEqualTo(4L);
+    }
+}
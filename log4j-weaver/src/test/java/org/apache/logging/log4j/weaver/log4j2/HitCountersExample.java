@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+/**
+ * Logging statements executed with a logger that has level {@code INFO}.
+ */
+public class HitCountersExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testDisabledLevel(final ListAppender app) {
+        app.clear();
+        logger.debug("Debug {}", "value");
+        logger.debug(MARKER, "Debug");
+        logger.log(Level.TRACE, "Trace {}", "value");
+        logger.printf(Level.DEBUG, "Debug %s", "value");
+        logger.atDebug().log("Debug");
+        assertThat(app.getEvents()).isEmpty();
+    }
+
+    public void testEnabledLevel(final ListAppender app) {
+        app.clear();
+        logger.info("Info {}", "value");
+        logger.warn(MARKER, "Warn");
+        logger.printf(Level.ERROR, "Error %s", "value");
+        logger.atInfo().log("Info");
+        assertThat(app.getEvents()).hasSize(4);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+public class InvokeDynamicGuardsExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    public void testGuards(final ListAppender app) {
+        try {
+            app.clear();
+            evaluations.set(0);
+            logStatements();
+            assertThat(app.getEvents()).hasSize(1);
+            assertThat(evaluations.get()).isEqualTo(1);
+            assertThat(checkLevels()).containsExactly(false, false, true, true, true);
+
+            // The call sites must follow configuration changes
+            Configurator.setLevel(logger, Level.DEBUG);
+            app.clear();
+            evaluations.set(0);
+            logStatements();
+            assertThat(app.getEvents()).hasSize(2);
+            assertThat(evaluations.get()).isEqualTo(2);
+            assertThat(checkLevels()).containsExactly(true, true, true, true, true);
+
+            Configurator.setLevel(logger, Level.ERROR);
+            app.clear();
+            evaluations.set(0);
+            logStatements();
+            assertThat(app.getEvents()).isEmpty();
+            assertThat(evaluations.get()).isZero();
+            assertThat(checkLevels()).containsExactly(false, false, false, false, true);
+        } finally {
+            Configurator.setLevel(logger, Level.INFO);
+        }
+    }
+
+    private void logStatements() {
+        logger.debug("Debug {}", evaluate());
+        logger.info(MARKER, "Info {}", evaluate());
+    }
+
+    private boolean[] checkLevels() {
+        return new boolean[] {
+            logger.isDebugEnabled(),
+            logger.isDebugEnabled(MARKER),
+            logger.isInfoEnabled(),
+            logger.isEnabled(Level.INFO, MARKER),
+            logger.isEnabled(Level.ERROR)
+        };
+    }
+
+    private Object evaluate() {
+        return evaluations.incrementAndGet();
+    }
+}
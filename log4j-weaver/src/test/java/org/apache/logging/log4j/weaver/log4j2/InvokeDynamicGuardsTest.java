@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class InvokeDynamicGuardsTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/InvokeDynamicGuardsExample";
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter =
+                new LocationClassConverter(InvokeDynamicGuardsTest.class.getClassLoader());
+        converter.setLevelGuards(true);
+        converter.setInvokeDynamicGuards(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @Test
+    public void testLevelChecks() {
+        final AtomicInteger dynamicChecks = new AtomicInteger();
+        final AtomicInteger interfaceChecks = new AtomicInteger();
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitInvokeDynamicInsn(
+                                            String name,
+                                            String descriptor,
+                                            Handle bootstrapMethodHandle,
+                                            Object... bootstrapMethodArguments) {
+                                        if (bootstrapMethodHandle
+                                                .getOwner()
+                                                .equals(
+                                                        "org/apache/logging/log4j/weaver/runtime/LevelGuardBootstrap")) {
+                                            dynamicChecks.incrementAndGet();
+                                        }
+                                    }
+
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (owner.equals("org/apache/logging/log4j/Logger")
+                                                && name.startsWith("is")
+                                                && name.endsWith("Enabled")) {
+                                            interfaceChecks.incrementAndGet();
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        // Two inserted guards and five explicit checks
+        assertThat(dynamicChecks.get()).isEqualTo(7);
+        assertThat(interfaceChecks.get()).isZero();
+    }
+
+    @Test
+    public void testGuards(final @Named("List") ListAppender appender) throws Exception {
+        convertedClass.getMethod("testGuards", ListAppender.class).invoke(testObject, appender);
+    }
+}
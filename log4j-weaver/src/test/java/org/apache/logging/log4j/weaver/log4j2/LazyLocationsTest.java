@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class LazyLocationsTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String[] TEST_METHODS = {
+        "testFatal",
+        "testLog",
+        "testFrames",
+        "testPrintf",
+        "testLogBuilder",
+        "testCatchingThrowing",
+        "testTraceEntry",
+        "testTraceExit"
+    };
+
+    @Test
+    public void testHolderClasses(final @Named("List") ListAppender appender) throws Exception {
+        transformClass(INTERNAL_NAME, createLocationCache(), 0);
+        assertThat(generatedClasses).containsKeys(CACHE_CLASS_NAME, CACHE_CLASS_NAME + "$0", CACHE_CLASS_NAME + "$1");
+        assertThat(getFieldNames(generatedClasses.get(CACHE_CLASS_NAME))).isEmpty();
+        assertThat(getFieldNames(generatedClasses.get(CACHE_CLASS_NAME + "$0"))).containsExactly("locations");
+        invokeTestMethods(appender);
+    }
+
+    @Test
+    @EnabledForJreRange(minVersion = 11)
+    public void testConstantDynamic(final @Named("List") ListAppender appender) throws Exception {
+        transformClass(INTERNAL_NAME, createLocationCache(), Opcodes.V11);
+        assertThat(generatedClasses).containsOnlyKeys(CACHE_CLASS_NAME);
+        assertThat(getFieldNames(generatedClasses.get(CACHE_CLASS_NAME))).isEmpty();
+        invokeTestMethods(appender);
+    }
+
+    private static LocationCacheGenerator createLocationCache() {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setLazyLocations(true);
+        return locationCache;
+    }
+
+    private static void invokeTestMethods(final ListAppender appender) throws Exception {
+        for (final String methodName : TEST_METHODS) {
+            convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+        }
+    }
+
+    private static List<String> getFieldNames(final byte[] classFile) {
+        final List<String> fieldNames = new ArrayList<>();
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public FieldVisitor visitField(
+                                    int access, String name, String descriptor, String signature, Object value) {
+                                fieldNames.add(name);
+                                return null;
+                            }
+                        },
+                        0);
+        return fieldNames;
+    }
+}
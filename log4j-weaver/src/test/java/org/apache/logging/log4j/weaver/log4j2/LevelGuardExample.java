@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.message.EntryMessage;
+
+/**
+ * Logging statements executed with a logger that has level {@code INFO}.
+ */
+public class LevelGuardExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private String next() {
+        return "value" + counter.incrementAndGet();
+    }
+
+    private void reset(final ListAppender app) {
+        app.clear();
+        counter.set(0);
+    }
+
+    public void testDisabledLevel(final ListAppender app) {
+        reset(app);
+        logger.debug("Debug {}", next());
+        logger.debug(MARKER, "Debug {} {}", next(), next());
+        logger.trace("Trace {}", next());
+        logger.log(Level.DEBUG, "Debug {}", next());
+        logger.printf(Level.TRACE, "Trace %s", next());
+        assertThat(counter).hasValue(0);
+        assertThat(app.getEvents()).isEmpty();
+    }
+
+    public void testEnabledLevel(final ListAppender app) {
+        reset(app);
+        logger.info("Info {}", next());
+        logger.warn(MARKER, "Warn {}", next());
+        logger.log(Level.ERROR, "Error {}", next());
+        assertThat(counter).hasValue(3);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(3);
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testEnabledLevel");
+        }
+    }
+
+    public void testSharedGuard(final ListAppender app) {
+        reset(app);
+        logger.debug("First {}", next());
+        logger.debug("Second {}", next());
+        logger.debug("Third {}", next());
+        logger.info("Fourth {}", next());
+        assertThat(counter).hasValue(1);
+        assertThat(app.getEvents()).hasSize(1);
+    }
+
+    public void testLocalVariableStore(final ListAppender app) {
+        reset(app);
+        // The arguments assign local variables, which are read after the statement
+        final String value;
+        logger.debug("Debug {}", value = next());
+        int count = 0;
+        logger.debug("Debug {}", ++count);
+        assertThat(value).isEqualTo("value1");
+        assertThat(count).isEqualTo(1);
+        assertThat(app.getEvents()).isEmpty();
+    }
+
+    public void testTraceEntry(final ListAppender app) {
+        reset(app);
+        final EntryMessage entryMessage = logger.traceEntry("{}", next());
+        assertThat(entryMessage).isNull();
+        assertThat(counter).hasValue(0);
+        assertThat(app.getEvents()).isEmpty();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.status.StatusData;
+import org.apache.logging.log4j.status.StatusListener;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class LocationTableTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String MISSING_INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/HitCountersExample";
+    private static final String[] TEST_METHODS = {
+        "testFatal",
+        "testLog",
+        "testFrames",
+        "testPrintf",
+        "testLogBuilder",
+        "testCatchingThrowing",
+        "testTraceEntry",
+        "testTraceExit"
+    };
+
+    @Test
+    public void testLocationTable(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setLocationTable(true);
+        // The location table takes precedence
+        locationCache.setLazyLocations(true);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        assertThat(generatedClasses).containsOnlyKeys(CACHE_CLASS_NAME);
+        assertThat(generatedResources).containsOnlyKeys(CACHE_CLASS_NAME + ".locations");
+        // Logging statements only reference the index of their location
+        final boolean[] usesLocationMethod = new boolean[1];
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (CACHE_CLASS_NAME.equals(owner) && "location".equals(name)) {
+                                            usesLocationMethod[0] = true;
+                                        }
+                                    }
+
+                                    @Override
+                                    public void visitLdcInsn(Object value) {
+                                        assertThat(value).isNotInstanceOf(ConstantDynamic.class);
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        assertThat(usesLocationMethod[0]).isTrue();
+        for (final String methodName : TEST_METHODS) {
+            convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+        }
+    }
+
+    @Test
+    public void testMissingLocationTable(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setLocationTable(true);
+        transformClass(MISSING_INTERNAL_NAME, locationCache, 0);
+        generatedResources.clear();
+
+        final List<StatusData> errors = new ArrayList<>();
+        final StatusListener listener = new StatusListener() {
+            @Override
+            public void log(final StatusData data) {
+                errors.add(data);
+            }
+
+            @Override
+            public Level getStatusLevel() {
+                return Level.ERROR;
+            }
+
+            @Override
+            public void close() {}
+        };
+        StatusLogger.getLogger().registerListener(listener);
+        try {
+            // The logging statements work without locations
+            convertedClass.getMethod("testEnabledLevel", ListAppender.class).invoke(testObject, appender);
+        } finally {
+            StatusLogger.getLogger().removeListener(listener);
+        }
+        assertThat(appender.getEvents()).extracting(LogEvent::getSource).containsOnlyNulls();
+        assertThat(errors)
+                .anySatisfy(data -> assertThat(data.getFormattedStatus()).contains("HitCountersExample"));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class LogManagerConversionTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LogManagerExample";
+    private static final String CACHE_NAME = INTERNAL_NAME + "$$Log4j2$$Cache";
+    private static final String LOG_MANAGER = "org/apache/logging/log4j/LogManager";
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter =
+                new LocationClassConverter(LogManagerConversionTest.class.getClassLoader());
+        converter.setCacheLoggers(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"testStaticLoggers", "testGetLogger"})
+    public void testLoggers(final String methodName) throws Exception {
+        convertedClass.getMethod(methodName).invoke(testObject);
+    }
+
+    @Test
+    public void testCallerClass() throws Exception {
+        final byte[] original = Files.readAllBytes(Paths.get(LogManagerConversionTest.class
+                .getClassLoader()
+                .getResource(INTERNAL_NAME + ".class")
+                .toURI()));
+        final ByteArrayOutputStream dest = new ByteArrayOutputStream();
+        new LocationClassConverter(LogManagerConversionTest.class.getClassLoader())
+                .convert(new ByteArrayInputStream(original), dest, new LocationCacheGenerator());
+        assertThat(getCalls(dest.toByteArray(), "testGetLogger"))
+                .containsExactly(
+                        LOG_MANAGER + ".getLogger(Ljava/lang/Class;)Lorg/apache/logging/log4j/Logger;",
+                        LOG_MANAGER + ".getLogger(Ljava/lang/Class;)Lorg/apache/logging/log4j/Logger;",
+                        LOG_MANAGER + ".getLogger(Ljava/lang/String;)Lorg/apache/logging/log4j/Logger;",
+                        LOG_MANAGER + ".getFormatterLogger(Ljava/lang/String;)Lorg/apache/logging/log4j/Logger;");
+    }
+
+    @Test
+    public void testCachedLoggers() {
+        // Loggers are not cached in static initializers
+        assertThat(getCalls(convertedClasses.get(INTERNAL_NAME), "<clinit>"))
+                .containsExactly(
+                        LOG_MANAGER + ".getLogger(Ljava/lang/Class;)Lorg/apache/logging/log4j/Logger;",
+                        LOG_MANAGER + ".getFormatterLogger(Ljava/lang/Class;)Lorg/apache/logging/log4j/Logger;");
+        // `getLogger()` and `getLogger(LogManagerExample.class)` share the same field
+        assertThat(getCalls(convertedClasses.get(INTERNAL_NAME), "testGetLogger"))
+                .containsExactly(
+                        CACHE_NAME + ".getLogger0()Lorg/apache/logging/log4j/Logger;",
+                        CACHE_NAME + ".getLogger0()Lorg/apache/logging/log4j/Logger;",
+                        CACHE_NAME + ".getLogger1()Lorg/apache/logging/log4j/Logger;",
+                        CACHE_NAME + ".getLogger2()Lorg/apache/logging/log4j/Logger;");
+        // Not a constant argument
+        assertThat(getCalls(convertedClasses.get(INTERNAL_NAME + "$Nested"), "getLogger"))
+                .containsExactly(LOG_MANAGER
+                        + ".getLogger(Ljava/lang/Class;Lorg/apache/logging/log4j/message/MessageFactory;)"
+                        + "Lorg/apache/logging/log4j/Logger;");
+    }
+
+    /**
+     * Returns the calls to {@code LogManager} and to the location cache in a method.
+     */
+    private static List<String> getCalls(final byte[] classFile, final String methodName) {
+        final List<String> calls = new ArrayList<>();
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (!name.equals(methodName)) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (owner.equals(LOG_MANAGER) || owner.equals(CACHE_NAME)) {
+                                            calls.add(owner + "." + name + descriptor);
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return calls;
+    }
+}
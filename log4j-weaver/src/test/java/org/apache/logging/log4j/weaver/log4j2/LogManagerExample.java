@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.MessageFactory;
+import org.apache.logging.log4j.message.ParameterizedMessageFactory;
+import org.apache.logging.log4j.message.StringFormatterMessageFactory;
+import org.apache.logging.log4j.spi.AbstractLogger;
+
+public class LogManagerExample {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final Logger formatterLogger = LogManager.getFormatterLogger();
+
+    public void testStaticLoggers() {
+        assertThat(name(logger)).isEqualTo(LogManagerExample.class.getName());
+        assertThat(name(formatterLogger)).isEqualTo(LogManagerExample.class.getName());
+        assertThat(messageFactory(formatterLogger)).isInstanceOf(StringFormatterMessageFactory.class);
+    }
+
+    public void testGetLogger() {
+        final Logger first = LogManager.getLogger();
+        assertThat(name(first)).isEqualTo(LogManagerExample.class.getName());
+        assertThat(LogManager.getLogger(LogManagerExample.class)).isSameAs(first);
+        assertThat(name(LogManager.getLogger("custom"))).isEqualTo("custom");
+        final Logger formatter = LogManager.getFormatterLogger("formatter");
+        assertThat(name(formatter)).isEqualTo("formatter");
+        assertThat(messageFactory(formatter)).isInstanceOf(StringFormatterMessageFactory.class);
+        assertThat(name(Nested.getLogger())).isEqualTo(Nested.class.getCanonicalName());
+    }
+
+    // The methods of `Logger` that do not log are not supported by the weaver
+    private static String name(final Logger logger) {
+        return ((AbstractLogger) logger).getName();
+    }
+
+    private static MessageFactory messageFactory(final Logger logger) {
+        return ((AbstractLogger) logger).getMessageFactory();
+    }
+
+    static class Nested {
+
+        static Logger getLogger() {
+            return LogManager.getLogger(ParameterizedMessageFactory.INSTANCE);
+        }
+    }
+}
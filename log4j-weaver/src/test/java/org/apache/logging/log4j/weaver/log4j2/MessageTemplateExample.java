@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.util.Constants;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+public class MessageTemplateExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+    private static final Object P0 = "(p0)";
+    private static final Object P1 = "(p1)";
+
+    @SuppressWarnings("StaticAssignmentOfThrowable")
+    private static final Throwable THROWABLE = new RuntimeException();
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final Logger formatterLogger = LogManager.getFormatterLogger();
+
+    public void testTemplates(final ListAppender app) {
+        app.clear();
+        logger.info("Hello {}!", P0);
+        logger.warn(MARKER, "{} + {} = {}", 1, 2, 3);
+        logger.log(Level.INFO, "Array: {}, null: {}", new int[] {1, 2}, null);
+        logger.log(Level.ERROR, MARKER, "{{}}", P1);
+        logger.atInfo().log("Hello {}!", P1);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(5);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Hello (p0)!");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("1 + 2 = 3");
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("Array: [1, 2], null: null");
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("{(p1)}");
+        assertThat(events.get(4).getMessage().getFormattedMessage()).isEqualTo("Hello (p1)!");
+        for (final LogEvent event : events) {
+            assertThat(event.getMessage()).isInstanceOf(StringBuilderFormattable.class);
+            assertThat(event.getMessage().getThrowable()).isNull();
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testTemplates");
+            // Reusable messages are kept if thread locals are enabled
+            assertThat(event.getMessage().getClass().getName().contains("$$Log4j2$$Cache"))
+                    .isEqualTo(!Constants.ENABLE_THREADLOCALS);
+        }
+    }
+
+    public void testFormatterLogger(final ListAppender app) {
+        app.clear();
+        formatterLogger.info("{} %s", P0);
+        LogManager.getFormatterLogger(MessageTemplateExample.class).info("{} %s", P1);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("{} (p0)");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("{} (p1)");
+    }
+
+    public void testUnchangedTemplates(final ListAppender app) {
+        app.clear();
+        logger.info(getPattern(), P0);
+        logger.info("{} {}", P0);
+        logger.info("Escaped \\{} {}", P0);
+        logger.info("Failed {}", P0, THROWABLE);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("Hello (p0)!");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("(p0) {}");
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("Escaped {} (p0)");
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("Failed (p0)");
+        for (final LogEvent event : events) {
+            assertThat(event.getMessage().getClass().getName()).doesNotContain("$$Log4j2$$Cache");
+        }
+    }
+
+    private static String getPattern() {
+        return "Hello {}!";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Constants;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class MessageTemplateTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/MessageTemplateExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + "$$Log4j2$$Cache";
+    private static final Object P0 = "(p0)";
+
+    private ListAppender appender;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter = new LocationClassConverter(MessageTemplateTest.class.getClassLoader());
+        converter.setPrecompiledMessages(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @BeforeEach
+    public void setupAppender(final @Named("List") ListAppender appender) {
+        this.appender = appender;
+    }
+
+    @ParameterizedTest
+    @CsvSource({"testTemplates, 5", "testFormatterLogger, 0", "testUnchangedTemplates, 0"})
+    public void testMessageTemplates(final String methodName, final int expectedTemplates) throws Exception {
+        assertThat(countFactoryCalls(methodName)).isEqualTo(expectedTemplates);
+        convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testGeneratedClasses() {
+        assertThat(generatedClasses)
+                .containsOnlyKeys(
+                        CACHE_CLASS_NAME,
+                        CACHE_CLASS_NAME + "$Message0",
+                        CACHE_CLASS_NAME + "$Message1",
+                        CACHE_CLASS_NAME + "$Message2",
+                        CACHE_CLASS_NAME + "$Message3");
+    }
+
+    @Test
+    public void testPrecompiledMessages() throws Exception {
+        final ClassLoader classLoader = convertedClass.getClassLoader();
+        final Class<?> helloClass = classLoader.loadClass(CACHE_CLASS_NAME.replace('/', '.') + "$Message0");
+        // The precompiled messages are only used if Log4j does not reuse its messages
+        final Field precompiled = helloClass.getDeclaredField("PRECOMPILED");
+        precompiled.setAccessible(true);
+        assertThat(precompiled.getBoolean(null)).isEqualTo(!Constants.ENABLE_THREADLOCALS);
+
+        final Message message = createMessage(helloClass, P0);
+        assertThat(message).isInstanceOf(StringBuilderFormattable.class);
+        assertThat(message.getFormattedMessage()).isEqualTo("Hello (p0)!");
+        assertThat(message.getParameters()).containsExactly(P0);
+        assertThat(message.getThrowable()).isNull();
+        final StringBuilder buffer = new StringBuilder("Message: ");
+        ((StringBuilderFormattable) message).formatTo(buffer);
+        assertThat(buffer).hasToString("Message: Hello (p0)!");
+        // Precompiled messages are serialized as parameterized messages
+        final Object deserialized = deserialize(serialize(message));
+        assertThat(deserialized).isInstanceOf(ParameterizedMessage.class);
+        assertThat(((ParameterizedMessage) deserialized).getFormat()).isEqualTo("Hello {}!");
+        assertThat(((Message) deserialized).getFormattedMessage()).isEqualTo("Hello (p0)!");
+
+        // Parameters are formatted as in a parameterized message
+        final Class<?> sumClass = classLoader.loadClass(CACHE_CLASS_NAME.replace('/', '.') + "$Message1");
+        final StringBuilderFormattable formattable = sb -> sb.append("three");
+        assertThat(createMessage(sumClass, 1, 2L, formattable).getFormattedMessage())
+                .isEqualTo("1 + 2 = three");
+        final Class<?> arrayClass = classLoader.loadClass(CACHE_CLASS_NAME.replace('/', '.') + "$Message2");
+        assertThat(createMessage(arrayClass, new int[] {1, 2}, null).getFormattedMessage())
+                .isEqualTo("Array: [1, 2], null: null");
+    }
+
+    private static Message createMessage(final Class<?> messageClass, final Object... parameters) throws Exception {
+        final Class<?>[] types = new Class<?>[parameters.length];
+        Arrays.fill(types, Object.class);
+        final Method factory = messageClass.getDeclaredMethod("create", types);
+        factory.setAccessible(true);
+        return (Message) factory.invoke(null, parameters);
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        try (final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readObject();
+        }
+    }
+
+    /**
+     * Counts the calls to the factory methods of precompiled messages.
+     */
+    private static int countFactoryCalls(final String methodName) {
+        final int[] count = new int[1];
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (!name.equals(methodName)) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (owner.startsWith(CACHE_CLASS_NAME + "$Message")) {
+                                            count[0]++;
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return count[0];
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.message.EntryMessage;
+
+public class OutlineExample {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testOutline(final ListAppender app) {
+        app.clear();
+        final EntryMessage entry = logger.traceEntry();
+        logger.info("Hello {}!", "Alice");
+        try {
+            throw new IllegalStateException();
+        } catch (final IllegalStateException e) {
+            logger.error("Failure", e);
+        }
+        logger.traceExit(entry);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(4);
+        assertThat(events.get(1).getLevel()).isEqualTo(Level.INFO);
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("Hello Alice!");
+        assertThat(events.get(2).getThrown()).isInstanceOf(IllegalStateException.class);
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getClassName()).isEqualTo(OutlineExample.class.getName());
+            assertThat(event.getSource().getMethodName()).isEqualTo("testOutline");
+        }
+        assertThat(events.get(1).getSource().getLineNumber())
+                .isGreaterThan(events.get(0).getSource().getLineNumber());
+    }
+
+    public void manyStatements(final Object p0) {
+        logger.debug("Message 1 {}", p0);
+        logger.debug("Message 2 {}", p0);
+        logger.debug("Message 3 {}", p0);
+        logger.debug("Message 4 {}", p0);
+        logger.debug("Message 5 {}", p0);
+        logger.debug("Message 6 {}", p0);
+        logger.debug("Message 7 {}", p0);
+        logger.debug("Message 8 {}", p0);
+        logger.debug("Message 9 {}", p0);
+        logger.debug("Message 10 {}", p0);
+        logger.debug("Message 11 {}", p0);
+        logger.debug("Message 12 {}", p0);
+        logger.debug("Message 13 {}", p0);
+        logger.debug("Message 14 {}", p0);
+        logger.debug("Message 15 {}", p0);
+        logger.debug("Message 16 {}", p0);
+        logger.debug("Message 17 {}", p0);
+        logger.debug("Message 18 {}", p0);
+        logger.debug("Message 19 {}", p0);
+        logger.debug("Message 20 {}", p0);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.LocationClassConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class OutlineTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/OutlineExample";
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        final LocationClassConverter converter = new LocationClassConverter(OutlineTest.class.getClassLoader());
+        converter.setOutlineStatements(true);
+        transformClass(INTERNAL_NAME, converter, new LocationCacheGenerator(), 0);
+    }
+
+    @Test
+    public void testHelperMethods() {
+        final List<String> helpers = new ArrayList<>();
+        final List<String> calls = new ArrayList<>();
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (name.startsWith("log4j2$$")) {
+                                    assertThat(access)
+                                            .isEqualTo(
+                                                    Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC);
+                                    helpers.add(name);
+                                    return null;
+                                }
+                                if (!name.equals("testOutline")) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if (owner.equals("org/apache/logging/log4j/Logger")) {
+                                            calls.add(name);
+                                        } else if (owner.equals(INTERNAL_NAME)) {
+                                            assertThat(opcode).isEqualTo(Opcodes.INVOKESTATIC);
+                                            calls.add(name);
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        // The calls in `testOutline` plus the 20 calls in `manyStatements`
+        assertThat(helpers).hasSize(24);
+        assertThat(calls)
+                .containsExactly("log4j2$$traceEntry$0", "log4j2$$info$1", "log4j2$$error$2", "log4j2$$traceExit$3");
+    }
+
+    @Test
+    public void testOutline(final @Named("List") ListAppender appender) throws Exception {
+        convertedClass.getMethod("testOutline", ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testMethodSizeWarnings() throws Exception {
+        assertThat(convert(false)).hasSize(2).anySatisfy(warning -> assertThat(warning)
+                .contains(
+                        "OutlineExample.manyStatements(Ljava/lang/Object;)V",
+                        "beyond the JIT inlining limit of 325 bytes"));
+        assertThat(convert(true)).isEmpty();
+    }
+
+    private static List<String> convert(final boolean outlineStatements) throws Exception {
+        final byte[] original = Files.readAllBytes(Paths.get(OutlineTest.class
+                .getClassLoader()
+                .getResource(INTERNAL_NAME + ".class")
+                .toURI()));
+        final List<String> warnings = new ArrayList<>();
+        final LocationClassConverter converter = new LocationClassConverter(OutlineTest.class.getClassLoader());
+        converter.setOutlineStatements(outlineStatements);
+        converter.setWarningHandler(warnings::add);
+        converter.convert(
+                new ByteArrayInputStream(original), new ByteArrayOutputStream(), new LocationCacheGenerator());
+        return warnings;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Field;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.apache.logging.log4j.weaver.runtime.PrerenderedLocations;
+import org.junit.jupiter.api.Test;
+
+@LoggerContextSource("log4j2-test.xml")
+public class RenderLocationsTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+
+    @Test
+    public void testRenderedLocations(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setRenderLocations(true);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        convertedClass.getMethod("testFatal", ListAppender.class).invoke(testObject, appender);
+
+        final Field field = convertedClass
+                .getClassLoader()
+                .loadClass(CACHE_CLASS_NAME.replace('/', '.'))
+                .getDeclaredField("locations");
+        field.setAccessible(true);
+        final StackTraceElement[] locations = (StackTraceElement[]) field.get(null);
+        assertThat(locations).isNotEmpty();
+        for (final StackTraceElement location : locations) {
+            final String rendered = PrerenderedLocations.getString(location);
+            assertThat(rendered).isEqualTo(location.toString());
+            // The registered string is reused
+            assertThat(PrerenderedLocations.getString(location)).isSameAs(rendered);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class SiteSwitchesConversionTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/SiteSwitchesExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String OBJECT_NAME = "org.apache.logging.log4j.weaver:type=SiteSwitches";
+    private static final String[] SET_LEVEL_SIGNATURE = {String.class.getName(), String.class.getName()};
+
+    @Test
+    public void testSiteSwitches(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setSiteSwitches(true);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        assertThat(generatedClasses).containsKey(CACHE_CLASS_NAME + "$SiteSwitches");
+
+        final String site = INTERNAL_NAME.replace('/', '.') + ":" + getInfoLineNumber();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(OBJECT_NAME);
+        try {
+            invokeExample(appender, true);
+            // The switches must stay registered as long as the location cache is loaded
+            System.gc();
+            server.invoke(objectName, "setLevel", new Object[] {site, "WARN"}, SET_LEVEL_SIGNATURE);
+            invokeExample(appender, false);
+            server.invoke(objectName, "setLevel", new Object[] {site, "INFO"}, SET_LEVEL_SIGNATURE);
+            invokeExample(appender, true);
+            server.invoke(objectName, "setLevel", new Object[] {site, "OFF"}, SET_LEVEL_SIGNATURE);
+            invokeExample(appender, false);
+        } finally {
+            server.invoke(objectName, "reset", new Object[0], new String[0]);
+        }
+        invokeExample(appender, true);
+    }
+
+    private void invokeExample(final ListAppender appender, final boolean enabled) throws Exception {
+        convertedClass
+                .getMethod("testSiteSwitch", ListAppender.class, boolean.class)
+                .invoke(testObject, appender, enabled);
+    }
+
+    /**
+     * Returns the line number of the {@code logger.info} statement.
+     */
+    private int getInfoLineNumber() {
+        final int[] lineNumber = new int[2];
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitLineNumber(int line, Label start) {
+                                        lineNumber[0] = line;
+                                    }
+
+                                    @Override
+                                    public void visitFieldInsn(
+                                            int opcode, String owner, String name, String descriptor) {
+                                        if (owner.endsWith("$SiteSwitches")) {
+                                            lineNumber[1] = lineNumber[0];
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return lineNumber[1];
+    }
+}
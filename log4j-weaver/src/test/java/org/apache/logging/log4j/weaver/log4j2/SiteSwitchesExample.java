@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+/**
+ * Logging statement guarded by a switch, executed with a logger that has level {@code INFO}.
+ */
+public class SiteSwitchesExample {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private String next() {
+        return "value" + counter.incrementAndGet();
+    }
+
+    public void testSiteSwitch(final ListAppender app, final boolean enabled) {
+        app.clear();
+        counter.set(0);
+        logger.info("Info {}", next());
+        assertThat(counter).hasValue(enabled ? 1 : 0);
+        assertThat(app.getEvents()).hasSize(enabled ? 1 : 0);
+    }
+}
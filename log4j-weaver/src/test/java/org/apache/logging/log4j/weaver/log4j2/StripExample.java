@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.message.EntryMessage;
+
+/**
+ * Logging statements converted with {@code stripBelow} set to {@code INFO} and executed with a logger that has level
+ * {@code TRACE}.
+ */
+public class StripExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private final String name = "name";
+
+    private String next() {
+        return "value" + counter.incrementAndGet();
+    }
+
+    private void reset(final ListAppender app) {
+        app.clear();
+        counter.set(0);
+    }
+
+    public void testPureArguments(final ListAppender app) {
+        reset(app);
+        final int count = 42;
+        final Throwable t = new RuntimeException();
+        logger.debug("Debug {}", count);
+        logger.debug(MARKER, "Debug {} {}", name, count);
+        logger.trace("Trace " + name + " " + count);
+        logger.trace("Trace {} {} {}", new Object[] {name, count, t});
+        logger.info("Info {}", name);
+        assertThat(app.getEvents()).hasSize(1);
+    }
+
+    public void testImpureArguments(final ListAppender app) {
+        reset(app);
+        logger.debug("Debug {}", next());
+        logger.trace(MARKER, "Trace {} {}", next(), next());
+        logger.info("Info {}", next());
+        assertThat(counter).hasValue(4);
+        assertThat(app.getEvents()).hasSize(1);
+    }
+
+    public void testLevelConstant(final ListAppender app) {
+        reset(app);
+        logger.log(Level.DEBUG, "Debug {}", name);
+        logger.printf(Level.TRACE, "Trace %s", name);
+        logger.catching(Level.DEBUG, new RuntimeException());
+        logger.log(Level.WARN, "Warn {}", name);
+        assertThat(app.getEvents()).hasSize(1);
+    }
+
+    public void testLevelChecks(final ListAppender app) {
+        reset(app);
+        if (logger.isDebugEnabled()) {
+            logger.info("Debug enabled");
+        }
+        if (logger.isEnabled(Level.TRACE, MARKER)) {
+            logger.info("Trace enabled");
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Info enabled");
+        }
+        assertThat(app.getEvents()).hasSize(1);
+    }
+
+    public void testLogBuilder(final ListAppender app) {
+        reset(app);
+        final Throwable t = new RuntimeException();
+        logger.atDebug().withThrowable(t).log("Debug {}", name);
+        logger.atLevel(Level.TRACE).withMarker(MARKER).log("Trace");
+        // Kept, since the arguments have side effects
+        logger.atTrace().log("Trace {}", next());
+        logger.atInfo().log("Info {}", name);
+        assertThat(counter).hasValue(1);
+        assertThat(app.getEvents()).hasSize(2);
+    }
+
+    public void testTraceEntryExit(final ListAppender app) {
+        reset(app);
+        final EntryMessage entryMessage = logger.traceEntry("{}", next());
+        assertThat(entryMessage).isNull();
+        assertThat(logger.traceExit(entryMessage, 42)).isEqualTo(42);
+        assertThat(logger.traceExit(next())).isEqualTo("value2");
+        logger.traceExit();
+        assertThat(counter).hasValue(2);
+        assertThat(app.getEvents()).isEmpty();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.apache.logging.log4j.weaver.Constants;
+import org.apache.logging.log4j.weaver.LocationCacheGenerator;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class SupplierClassesTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/LoggerConversionHandlerExample";
+    private static final String CACHE_CLASS_NAME = INTERNAL_NAME + Constants.LOCATION_CACHE_SUFFIX;
+    private static final String[] TEST_METHODS = {
+        "testFatal",
+        "testError",
+        "testWarn",
+        "testInfo",
+        "testDebug",
+        "testLog",
+        "testFrames",
+        "testPrintf",
+        "testLogBuilder",
+        "testPassthrough",
+        "testCatchingThrowing",
+        "testTraceEntry",
+        "testTraceExit"
+    };
+
+    @Test
+    public void testSupplierClasses(final @Named("List") ListAppender appender) throws Exception {
+        final LocationCacheGenerator locationCache = new LocationCacheGenerator();
+        locationCache.setSupplierClasses(true);
+        transformClass(INTERNAL_NAME, locationCache, 0);
+        // No lambda is added to those already present in the source code
+        final byte[] original = Files.readAllBytes(Paths.get(SupplierClassesTest.class
+                .getClassLoader()
+                .getResource(INTERNAL_NAME + ".class")
+                .toURI()));
+        assertThat(countInvokeDynamic(convertedClasses.get(INTERNAL_NAME))).isEqualTo(countInvokeDynamic(original));
+        assertThat(generatedClasses)
+                .containsKeys(
+                        CACHE_CLASS_NAME,
+                        CACHE_CLASS_NAME + "$MessageSupplierSupplier",
+                        CACHE_CLASS_NAME + "$FormattedMessageSupplier",
+                        CACHE_CLASS_NAME + "$EntryMessageStringObjectsSupplier",
+                        CACHE_CLASS_NAME + "$ExitMessageStringObjectSupplier");
+        for (final String methodName : TEST_METHODS) {
+            convertedClass.getMethod(methodName, ListAppender.class).invoke(testObject, appender);
+        }
+    }
+
+    /**
+     * Counts the {@code invokedynamic} instructions that create a lambda.
+     */
+    private static int countInvokeDynamic(final byte[] classFile) {
+        final int[] count = new int[1];
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitInvokeDynamicInsn(
+                                            String name,
+                                            String descriptor,
+                                            Handle bootstrapMethodHandle,
+                                            Object... bootstrapMethodArguments) {
+                                        if ("java/lang/invoke/LambdaMetafactory"
+                                                .equals(bootstrapMethodHandle.getOwner())) {
+                                            count[0]++;
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return count[0];
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+
+public class VarargsExample {
+
+    private static final Marker MARKER = MarkerManager.getMarker("MARKER");
+    private static final Object P0 = "(p0)";
+    private static final Object P1 = "(p1)";
+    private static final Object P2 = "(p2)";
+
+    @SuppressWarnings("StaticAssignmentOfThrowable")
+    private static final Throwable THROWABLE = new RuntimeException();
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public void testVarargs(final ListAppender app) {
+        app.clear();
+        logger.info("{}", new Object[] {P0});
+        logger.info(MARKER, "{} {}", new Object[] {P0, P1});
+        logger.log(Level.INFO, "{} {} {}", new Object[] {P0, P1, P2});
+        logger.log(Level.INFO, MARKER, "{} {} {}", new Object[] {P0, P1, String.valueOf(P2)});
+        logger.info("{} {}", new Object[] {P0, P1, THROWABLE});
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(5);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("(p0)");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1)");
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(2).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1) (p2)");
+        assertThat(events.get(3).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1) (p2)");
+        assertThat(events.get(3).getMarker()).isEqualTo(MARKER);
+        assertThat(events.get(4).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1)");
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testVarargs");
+        }
+    }
+
+    public void testLogBuilderVarargs(final ListAppender app) {
+        app.clear();
+        logger.atInfo().log("{}", new Object[] {P0});
+        logger.atInfo().withMarker(MARKER).log("{} {}", new Object[] {P0, P1});
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("(p0)");
+        assertThat(events.get(1).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1)");
+        assertThat(events.get(1).getMarker()).isEqualTo(MARKER);
+        for (final LogEvent event : events) {
+            assertThat(event.getSource()).isNotNull();
+            assertThat(event.getSource().getMethodName()).isEqualTo("testLogBuilderVarargs");
+        }
+    }
+
+    public void testUnchangedVarargs(final ListAppender app) {
+        app.clear();
+        final Object[] params = {P0, P1};
+        logger.info("{} {}", params);
+        logger.info("{} {} {} {} {} {} {} {} {} {} {}", P0, P1, P2, P0, P1, P2, P0, P1, P2, P0, P1);
+        final List<LogEvent> events = app.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getMessage().getFormattedMessage()).isEqualTo("(p0) (p1)");
+        assertThat(events.get(1).getMessage().getParameters()).hasSize(11);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.logging.log4j.weaver.log4j2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.core.test.appender.ListAppender;
+import org.apache.logging.log4j.core.test.junit.LoggerContextSource;
+import org.apache.logging.log4j.core.test.junit.Named;
+import org.apache.logging.log4j.weaver.AbstractConversionHandlerTest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@LoggerContextSource("log4j2-test.xml")
+public class VarargsTest extends AbstractConversionHandlerTest {
+
+    private static final String INTERNAL_NAME = "org/apache/logging/log4j/weaver/log4j2/VarargsExample";
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        transformClass(INTERNAL_NAME);
+    }
+
+    @Test
+    public void testVarargs(final @Named("List") ListAppender appender) throws Exception {
+        // Only the fixed-arity `LogBuilder.log` methods are called
+        assertThat(getLogDescriptors("testVarargs"))
+                .containsExactly(
+                        "(Ljava/lang/String;Ljava/lang/Object;)V",
+                        "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;)V",
+                        "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V",
+                        "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V",
+                        // A trailing throwable is detected by the message
+                        "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V");
+        convertedClass.getMethod("testVarargs", ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testLogBuilderVarargs(final @Named("List") ListAppender appender) throws Exception {
+        assertThat(getLogDescriptors("testLogBuilderVarargs"))
+                .containsExactly(
+                        "(Ljava/lang/String;Ljava/lang/Object;)V",
+                        "(Ljava/lang/String;Ljava/lang/Object;Ljava/lang/Object;)V");
+        convertedClass.getMethod("testLogBuilderVarargs", ListAppender.class).invoke(testObject, appender);
+    }
+
+    @Test
+    public void testUnchangedVarargs(final @Named("List") ListAppender appender) throws Exception {
+        assertThat(getLogDescriptors("testUnchangedVarargs")).containsOnly("(Ljava/lang/String;[Ljava/lang/Object;)V");
+        convertedClass.getMethod("testUnchangedVarargs", ListAppender.class).invoke(testObject, appender);
+    }
+
+    /**
+     * Returns the descriptors of the {@code LogBuilder.log} calls in a converted method.
+     */
+    private static List<String> getLogDescriptors(final String methodName) {
+        final List<String> descriptors = new ArrayList<>();
+        new ClassReader(convertedClasses.get(INTERNAL_NAME))
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                if (!name.equals(methodName)) {
+                                    return null;
+                                }
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public void visitMethodInsn(
+                                            int opcode,
+                                            String owner,
+                                            String name,
+                                            String descriptor,
+                                            boolean isInterface) {
+                                        if ("org/apache/logging/log4j/LogBuilder".equals(owner) && "log".equals(name)) {
+                                            descriptors.add(descriptor);
+                                        }
+                                    }
+                                };
+                            }
+                        },
+                        0);
+        return descriptors;
+    }
+}